@@ -120,6 +120,7 @@ public class SimplePerfCallback extends PerfCallback {
             case RAFT_D_IDX_FORCE -> prefix + "raft_idx_force";
             case RAFT_D_REPLICATE_RPC -> prefix + "raft_replicate_rpc";
             case RAFT_D_STATE_MACHINE_EXEC -> prefix + "raft_state_machine_exec";
+            case RAFT_C_REPLICATE_COMPRESS -> prefix + "raft_replicate_compress";
             default -> prefix + "unknown";
         };
     }
@@ -0,0 +1,141 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.dtkv;
+
+import com.github.dtprj.dongting.common.ByteArray;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compare TreeSetTtlQueue and TimingWheelTtlQueue, simulate many keys that renew their ttl periodically
+ * (remove old TtlInfo and add new one), and expire the keys that not renewed. The queue classes are package
+ * private, so they are accessed by method handles.
+ *
+ * @author huangli
+ */
+public class TtlQueueBenchmark {
+    private static final int KEYS = 1_000_000;
+    private static final int RENEW_COUNT = 10_000_000;
+    private static final long TTL_NANOS = 10_000_000_000L; // 10 seconds
+    private static final long STEP_NANOS = 3_000; // each key renewed every 3 seconds on average
+    private static final int LOOP = 5;
+
+    private static final String PKG = "com.github.dtprj.dongting.dtkv.server.";
+    private static final MethodHandle NEW_TREE_SET_QUEUE;
+    private static final MethodHandle NEW_TIMING_WHEEL_QUEUE;
+    private static final MethodHandle NEW_TTL_INFO;
+    private static final MethodHandle ADD;
+    private static final MethodHandle REMOVE;
+    private static final MethodHandle POLL_EXPIRED;
+    private static final MethodHandle SIZE;
+
+    static {
+        try {
+            Class<?> queueClass = Class.forName(PKG + "TtlQueue");
+            Class<?> ttlInfoClass = Class.forName(PKG + "TtlInfo");
+            NEW_TREE_SET_QUEUE = constructor(Class.forName(PKG + "TreeSetTtlQueue"))
+                    .asType(MethodType.methodType(Object.class));
+            NEW_TIMING_WHEEL_QUEUE = constructor(Class.forName(PKG + "TimingWheelTtlQueue"), long.class, long.class)
+                    .asType(MethodType.methodType(Object.class, long.class, long.class));
+            NEW_TTL_INFO = constructor(ttlInfoClass, ByteArray.class, long.class, UUID.class, long.class,
+                    long.class, long.class, int.class).asType(MethodType.methodType(Object.class, ByteArray.class,
+                    long.class, UUID.class, long.class, long.class, long.class, int.class));
+            ADD = method(queueClass, "add", ttlInfoClass)
+                    .asType(MethodType.methodType(boolean.class, Object.class, Object.class));
+            REMOVE = method(queueClass, "remove", ttlInfoClass)
+                    .asType(MethodType.methodType(boolean.class, Object.class, Object.class));
+            POLL_EXPIRED = method(queueClass, "pollExpired", long.class)
+                    .asType(MethodType.methodType(Object.class, Object.class, long.class));
+            SIZE = method(queueClass, "size").asType(MethodType.methodType(int.class, Object.class));
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> c, Class<?>... types) throws Exception {
+        Constructor<?> ctor = c.getDeclaredConstructor(types);
+        ctor.setAccessible(true);
+        return MethodHandles.lookup().unreflectConstructor(ctor);
+    }
+
+    private static MethodHandle method(Class<?> c, String name, Class<?>... types) throws Exception {
+        Method m = c.getDeclaredMethod(name, types);
+        m.setAccessible(true);
+        return MethodHandles.lookup().unreflect(m);
+    }
+
+    public static void main(String[] args) throws Throwable {
+        for (int i = 0; i < LOOP; i++) {
+            boolean print = i == LOOP - 1;
+            if (print) {
+                System.out.println("TreeSet:");
+            }
+            test((Object) NEW_TREE_SET_QUEUE.invokeExact(), print);
+            if (print) {
+                System.out.println("\nTimingWheel:");
+            }
+            test((Object) NEW_TIMING_WHEEL_QUEUE.invokeExact(10_000_000L, 0L), print);
+        }
+    }
+
+    private static Object newTtlInfo(ByteArray key, int index, UUID owner, long expireNanos) throws Throwable {
+        return (Object) NEW_TTL_INFO.invokeExact(key, (long) index, owner, 0L, 0L, expireNanos, index);
+    }
+
+    private static void test(Object q, boolean print) throws Throwable {
+        Random r = new Random(0);
+        UUID owner = UUID.randomUUID();
+        ByteArray key = new ByteArray(new byte[]{1});
+        Object[] infos = new Object[KEYS];
+        int index = 0;
+        long now = 0;
+
+        long t = System.nanoTime();
+        for (int i = 0; i < KEYS; i++) {
+            infos[i] = newTtlInfo(key, index++, owner, now + r.nextInt((int) (TTL_NANOS / 1000)) * 1000L);
+            boolean ignore = (boolean) ADD.invokeExact(q, infos[i]);
+        }
+        if (print) {
+            System.out.println("add cost: " + (System.nanoTime() - t) / 1_000_000 + "ms");
+        }
+
+        t = System.nanoTime();
+        int expired = 0;
+        for (int i = 0; i < RENEW_COUNT; i++) {
+            now += STEP_NANOS;
+            int k = r.nextInt(KEYS);
+            if ((boolean) REMOVE.invokeExact(q, infos[k])) {
+                infos[k] = newTtlInfo(key, index++, owner, now + TTL_NANOS);
+                boolean ignore = (boolean) ADD.invokeExact(q, infos[k]);
+            }
+            if ((i & 1023) == 0) {
+                while ((Object) POLL_EXPIRED.invokeExact(q, now) != null) {
+                    expired++;
+                }
+            }
+        }
+        if (print) {
+            System.out.println("renew and expire cost: " + (System.nanoTime() - t) / 1_000_000
+                    + "ms, expired: " + expired + ", remain: " + (int) SIZE.invokeExact(q));
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.fiber;
+
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Compare PriorityQueue and TimerWheel as the schedule queue of Dispatcher, simulate many fibers that await
+ * with timeout, most of them are signaled (removed from the queue) before timeout and then await again.
+ * TimerWheel and the schedule fields of Fiber are package private, so they are accessed by method handles.
+ *
+ * @author huangli
+ */
+public class TimerWheelBenchmark {
+    private static final int FIBERS = 10_000;
+    private static final int OPS = 2_000_000;
+    private static final long TIMEOUT_NANOS = 1_000_000_000L; // 1 second
+    private static final long STEP_NANOS = 1_000; // 1us each op
+    private static final int LOOP = 5;
+
+    private static final String PKG = "com.github.dtprj.dongting.fiber.";
+    private static final MethodHandle NEW_TIMER_WHEEL;
+    private static final MethodHandle ADD;
+    private static final MethodHandle REMOVE;
+    private static final MethodHandle POLL_EXPIRED;
+    private static final MethodHandle GET_SCHEDULE_NANO_TIME;
+    private static final MethodHandle SET_SCHEDULE_NANO_TIME;
+    private static final MethodHandle GET_SCHEDULE_NEXT;
+    private static final MethodHandle SET_SCHEDULE_NEXT;
+
+    static {
+        try {
+            Class<?> wheelClass = Class.forName(PKG + "TimerWheel");
+            NEW_TIMER_WHEEL = constructor(wheelClass, long.class)
+                    .asType(MethodType.methodType(Object.class, long.class));
+            ADD = method(wheelClass, "add", Fiber.class)
+                    .asType(MethodType.methodType(void.class, Object.class, Fiber.class));
+            REMOVE = method(wheelClass, "remove", Fiber.class)
+                    .asType(MethodType.methodType(boolean.class, Object.class, Fiber.class));
+            POLL_EXPIRED = method(wheelClass, "pollExpired", long.class)
+                    .asType(MethodType.methodType(Fiber.class, Object.class, long.class));
+            Field scheduleNanoTime = field("scheduleNanoTime");
+            GET_SCHEDULE_NANO_TIME = MethodHandles.lookup().unreflectGetter(scheduleNanoTime);
+            SET_SCHEDULE_NANO_TIME = MethodHandles.lookup().unreflectSetter(scheduleNanoTime);
+            Field scheduleNext = field("scheduleNext");
+            GET_SCHEDULE_NEXT = MethodHandles.lookup().unreflectGetter(scheduleNext);
+            SET_SCHEDULE_NEXT = MethodHandles.lookup().unreflectSetter(scheduleNext);
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> c, Class<?>... types) throws Exception {
+        Constructor<?> ctor = c.getDeclaredConstructor(types);
+        ctor.setAccessible(true);
+        return MethodHandles.lookup().unreflectConstructor(ctor);
+    }
+
+    private static MethodHandle method(Class<?> c, String name, Class<?>... types) throws Exception {
+        Method m = c.getDeclaredMethod(name, types);
+        m.setAccessible(true);
+        return MethodHandles.lookup().unreflect(m);
+    }
+
+    private static Field field(String name) throws Exception {
+        Field f = Fiber.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+
+    private static long scheduleNanoTime(Fiber f) {
+        try {
+            return (long) GET_SCHEDULE_NANO_TIME.invokeExact(f);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void scheduleNanoTime(Fiber f, long nanos) throws Throwable {
+        SET_SCHEDULE_NANO_TIME.invokeExact(f, nanos);
+    }
+
+    public static void main(String[] args) throws Throwable {
+        FiberGroup group = new FiberGroup("benchGroup", new Dispatcher("benchDispatcher"));
+        Fiber[] fibers = new Fiber[FIBERS];
+        for (int i = 0; i < FIBERS; i++) {
+            fibers[i] = new Fiber("f" + i, group, new FiberFrame<>() {
+                @Override
+                public FrameCallResult execute(Void input) {
+                    return Fiber.frameReturn();
+                }
+            });
+        }
+        for (int i = 0; i < LOOP; i++) {
+            boolean print = i == LOOP - 1;
+            if (print) {
+                System.out.println("PriorityQueue:");
+            }
+            testPriorityQueue(fibers, print);
+            if (print) {
+                System.out.println("\nTimerWheel:");
+            }
+            testTimerWheel(fibers, print);
+        }
+    }
+
+    private static void testPriorityQueue(Fiber[] fibers, boolean print) throws Throwable {
+        PriorityQueue<Fiber> q = new PriorityQueue<>((f1, f2) -> {
+            long diff = scheduleNanoTime(f1) - scheduleNanoTime(f2);
+            return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        });
+        Random r = new Random(0);
+        long now = 0;
+        for (Fiber f : fibers) {
+            scheduleNanoTime(f, now + r.nextInt((int) TIMEOUT_NANOS));
+            q.add(f);
+        }
+        long t = System.nanoTime();
+        int expired = 0;
+        for (int i = 0; i < OPS; i++) {
+            now += STEP_NANOS;
+            Fiber f = fibers[r.nextInt(FIBERS)];
+            if (q.remove(f)) {
+                // signaled, await again
+                scheduleNanoTime(f, now + TIMEOUT_NANOS);
+                q.add(f);
+            }
+            if ((i & 1023) == 0) {
+                Fiber x;
+                while ((x = q.peek()) != null && scheduleNanoTime(x) - now <= 0) {
+                    q.poll();
+                    expired++;
+                    scheduleNanoTime(x, now + TIMEOUT_NANOS);
+                    q.add(x);
+                }
+            }
+        }
+        if (print) {
+            System.out.println("cost: " + (System.nanoTime() - t) / 1_000_000 + "ms, expired: " + expired);
+        }
+        q.clear();
+    }
+
+    private static void testTimerWheel(Fiber[] fibers, boolean print) throws Throwable {
+        Object q = (Object) NEW_TIMER_WHEEL.invokeExact(0L);
+        Random r = new Random(0);
+        long now = 0;
+        for (Fiber f : fibers) {
+            scheduleNanoTime(f, now + r.nextInt((int) TIMEOUT_NANOS));
+            ADD.invokeExact(q, f);
+        }
+        long t = System.nanoTime();
+        int expired = 0;
+        for (int i = 0; i < OPS; i++) {
+            now += STEP_NANOS;
+            Fiber f = fibers[r.nextInt(FIBERS)];
+            if ((boolean) REMOVE.invokeExact(q, f)) {
+                // signaled, await again
+                scheduleNanoTime(f, now + TIMEOUT_NANOS);
+                ADD.invokeExact(q, f);
+            }
+            if ((i & 1023) == 0) {
+                Fiber x = (Fiber) POLL_EXPIRED.invokeExact(q, now);
+                while (x != null) {
+                    Fiber next = (Fiber) GET_SCHEDULE_NEXT.invokeExact(x);
+                    SET_SCHEDULE_NEXT.invokeExact(x, (Fiber) null);
+                    expired++;
+                    scheduleNanoTime(x, now + TIMEOUT_NANOS);
+                    ADD.invokeExact(q, x);
+                    x = next;
+                }
+            }
+        }
+        if (print) {
+            System.out.println("cost: " + (System.nanoTime() - t) / 1_000_000 + "ms, expired: " + expired);
+        }
+        for (Fiber f : fibers) {
+            boolean ignore = (boolean) REMOVE.invokeExact(q, f);
+        }
+    }
+}
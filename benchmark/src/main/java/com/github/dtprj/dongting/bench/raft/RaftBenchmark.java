@@ -66,6 +66,7 @@ public class RaftBenchmark extends BenchBase {
     private static final int CLIENT_MAX_OUT_REQUESTS = 2000;
     private static final boolean PERF = false; // significant performance impact if change to true
     private static final boolean SYNC_FORCE = true; // not wait for FileChannel.force after write
+    private static final boolean BATCH_FILE_IO = false; // use BatchFileIoBackend instead of AsynchronousFileChannel
     // total different keys
     private static final int KEYS = 100_000;
 
@@ -92,6 +93,7 @@ public class RaftBenchmark extends BenchBase {
         serverConfig.servicePort = servicePort;
         serverConfig.electTimeout = 3000;
         serverConfig.heartbeatInterval = 1000;
+        serverConfig.batchFileIo = BATCH_FILE_IO;
 
         RaftGroupConfig groupConfig = RaftGroupConfig.newInstance(GROUP_ID, nodeIdOfMembers, "");
         groupConfig.dataDir = TestProps.get("dir.RaftBenchmark", DATA_DIR) + "-" + nodeId;
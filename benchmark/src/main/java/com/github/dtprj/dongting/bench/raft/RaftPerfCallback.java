@@ -48,6 +48,7 @@ public class RaftPerfCallback extends PrometheusPerfCallback {
     private final Summary raftReplicateRpcItems;
     private final Summary raftReplicateRpcBytes;
     private final Summary raftStateMachineExec;
+    private final Summary raftReplicateCompressSavedBytes;
 
     public RaftPerfCallback(boolean useNanos, String prefix) {
         super(useNanos);
@@ -75,6 +76,7 @@ public class RaftPerfCallback extends PrometheusPerfCallback {
         this.raftReplicateRpcItems = createSummary(prefix + "raft_replicate_rpc_items");
         this.raftReplicateRpcBytes = createSummary(prefix + "raft_replicate_rpc_bytes");
         this.raftStateMachineExec = createSummary(prefix + "raft_state_machine_exec");
+        this.raftReplicateCompressSavedBytes = createSummary(prefix + "raft_replicate_compress_saved_bytes");
     }
 
     @Override
@@ -144,6 +146,9 @@ public class RaftPerfCallback extends PrometheusPerfCallback {
             case RAFT_D_STATE_MACHINE_EXEC:
                 raftStateMachineExec.observe(costTime);
                 break;
+            case RAFT_C_REPLICATE_COMPRESS:
+                raftReplicateCompressSavedBytes.observe(sum);
+                break;
         }
     }
 
@@ -172,6 +177,7 @@ public class RaftPerfCallback extends PrometheusPerfCallback {
         printValue(raftReplicateRpcItems);
         printValue(raftReplicateRpcBytes);
         printTime(raftStateMachineExec);
+        printValue(raftReplicateCompressSavedBytes);
 
         if (accept(FIBER_D_POLL) && accept(FIBER_D_WORK)) {
             double total = fiberPoll.get().sum + fiberWork.get().sum;
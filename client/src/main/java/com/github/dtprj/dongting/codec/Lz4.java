@@ -0,0 +1,210 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+import java.util.Arrays;
+
+/**
+ * A pure java implementation of the LZ4 block format, favours speed over compression ratio.
+ *
+ * @author huangli
+ */
+public final class Lz4 {
+
+    private static final int MIN_MATCH = 4;
+    // the last 5 bytes are always literals
+    private static final int LAST_LITERALS = 5;
+    // the last match must start at least 12 bytes before the end of block
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    private Lz4() {
+    }
+
+    public static int maxCompressedLength(int srcLen) {
+        return srcLen + srcLen / 255 + 16;
+    }
+
+    /**
+     * compress src to dest, the dest should have at least maxCompressedLength(srcLen) bytes.
+     *
+     * @return the compressed length
+     */
+    public static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+        int srcEnd = srcOff + srcLen;
+        int anchor = srcOff;
+        int op = destOff;
+        if (srcLen >= MF_LIMIT + 1) {
+            int[] table = HASH_TABLE.get();
+            // store position + 1, 0 means empty
+            Arrays.fill(table, 0);
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int mfLimit = srcEnd - MF_LIMIT;
+            int ip = srcOff;
+            while (ip < mfLimit) {
+                int seq = readInt(src, ip);
+                int h = hash(seq);
+                int ref = table[h] - 1 + srcOff;
+                table[h] = ip - srcOff + 1;
+                if (ref < srcOff || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                    // accelerate on incompressible data
+                    ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLen = MIN_MATCH;
+                while (ip + matchLen < matchLimit && src[ip + matchLen] == src[ref + matchLen]) {
+                    matchLen++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, dest, op, ip - ref, matchLen);
+                ip += matchLen;
+                anchor = ip;
+                if (ip - 2 < mfLimit) {
+                    table[hash(readInt(src, ip - 2))] = ip - 2 - srcOff + 1;
+                }
+            }
+        }
+        // last literals
+        int litLen = srcEnd - anchor;
+        int tokenPos = op++;
+        op = writeLiteralLen(dest, tokenPos, op, litLen);
+        System.arraycopy(src, anchor, dest, op, litLen);
+        op += litLen;
+        return op - destOff;
+    }
+
+    private static int writeSequence(byte[] src, int litStart, int litLen, byte[] dest, int op,
+                                     int offset, int matchLen) {
+        int tokenPos = op++;
+        op = writeLiteralLen(dest, tokenPos, op, litLen);
+        System.arraycopy(src, litStart, dest, op, litLen);
+        op += litLen;
+        dest[op++] = (byte) offset;
+        dest[op++] = (byte) (offset >>> 8);
+        int ml = matchLen - MIN_MATCH;
+        if (ml >= 15) {
+            dest[tokenPos] |= 15;
+            op = writeLen(dest, op, ml - 15);
+        } else {
+            dest[tokenPos] |= (byte) ml;
+        }
+        return op;
+    }
+
+    private static int writeLiteralLen(byte[] dest, int tokenPos, int op, int litLen) {
+        if (litLen >= 15) {
+            dest[tokenPos] = (byte) (15 << 4);
+            return writeLen(dest, op, litLen - 15);
+        } else {
+            dest[tokenPos] = (byte) (litLen << 4);
+            return op;
+        }
+    }
+
+    private static int writeLen(byte[] dest, int op, int len) {
+        while (len >= 255) {
+            dest[op++] = (byte) 255;
+            len -= 255;
+        }
+        dest[op++] = (byte) len;
+        return op;
+    }
+
+    /**
+     * decompress src to dest, the decompressed length should be exactly destLen.
+     */
+    public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen) {
+        int ip = srcOff;
+        int srcEnd = srcOff + srcLen;
+        int op = destOff;
+        int destEnd = destOff + destLen;
+        while (ip < srcEnd) {
+            int token = src[ip++] & 0xFF;
+            int litLen = token >>> 4;
+            if (litLen == 15) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw new CodecException("lz4 literal length overflow");
+                    }
+                    b = src[ip++] & 0xFF;
+                    litLen += b;
+                } while (b == 255);
+            }
+            if (litLen > srcEnd - ip || litLen > destEnd - op) {
+                throw new CodecException("lz4 literal out of bounds");
+            }
+            System.arraycopy(src, ip, dest, op, litLen);
+            ip += litLen;
+            op += litLen;
+            if (ip == srcEnd) {
+                break;
+            }
+            if (srcEnd - ip < 2) {
+                throw new CodecException("lz4 offset out of bounds");
+            }
+            int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+            ip += 2;
+            if (offset == 0 || op - offset < destOff) {
+                throw new CodecException("lz4 bad offset: " + offset);
+            }
+            int matchLen = token & 0x0F;
+            if (matchLen == 15) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw new CodecException("lz4 match length overflow");
+                    }
+                    b = src[ip++] & 0xFF;
+                    matchLen += b;
+                } while (b == 255);
+            }
+            matchLen += MIN_MATCH;
+            if (matchLen > destEnd - op) {
+                throw new CodecException("lz4 match out of bounds");
+            }
+            int ref = op - offset;
+            if (offset >= matchLen) {
+                System.arraycopy(dest, ref, dest, op, matchLen);
+            } else {
+                // overlapped copy
+                for (int i = 0; i < matchLen; i++) {
+                    dest[op + i] = dest[ref + i];
+                }
+            }
+            op += matchLen;
+        }
+        if (op != destEnd) {
+            throw new CodecException("lz4 decompressed length not match, expect " + destLen + ", actual "
+                    + (op - destOff));
+        }
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16) | ((b[i + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+/**
+ * @author huangli
+ */
+public enum PbFieldType {
+    // int -> INT32, long -> INT64, boolean -> BOOL, String -> UTF8, byte[] -> BYTES
+    AUTO,
+    // java int, var int
+    INT32,
+    // java long, var int
+    INT64,
+    // java int
+    FIX32,
+    // java long
+    FIX64,
+    // java boolean, encoded as int32 0/1
+    BOOL,
+    // java String, all chars should be ascii, no allocation when encode
+    ASCII,
+    // java String
+    UTF8,
+    // java byte[]
+    BYTES
+}
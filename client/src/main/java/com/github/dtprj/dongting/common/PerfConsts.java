@@ -50,6 +50,7 @@ public interface PerfConsts {
     int RAFT_D_IDX_FORCE = 41;
     int RAFT_D_REPLICATE_RPC = 42;
     int RAFT_D_STATE_MACHINE_EXEC = 43; // may fire in other thread
+    int RAFT_C_REPLICATE_COMPRESS = 44; // count of compressed requests, sum of saved bytes
 
     int DTKV_LEASE_READ = 60;
     int DTKV_LINEARIZABLE_OP = 61;
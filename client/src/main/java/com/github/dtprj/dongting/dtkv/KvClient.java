@@ -27,6 +27,7 @@ import com.github.dtprj.dongting.net.EncodableBodyWritePacket;
 import com.github.dtprj.dongting.net.NetException;
 import com.github.dtprj.dongting.net.NioClientConfig;
 import com.github.dtprj.dongting.net.ReadPacket;
+import com.github.dtprj.dongting.net.RpcCallback;
 import com.github.dtprj.dongting.raft.RaftClient;
 import com.github.dtprj.dongting.raft.RaftClientConfig;
 
@@ -49,6 +50,8 @@ public class KvClient extends AbstractLifeCircle {
     final RaftClient raftClient;
     private final WatchManager watchManager;
     final LockManager lockManager;
+    private final KvGetBatcher getBatcher;
+    final KvNearCache nearCache;
 
     private static volatile ExecutorService fallbackExecutor;
 
@@ -65,6 +68,14 @@ public class KvClient extends AbstractLifeCircle {
         this.raftClient = new RaftClient(raftClientConfig, nioConfig);
         this.watchManager = createClientWatchManager();
         this.lockManager = createLockManager();
+        if (config.nearCacheMaxKeys > 0) {
+            this.nearCache = new KvNearCache(watchManager, config.nearCacheMaxKeys, config.nearCacheTtlMillis);
+            watchManager.nearCache = nearCache;
+        } else {
+            this.nearCache = null;
+        }
+        this.getBatcher = config.getBatchWindowMicros > 0 ?
+                new KvGetBatcher(this, config.getBatchWindowMicros, config.getBatchMaxKeys) : null;
         // use bizExecutor in NioClient
         KvClientProcessor clientProcessor = new KvClientProcessor(watchManager, lockManager);
         raftClient.getNioClient().register(Commands.DTKV_WATCH_NOTIFY_PUSH, clientProcessor);
@@ -115,6 +126,7 @@ public class KvClient extends AbstractLifeCircle {
             case Commands.DTKV_BATCH_GET:
             case Commands.DTKV_BATCH_REMOVE:
             case Commands.DTKV_UPDATE_TTL:
+            case Commands.DTKV_SCAN:
                 return bizCode == KvCodes.SUCCESS;
             case Commands.DTKV_CAS:
                 return true;
@@ -126,11 +138,40 @@ public class KvClient extends AbstractLifeCircle {
 
     protected <T> void sendAsync(int groupId, int cmd, KvReq req, FutureCallback<T> c,
                                  Function<ReadPacket<KvResp>, T> mapper) {
+        sendAsync(groupId, cmd, req, c, mapper, false);
+    }
+
+    /**
+     * @param acquirePermitNoWait fail fast instead of waiting if the out requests permit is not available, used
+     *                            when called in a shared thread (such as the scheduler) which should not be blocked
+     */
+    protected <T> void sendAsync(int groupId, int cmd, KvReq req, FutureCallback<T> c,
+                                 Function<ReadPacket<KvResp>, T> mapper, boolean acquirePermitNoWait) {
         DtTime timeout = raftClient.createDefaultTimeout();
         EncodableBodyWritePacket wf = new EncodableBodyWritePacket(cmd, req);
+        wf.acquirePermitNoWait = acquirePermitNoWait;
+
+        boolean invalidateCache = nearCache != null && !isRead(cmd);
+        if (invalidateCache) {
+            nearCache.invalidate(groupId, req);
+        }
+        RpcCallback<KvResp> rc = (result, ex) -> {
+            if (invalidateCache) {
+                // discard the values loaded during the write
+                nearCache.invalidate(groupId, req);
+            }
+            asyncCallback(cmd, c, mapper, result, ex);
+        };
+        if (isRead(cmd)) {
+            raftClient.sendReadRequest(groupId, wf, DECODER, timeout, rc);
+        } else {
+            raftClient.sendRequest(groupId, wf, DECODER, timeout, rc);
+        }
+    }
 
-        raftClient.sendRequest(groupId, wf, DECODER, timeout, (result, ex) ->
-                asyncCallback(cmd, c, mapper, result, ex));
+    private static boolean isRead(int cmd) {
+        return cmd == Commands.DTKV_GET || cmd == Commands.DTKV_BATCH_GET || cmd == Commands.DTKV_LIST
+                || cmd == Commands.DTKV_SCAN;
     }
 
     // package-private for testing
@@ -151,7 +192,20 @@ public class KvClient extends AbstractLifeCircle {
     protected ReadPacket<KvResp> sendSync(int groupId, int cmd, KvReq req) {
         DtTime timeout = raftClient.createDefaultTimeout();
         EncodableBodyWritePacket wf = new EncodableBodyWritePacket(cmd, req);
-        ReadPacket<KvResp> p = raftClient.sendRequest(groupId, wf, DECODER, timeout);
+        ReadPacket<KvResp> p;
+        if (isRead(cmd)) {
+            p = raftClient.sendReadRequest(groupId, wf, DECODER, timeout);
+        } else if (nearCache != null) {
+            nearCache.invalidate(groupId, req);
+            try {
+                p = raftClient.sendRequest(groupId, wf, DECODER, timeout);
+            } finally {
+                // discard the values loaded during the write
+                nearCache.invalidate(groupId, req);
+            }
+        } else {
+            p = raftClient.sendRequest(groupId, wf, DECODER, timeout);
+        }
         if (isSuccess(cmd, p.bizCode)) {
             return p;
         }
@@ -287,11 +341,24 @@ public class KvClient extends AbstractLifeCircle {
      * @return the KvNode contains value and meta information, return null if not found
      * @throws KvException  any biz exception
      * @throws NetException any other exception such as network error, timeout, interrupted, etc.
+     * @see KvClientConfig#nearCacheMaxKeys
      */
     public KvNode get(int groupId, byte[] key) throws KvException, NetException {
         checkKey(key, true);
+        KvNearCache.Loading loading = null;
+        if (useNearCache(groupId, key)) {
+            Object o = nearCache.get(groupId, key);
+            if (!(o instanceof KvNearCache.Loading)) {
+                return (KvNode) o;
+            }
+            loading = (KvNearCache.Loading) o;
+        }
         KvReq r = new KvReq(groupId, key, null);
-        return mapToKvNode(sendSync(groupId, Commands.DTKV_GET, r));
+        KvNode n = mapToKvNode(sendSync(groupId, Commands.DTKV_GET, r));
+        if (loading != null) {
+            nearCache.fill(loading, n);
+        }
+        return n;
     }
 
     /**
@@ -300,14 +367,41 @@ public class KvClient extends AbstractLifeCircle {
      * @param groupId  the raft group id
      * @param key      use '.' as path separator, null or empty indicates the root node
      * @param callback the async callback will be called in bizExecutor (default) of NioClient or NioWorker thread.
+     * @see KvClientConfig#getBatchWindowMicros
+     * @see KvClientConfig#nearCacheMaxKeys
      */
     public void get(int groupId, byte[] key, FutureCallback<KvNode> callback) {
         checkKey(key, true);
+        if (useNearCache(groupId, key)) {
+            Object o = nearCache.get(groupId, key);
+            if (!(o instanceof KvNearCache.Loading)) {
+                FutureCallback.callSuccess(callback, (KvNode) o);
+                return;
+            }
+            KvNearCache.Loading loading = (KvNearCache.Loading) o;
+            FutureCallback<KvNode> userCallback = callback;
+            callback = (n, ex) -> {
+                if (ex == null) {
+                    nearCache.fill(loading, n);
+                    FutureCallback.callSuccess(userCallback, n);
+                } else {
+                    FutureCallback.callFail(userCallback, ex);
+                }
+            };
+        }
+        if (getBatcher != null && key != null && key.length > 0) {
+            getBatcher.get(groupId, key, callback);
+            return;
+        }
         KvReq req = new KvReq(groupId, key, null);
         sendAsync(groupId, Commands.DTKV_GET, req, callback, KvClient::mapToKvNode);
     }
 
-    private static KvNode mapToKvNode(ReadPacket<KvResp> p) {
+    private boolean useNearCache(int groupId, byte[] key) {
+        return nearCache != null && key != null && key.length > 0 && raftClient.getGroup(groupId) != null;
+    }
+
+    static KvNode mapToKvNode(ReadPacket<KvResp> p) {
         KvResp resp = p.getBody();
         if (resp == null || resp.results == null || resp.results.isEmpty()) {
             return null;
@@ -354,6 +448,118 @@ public class KvClient extends AbstractLifeCircle {
         }
     }
 
+    /**
+     * synchronously scan the nodes (include directories) whose key is in [startKey, endKey), ordered by key bytes
+     * (unsigned lexicographic order). The root node is not included. The server must enable orderedIndex
+     * in KvServerConfig, otherwise throws KvException with code NOT_SUPPORTED.
+     *
+     * @param groupId  the raft group id
+     * @param startKey the start key (inclusive), null or empty indicates scan from the first key. To fetch the
+     *                 next page, use the nextKey of previous result.
+     * @param endKey   the end key (exclusive), null or empty indicates no upper bound
+     * @param limit    max number of results in this page, 0 indicates use server default value, the server may
+     *                 return fewer results than limit
+     * @return one page of results, the keyInDir field of each KvResult contains the full key
+     * @throws KvException  any biz exception
+     * @throws NetException any other exception such as network error, timeout, interrupted, etc.
+     */
+    public KvScanResult scan(int groupId, byte[] startKey, byte[] endKey, int limit) throws KvException, NetException {
+        KvReq r = createScanReq(groupId, startKey, endKey, limit);
+        return mapToScanResult(sendSync(groupId, Commands.DTKV_SCAN, r));
+    }
+
+    /**
+     * asynchronously scan the nodes (include directories) whose key is in [startKey, endKey), ordered by key bytes
+     * (unsigned lexicographic order). The root node is not included.
+     *
+     * @param groupId  the raft group id
+     * @param startKey the start key (inclusive), null or empty indicates scan from the first key. To fetch the
+     *                 next page, use the nextKey of previous result.
+     * @param endKey   the end key (exclusive), null or empty indicates no upper bound
+     * @param limit    max number of results in this page, 0 indicates use server default value
+     * @param callback the async callback will be called in bizExecutor (default) of NioClient or NioWorker thread.
+     */
+    public void scan(int groupId, byte[] startKey, byte[] endKey, int limit, FutureCallback<KvScanResult> callback) {
+        KvReq r = createScanReq(groupId, startKey, endKey, limit);
+        sendAsync(groupId, Commands.DTKV_SCAN, r, callback, KvClient::mapToScanResult);
+    }
+
+    /**
+     * synchronously scan the nodes whose key starts with the prefix, ordered by key bytes.
+     * Notice the prefix is matched by bytes, so prefix "a.b" matches "a.b", "a.b.c" and "a.bc".
+     *
+     * @param groupId the raft group id
+     * @param prefix  the key prefix, null or empty indicates all keys
+     * @param fromKey null to fetch the first page, or the nextKey of previous result to fetch next page
+     * @param limit   max number of results in this page, 0 indicates use server default value
+     * @return one page of results, the keyInDir field of each KvResult contains the full key
+     * @throws KvException  any biz exception
+     * @throws NetException any other exception such as network error, timeout, interrupted, etc.
+     */
+    public KvScanResult prefixScan(int groupId, byte[] prefix, byte[] fromKey, int limit)
+            throws KvException, NetException {
+        KvReq r = createScanReq(groupId, fromKey == null ? prefix : fromKey, prefixEnd(prefix), limit);
+        return mapToScanResult(sendSync(groupId, Commands.DTKV_SCAN, r));
+    }
+
+    /**
+     * asynchronously scan the nodes whose key starts with the prefix, ordered by key bytes.
+     * Notice the prefix is matched by bytes, so prefix "a.b" matches "a.b", "a.b.c" and "a.bc".
+     *
+     * @param groupId  the raft group id
+     * @param prefix   the key prefix, null or empty indicates all keys
+     * @param fromKey  null to fetch the first page, or the nextKey of previous result to fetch next page
+     * @param limit    max number of results in this page, 0 indicates use server default value
+     * @param callback the async callback will be called in bizExecutor (default) of NioClient or NioWorker thread.
+     */
+    public void prefixScan(int groupId, byte[] prefix, byte[] fromKey, int limit,
+                           FutureCallback<KvScanResult> callback) {
+        KvReq r = createScanReq(groupId, fromKey == null ? prefix : fromKey, prefixEnd(prefix), limit);
+        sendAsync(groupId, Commands.DTKV_SCAN, r, callback, KvClient::mapToScanResult);
+    }
+
+    private KvReq createScanReq(int groupId, byte[] startKey, byte[] endKey, int limit) {
+        // the boundary keys may not be a valid node key (e.g. "a.b."), so only check length
+        if (startKey != null && startKey.length > KvClientConfig.MAX_KEY_SIZE) {
+            throw new IllegalArgumentException("start key too long");
+        }
+        if (endKey != null && endKey.length > KvClientConfig.MAX_KEY_SIZE) {
+            throw new IllegalArgumentException("end key too long");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        KvReq r = new KvReq(groupId, startKey, null);
+        r.endKey = endKey;
+        r.limit = limit;
+        return r;
+    }
+
+    // the smallest key that greater than all keys start with the prefix, null if no such key
+    static byte[] prefixEnd(byte[] prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] end = new byte[i + 1];
+                System.arraycopy(prefix, 0, end, 0, i + 1);
+                end[i]++;
+                return end;
+            }
+        }
+        return null;
+    }
+
+    private static KvScanResult mapToScanResult(ReadPacket<KvResp> p) {
+        KvResp resp = p.getBody();
+        if (resp == null) {
+            return new KvScanResult(Collections.emptyList(), null);
+        } else {
+            return new KvScanResult(resp.results == null ? Collections.emptyList() : resp.results, resp.nextKey);
+        }
+    }
+
     /**
      * Synchronously remove a key from the kv store.
      * This method can be used to remove a K/V node which is temporary or permanent. However, a client can only remove
@@ -735,6 +941,9 @@ public class KvClient extends AbstractLifeCircle {
 
     protected void doStop(DtTime timeout, boolean force) {
         lockManager.removeAllLock();
+        if (nearCache != null) {
+            nearCache.clear();
+        }
         watchManager.removeAllWatch();
         raftClient.stop(timeout);
     }
@@ -28,4 +28,21 @@ public class KvClientConfig {
     public long watchHeartbeatMillis = 60_000; // // should less than KvServerConfig.watchTimeoutMillis
 
     public long[] autoRenewalRetryMillis = {1000, 10_000, 30_000, 60_000};
+
+    // if positive, async get requests of the same group in this window are merged into one batch get request,
+    // it reduces per-packet cost on both client and server when there are many small gets, 0 to disable.
+    // root key (null or empty) and sync get are not merged.
+    public long getBatchWindowMicros = 0;
+
+    // max keys in one merged batch get request, the batch is sent immediately if it is full
+    public int getBatchMaxKeys = 128;
+
+    // if positive, enable the near cache for get operations, it's a LRU cache with this max key count.
+    // each cached key has a watch to keep coherence, and never returns data older than the last observed
+    // notify of the key, but writes of other clients are visible asynchronously, so cached reads are not
+    // linearizable. the async get callback may be called in the caller thread when hit.
+    public int nearCacheMaxKeys = 0;
+
+    // expire time of each cached key since it's loaded, it also limits staleness if some notifies are lost
+    public long nearCacheTtlMillis = 60_000;
 }
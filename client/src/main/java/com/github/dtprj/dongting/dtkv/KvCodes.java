@@ -49,6 +49,7 @@ public interface KvCodes {
     int IS_LOCK_NODE = 26;
     int LOCK_BY_SELF = 27;
     int LOCK_BY_OTHER = 28;
+    int NOT_SUPPORTED = 29;
 
 
     static String toStr(int code) {
@@ -111,6 +112,8 @@ public interface KvCodes {
                 return "LOCK_BY_SELF";
             case LOCK_BY_OTHER:
                 return "LOCK_BY_OTHER";
+            case NOT_SUPPORTED:
+                return "NOT_SUPPORTED";
             default:
                 return "UNKNOWN_CODE_" + code;
         }
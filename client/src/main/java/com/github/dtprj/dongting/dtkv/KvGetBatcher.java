@@ -0,0 +1,147 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv;
+
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.FutureCallback;
+import com.github.dtprj.dongting.common.IntObjMap;
+import com.github.dtprj.dongting.net.Commands;
+import com.github.dtprj.dongting.net.ReadPacket;
+import com.github.dtprj.dongting.raft.RaftException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Merge async get requests of the same raft group in a short window into one DTKV_BATCH_GET request,
+ * so the client and server only process one packet for them, and fan out the results to each callback.
+ *
+ * @author huangli
+ */
+class KvGetBatcher {
+
+    private final KvClient kvClient;
+    private final long windowNanos;
+    private final int maxKeys;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final IntObjMap<Batch> pending = new IntObjMap<>();
+
+    static final class Batch {
+        final int groupId;
+        final ArrayList<byte[]> keys = new ArrayList<>();
+        final ArrayList<FutureCallback<KvNode>> callbacks = new ArrayList<>();
+
+        Batch(int groupId) {
+            this.groupId = groupId;
+        }
+    }
+
+    KvGetBatcher(KvClient kvClient, long windowMicros, int maxKeys) {
+        this.kvClient = kvClient;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxKeys = maxKeys;
+    }
+
+    void get(int groupId, byte[] key, FutureCallback<KvNode> callback) {
+        Batch newBatch = null;
+        Batch fullBatch = null;
+        lock.lock();
+        try {
+            Batch b = pending.get(groupId);
+            if (b == null) {
+                b = new Batch(groupId);
+                pending.put(groupId, b);
+                newBatch = b;
+            }
+            b.keys.add(key);
+            b.callbacks.add(callback);
+            if (b.keys.size() >= maxKeys) {
+                pending.remove(groupId);
+                fullBatch = b;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (fullBatch != null) {
+            send(fullBatch, false);
+        } else if (newBatch != null) {
+            Batch b = newBatch;
+            DtUtil.SCHEDULED_SERVICE.schedule(() -> flush(b), windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flush(Batch b) {
+        lock.lock();
+        try {
+            if (pending.get(b.groupId) != b) {
+                // sent since it's full
+                return;
+            }
+            pending.remove(b.groupId);
+        } finally {
+            lock.unlock();
+        }
+        // run in the shared scheduler thread, should not block on the out requests permit
+        try {
+            send(b, true);
+        } catch (Throwable e) {
+            fanOut(b, null, e);
+        }
+    }
+
+    private void send(Batch b, boolean acquirePermitNoWait) {
+        if (b.keys.size() == 1) {
+            KvReq req = new KvReq(b.groupId, b.keys.get(0), null);
+            kvClient.sendAsync(b.groupId, Commands.DTKV_GET, req, b.callbacks.get(0), KvClient::mapToKvNode,
+                    acquirePermitNoWait);
+        } else {
+            KvReq req = new KvReq(b.groupId, b.keys, null);
+            kvClient.sendAsync(b.groupId, Commands.DTKV_BATCH_GET, req,
+                    (List<KvResult> results, Throwable ex) -> fanOut(b, results, ex), KvGetBatcher::mapToResults,
+                    acquirePermitNoWait);
+        }
+    }
+
+    private static List<KvResult> mapToResults(ReadPacket<KvResp> p) {
+        KvResp resp = p.getBody();
+        return resp == null ? null : resp.results;
+    }
+
+    // package-private for testing
+    static void fanOut(Batch b, List<KvResult> results, Throwable ex) {
+        int size = b.callbacks.size();
+        for (int i = 0; i < size; i++) {
+            FutureCallback<KvNode> c = b.callbacks.get(i);
+            if (ex != null) {
+                FutureCallback.callFail(c, ex);
+                continue;
+            }
+            KvResult r = results == null || i >= results.size() ? null : results.get(i);
+            if (r == null) {
+                FutureCallback.callFail(c, new RaftException("no result for batch get key, index=" + i));
+            } else if (r.getBizCode() == KvCodes.SUCCESS) {
+                FutureCallback.callSuccess(c, r.getNode());
+            } else if (r.getBizCode() == KvCodes.NOT_FOUND) {
+                FutureCallback.callSuccess(c, null);
+            } else {
+                FutureCallback.callFail(c, new KvException(r.getBizCode()));
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv;
+
+import com.github.dtprj.dongting.common.ByteArray;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU near cache for KvClient.get. Each cached key has a watch, the entry is invalidated when the server
+ * pushes a newer notify, so it never returns data older than the last observed notify index of the key.
+ * The entry is filled by the get response, a response older than the observed notify is discarded.
+ * <p>
+ * Writes of other clients are observed asynchronously by watch notify, so cached reads are not linearizable,
+ * writes through this client invalidate the keys, so the client can read its own writes.
+ * <p>
+ * The cache keeps its own copy of the node and returns a new copy on each hit, so a caller modifying the
+ * data of the returned node does not affect other readers.
+ * <p>
+ * Lock order: WatchManager lock -> near cache lock, so this class never calls WatchManager in its lock.
+ *
+ * @author huangli
+ */
+class KvNearCache {
+
+    private final WatchManager watchManager;
+    private final int maxKeys;
+    private final long ttlNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<CacheKey, Entry> map;
+
+    static final class CacheKey {
+        final int groupId;
+        final ByteArray key;
+
+        CacheKey(int groupId, ByteArray key) {
+            this.groupId = groupId;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey o = (CacheKey) obj;
+            return groupId == o.groupId && key.equals(o.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * groupId + key.hashCode();
+        }
+    }
+
+    static final class Entry {
+        final CacheKey key;
+        boolean valid;
+        // null if the key not exists
+        KvNode node;
+        long expireNanos;
+
+        long notifyIndex;
+        int notifyState;
+
+        // increase when invalidated by local write or watch failure
+        int version;
+        boolean removed;
+
+        Entry(CacheKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * returned by get() when cache miss, pass it to fill() after load the value from server.
+     */
+    static final class Loading {
+        final Entry entry;
+        final int version;
+
+        Loading(Entry entry, int version) {
+            this.entry = entry;
+            this.version = version;
+        }
+    }
+
+    KvNearCache(WatchManager watchManager, int maxKeys, long ttlMillis) {
+        this.watchManager = watchManager;
+        this.maxKeys = maxKeys;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Return the cached node (null if the key not exists) when hit, or a Loading object when miss.
+     */
+    Object get(int groupId, byte[] key) {
+        CacheKey ck = new CacheKey(groupId, new ByteArray(key));
+        Entry newEntry = null;
+        List<Entry> evicted = null;
+        Loading loading = null;
+        boolean hit = false;
+        KvNode hitNode = null;
+        lock.lock();
+        try {
+            Entry e = map.get(ck);
+            if (e == null) {
+                e = new Entry(ck);
+                map.put(ck, e);
+                newEntry = e;
+                if (map.size() > maxKeys) {
+                    evicted = evictInLock();
+                }
+            } else if (e.valid) {
+                if (e.expireNanos - System.nanoTime() > 0) {
+                    hit = true;
+                    hitNode = e.node;
+                } else {
+                    e.valid = false;
+                    e.node = null;
+                }
+            }
+            if (!hit) {
+                loading = new Loading(e, e.version);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (hit) {
+            // the cached node is never modified, so copy it out of the lock
+            return hitNode == null ? null : copy(hitNode);
+        }
+        if (evicted != null) {
+            for (Entry e : evicted) {
+                watchManager.removeNearCacheWatch(e.key.groupId, e.key.key);
+            }
+        }
+        if (newEntry != null) {
+            watchManager.addNearCacheWatch(groupId, ck.key);
+        }
+        return loading;
+    }
+
+    private static KvNode copy(KvNode n) {
+        return new KvNode(n.createIndex, n.createTime, n.updateIndex, n.updateTime, n.flag,
+                n.data == null ? null : n.data.clone());
+    }
+
+    private List<Entry> evictInLock() {
+        ArrayList<Entry> list = new ArrayList<>();
+        Iterator<Map.Entry<CacheKey, Entry>> it = map.entrySet().iterator();
+        while (map.size() > maxKeys && it.hasNext()) {
+            Entry e = it.next().getValue();
+            it.remove();
+            e.removed = true;
+            list.add(e);
+        }
+        return list;
+    }
+
+    void fill(Loading loading, KvNode node) {
+        Entry e = loading.entry;
+        lock.lock();
+        try {
+            if (e.removed || e.version != loading.version) {
+                return;
+            }
+            if (e.notifyIndex > 0) {
+                if (node == null) {
+                    if (e.notifyState != WatchEvent.STATE_NOT_EXISTS) {
+                        return;
+                    }
+                } else if (node.updateIndex < e.notifyIndex) {
+                    // the response is older than the observed notify
+                    return;
+                }
+            }
+            e.node = node == null ? null : copy(node);
+            e.valid = true;
+            e.expireNanos = System.nanoTime() + ttlNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * called by WatchManager in its lock.
+     */
+    void onNotify(int groupId, ByteArray key, long raftIndex, int state) {
+        lock.lock();
+        try {
+            Entry e = map.get(new CacheKey(groupId, key));
+            if (e == null || raftIndex <= e.notifyIndex) {
+                return;
+            }
+            e.notifyIndex = raftIndex;
+            e.notifyState = state;
+            if (e.valid) {
+                boolean same;
+                if (e.node == null) {
+                    same = state == WatchEvent.STATE_NOT_EXISTS;
+                } else {
+                    same = state != WatchEvent.STATE_NOT_EXISTS && e.node.updateIndex >= raftIndex;
+                }
+                if (!same) {
+                    e.valid = false;
+                    e.node = null;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * called by WatchManager in its lock.
+     */
+    boolean contains(int groupId, ByteArray key) {
+        lock.lock();
+        try {
+            return map.containsKey(new CacheKey(groupId, key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * called by KvClient before and after write operations.
+     */
+    void invalidate(int groupId, KvReq req) {
+        lock.lock();
+        try {
+            if (req.key != null) {
+                invalidateInLock(map.get(new CacheKey(groupId, new ByteArray(req.key))));
+            }
+            if (req.keys != null) {
+                for (byte[] k : req.keys) {
+                    if (k != null) {
+                        invalidateInLock(map.get(new CacheKey(groupId, new ByteArray(k))));
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void invalidateInLock(Entry e) {
+        if (e != null) {
+            e.valid = false;
+            e.node = null;
+            e.version++;
+        }
+    }
+
+    /**
+     * called by WatchManager in its lock, when notifies may be lost.
+     */
+    void invalidateGroup(int groupId) {
+        lock.lock();
+        try {
+            for (Entry e : map.values()) {
+                if (e.key.groupId == groupId) {
+                    invalidateInLock(e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * called by WatchManager in its lock, after all watches of the group are removed.
+     */
+    void removeGroup(int groupId) {
+        lock.lock();
+        try {
+            for (Iterator<Entry> it = map.values().iterator(); it.hasNext(); ) {
+                Entry e = it.next();
+                if (e.key.groupId == groupId) {
+                    it.remove();
+                    e.removed = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            for (Entry e : map.values()) {
+                e.removed = true;
+            }
+            map.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return map.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
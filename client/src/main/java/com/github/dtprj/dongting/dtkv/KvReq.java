@@ -41,6 +41,8 @@ public class KvReq extends RaftRpcData implements Encodable {
     public static final int IDX_KEYS_SIZE = 8;
     public static final int IDX_KEYS = 9;
     public static final int IDX_VALUES = 10;
+    public static final int IDX_END_KEY = 11;
+    public static final int IDX_LIMIT = 12;
 
     public byte[] key;
     public byte[] value;
@@ -50,6 +52,9 @@ public class KvReq extends RaftRpcData implements Encodable {
     public UUID ownerUuid;
     // BIZ_TYPE_EXPIRE use it as expectRaftIndex, DTKV_LOCK_PUSH use it as serverSideWaitNanos
     public long ttlMillis;
+    // used by scan, the key is the start key (inclusive) and the endKey is exclusive
+    public byte[] endKey;
+    public int limit;
 
     private int encodeSize;
 
@@ -106,7 +111,9 @@ public class KvReq extends RaftRpcData implements Encodable {
                     + PbUtil.sizeOfInt64Field(IDX_TTL_MILLIS, ttlMillis)
                     + PbUtil.sizeOfInt32Field(IDX_KEYS_SIZE, keys == null ? 0 : keys.size())
                     + EncodeUtil.sizeOfBytesList(IDX_KEYS, keys)
-                    + EncodeUtil.sizeOfBytesList(IDX_VALUES, values);
+                    + EncodeUtil.sizeOfBytesList(IDX_VALUES, values)
+                    + EncodeUtil.sizeOf(IDX_END_KEY, endKey)
+                    + PbUtil.sizeOfInt32Field(IDX_LIMIT, limit);
         }
         return encodeSize;
     }
@@ -161,7 +168,17 @@ public class KvReq extends RaftRpcData implements Encodable {
                 }
                 // fall through
             case IDX_KEYS:
-                return values == null || EncodeUtil.encodeBytesList(context, destBuffer, IDX_VALUES, values);
+                if (values != null && !EncodeUtil.encodeBytesList(context, destBuffer, IDX_VALUES, values)) {
+                    return false;
+                }
+                // fall through
+            case IDX_VALUES:
+                if (!EncodeUtil.encode(context, destBuffer, IDX_END_KEY, endKey)) {
+                    return false;
+                }
+                // fall through
+            case IDX_END_KEY:
+                return EncodeUtil.encodeInt32(context, destBuffer, IDX_LIMIT, limit);
             default:
                 throw new CodecException(context);
         }
@@ -203,6 +220,9 @@ public class KvReq extends RaftRpcData implements Encodable {
                 case IDX_KEYS_SIZE:
                     keysSize = (int) value;
                     break;
+                case IDX_LIMIT:
+                    req.limit = (int) value;
+                    break;
             }
             return true;
         }
@@ -237,6 +257,9 @@ public class KvReq extends RaftRpcData implements Encodable {
                 case IDX_EXPECT_VALUE:
                     req.expectValue = parseBytes(buf, fieldLen, currentPos);
                     break;
+                case IDX_END_KEY:
+                    req.endKey = parseBytes(buf, fieldLen, currentPos);
+                    break;
             }
             return true;
         }
@@ -33,15 +33,23 @@ public class KvResp implements Encodable {
     private static final int IDX_RAFT_INDEX = 1;
     private static final int IDX_RESULTS_SIZE = 2;
     private static final int IDX_RESULTS = 3;
+    private static final int IDX_NEXT_KEY = 4;
 
     public final long raftIndex;
     public final List<KvResult> results;
+    // used by scan, the start key of next page, null if there is no more data
+    public final byte[] nextKey;
 
     private int encodeSize;
 
     public KvResp(long raftIndex, List<KvResult> results) {
+        this(raftIndex, results, null);
+    }
+
+    public KvResp(long raftIndex, List<KvResult> results, byte[] nextKey) {
         this.raftIndex = raftIndex;
         this.results = results;
+        this.nextKey = nextKey;
     }
 
     @Override
@@ -49,7 +57,8 @@ public class KvResp implements Encodable {
         if (encodeSize == 0) {
             this.encodeSize = PbUtil.sizeOfFix64Field(IDX_RAFT_INDEX, raftIndex)
                     + PbUtil.sizeOfInt32Field(IDX_RESULTS_SIZE, results == null ? 0 : results.size())
-                    + EncodeUtil.sizeOfList(IDX_RESULTS, results);
+                    + EncodeUtil.sizeOfList(IDX_RESULTS, results)
+                    + EncodeUtil.sizeOf(IDX_NEXT_KEY, nextKey);
         }
         return encodeSize;
     }
@@ -68,7 +77,12 @@ public class KvResp implements Encodable {
                 }
                 // fall through
             case IDX_RESULTS_SIZE:
-                return EncodeUtil.encodeList(context, destBuffer, IDX_RESULTS, results);
+                if (!EncodeUtil.encodeList(context, destBuffer, IDX_RESULTS, results)) {
+                    return false;
+                }
+                // fall through
+            case IDX_RESULTS:
+                return EncodeUtil.encode(context, destBuffer, IDX_NEXT_KEY, nextKey);
             default:
                 throw new CodecException(context);
 
@@ -81,6 +95,7 @@ public class KvResp implements Encodable {
         private long raftIndex;
         private int resultsSize;
         private ArrayList<KvResult> results;
+        private byte[] nextKey;
 
         @Override
         public boolean readVarNumber(int index, long value) {
@@ -100,6 +115,8 @@ public class KvResp implements Encodable {
                 if (r != null) {
                     results.add(r);
                 }
+            } else if (index == IDX_NEXT_KEY) {
+                nextKey = parseBytes(buf, fieldLen, currentPos);
             }
             return true;
         }
@@ -114,7 +131,7 @@ public class KvResp implements Encodable {
 
         @Override
         protected KvResp getResult() {
-            return new KvResp(raftIndex, results);
+            return new KvResp(raftIndex, results, nextKey);
         }
     }
 
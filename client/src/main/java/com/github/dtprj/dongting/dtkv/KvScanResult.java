@@ -0,0 +1,38 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv;
+
+import java.util.List;
+
+/**
+ * One page of a scan operation. The keyInDir field of each KvResult contains the full key of the node.
+ *
+ * @author huangli
+ */
+public class KvScanResult {
+    public final List<KvResult> results;
+    // the start key of next page, null if there is no more data
+    public final byte[] nextKey;
+
+    public KvScanResult(List<KvResult> results, byte[] nextKey) {
+        this.results = results;
+        this.nextKey = nextKey;
+    }
+
+    public boolean hasMore() {
+        return nextKey != null;
+    }
+}
@@ -73,6 +73,9 @@ public class WatchManager {
     private KvListener listener;
     private boolean listenerTaskStart;
 
+    // set by KvClient if near cache is enabled
+    KvNearCache nearCache;
+
     private static class GroupWatches {
         final int groupId;
         final HashMap<ByteArray, KeyWatch> watches = new HashMap<>();
@@ -90,10 +93,16 @@ public class WatchManager {
         }
     }
 
+    static final int OWNER_USER = 1;
+    static final int OWNER_NEAR_CACHE = 2;
+
     static class KeyWatch {
         private final ByteArray key;
         private final GroupWatches gw;
 
+        // bits of OWNER_USER and OWNER_NEAR_CACHE, the watch is removed when no owner
+        private int owners;
+
         private boolean needRegister = true;
         private boolean needRemove;
 
@@ -140,29 +149,49 @@ public class WatchManager {
         check(groupId, keys);
         lock.lock();
         try {
-            GroupWatches gw = watches.get(groupId);
-            if (gw == null) {
-                gw = new GroupWatches(groupId);
-                watches.put(groupId, gw);
-                submitCheckTask(gw);
-            }
-            for (byte[] k : keys) {
-                ByteArray key = new ByteArray(k);
-                KeyWatch w = gw.watches.get(key);
-                if (w == null || w.needRemove) {
-                    w = new KeyWatch(key, gw);
-                    gw.watches.put(key, w);
-                    gw.needSync = true;
-                }
-            }
-            if (gw.needSync) {
-                syncGroupInLock(gw);
+            addWatchInLock(groupId, OWNER_USER, keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * add watch for the near cache, the key should be checked by caller.
+     * The watch is added only if the near cache still contains the key.
+     */
+    void addNearCacheWatch(int groupId, ByteArray key) {
+        lock.lock();
+        try {
+            if (nearCache.contains(groupId, key)) {
+                addWatchInLock(groupId, OWNER_NEAR_CACHE, key.getData());
             }
         } finally {
             lock.unlock();
         }
     }
 
+    private void addWatchInLock(int groupId, int owner, byte[]... keys) {
+        GroupWatches gw = watches.get(groupId);
+        if (gw == null) {
+            gw = new GroupWatches(groupId);
+            watches.put(groupId, gw);
+            submitCheckTask(gw);
+        }
+        for (byte[] k : keys) {
+            ByteArray key = new ByteArray(k);
+            KeyWatch w = gw.watches.get(key);
+            if (w == null || w.needRemove) {
+                w = new KeyWatch(key, gw);
+                gw.watches.put(key, w);
+                gw.needSync = true;
+            }
+            w.owners |= owner;
+        }
+        if (gw.needSync) {
+            syncGroupInLock(gw);
+        }
+    }
+
     private void submitCheckTask(GroupWatches gw) {
         innerExecutorService.submit(() -> {
             lock.lock();
@@ -184,23 +213,44 @@ public class WatchManager {
         check(groupId, keys);
         lock.lock();
         try {
-            GroupWatches gw = watches.get(groupId);
-            if (gw == null) {
-                return;
+            removeWatchInLock(groupId, OWNER_USER, keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * remove watch of the near cache, the watch is kept if the near cache contains the key again.
+     */
+    void removeNearCacheWatch(int groupId, ByteArray key) {
+        lock.lock();
+        try {
+            if (!nearCache.contains(groupId, key)) {
+                removeWatchInLock(groupId, OWNER_NEAR_CACHE, key.getData());
             }
-            for (byte[] k : keys) {
-                ByteArray key = new ByteArray(k);
-                KeyWatch w = gw.watches.get(key);
-                if (w != null) {
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeWatchInLock(int groupId, int owner, byte[]... keys) {
+        GroupWatches gw = watches.get(groupId);
+        if (gw == null) {
+            return;
+        }
+        for (byte[] k : keys) {
+            ByteArray key = new ByteArray(k);
+            KeyWatch w = gw.watches.get(key);
+            if (w != null) {
+                w.owners &= ~owner;
+                if (w.owners == 0) {
                     w.needRemove = true;
                     gw.needSync = true;
                 }
             }
-            if (gw.needSync) {
-                syncGroupInLock(gw);
-            }
-        } finally {
-            lock.unlock();
+        }
+        if (gw.needSync) {
+            syncGroupInLock(gw);
         }
     }
 
@@ -332,6 +382,10 @@ public class WatchManager {
                     gw.needSync = true;
                     gw.syncAll = true;
                     gw.server = null;
+                    // notifies may be lost
+                    if (nearCache != null) {
+                        nearCache.invalidateGroup(gw.groupId);
+                    }
                 }
                 gw.busy = false;
                 if (gw.needSync) {
@@ -390,6 +444,9 @@ public class WatchManager {
 
         // Release key map for this group
         gw.watches.clear();
+        if (nearCache != null) {
+            nearCache.removeGroup(gw.groupId);
+        }
     }
 
     private void findServer(GroupInfo gi, GroupWatches gw, List<RaftNode> list) {
@@ -398,6 +455,10 @@ public class WatchManager {
                 // init find server
                 gw.server = null;
                 list = new ArrayList<>(gi.servers);
+                // the new server will push the changes after sync, before that the near cache may be stale
+                if (nearCache != null) {
+                    nearCache.invalidateGroup(gw.groupId);
+                }
 
             }
             if (list.isEmpty()) {
@@ -553,8 +614,13 @@ public class WatchManager {
                 } else {
                     if (w.raftIndex < n.raftIndex) {
                         w.raftIndex = n.raftIndex;
-                        WatchEvent e = new WatchEvent(watch.groupId, n.raftIndex, n.state, n.key, n.value);
-                        addOrUpdateToNotifyQueue(w, e);
+                        if ((w.owners & OWNER_USER) != 0) {
+                            WatchEvent e = new WatchEvent(watch.groupId, n.raftIndex, n.state, n.key, n.value);
+                            addOrUpdateToNotifyQueue(w, e);
+                        }
+                        if ((w.owners & OWNER_NEAR_CACHE) != 0) {
+                            nearCache.onNotify(watch.groupId, k, n.raftIndex, n.state);
+                        }
                     }
                     results[i] = KvCodes.SUCCESS;
                 }
@@ -646,7 +712,7 @@ public class WatchManager {
     private WatchEvent takeEventInLock() {
         KeyWatch w = notifyQueueHead;
         while (w != null && (w.event == null || w.gw.removedFromMap || w.needRemove
-                || w.gw.watches.get(w.key) != w)) {
+                || (w.owners & OWNER_USER) == 0 || w.gw.watches.get(w.key) != w)) {
             KeyWatch next = w.next;
             w.event = null;
             w.next = null;
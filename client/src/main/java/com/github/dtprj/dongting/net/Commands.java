@@ -47,6 +47,7 @@ public interface Commands {
     int RAFT_ADMIN_LIST_NODES = 54;
     int RAFT_ADMIN_LIST_GROUPS = 55;
     int RAFT_ADMIN_SYNC_CONFIG = 56;
+    int RAFT_READ_INDEX = 57; // from follower to leader
 
     // 70 ~ 99 for dt kv
     int DTKV_REMOVE = 70;
@@ -66,4 +67,5 @@ public interface Commands {
     int DTKV_UNLOCK = 84;
     int DTKV_LOCK_PUSH = 85;
     int DTKV_UPDATE_LOCK_LEASE = 86;
+    int DTKV_SCAN = 87;
 }
@@ -36,11 +36,15 @@ class HandshakeBody extends PbCallback<HandshakeBody> implements SimpleEncodable
     private static final int IDX_MINOR_VERSION = 4;
     private static final int IDX_PROCESS_INFO = 5;
     private static final int IDX_CONFIG = 8;
+    private static final int IDX_FEATURES = 9;
+
+    static final int FEATURE_COMPRESS = 1;
 
     int majorVersion;
     int minorVersion;
     ProcessInfoBody processInfo;
     ConfigBody config;
+    int features;
 
     @Override
     protected HandshakeBody getResult() {
@@ -73,6 +77,9 @@ class HandshakeBody extends PbCallback<HandshakeBody> implements SimpleEncodable
             case IDX_MINOR_VERSION:
                 minorVersion = (int) value;
                 break;
+            case IDX_FEATURES:
+                features = (int) value;
+                break;
         }
         return true;
     }
@@ -96,7 +103,8 @@ class HandshakeBody extends PbCallback<HandshakeBody> implements SimpleEncodable
                 + PbUtil.sizeOfInt32Field(IDX_MAJOR_VERSION, majorVersion)
                 + PbUtil.sizeOfInt32Field(IDX_MINOR_VERSION, minorVersion)
                 + EncodeUtil.sizeOf(IDX_PROCESS_INFO, processInfo)
-                + EncodeUtil.sizeOf(IDX_CONFIG, config);
+                + EncodeUtil.sizeOf(IDX_CONFIG, config)
+                + PbUtil.sizeOfInt32Field(IDX_FEATURES, features);
     }
 
     @Override
@@ -107,6 +115,7 @@ class HandshakeBody extends PbCallback<HandshakeBody> implements SimpleEncodable
         PbUtil.writeInt32Field(buf, IDX_MINOR_VERSION, minorVersion);
         EncodeUtil.encode(buf, IDX_PROCESS_INFO, processInfo);
         EncodeUtil.encode(buf, IDX_CONFIG, config);
+        PbUtil.writeInt32Field(buf, IDX_FEATURES, features);
     }
 }
 
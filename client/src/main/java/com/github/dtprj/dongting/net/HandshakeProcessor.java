@@ -59,6 +59,7 @@ class HandshakeProcessor extends ReqProcessor<HandshakeBody> {
         HandshakeBody hb = new HandshakeBody();
         hb.majorVersion = DtUtil.RPC_MAJOR_VER;
         hb.minorVersion = DtUtil.RPC_MINOR_VER;
+        hb.features = config.supportCompress ? HandshakeBody.FEATURE_COMPRESS : 0;
 
         dtc.remoteUuid = new UUID(reqBody.processInfo.uuid1, reqBody.processInfo.uuid2);
 
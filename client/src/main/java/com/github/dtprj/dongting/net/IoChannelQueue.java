@@ -27,8 +27,11 @@ import com.github.dtprj.dongting.log.BugLog;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -40,6 +43,8 @@ class IoChannelQueue {
     private static final int ENCODE_NOT_FINISH = 1;
     private static final int ENCODE_FINISH = 2;
     private static final int ENCODE_CANCEL = 3;
+    // the header is encoded, and the body will be written by gathering write
+    private static final int ENCODE_GATHER = 4;
 
     private static final int MAX_BUFFER_SIZE = 256 * 1024;
     private final ByteBufferPool directPool;
@@ -50,6 +55,15 @@ class IoChannelQueue {
     private ByteBuffer writeBuffer;
     private int packetsInBuffer;
 
+    private final int gatherWriteMinBodySize;
+    // the segments of writeBuffer and the bodies to write, null if not gathering write
+    private ByteBuffer[] gatherBuffers;
+    private int gatherIndex;
+    private final ArrayList<ByteBuffer> gatherList = new ArrayList<>();
+    private int segmentStart;
+    // the packets which body in gatherBuffers, clean them after written
+    private final ArrayList<WritePacket> gatherPackets = new ArrayList<>();
+
     private final ArrayDeque<PacketInfo> subQueue = new ArrayDeque<>();
     private int subQueueBytes;
     private boolean writing;
@@ -65,6 +79,7 @@ class IoChannelQueue {
         this.dtc = dtc;
         this.encodeContext = new EncodeContext(heapPool);
         this.perfCallback = config.perfCallback;
+        this.gatherWriteMinBodySize = config.gatherWriteMinBodySize;
     }
 
     public void setRegisterForWrite(Runnable registerForWrite) {
@@ -109,6 +124,7 @@ class IoChannelQueue {
             directPool.release(this.writeBuffer);
             this.writeBuffer = null;
         }
+        cleanGather();
 
         if (lastPacketInfo != null) {
             workerStatus.addPacketsToWrite(-1);
@@ -121,26 +137,71 @@ class IoChannelQueue {
         }
     }
 
+    private void cleanGather() {
+        gatherList.clear();
+        gatherBuffers = null;
+        gatherIndex = 0;
+        segmentStart = 0;
+        if (!gatherPackets.isEmpty()) {
+            for (int i = 0, size = gatherPackets.size(); i < size; i++) {
+                gatherPackets.get(i).clean();
+            }
+            gatherPackets.clear();
+        }
+    }
+
     void afterBufferWriteFinish() {
         // current buffer write finished
         workerStatus.addPacketsToWrite(-packetsInBuffer);
         directPool.release(writeBuffer);
         this.writeBuffer = null;
         packetsInBuffer = 0;
+        cleanGather();
+    }
+
+    /**
+     * Write the pending data to the socket, return the bytes written.
+     */
+    public long write(SocketChannel sc) throws IOException {
+        ByteBuffer[] bufs = this.gatherBuffers;
+        if (bufs == null) {
+            ByteBuffer buf = writeBuffer;
+            int x = buf.remaining();
+            sc.write(buf);
+            x -= buf.remaining();
+            if (!buf.hasRemaining()) {
+                afterBufferWriteFinish();
+            }
+            return x;
+        } else {
+            int i = gatherIndex;
+            long x = sc.write(bufs, i, bufs.length - i);
+            while (i < bufs.length && !bufs[i].hasRemaining()) {
+                i++;
+            }
+            gatherIndex = i;
+            if (i == bufs.length) {
+                afterBufferWriteFinish();
+            }
+            return x;
+        }
     }
 
-    public ByteBuffer getWriteBuffer(Timestamp roundTime) {
+    /**
+     * Prepare the data to write, return false if no data to write.
+     */
+    public boolean prepareWriteData(Timestamp roundTime) {
         ByteBuffer writeBuffer = this.writeBuffer;
         if (writeBuffer != null) {
-            if (writeBuffer.remaining() > 0) {
-                return writeBuffer;
+            if (gatherBuffers != null || writeBuffer.remaining() > 0) {
+                return true;
             }
         }
         int subQueueBytes = this.subQueueBytes;
         ArrayDeque<PacketInfo> subQueue = this.subQueue;
         if (subQueue.isEmpty() && lastPacketInfo == null) {
             // no packet to write
-            return null;
+            return false;
         }
         ByteBuffer buf = subQueueBytes <= MAX_BUFFER_SIZE ? directPool.borrow(subQueueBytes) : directPool.borrow(MAX_BUFFER_SIZE);
 
@@ -166,10 +227,10 @@ class IoChannelQueue {
                         BugLog.log(ex);
                         continue;
                     }
-                    return flipAndReturnBuffer(buf);
+                    return flipBuffer(buf);
                 } else {
                     try {
-                        if (encodeResult == ENCODE_FINISH) {
+                        if (encodeResult == ENCODE_FINISH || encodeResult == ENCODE_GATHER) {
                             WritePacket f = pi.packet;
                             if (f.packetType == PacketType.TYPE_REQ) {
                                 workerStatus.addPendingReq((PacketInfoReq) pi);
@@ -190,7 +251,11 @@ class IoChannelQueue {
 
                         subQueueBytes = Math.max(0, subQueueBytes - pi.packet.calcMaxPacketSize());
 
-                        pi.packet.clean();
+                        if (encodeResult == ENCODE_GATHER) {
+                            gatherPackets.add(pi.packet);
+                        } else {
+                            pi.packet.clean();
+                        }
                     } finally {
                         encodeContext.reset();
                         pi = null;
@@ -198,7 +263,7 @@ class IoChannelQueue {
                 }
             }
             subQueueBytes = 0;
-            return flipAndReturnBuffer(buf);
+            return flipBuffer(buf);
         } catch (RuntimeException | Error e) {
             encodeContext.reset();
             // channel will be closed, and cleanChannelQueue will be called
@@ -209,15 +274,33 @@ class IoChannelQueue {
         }
     }
 
-    private ByteBuffer flipAndReturnBuffer(ByteBuffer buf) {
+    private boolean flipBuffer(ByteBuffer buf) {
+        if (!gatherList.isEmpty()) {
+            addSegment(buf);
+            gatherBuffers = gatherList.toArray(new ByteBuffer[0]);
+            gatherList.clear();
+            gatherIndex = 0;
+            this.writeBuffer = buf;
+            return true;
+        }
         buf.flip();
         if (buf.remaining() == 0) {
             directPool.release(buf);
             this.writeBuffer = null;
-            return null;
+            return false;
         } else {
             this.writeBuffer = buf;
-            return buf;
+            return true;
+        }
+    }
+
+    private void addSegment(ByteBuffer buf) {
+        if (buf.position() > segmentStart) {
+            ByteBuffer seg = buf.duplicate();
+            seg.limit(buf.position());
+            seg.position(segmentStart);
+            gatherList.add(seg);
+            segmentStart = buf.position();
         }
     }
 
@@ -248,6 +331,19 @@ class IoChannelQueue {
 
     private int doEncode(ByteBuffer buf, PacketInfo pi) {
         WritePacket wf = pi.packet;
+        if (encodeContext.stage == WritePacket.STATUS_INIT && gatherWriteMinBodySize > 0
+                && wf.actualBodySize() >= gatherWriteMinBodySize) {
+            ByteBuffer body = wf.bodyBufferForGather();
+            // the jdk copies heap buffers into temporary direct buffers in SocketChannel.write, so gather direct only
+            if (body != null && body.isDirect() && body.remaining() == wf.actualBodySize()) {
+                if (!wf.encodeHeader(buf)) {
+                    return ENCODE_NOT_FINISH;
+                }
+                addSegment(buf);
+                gatherList.add(body.duplicate());
+                return ENCODE_GATHER;
+            }
+        }
         return wf.encode(encodeContext, buf) ? ENCODE_FINISH : ENCODE_NOT_FINISH;
     }
 
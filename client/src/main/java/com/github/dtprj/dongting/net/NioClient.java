@@ -24,6 +24,7 @@ import com.github.dtprj.dongting.log.DtLogs;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
@@ -214,14 +215,29 @@ public class NioClient extends NioNet implements ChannelListener {
     }
 
     public CompletableFuture<Peer> addPeer(HostPort hostPort) {
+        return addPeer(hostPort, true);
+    }
+
+    /**
+     * Add a new peer even if there is already a peer with the same end point, so the caller can open
+     * several connections to one server. Each peer has its own connection and write queue.
+     * The returned peer should be removed by removePeer(Peer).
+     */
+    public CompletableFuture<Peer> addExclusivePeer(HostPort hostPort) {
+        return addPeer(hostPort, false);
+    }
+
+    private CompletableFuture<Peer> addPeer(HostPort hostPort, boolean reuseExisting) {
         Objects.requireNonNull(hostPort);
         Peer peer = new Peer(hostPort, this);
         CompletableFuture<Peer> f = new CompletableFuture<>();
         worker.doInIoThread(() -> {
-            for (Peer p : peers) {
-                if (p.endPoint.equals(hostPort)) {
-                    f.complete(p);
-                    return;
+            if (reuseExisting) {
+                for (Peer p : peers) {
+                    if (p.endPoint.equals(hostPort)) {
+                        f.complete(p);
+                        return;
+                    }
                 }
             }
             peers.add(peer);
@@ -308,7 +324,12 @@ public class NioClient extends NioNet implements ChannelListener {
     }
 
     protected void processServerConfigHint(@SuppressWarnings("unused") Peer peer, ConfigBody cb) {
-        int serverCount = peers.size();
+        // exclusive peers may connect to the same server, count distinct end points
+        HashSet<HostPort> endPoints = new HashSet<>();
+        for (Peer p : peers) {
+            endPoints.add(p.endPoint);
+        }
+        int serverCount = endPoints.size();
         int v = computeHint(cb.maxPacketSize, serverCount);
         if (v > 0 && v < config.maxPacketSize) {
             config.maxPacketSize = v;
@@ -49,6 +49,9 @@ public abstract class NioConfig {
     public PoolFactory poolFactory = new DefaultPoolFactory();
 
     public int readBufferSize = 128 * 1024;
+    // the direct buffer body (such as RefBufWritePacket) not smaller than this bytes is written to the socket
+    // directly by gathering write, instead of being copied into the write buffer. 0 to disable.
+    public int gatherWriteMinBodySize = 0;
 
     public PerfCallback perfCallback = NoopPerfCallback.INSTANCE;
     public Supplier<DecodeContext> decodeContextFactory = DecodeContext::new;
@@ -56,4 +59,6 @@ public abstract class NioConfig {
     public List<ChannelListener> channelListeners = new ArrayList<>(1);
 
     public boolean serverHint = true;
+    // advertise to the remote in handshake that this side can decode compressed requests
+    public boolean supportCompress = false;
 }
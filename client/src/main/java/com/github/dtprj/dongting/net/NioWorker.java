@@ -332,17 +332,11 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
             stage = "process socket write";
             if (key.isWritable()) {
                 IoChannelQueue subQueue = dtc.subQueue;
-                ByteBuffer buf = subQueue.getWriteBuffer(roundTime);
-                if (buf != null) {
+                if (subQueue.prepareWriteData(roundTime)) {
                     subQueue.setWriting(true);
                     long startTime = perfCallback.takeTimeAndRefresh(PerfConsts.RPC_D_WRITE, roundTime);
-                    int x1 = buf.remaining();
-                    sc.write(buf);
-                    int x2 = buf.remaining();
-                    if (x2 == 0) {
-                        subQueue.afterBufferWriteFinish();
-                    }
-                    perfCallback.fireTimeAndRefresh(PerfConsts.RPC_D_WRITE, startTime, 1, x1 - x2, roundTime);
+                    long bytes = subQueue.write(sc);
+                    perfCallback.fireTimeAndRefresh(PerfConsts.RPC_D_WRITE, startTime, 1, bytes, roundTime);
                 } else {
                     // no data to write
                     subQueue.setWriting(false);
@@ -592,6 +586,7 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         cb.maxInPending = config.maxInRequests;
         cb.maxInPendingBytes = config.maxInBytes;
         hb.config = cb;
+        hb.features = config.supportCompress ? HandshakeBody.FEATURE_COMPRESS : 0;
         SimpleWritePacket p = new SimpleWritePacket(hb);
 
         p.packetType = PacketType.TYPE_REQ;
@@ -623,6 +618,7 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
             VersionFactory.getInstance().fullFence();
         }
 
+        ci.peer.remoteSupportCompress = (resp.getBody().features & HandshakeBody.FEATURE_COMPRESS) != 0;
         ci.peer.status = PeerStatus.connected;
         ci.peer.resetConnectRetry(workerStatus);
         finishHandshake(dtc);
@@ -691,7 +687,8 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         if (server) {
             incomingConnects.remove(dtc);
             if (dtc.remoteUuid != null) {
-                ((NioServer) owner).getClients().remove(dtc.remoteUuid);
+                // a client may open several connections to one server, only remove the mapping of this channel
+                ((NioServer) owner).getClients().remove(dtc.remoteUuid, dtc);
             }
         } else {
             Peer p = dtc.peer;
@@ -31,6 +31,8 @@ public class Peer {
     public volatile PeerStatus status;
     public final HostPort endPoint;
     public int connectRetryCount; // reset to 0 when connect success
+    // set after handshake, if true the remote can decode compressed requests
+    volatile boolean remoteSupportCompress;
 
     final NioClient owner;
 
@@ -51,6 +53,10 @@ public class Peer {
         this.status = PeerStatus.not_connect;
     }
 
+    public boolean isRemoteSupportCompress() {
+        return remoteSupportCompress;
+    }
+
     void addToWaitConnectList(PacketInfoReq data) {
         if (waitConnectList == null) {
             waitConnectList = new LinkedList<>();
@@ -46,6 +46,11 @@ public class RefBufWritePacket extends WritePacket {
         return size;
     }
 
+    @Override
+    protected ByteBuffer bodyBufferForGather() {
+        return refBuffer == null ? null : refBuffer.getBuffer();
+    }
+
     @Override
     protected boolean encodeBody(EncodeContext context, ByteBuffer dest) {
         return ByteBufferWritePacket.encodeBody(context, refBuffer == null ? null : refBuffer.getBuffer(), dest);
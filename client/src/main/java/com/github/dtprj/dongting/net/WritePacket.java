@@ -113,25 +113,10 @@ public abstract class WritePacket extends Packet implements Encodable, DtCleanab
     public final boolean encode(EncodeContext context, ByteBuffer buf) {
         int step = context.stage;
         if (step == STATUS_INIT) {
-            int totalSize = actualSize();
-            int headerSize = totalSize - actualBodySize();
-            if (buf.remaining() < headerSize) {
+            if (!encodeHeader(buf)) {
                 return false;
-            } else {
-                buf.putInt(totalSize - 4); //not include total length
-                PbUtil.writeInt32Field(buf, IDX_TYPE, packetType);
-                PbUtil.writeInt32Field(buf, IDX_COMMAND, command);
-                PbUtil.writeFix32Field(buf, IDX_SEQ, seq);
-                PbUtil.writeInt32Field(buf, IDX_RESP_CODE, respCode);
-                PbUtil.writeInt32Field(buf, IDX_BIZ_CODE, bizCode);
-                PbUtil.writeBytesField(buf, IDX_MSG, getMsgBytes());
-                PbUtil.writeFix64Field(buf, IDX_TIMEOUT, timeout);
-                PbUtil.writeBytesField(buf, IDX_EXTRA, extra);
-                if (bodySize > 0) {
-                    PbUtil.writeLenFieldPrefix(buf, Packet.IDX_BODY, bodySize);
-                }
-                step = STATUS_HEADER_ENCODE_FINISHED;
             }
+            step = STATUS_HEADER_ENCODE_FINISHED;
         }
         boolean finish = false;
         if (step == STATUS_HEADER_ENCODE_FINISHED) {
@@ -163,6 +148,40 @@ public abstract class WritePacket extends Packet implements Encodable, DtCleanab
         return finish;
     }
 
+    /**
+     * Encode the header and the length prefix of the body, return false if the buffer has not enough space.
+     */
+    final boolean encodeHeader(ByteBuffer buf) {
+        int totalSize = actualSize();
+        int headerSize = totalSize - actualBodySize();
+        if (buf.remaining() < headerSize) {
+            return false;
+        }
+        buf.putInt(totalSize - 4); //not include total length
+        PbUtil.writeInt32Field(buf, IDX_TYPE, packetType);
+        PbUtil.writeInt32Field(buf, IDX_COMMAND, command);
+        PbUtil.writeFix32Field(buf, IDX_SEQ, seq);
+        PbUtil.writeInt32Field(buf, IDX_RESP_CODE, respCode);
+        PbUtil.writeInt32Field(buf, IDX_BIZ_CODE, bizCode);
+        PbUtil.writeBytesField(buf, IDX_MSG, getMsgBytes());
+        PbUtil.writeFix64Field(buf, IDX_TIMEOUT, timeout);
+        PbUtil.writeBytesField(buf, IDX_EXTRA, extra);
+        if (bodySize > 0) {
+            PbUtil.writeLenFieldPrefix(buf, Packet.IDX_BODY, bodySize);
+        }
+        return true;
+    }
+
+    /**
+     * Return the encoded body if it is already in a buffer, so the io thread can write it to the socket
+     * directly (gathering write) instead of copying it. The buffer is not modified, and should be valid
+     * until clean() is called, the clean() is called after the buffer is written. Only direct buffer is
+     * gathered, a heap buffer is copied as usual. Return null if not supported.
+     */
+    protected ByteBuffer bodyBufferForGather() {
+        return null;
+    }
+
     /**
      * may be called in io thread (or other thread).
      */
@@ -50,6 +50,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.Collections.unmodifiableList;
@@ -60,6 +61,7 @@ import static java.util.Objects.requireNonNull;
  */
 public class RaftClient extends AbstractLifeCircle {
     private static final DtLog log = DtLogs.getLogger(RaftClient.class);
+    private static final long LANE_CONNECT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
     private final RaftClientConfig config;
     protected final NioClient nioClient;
     // key is nodeId
@@ -69,6 +71,13 @@ public class RaftClient extends AbstractLifeCircle {
 
     private final ReentrantLock lock = new ReentrantLock();
 
+    private final AtomicInteger readRoundRobin = new AtomicInteger();
+
+    // number of connections used to spread groups, see RaftClientConfig.connectionsPerNode
+    private final int groupLanes;
+    private final boolean bulkLane;
+    private final int laneCount;
+
     public RaftClient() {
         this(new RaftClientConfig(), new NioClientConfig("RaftClient"));
     }
@@ -76,6 +85,11 @@ public class RaftClient extends AbstractLifeCircle {
     public RaftClient(RaftClientConfig raftClientConfig, NioClientConfig nioClientConfig) {
         this.config = raftClientConfig;
         this.nioClient = new NioClient(nioClientConfig);
+        DtUtil.checkPositive(raftClientConfig.connectionsPerNode, "connectionsPerNode");
+        this.groupLanes = raftClientConfig.connectionsPerNode;
+        this.bulkLane = (raftClientConfig.bulkCommands != null && raftClientConfig.bulkCommands.length > 0)
+                || raftClientConfig.bulkRequestBytes > 0;
+        this.laneCount = groupLanes + (bulkLane ? 1 : 0);
     }
 
     private void checkStatus() {
@@ -114,10 +128,23 @@ public class RaftClient extends AbstractLifeCircle {
                 }
             }
             ArrayList<CompletableFuture<RaftNode>> futures = new ArrayList<>();
+            ArrayList<CompletableFuture<Peer>> laneFutures = new ArrayList<>();
             for (RaftNode n : nodes) {
                 // this operation should finish quickly
                 CompletableFuture<Peer> f = nioClient.addPeer(n.hostPort);
-                futures.add(f.thenApply(peer -> new RaftNode(n.nodeId, n.hostPort, peer)));
+                if (laneCount == 1) {
+                    futures.add(f.thenApply(peer -> new RaftNode(n.nodeId, n.hostPort, peer)));
+                } else {
+                    List<CompletableFuture<Peer>> lanes = new ArrayList<>(laneCount);
+                    lanes.add(f);
+                    for (int i = 1; i < laneCount; i++) {
+                        CompletableFuture<Peer> lf = nioClient.addExclusivePeer(n.hostPort);
+                        lanes.add(lf);
+                        laneFutures.add(lf);
+                    }
+                    futures.add(CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(v -> createLaneNode(n, lanes)));
+                }
             }
             boolean success = false;
             try {
@@ -144,6 +171,9 @@ public class RaftClient extends AbstractLifeCircle {
                         nioClient.removePeer(n.hostPort);
                         allNodes.remove(n.nodeId);
                     }
+                    for (CompletableFuture<Peer> f : laneFutures) {
+                        f.thenAccept(nioClient::removePeer);
+                    }
                 }
             }
         } finally {
@@ -165,6 +195,11 @@ public class RaftClient extends AbstractLifeCircle {
                 RaftNode n = allNodes.remove(id);
                 if (n != null) {
                     nioClient.removePeer(n.hostPort);
+                    if (n.lanePeers != null) {
+                        for (int i = 1; i < n.lanePeers.length; i++) {
+                            nioClient.removePeer(n.lanePeers[i]);
+                        }
+                    }
                 }
             }
         } finally {
@@ -172,6 +207,16 @@ public class RaftClient extends AbstractLifeCircle {
         }
     }
 
+    private static RaftNode createLaneNode(RaftNode n, List<CompletableFuture<Peer>> laneFutures) {
+        Peer[] lanePeers = new Peer[laneFutures.size()];
+        for (int i = 0; i < lanePeers.length; i++) {
+            lanePeers[i] = laneFutures.get(i).join();
+        }
+        RaftNode node = new RaftNode(n.nodeId, n.hostPort, lanePeers[0]);
+        node.lanePeers = lanePeers;
+        return node;
+    }
+
     public void clientAddOrUpdateGroup(int groupId, int[] serverIds) throws NetException {
         requireNonNull(serverIds);
         DtUtil.checkNotNegative(groupId, "groupId");
@@ -232,6 +277,13 @@ public class RaftClient extends AbstractLifeCircle {
             if (n.peer.status == PeerStatus.not_connect) {
                 nioClient.connect(n.peer);
             }
+            if (n.lanePeers != null) {
+                for (int i = 1; i < n.lanePeers.length; i++) {
+                    if (n.lanePeers[i].status == PeerStatus.not_connect) {
+                        nioClient.connect(n.lanePeers[i]);
+                    }
+                }
+            }
         }
 
         Collections.shuffle(managedServers);
@@ -405,6 +457,76 @@ public class RaftClient extends AbstractLifeCircle {
         }
     }
 
+    /**
+     * Sync send read only request of the group, see the async version.
+     */
+    public <T> ReadPacket<T> sendReadRequest(Integer groupId, WritePacket request, DecoderCallbackCreator<T> decoder,
+                                             DtTime timeout) {
+        SyncFutureCallback<T> c = new SyncFutureCallback<>();
+        sendReadRequest(groupId, request, decoder, timeout, c);
+        return waitFuture(c.future, timeout);
+    }
+
+    /**
+     * Async send read only request of the group, the target server is selected by RaftClientConfig.readRoutingPolicy.
+     * If the request sent to a server other than the leader fails (for example, the server doesn't enable follower
+     * read), retry it on the leader as sendRequest does.
+     */
+    public <T> void sendReadRequest(Integer groupId, WritePacket request, DecoderCallbackCreator<T> decoder,
+                                    DtTime timeout, RpcCallback<T> callback) {
+        ReadRoutingPolicy policy = config.readRoutingPolicy;
+        GroupInfo groupInfo = groups.get(groupId);
+        RaftNode node = null;
+        if (policy != ReadRoutingPolicy.LEADER && groupInfo != null) {
+            node = selectReadNode(groupInfo, policy);
+        }
+        if (node == null || node == groupInfo.leader) {
+            sendRequest(groupId, request, decoder, timeout, callback);
+            return;
+        }
+        checkStatus();
+        boolean getPermit = false;
+        try {
+            getPermit = nioClient.acquirePermit(request, timeout);
+            boolean releasePermit = getPermit;
+            sendRpcToPeer(selectPeer(node, groupId, request), request, decoder, timeout, (result, ex) -> {
+                if (releasePermit) {
+                    nioClient.releasePermit(request);
+                }
+                if (ex != null && request.canRetry() && status == STATUS_RUNNING && !timeout.isTimeout()) {
+                    log.debug("read from non-leader server fail, retry on leader: {}", ex.toString());
+                    try {
+                        request.prepareRetry();
+                        sendRequest(groupId, request, decoder, timeout, callback);
+                    } catch (Throwable retryEx) {
+                        invokeOriginCallback(callback, null, retryEx);
+                    }
+                } else {
+                    invokeOriginCallback(callback, result, ex);
+                }
+            });
+        } catch (Throwable e) {
+            handleSendEx(request, callback, e, getPermit);
+        }
+    }
+
+    private RaftNode selectReadNode(GroupInfo groupInfo, ReadRoutingPolicy policy) {
+        List<RaftNode> servers = groupInfo.servers;
+        int size = servers.size();
+        int start = readRoundRobin.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            RaftNode n = servers.get((start + i) % size);
+            if (n.peer.status != PeerStatus.connected) {
+                continue;
+            }
+            if (policy == ReadRoutingPolicy.FOLLOWER_PREFERRED && n == groupInfo.leader) {
+                continue;
+            }
+            return n;
+        }
+        return null;
+    }
+
     private <T> void sendAfterUpdateLeader(Integer groupId, WritePacket request, DecoderCallbackCreator<T> decoder,
                                            int retry, DtTime timeout, RpcCallback<T> callback, GroupInfo groupInfo,
                                            boolean getPermit) {
@@ -451,7 +573,49 @@ public class RaftClient extends AbstractLifeCircle {
                           DtTime timeout, RpcCallback<T> c, int retry, boolean getPermit) {
         RpcCallback<T> newCallback = (result, ex) -> wrapCallback(groupInfo, request, decoder, timeout, c,
                 retry, getPermit, result, ex);
-        sendRpcToPeer(groupInfo.leader.peer, request, decoder, timeout, newCallback);
+        sendRpcToPeer(selectPeer(groupInfo.leader, groupInfo.groupId, request), request, decoder, timeout,
+                newCallback);
+    }
+
+    /**
+     * Select the connection of the node to send the request, see RaftClientConfig.connectionsPerNode and
+     * RaftClientConfig.bulkCommands. If the selected connection is not ready, fall back to the first connection.
+     */
+    private Peer selectPeer(RaftNode n, int groupId, WritePacket request) {
+        Peer[] lanes = n.lanePeers;
+        if (lanes == null) {
+            return n.peer;
+        }
+        Peer p = bulkLane && isBulkRequest(request) ? lanes[lanes.length - 1] : lanes[groupId % groupLanes];
+        if (p.status == PeerStatus.connected) {
+            return p;
+        }
+        if (p.status == PeerStatus.not_connect && p.connectRetryCount == 0 && n.peer.status == PeerStatus.connected) {
+            // the server is reachable, reconnect the lane. if the connect fails, NioClient retries it with
+            // backoff (connectRetryIntervals) and connectRetryCount is positive until it succeeds, so don't
+            // connect here again. the interval limits the connects if the auto retry is disabled.
+            // these fields are accessed without lock, at worst there are a few more connects.
+            long now = System.nanoTime();
+            long last = n.lastLaneConnectNanos;
+            if (last == 0 || now - last > LANE_CONNECT_INTERVAL_NANOS) {
+                n.lastLaneConnectNanos = now;
+                nioClient.connect(p);
+            }
+        }
+        return n.peer;
+    }
+
+    private boolean isBulkRequest(WritePacket request) {
+        int[] cmds = config.bulkCommands;
+        if (cmds != null) {
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0; i < cmds.length; i++) {
+                if (cmds[i] == request.command) {
+                    return true;
+                }
+            }
+        }
+        return config.bulkRequestBytes > 0 && request.actualBodySize() >= config.bulkRequestBytes;
     }
 
     protected <T> void sendRpcToPeer(Peer peer, WritePacket request, DecoderCallbackCreator<T> decoder,
@@ -30,4 +30,29 @@ public class RaftClientConfig {
     public boolean useBizExecutor = true;
 
     public long rpcTimeoutMillis = 5 * 1000L;
+
+    /**
+     * The servers to send read requests (by RaftClient.sendReadRequest), see ReadRoutingPolicy. Reading from a server
+     * other than the leader requires the server enables follower read (KvServerConfig.followerRead), otherwise the
+     * request is redirected to the leader.
+     */
+    public ReadRoutingPolicy readRoutingPolicy = ReadRoutingPolicy.LEADER;
+
+    /**
+     * Number of connections to each server. The requests of a raft group are sent through the connection selected
+     * by groupId % connectionsPerNode, each connection has its own write queue, so a group with heavy traffic only
+     * delays the groups sharing the connection with it. Leader finding and status query always use the first
+     * connection.
+     */
+    public int connectionsPerNode = 1;
+
+    /**
+     * If not empty, requests with these commands (for example Commands.DTKV_LIST, DTKV_SCAN, DTKV_BATCH_GET)
+     * are sent through an extra dedicated connection of each server, so a large response doesn't delay the
+     * small requests behind it.
+     */
+    public int[] bulkCommands;
+
+    // if positive, requests whose body size is not less than this value are sent through the bulk connection too
+    public int bulkRequestBytes = 0;
 }
@@ -46,6 +46,11 @@ public class RaftNode implements Encodable, Comparable<RaftNode> {
 
     public int useCount;
 
+    // connections used by RaftClient to send requests, the first one is the peer, null if only one connection
+    Peer[] lanePeers;
+    // the last time RaftClient connects a lane peer which is not connected
+    long lastLaneConnectNanos;
+
     private String str;
 
     public RaftNode(int nodeId, HostPort hostPort) {
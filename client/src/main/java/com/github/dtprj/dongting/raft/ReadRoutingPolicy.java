@@ -0,0 +1,37 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft;
+
+/**
+ * Decide which server the read requests (RaftClient.sendReadRequest) are sent to.
+ *
+ * @author huangli
+ */
+public enum ReadRoutingPolicy {
+    /**
+     * all read requests are sent to the leader.
+     */
+    LEADER,
+    /**
+     * the read requests are spread over all connected servers of the group (members and observers) in round robin.
+     */
+    ROUND_ROBIN,
+    /**
+     * the read requests are spread over the connected servers except the leader in round robin, if there is no
+     * such server, send to the leader.
+     */
+    FOLLOWER_PREFERRED
+}
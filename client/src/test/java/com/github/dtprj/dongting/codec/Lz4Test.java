@@ -0,0 +1,89 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class Lz4Test {
+
+    private static int roundTrip(byte[] src, int off, int len) {
+        byte[] compressed = new byte[Lz4.maxCompressedLength(len) + 3];
+        int clen = Lz4.compress(src, off, len, compressed, 3);
+        assertTrue(clen <= Lz4.maxCompressedLength(len));
+        byte[] dest = new byte[len + 2];
+        Lz4.decompress(compressed, 3, clen, dest, 2, len);
+        assertArrayEquals(Arrays.copyOfRange(src, off, off + len), Arrays.copyOfRange(dest, 2, 2 + len));
+        return clen;
+    }
+
+    @Test
+    public void testSmall() {
+        for (int i = 0; i < 20; i++) {
+            byte[] b = new byte[i];
+            Arrays.fill(b, (byte) 'a');
+            roundTrip(b, 0, i);
+        }
+    }
+
+    @Test
+    public void testCompressible() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("{\"key\":\"config").append(i % 37).append("\",\"enabled\":true,\"value\":").append(i).append("}");
+        }
+        byte[] b = sb.toString().getBytes(StandardCharsets.UTF_8);
+        int clen = roundTrip(b, 0, b.length);
+        assertTrue(clen < b.length / 3, clen + "/" + b.length);
+
+        byte[] zeros = new byte[100000];
+        clen = roundTrip(zeros, 0, zeros.length);
+        assertTrue(clen < 1000);
+    }
+
+    @Test
+    public void testRandom() {
+        Random r = new Random();
+        for (int i = 0; i < 200; i++) {
+            int len = r.nextInt(5000);
+            byte[] b = new byte[len + 10];
+            // mix of random and repeated bytes
+            for (int j = 0; j < b.length; j++) {
+                b[j] = r.nextInt(3) == 0 ? (byte) r.nextInt() : (byte) (j % 7);
+            }
+            roundTrip(b, r.nextInt(10), len);
+        }
+    }
+
+    @Test
+    public void testBadInput() {
+        byte[] b = "hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+        byte[] c = new byte[Lz4.maxCompressedLength(b.length)];
+        int clen = Lz4.compress(b, 0, b.length, c, 0);
+        assertThrows(CodecException.class, () -> Lz4.decompress(c, 0, clen, new byte[b.length + 1], 0, b.length + 1));
+        assertThrows(CodecException.class, () -> Lz4.decompress(c, 0, clen - 1, new byte[b.length], 0, b.length));
+    }
+}
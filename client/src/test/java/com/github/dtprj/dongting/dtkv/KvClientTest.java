@@ -403,6 +403,55 @@ class KvClientTest {
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    void scan_success() {
+        MockKvClient c = createClient();
+        KvResult r1 = new KvResult(KvCodes.SUCCESS, new KvNode(1, 1, 1, 1, 0, bs("d1")), null);
+        c.setSyncResponse(createResponse(KvCodes.SUCCESS,
+                new KvResp(0, Collections.singletonList(r1), bs("k2"))));
+
+        KvScanResult sr = c.scan(GROUP_ID, bs("k1"), bs("k9"), 1);
+
+        assertEquals(Commands.DTKV_SCAN, c.capturedCmd);
+        assertArrayEquals(bs("k1"), c.capturedReq.key);
+        assertArrayEquals(bs("k9"), c.capturedReq.endKey);
+        assertEquals(1, c.capturedReq.limit);
+        assertEquals(1, sr.results.size());
+        assertTrue(sr.hasMore());
+        assertArrayEquals(bs("k2"), sr.nextKey);
+
+        c.setSyncResponse(createResponse(KvCodes.SUCCESS, null));
+        sr = c.scan(GROUP_ID, null, null, 0);
+        assertTrue(sr.results.isEmpty());
+        assertFalse(sr.hasMore());
+
+        assertThrows(IllegalArgumentException.class, () -> c.scan(GROUP_ID, null, null, -1));
+    }
+
+    @Test
+    void prefixScan_success() {
+        MockKvClient c = createClient();
+        c.setSyncResponse(createResponse(KvCodes.SUCCESS, null));
+
+        c.prefixScan(GROUP_ID, bs("a.b"), null, 0);
+        assertEquals(Commands.DTKV_SCAN, c.capturedCmd);
+        assertArrayEquals(bs("a.b"), c.capturedReq.key);
+        assertArrayEquals(bs("a.c"), c.capturedReq.endKey);
+
+        c.prefixScan(GROUP_ID, bs("a.b"), bs("a.b.x"), 0);
+        assertArrayEquals(bs("a.b.x"), c.capturedReq.key);
+        assertArrayEquals(bs("a.c"), c.capturedReq.endKey);
+    }
+
+    @Test
+    void prefixEnd() {
+        assertNull(KvClient.prefixEnd(null));
+        assertNull(KvClient.prefixEnd(new byte[0]));
+        assertNull(KvClient.prefixEnd(new byte[]{(byte) 0xFF, (byte) 0xFF}));
+        assertArrayEquals(new byte[]{1, 3}, KvClient.prefixEnd(new byte[]{1, 2, (byte) 0xFF}));
+        assertArrayEquals(bs("ab"), KvClient.prefixEnd(bs("aa")));
+    }
+
     @Test
     void remove_success() {
         MockKvClient c = createClient();
@@ -0,0 +1,194 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv;
+
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.FutureCallback;
+import com.github.dtprj.dongting.net.Commands;
+import com.github.dtprj.dongting.net.NetException;
+import com.github.dtprj.dongting.net.NioClientConfig;
+import com.github.dtprj.dongting.net.ReadPacket;
+import com.github.dtprj.dongting.raft.RaftClientConfig;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.github.dtprj.dongting.test.WaitUtil.waitUtil;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class KvGetBatcherTest {
+
+    private static class SendInfo {
+        int groupId;
+        int cmd;
+        KvReq req;
+        FutureCallback<Object> callback;
+        boolean acquirePermitNoWait;
+    }
+
+    private static class CaptureKvClient extends KvClient {
+        final List<SendInfo> sends = new CopyOnWriteArrayList<>();
+        RuntimeException sendEx;
+
+        CaptureKvClient(long windowMicros, int maxKeys) {
+            super(createConfig(windowMicros, maxKeys), new RaftClientConfig(), new NioClientConfig());
+        }
+
+        private static KvClientConfig createConfig(long windowMicros, int maxKeys) {
+            KvClientConfig c = new KvClientConfig();
+            c.getBatchWindowMicros = windowMicros;
+            c.getBatchMaxKeys = maxKeys;
+            return c;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected <T> void sendAsync(int groupId, int cmd, KvReq req, FutureCallback<T> c,
+                                     Function<ReadPacket<KvResp>, T> mapper, boolean acquirePermitNoWait) {
+            if (sendEx != null) {
+                throw sendEx;
+            }
+            SendInfo si = new SendInfo();
+            si.groupId = groupId;
+            si.cmd = cmd;
+            si.req = req;
+            si.callback = (FutureCallback<Object>) c;
+            si.acquirePermitNoWait = acquirePermitNoWait;
+            sends.add(si);
+        }
+
+        @Override
+        protected void doStart() {
+        }
+
+        @Override
+        protected void doStop(DtTime timeout, boolean force) {
+        }
+    }
+
+    private static byte[] bs(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testMergeInWindow() throws Exception {
+        CaptureKvClient client = new CaptureKvClient(TimeUnit.MILLISECONDS.toMicros(300), 100);
+        CompletableFuture<KvNode> f1 = new CompletableFuture<>();
+        CompletableFuture<KvNode> f2 = new CompletableFuture<>();
+        CompletableFuture<KvNode> f3 = new CompletableFuture<>();
+        CompletableFuture<KvNode> f4 = new CompletableFuture<>();
+        client.get(1, bs("k1"), FutureCallback.fromFuture(f1));
+        client.get(1, bs("k2"), FutureCallback.fromFuture(f2));
+        client.get(1, bs("k3"), FutureCallback.fromFuture(f3));
+        client.get(2, bs("k4"), FutureCallback.fromFuture(f4));
+        waitUtil(() -> client.sends.size() == 2);
+
+        SendInfo batch = client.sends.get(0).groupId == 1 ? client.sends.get(0) : client.sends.get(1);
+        SendInfo single = batch == client.sends.get(0) ? client.sends.get(1) : client.sends.get(0);
+        assertEquals(Commands.DTKV_BATCH_GET, batch.cmd);
+        // sent in the scheduler thread, should not wait permit
+        assertTrue(batch.acquirePermitNoWait);
+        assertTrue(single.acquirePermitNoWait);
+        assertEquals(3, batch.req.keys.size());
+        assertArrayEquals(bs("k2"), batch.req.keys.get(1));
+        assertEquals(Commands.DTKV_GET, single.cmd);
+        assertEquals(2, single.groupId);
+        assertArrayEquals(bs("k4"), single.req.key);
+
+        KvNode n = new KvNode(1, 1000, 1, 1000, 0, bs("v1"));
+        List<KvResult> results = Arrays.asList(new KvResult(KvCodes.SUCCESS, n, null), KvResult.NOT_FOUND,
+                new KvResult(KvCodes.INVALID_KEY));
+        batch.callback.call(results, null);
+        assertSame(n, f1.get(1, TimeUnit.SECONDS));
+        assertNull(f2.get(1, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f3.get(1, TimeUnit.SECONDS));
+        assertEquals(KvCodes.INVALID_KEY, ((KvException) e.getCause()).getCode());
+        assertFalse(f4.isDone());
+    }
+
+    @Test
+    public void testFull() {
+        CaptureKvClient client = new CaptureKvClient(TimeUnit.SECONDS.toMicros(100), 2);
+        client.get(1, bs("k1"), null);
+        assertEquals(0, client.sends.size());
+        client.get(1, bs("k2"), null);
+        // sent without waiting the window
+        assertEquals(1, client.sends.size());
+        assertEquals(2, client.sends.get(0).req.keys.size());
+        // sent in the caller thread
+        assertFalse(client.sends.get(0).acquirePermitNoWait);
+        client.get(1, bs("k3"), null);
+        assertEquals(1, client.sends.size());
+    }
+
+    @Test
+    public void testFlushFail() throws Exception {
+        CaptureKvClient client = new CaptureKvClient(TimeUnit.MILLISECONDS.toMicros(10), 100);
+        NetException ex = new NetException("too many pending requests");
+        client.sendEx = ex;
+        CompletableFuture<KvNode> f1 = new CompletableFuture<>();
+        CompletableFuture<KvNode> f2 = new CompletableFuture<>();
+        client.get(1, bs("k1"), FutureCallback.fromFuture(f1));
+        client.get(1, bs("k2"), FutureCallback.fromFuture(f2));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f1.get(1, TimeUnit.SECONDS));
+        assertSame(ex, e.getCause());
+        e = assertThrows(ExecutionException.class, () -> f2.get(1, TimeUnit.SECONDS));
+        assertSame(ex, e.getCause());
+    }
+
+    @Test
+    public void testRootKeyNotMerged() {
+        CaptureKvClient client = new CaptureKvClient(TimeUnit.SECONDS.toMicros(100), 100);
+        client.get(1, null, null);
+        client.get(1, new byte[0], null);
+        assertEquals(2, client.sends.size());
+        assertEquals(Commands.DTKV_GET, client.sends.get(0).cmd);
+    }
+
+    @Test
+    public void testFanOutFail() {
+        KvGetBatcher.Batch b = new KvGetBatcher.Batch(1);
+        ArrayList<Throwable> exs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            b.keys.add(bs("k" + i));
+            b.callbacks.add((result, ex) -> exs.add(ex));
+        }
+        NetException ex = new NetException("mock error");
+        KvGetBatcher.fanOut(b, null, ex);
+        assertEquals(3, exs.size());
+        for (Throwable t : exs) {
+            assertSame(ex, t);
+        }
+
+        // result size mismatch
+        exs.clear();
+        KvGetBatcher.fanOut(b, List.of(KvResult.NOT_FOUND), null);
+        assertEquals(Arrays.asList(null, exs.get(1), exs.get(2)), exs);
+        assertNotNull(exs.get(1));
+        assertNotNull(exs.get(2));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv;
+
+import com.github.dtprj.dongting.common.ByteArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class KvNearCacheTest {
+
+    private static final int GROUP_ID = 1;
+
+    private final List<String> addedWatches = new ArrayList<>();
+    private final List<String> removedWatches = new ArrayList<>();
+    private KvNearCache cache;
+
+    private class MockWatchManager extends WatchManager {
+        MockWatchManager() {
+            super(new KvClient(), () -> false, 1000);
+        }
+
+        @Override
+        void addNearCacheWatch(int groupId, ByteArray key) {
+            if (nearCache.contains(groupId, key)) {
+                addedWatches.add(key.toString());
+            }
+        }
+
+        @Override
+        void removeNearCacheWatch(int groupId, ByteArray key) {
+            if (!nearCache.contains(groupId, key)) {
+                removedWatches.add(key.toString());
+            }
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        addedWatches.clear();
+        removedWatches.clear();
+        cache = create(100, 60_000);
+    }
+
+    private KvNearCache create(int maxKeys, long ttlMillis) {
+        MockWatchManager wm = new MockWatchManager();
+        KvNearCache c = new KvNearCache(wm, maxKeys, ttlMillis);
+        wm.nearCache = c;
+        return c;
+    }
+
+    private static byte[] bs(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static KvNode node(long updateIndex, String value) {
+        return new KvNode(1, 1, updateIndex, 1, 0, bs(value));
+    }
+
+    private static void assertNodeEquals(KvNode expect, Object actual) {
+        assertInstanceOf(KvNode.class, actual);
+        KvNode n = (KvNode) actual;
+        assertNotSame(expect, n);
+        assertEquals(expect.updateIndex, n.updateIndex);
+        assertArrayEquals(expect.data, n.data);
+    }
+
+    private KvNearCache.Loading miss(String key) {
+        Object o = cache.get(GROUP_ID, bs(key));
+        assertInstanceOf(KvNearCache.Loading.class, o);
+        return (KvNearCache.Loading) o;
+    }
+
+    private void notify(String key, long raftIndex, int state) {
+        cache.onNotify(GROUP_ID, new ByteArray(bs(key)), raftIndex, state);
+    }
+
+    @Test
+    public void testHit() {
+        KvNearCache.Loading l = miss("k1");
+        assertEquals(List.of("k1"), addedWatches);
+        // not filled yet
+        miss("k1");
+        KvNode n = node(10, "v1");
+        cache.fill(l, n);
+        assertNodeEquals(n, cache.get(GROUP_ID, bs("k1")));
+        assertEquals(1, addedWatches.size());
+
+        // modify the filled or returned node does not affect the cache
+        n.data[0] = 'x';
+        KvNode n2 = (KvNode) cache.get(GROUP_ID, bs("k1"));
+        assertArrayEquals(bs("v1"), n2.data);
+        n2.data[0] = 'y';
+        assertArrayEquals(bs("v1"), ((KvNode) cache.get(GROUP_ID, bs("k1"))).data);
+
+        // cache not exists
+        l = miss("k2");
+        cache.fill(l, null);
+        assertNull(cache.get(GROUP_ID, bs("k2")));
+
+        // same group id, different key
+        miss("k3");
+        assertInstanceOf(KvNearCache.Loading.class, cache.get(GROUP_ID + 1, bs("k1")));
+    }
+
+    @Test
+    public void testNotify() {
+        KvNearCache.Loading l = miss("k1");
+        KvNode n = node(10, "v1");
+        cache.fill(l, n);
+        // the first notify after watch registered, same as the cached node
+        notify("k1", 10, WatchEvent.STATE_VALUE_EXISTS);
+        assertNodeEquals(n, cache.get(GROUP_ID, bs("k1")));
+        notify("k1", 11, WatchEvent.STATE_VALUE_EXISTS);
+        l = miss("k1");
+
+        // the response is older than the observed notify
+        cache.fill(l, node(10, "v1"));
+        l = miss("k1");
+        cache.fill(l, null);
+        l = miss("k1");
+        cache.fill(l, node(11, "v2"));
+        assertEquals(11, ((KvNode) cache.get(GROUP_ID, bs("k1"))).updateIndex);
+
+        notify("k1", 12, WatchEvent.STATE_NOT_EXISTS);
+        l = miss("k1");
+        cache.fill(l, null);
+        assertNull(cache.get(GROUP_ID, bs("k1")));
+        notify("k1", 13, WatchEvent.STATE_NOT_EXISTS);
+        assertNull(cache.get(GROUP_ID, bs("k1")));
+        notify("k1", 14, WatchEvent.STATE_VALUE_EXISTS);
+        miss("k1");
+
+        // notify of key not in cache is ignored
+        notify("k2", 20, WatchEvent.STATE_VALUE_EXISTS);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        KvNearCache.Loading l = miss("k1");
+        // a local write during the load
+        cache.invalidate(GROUP_ID, new KvReq(GROUP_ID, bs("k1"), bs("v2")));
+        cache.fill(l, node(10, "v1"));
+        l = miss("k1");
+        cache.fill(l, node(11, "v2"));
+        assertNotNull(cache.get(GROUP_ID, bs("k1")));
+        cache.invalidate(GROUP_ID, new KvReq(GROUP_ID, List.of(bs("k0"), bs("k1")), null));
+        l = miss("k1");
+
+        cache.fill(l, node(11, "v2"));
+        cache.fill(miss("k2"), node(5, "v"));
+        cache.invalidateGroup(GROUP_ID);
+        miss("k1");
+        miss("k2");
+
+        cache.removeGroup(GROUP_ID);
+        assertEquals(0, cache.size());
+        // the loading is discarded since the entry is removed
+        cache.fill(l, node(11, "v2"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLruEvict() {
+        cache = create(2, 60_000);
+        cache.fill(miss("k1"), node(1, "v1"));
+        cache.fill(miss("k2"), node(2, "v2"));
+        // access k1, so k2 is eldest
+        assertNotNull(cache.get(GROUP_ID, bs("k1")));
+        miss("k3");
+        assertEquals(2, cache.size());
+        assertEquals(List.of("k2"), removedWatches);
+        assertNotNull(cache.get(GROUP_ID, bs("k1")));
+        miss("k2");
+        assertEquals(List.of("k1", "k2", "k3", "k2"), addedWatches);
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        cache = create(100, 1);
+        KvNearCache.Loading l = miss("k1");
+        cache.fill(l, node(1, "v1"));
+        Thread.sleep(2);
+        miss("k1");
+        assertEquals(1, addedWatches.size());
+    }
+}
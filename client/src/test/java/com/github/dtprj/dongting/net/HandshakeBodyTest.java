@@ -42,6 +42,7 @@ public class HandshakeBodyTest {
                 .setConfig(DtPacket.Config.newBuilder()
                         .setMaxPacketSize(100)
                         .build())
+                .setFeatures(HandshakeBody.FEATURE_COMPRESS)
                 .build();
         byte[] bs = h.toByteArray();
         HandshakeBody callback = new HandshakeBody();
@@ -59,6 +60,7 @@ public class HandshakeBodyTest {
         Assertions.assertEquals(h.getProcessInfo().getUuid1(), result.processInfo.uuid1);
         Assertions.assertEquals(h.getProcessInfo().getUuid2(), result.processInfo.uuid2);
         Assertions.assertEquals(h.getConfig().getMaxPacketSize(), result.config.maxPacketSize);
+        Assertions.assertEquals(h.getFeatures(), result.features);
     }
 
     @Test
@@ -71,6 +73,7 @@ public class HandshakeBodyTest {
         h.processInfo.uuid2 = 9876543210L;
         h.config = new ConfigBody();
         h.config.maxPacketSize = 100;
+        h.features = HandshakeBody.FEATURE_COMPRESS;
 
         ByteBuffer buf = ByteBuffer.allocate(128);
         h.encode(buf);
@@ -85,5 +88,6 @@ public class HandshakeBodyTest {
         Assertions.assertEquals(h.processInfo.uuid1, result.getProcessInfo().getUuid1());
         Assertions.assertEquals(h.processInfo.uuid2, result.getProcessInfo().getUuid2());
         Assertions.assertEquals(h.config.maxPacketSize, result.getConfig().getMaxPacketSize());
+        Assertions.assertEquals(h.features, result.getFeatures());
     }
 }
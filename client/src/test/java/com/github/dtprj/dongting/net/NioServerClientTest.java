@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.net;
 
 import com.github.dtprj.dongting.buf.RefBuffer;
 import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.codec.EncodeContext;
 import com.github.dtprj.dongting.codec.RefBufferDecoderCallback;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.TestUtil;
@@ -76,6 +77,103 @@ public class NioServerClientTest {
         }
     }
 
+    private static class DirectBodyWritePacket extends WritePacket {
+        private final ByteBuffer body;
+
+        DirectBodyWritePacket(ByteBuffer body) {
+            this.body = body;
+        }
+
+        @Override
+        protected int calcActualBodySize() {
+            return body.remaining();
+        }
+
+        @Override
+        protected ByteBuffer bodyBufferForGather() {
+            return body;
+        }
+
+        @Override
+        protected boolean encodeBody(EncodeContext context, ByteBuffer dest) {
+            return ByteBufferWritePacket.encodeBody(context, body, dest);
+        }
+    }
+
+    @Test
+    public void gatherWriteTest() throws Exception {
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.port = 9000;
+        serverConfig.gatherWriteMinBodySize = 1000;
+        NioServer server = new NioServer(serverConfig);
+        // echo the body in a direct buffer, so the response is gathered too
+        server.register(12345, new NioServer.PingProcessor() {
+            @Override
+            public WritePacket process(ReadPacket<RefBuffer> packet, ReqContext reqContext) {
+                RefBuffer rb = packet.getBody();
+                ByteBuffer body = ByteBuffer.allocateDirect(rb == null ? 0 : rb.getBuffer().remaining());
+                if (rb != null) {
+                    body.put(rb.getBuffer());
+                    rb.release();
+                }
+                body.flip();
+                DirectBodyWritePacket resp = new DirectBodyWritePacket(body);
+                resp.respCode = CmdCodes.SUCCESS;
+                return resp;
+            }
+        });
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.hostPorts = Collections.singletonList(new HostPort("127.0.0.1", 9000));
+        clientConfig.gatherWriteMinBodySize = 1000;
+        NioClient client = new NioClient(clientConfig);
+        try {
+            server.start();
+            client.start();
+            client.waitStart(new DtTime(1, TimeUnit.SECONDS));
+            Random r = new Random();
+            int count = 100;
+            ByteBuffer[] bufs = new ByteBuffer[count];
+            CompletableFuture<?>[] futures = new CompletableFuture[count];
+            for (int i = 0; i < count; i++) {
+                // mix small packets (coalesced) and large packets (gathered), some larger than the write buffer
+                int len = r.nextBoolean() ? r.nextInt(1000) : r.nextInt(400 * 1024);
+                bufs[i] = ByteBuffer.allocate(len);
+                r.nextBytes(bufs[i].array());
+                WritePacket wf;
+                if (r.nextInt(4) == 0) {
+                    // heap body is not gathered
+                    wf = new ByteBufferWritePacket(bufs[i].duplicate());
+                } else {
+                    ByteBuffer direct = ByteBuffer.allocateDirect(len);
+                    direct.put(bufs[i].duplicate());
+                    direct.flip();
+                    wf = new DirectBodyWritePacket(direct);
+                }
+                wf.command = 12345;
+                CompletableFuture<ReadPacket<RefBuffer>> f = new CompletableFuture<>();
+                client.sendRequest(wf, ctx -> new RefBufferDecoderCallback(), new DtTime(5, TimeUnit.SECONDS),
+                        RpcCallback.fromFuture(f));
+                futures[i] = f;
+            }
+            for (int i = 0; i < count; i++) {
+                @SuppressWarnings("unchecked")
+                ReadPacket<RefBuffer> rf = (ReadPacket<RefBuffer>) futures[i].get(5, TimeUnit.SECONDS);
+                assertEquals(CmdCodes.SUCCESS, rf.respCode);
+                RefBuffer rc = rf.getBody();
+                if (bufs[i].remaining() == 0) {
+                    assertTrue(rc == null || rc.getBuffer().remaining() == 0);
+                } else {
+                    assertEquals(bufs[i], rc.getBuffer());
+                }
+                if (rc != null) {
+                    rc.release();
+                }
+            }
+        } finally {
+            TestUtil.stop(client, server);
+        }
+    }
+
     @Test
     public void testSeqProblem() throws Exception {
         NioServerConfig serverConfig = new NioServerConfig();
@@ -19,6 +19,7 @@ import com.github.dtprj.dongting.codec.DecoderCallbackCreator;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.TestUtil;
 import com.github.dtprj.dongting.net.CmdCodes;
+import com.github.dtprj.dongting.net.Commands;
 import com.github.dtprj.dongting.net.NetCodeException;
 import com.github.dtprj.dongting.net.NetException;
 import com.github.dtprj.dongting.net.NioClientConfig;
@@ -833,6 +834,55 @@ public class RaftClientTest {
 
     // ==================== Additional Scenarios (5 tests) ====================
 
+    @Test
+    public void testSendRequestLanes() {
+        RaftClientConfig config = new RaftClientConfig();
+        config.connectionsPerNode = 2;
+        config.bulkCommands = new int[]{Commands.DTKV_LIST};
+        config.bulkRequestBytes = 100;
+        client = new TestRaftClient(config);
+        client.start();
+        setupNodes();
+        assertEquals(9, client.getNioClient().getPeers().size());
+        Peer[] lanes = client.getNode(2).lanePeers;
+        assertEquals(3, lanes.length);
+        assertSame(client.getNode(2).peer, lanes[0]);
+        for (RaftNode n : new RaftNode[]{client.getNode(1), client.getNode(2), client.getNode(3)}) {
+            for (Peer p : n.lanePeers) {
+                p.status = PeerStatus.connected;
+            }
+        }
+        client.clientAddOrUpdateGroup(1, new int[]{1, 2, 3});
+        client.clientAddOrUpdateGroup(2, new int[]{1, 2, 3});
+        DtTime timeout = new DtTime(Tick.tick(3000), TimeUnit.MILLISECONDS);
+
+        client.sendRequest(1, new MockWritePacket(true), DecoderCallbackCreator.VOID_DECODE_CALLBACK_CREATOR,
+                timeout, (result, ex) -> {
+                });
+        assertSame(lanes[1], client.lastSendPeer);
+        client.sendRequest(2, new MockWritePacket(true), DecoderCallbackCreator.VOID_DECODE_CALLBACK_CREATOR,
+                timeout, (result, ex) -> {
+                });
+        assertSame(lanes[0], client.lastSendPeer);
+
+        MockWritePacket bulk = new MockWritePacket(true);
+        bulk.command = Commands.DTKV_LIST;
+        client.sendRequest(1, bulk, DecoderCallbackCreator.VOID_DECODE_CALLBACK_CREATOR, timeout, (result, ex) -> {
+        });
+        assertSame(lanes[2], client.lastSendPeer);
+        MockWritePacket large = new MockWritePacket(true, 100);
+        client.sendRequest(2, large, DecoderCallbackCreator.VOID_DECODE_CALLBACK_CREATOR, timeout, (result, ex) -> {
+        });
+        assertSame(lanes[2], client.lastSendPeer);
+
+        // fall back to the first connection if the lane is not available
+        lanes[1].status = PeerStatus.removed;
+        client.sendRequest(1, new MockWritePacket(true), DecoderCallbackCreator.VOID_DECODE_CALLBACK_CREATOR,
+                timeout, (result, ex) -> {
+                });
+        assertSame(lanes[0], client.lastSendPeer);
+    }
+
     @Test
     public void testFindLeaderFastFail() {
         client = new TestRaftClient();
@@ -1000,10 +1050,15 @@ public class RaftClientTest {
         List<CompletableFuture<QueryStatusResp>> queryResponses = new ArrayList<>();
         int queryCount;
         RpcCallback<?> lastSendCallback;
+        Peer lastSendPeer;
         int sendCount;
 
         private TestRaftClient() {
-            super(new RaftClientConfig(), createNioClientConfig());
+            this(new RaftClientConfig());
+        }
+
+        private TestRaftClient(RaftClientConfig config) {
+            super(config, createNioClientConfig());
             // disable biz executor so callbacks run in current thread
             getConfig().useBizExecutor = false;
         }
@@ -1038,6 +1093,7 @@ public class RaftClientTest {
                                           DtTime timeout, RpcCallback<T> callback) {
             sendCount++;
             lastSendCallback = callback;
+            lastSendPeer = peer;
         }
 
         @SuppressWarnings("unchecked")
@@ -1054,14 +1110,20 @@ public class RaftClientTest {
 
     private static class MockWritePacket extends WritePacket {
         private final boolean retryable;
+        private final int bodySize;
 
         MockWritePacket(boolean retryable) {
+            this(retryable, 0);
+        }
+
+        MockWritePacket(boolean retryable, int bodySize) {
             this.retryable = retryable;
+            this.bodySize = bodySize;
         }
 
         @Override
         protected int calcActualBodySize() {
-            return 0;
+            return bodySize;
         }
 
         @Override
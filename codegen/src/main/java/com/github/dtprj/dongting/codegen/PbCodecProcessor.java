@@ -0,0 +1,433 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generate XxxCodec for classes annotated by com.github.dtprj.dongting.codec.PbMessage. The generated code
+ * only use PbUtil/PbCallback, so this module has no dependency on dongting-client.
+ *
+ * @author huangli
+ */
+@SupportedAnnotationTypes(PbCodecProcessor.PB_MESSAGE)
+public class PbCodecProcessor extends AbstractProcessor {
+
+    static final String PB_MESSAGE = "com.github.dtprj.dongting.codec.PbMessage";
+    static final String PB_FIELD = "com.github.dtprj.dongting.codec.PbField";
+
+    private static final int MAX_FIELD_INDEX = 536870911; // PbUtil.MAX_SUPPORT_FIELD_INDEX
+
+    enum Kind {
+        INT32, INT64, FIX32, FIX64, BOOL, ASCII, UTF8, BYTES
+    }
+
+    static final class FieldModel {
+        final String name;
+        final int index;
+        final Kind kind;
+
+        FieldModel(String name, int index, Kind kind) {
+            this.name = name;
+            this.index = index;
+            this.kind = kind;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement a : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(a)) {
+                if (e.getKind() != ElementKind.CLASS) {
+                    error(e, "@PbMessage can only be used on class");
+                    continue;
+                }
+                TypeElement type = (TypeElement) e;
+                List<FieldModel> fields = buildFields(type);
+                if (fields != null) {
+                    writeCodec(type, fields);
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<FieldModel> buildFields(TypeElement type) {
+        boolean ok = true;
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            error(type, "@PbMessage class can't be private");
+            ok = false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@PbMessage class should be static if it is a nested class");
+            ok = false;
+        } else if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "@PbMessage class can't be local or anonymous class");
+            ok = false;
+        }
+        String pkg = packageOf(type);
+        ArrayList<FieldModel> list = new ArrayList<>();
+        TypeElement t = type;
+        while (t != null) {
+            for (Element member : t.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.FIELD) {
+                    continue;
+                }
+                AnnotationMirror am = findAnnotation(member, PB_FIELD);
+                if (am == null) {
+                    continue;
+                }
+                FieldModel f = buildField((VariableElement) member, am, t != type && !pkg.equals(packageOf(t)));
+                if (f == null) {
+                    ok = false;
+                    continue;
+                }
+                for (FieldModel exists : list) {
+                    if (exists.index == f.index) {
+                        error(member, "duplicate pb index " + f.index + " with field " + exists.name);
+                        ok = false;
+                    }
+                }
+                list.add(f);
+            }
+            TypeMirror superType = t.getSuperclass();
+            t = superType.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superType).asElement() : null;
+        }
+        if (!ok) {
+            return null;
+        }
+        list.sort(Comparator.comparingInt(f -> f.index));
+        return list;
+    }
+
+    private FieldModel buildField(VariableElement field, AnnotationMirror am, boolean otherPackage) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+                || modifiers.contains(Modifier.FINAL)) {
+            error(field, "@PbField field can't be private, static or final");
+            return null;
+        }
+        if (otherPackage && !modifiers.contains(Modifier.PUBLIC)) {
+            error(field, "@PbField field in super class of other package should be public");
+            return null;
+        }
+        int index = 0;
+        String typeName = "AUTO";
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> en : am.getElementValues().entrySet()) {
+            String key = en.getKey().getSimpleName().toString();
+            if ("value".equals(key)) {
+                index = (Integer) en.getValue().getValue();
+            } else if ("type".equals(key)) {
+                typeName = ((VariableElement) en.getValue().getValue()).getSimpleName().toString();
+            }
+        }
+        if (index <= 0 || index > MAX_FIELD_INDEX) {
+            error(field, "bad pb index: " + index);
+            return null;
+        }
+        String javaType = javaTypeOf(field.asType());
+        Kind kind;
+        if ("AUTO".equals(typeName)) {
+            switch (javaType) {
+                case "int":
+                    kind = Kind.INT32;
+                    break;
+                case "long":
+                    kind = Kind.INT64;
+                    break;
+                case "boolean":
+                    kind = Kind.BOOL;
+                    break;
+                case "java.lang.String":
+                    kind = Kind.UTF8;
+                    break;
+                case "byte[]":
+                    kind = Kind.BYTES;
+                    break;
+                default:
+                    error(field, "unsupported field type: " + javaType);
+                    return null;
+            }
+        } else {
+            kind = Kind.valueOf(typeName);
+            if (!javaType.equals(javaTypeOf(kind))) {
+                error(field, "pb type " + kind + " requires java type " + javaTypeOf(kind) + ", but is " + javaType);
+                return null;
+            }
+        }
+        return new FieldModel(field.getSimpleName().toString(), index, kind);
+    }
+
+    private static String javaTypeOf(TypeMirror tm) {
+        if (tm.getKind() == TypeKind.ARRAY) {
+            return javaTypeOf(((ArrayType) tm).getComponentType()) + "[]";
+        } else if (tm.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) tm).asElement()).getQualifiedName().toString();
+        } else {
+            return tm.toString();
+        }
+    }
+
+    private static String javaTypeOf(Kind kind) {
+        switch (kind) {
+            case INT32:
+            case FIX32:
+                return "int";
+            case INT64:
+            case FIX64:
+                return "long";
+            case BOOL:
+                return "boolean";
+            case ASCII:
+            case UTF8:
+                return "java.lang.String";
+            case BYTES:
+                return "byte[]";
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    private static AnnotationMirror findAnnotation(Element e, String annotationName) {
+        for (AnnotationMirror am : e.getAnnotationMirrors()) {
+            TypeElement at = (TypeElement) am.getAnnotationType().asElement();
+            if (at.getQualifiedName().contentEquals(annotationName)) {
+                return am;
+            }
+        }
+        return null;
+    }
+
+    private String packageOf(TypeElement type) {
+        PackageElement p = processingEnv.getElementUtils().getPackageOf(type);
+        return p.getQualifiedName().toString();
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        for (Element e : type.getEnclosedElements()) {
+            if (e.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) e).getParameters().isEmpty()
+                    && !e.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeCodec(TypeElement type, List<FieldModel> fields) {
+        String pkg = packageOf(type);
+        String qualifiedName = type.getQualifiedName().toString();
+        // name relative to the package, Outer.Inner for nested class
+        String typeName = pkg.isEmpty() ? qualifiedName : qualifiedName.substring(pkg.length() + 1);
+        String codecName = typeName.replace('.', '_') + "Codec";
+        String access = type.getModifiers().contains(Modifier.PUBLIC) ? "public " : "";
+
+        StringBuilder sb = new StringBuilder(4096);
+        if (!pkg.isEmpty()) {
+            sb.append("package ").append(pkg).append(";\n\n");
+        }
+        sb.append("import com.github.dtprj.dongting.codec.PbCallback;\n");
+        sb.append("import com.github.dtprj.dongting.codec.PbUtil;\n\n");
+        sb.append("import java.nio.ByteBuffer;\n\n");
+        sb.append("// generated by ").append(PbCodecProcessor.class.getName()).append(", do not edit\n");
+        sb.append(access).append("final class ").append(codecName).append(" {\n\n");
+        sb.append("    private ").append(codecName).append("() {\n    }\n\n");
+
+        // actualSize
+        sb.append("    public static int actualSize(").append(typeName).append(" m) {\n");
+        sb.append("        int size = 0;\n");
+        for (FieldModel f : fields) {
+            sb.append("        size += PbUtil.").append(sizeMethod(f.kind)).append('(').append(f.index)
+                    .append(", ").append(fieldValue(f)).append(");\n");
+        }
+        sb.append("        return size;\n    }\n\n");
+
+        // encode
+        sb.append("    public static void encode(ByteBuffer buf, ").append(typeName).append(" m) {\n");
+        for (FieldModel f : fields) {
+            sb.append("        PbUtil.").append(writeMethod(f.kind)).append("(buf, ").append(f.index)
+                    .append(", ").append(fieldValue(f)).append(");\n");
+        }
+        sb.append("    }\n\n");
+
+        // callback
+        sb.append("    public static final class Callback extends PbCallback<").append(typeName).append("> {\n");
+        sb.append("        private final ").append(typeName).append(" result;\n\n");
+        if (hasNoArgConstructor(type)) {
+            sb.append("        public Callback() {\n");
+            sb.append("            this(new ").append(typeName).append("());\n");
+            sb.append("        }\n\n");
+        }
+        sb.append("        public Callback(").append(typeName).append(" result) {\n");
+        sb.append("            this.result = result;\n");
+        sb.append("        }\n");
+
+        writeRead(sb, fields, "readVarNumber", "long value", Kind.INT32, Kind.INT64, Kind.BOOL);
+        writeRead(sb, fields, "readFix32", "int value", Kind.FIX32);
+        writeRead(sb, fields, "readFix64", "long value", Kind.FIX64);
+        writeRead(sb, fields, "readBytes", "ByteBuffer buf, int fieldLen, int currentPos",
+                Kind.ASCII, Kind.UTF8, Kind.BYTES);
+
+        sb.append("\n        @Override\n");
+        sb.append("        protected ").append(typeName).append(" getResult() {\n");
+        sb.append("            return result;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        String codecFullName = pkg.isEmpty() ? codecName : pkg + "." + codecName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(codecFullName, type);
+            try (Writer w = file.openWriter()) {
+                w.write(sb.toString());
+            }
+        } catch (IOException e) {
+            error(type, "write " + codecFullName + " fail: " + e);
+        }
+    }
+
+    private static void writeRead(StringBuilder sb, List<FieldModel> fields, String method, String params,
+                                  Kind... kinds) {
+        ArrayList<FieldModel> list = new ArrayList<>();
+        for (FieldModel f : fields) {
+            for (Kind k : kinds) {
+                if (f.kind == k) {
+                    list.add(f);
+                }
+            }
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        sb.append("\n        @Override\n");
+        sb.append("        public boolean ").append(method).append("(int index, ").append(params).append(") {\n");
+        sb.append("            switch (index) {\n");
+        for (FieldModel f : list) {
+            sb.append("                case ").append(f.index).append(":\n");
+            sb.append("                    result.").append(f.name).append(" = ").append(readValue(f.kind))
+                    .append(";\n");
+            sb.append("                    break;\n");
+        }
+        sb.append("            }\n");
+        sb.append("            return true;\n");
+        sb.append("        }\n");
+    }
+
+    private static String fieldValue(FieldModel f) {
+        return f.kind == Kind.BOOL ? "m." + f.name + " ? 1 : 0" : "m." + f.name;
+    }
+
+    private static String sizeMethod(Kind kind) {
+        switch (kind) {
+            case INT32:
+            case BOOL:
+                return "sizeOfInt32Field";
+            case INT64:
+                return "sizeOfInt64Field";
+            case FIX32:
+                return "sizeOfFix32Field";
+            case FIX64:
+                return "sizeOfFix64Field";
+            case ASCII:
+                return "sizeOfAscii";
+            case UTF8:
+                return "sizeOfUTF8";
+            case BYTES:
+                return "sizeOfBytesField";
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    private static String writeMethod(Kind kind) {
+        switch (kind) {
+            case INT32:
+            case BOOL:
+                return "writeInt32Field";
+            case INT64:
+                return "writeInt64Field";
+            case FIX32:
+                return "writeFix32Field";
+            case FIX64:
+                return "writeFix64Field";
+            case ASCII:
+                return "writeAsciiField";
+            case UTF8:
+                return "writeUTF8Field";
+            case BYTES:
+                return "writeBytesField";
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    private static String readValue(Kind kind) {
+        switch (kind) {
+            case INT32:
+                return "(int) value";
+            case BOOL:
+                return "value != 0";
+            case INT64:
+            case FIX32:
+            case FIX64:
+                return "value";
+            case ASCII:
+            case UTF8:
+                return "parseUTF8(buf, fieldLen, currentPos)";
+            case BYTES:
+                return "parseBytes(buf, fieldLen, currentPos)";
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    private void error(Element e, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.buf.DefaultPoolFactory;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbField;
+import com.github.dtprj.dongting.codec.PbFieldType;
+import com.github.dtprj.dongting.codec.PbMessage;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.raft.rpc.AdminAddGroupReq;
+import com.github.dtprj.dongting.raft.rpc.VoteReq;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class PbCodecProcessorTest {
+
+    // same layout as VoteReq
+    @PbMessage
+    static class VoteMsg {
+        @PbField(1)
+        int groupId;
+        @PbField(2)
+        int term;
+        @PbField(3)
+        int candidateId;
+        @PbField(value = 4, type = PbFieldType.FIX64)
+        long lastLogIndex;
+        @PbField(5)
+        int lastLogTerm;
+        @PbField(6)
+        boolean preVote;
+    }
+
+    // same layout as AdminAddGroupReq
+    @PbMessage
+    static class AddGroupMsg {
+        @PbField(1)
+        int groupId;
+        @PbField(value = 2, type = PbFieldType.ASCII)
+        String nodeIdOfMembers;
+        @PbField(value = 3, type = PbFieldType.ASCII)
+        String nodeIdOfObservers;
+    }
+
+    static class BaseMsg {
+        @PbField(1)
+        int id;
+    }
+
+    @PbMessage
+    static class AllTypesMsg extends BaseMsg {
+        // declare order is different from index order
+        @PbField(9)
+        byte[] bytes;
+        @PbField(2)
+        long int64;
+        @PbField(value = 3, type = PbFieldType.FIX32)
+        int fix32;
+        @PbField(value = 4, type = PbFieldType.FIX64)
+        long fix64;
+        @PbField(5)
+        boolean bool;
+        @PbField(value = 6, type = PbFieldType.ASCII)
+        String ascii;
+        @PbField(7)
+        String utf8;
+        // not encoded
+        int other;
+    }
+
+    private static DecodeContext createContext() {
+        DecodeContext c = new DecodeContext();
+        c.setHeapPool(new RefBufferFactory(new DefaultPoolFactory().createPool(new Timestamp(), false), 128));
+        return c;
+    }
+
+    private static <T> T parse(byte[] bytes, PbCallback<T> callback, Random r) {
+        PbParser p = new PbParser();
+        p.prepareNext(createContext(), callback, bytes.length);
+        Object result = null;
+        int pos = 0;
+        do {
+            // feed random length to test half packet
+            int len = r == null ? bytes.length : Math.min(r.nextInt(5) + 1, bytes.length - pos);
+            result = p.parse(ByteBuffer.wrap(bytes, pos, len));
+            pos += len;
+        } while (pos < bytes.length);
+        assertTrue(p.isFinished());
+        //noinspection unchecked
+        return (T) result;
+    }
+
+    private static byte[] encode(VoteMsg m) {
+        ByteBuffer buf = ByteBuffer.allocate(PbCodecProcessorTest_VoteMsgCodec.actualSize(m));
+        PbCodecProcessorTest_VoteMsgCodec.encode(buf, m);
+        assertEquals(buf.capacity(), buf.position());
+        return buf.array();
+    }
+
+    @Test
+    public void testVoteReq() {
+        testVoteReq(0, 0, 0, 0, 0, false);
+        testVoteReq(1, 2, 3, 4, 5, true);
+        testVoteReq(-1, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, 300, false);
+        testVoteReq(100000, 200000, 3, Long.MAX_VALUE, -5, true);
+    }
+
+    private void testVoteReq(int groupId, int term, int candidateId, long lastLogIndex, int lastLogTerm,
+                             boolean preVote) {
+        VoteReq req = new VoteReq();
+        req.groupId = groupId;
+        req.term = term;
+        req.candidateId = candidateId;
+        req.lastLogIndex = lastLogIndex;
+        req.lastLogTerm = lastLogTerm;
+        req.preVote = preVote;
+        ByteBuffer expectBuf = ByteBuffer.allocate(req.actualSize());
+        req.encode(expectBuf);
+        byte[] expect = expectBuf.array();
+
+        VoteMsg m = new VoteMsg();
+        m.groupId = groupId;
+        m.term = term;
+        m.candidateId = candidateId;
+        m.lastLogIndex = lastLogIndex;
+        m.lastLogTerm = lastLogTerm;
+        m.preVote = preVote;
+        assertArrayEquals(expect, encode(m));
+
+        VoteMsg m2 = parse(expect, new PbCodecProcessorTest_VoteMsgCodec.Callback(), new Random());
+        assertArrayEquals(expect, encode(m2));
+        assertEquals(preVote, m2.preVote);
+        assertEquals(lastLogIndex, m2.lastLogIndex);
+
+        VoteReq req2 = parse(encode(m), new VoteReq.Callback(), null);
+        assertEquals(groupId, req2.groupId);
+        assertEquals(term, req2.term);
+        assertEquals(candidateId, req2.candidateId);
+        assertEquals(lastLogIndex, req2.lastLogIndex);
+        assertEquals(lastLogTerm, req2.lastLogTerm);
+        assertEquals(preVote, req2.preVote);
+    }
+
+    @Test
+    public void testAdminAddGroupReq() {
+        testAdminAddGroupReq(0, null, null);
+        testAdminAddGroupReq(1, "1,2,3", null);
+        testAdminAddGroupReq(12345, "1,2,3", "4,5");
+    }
+
+    private void testAdminAddGroupReq(int groupId, String members, String observers) {
+        AdminAddGroupReq req = new AdminAddGroupReq();
+        req.groupId = groupId;
+        req.nodeIdOfMembers = members;
+        req.nodeIdOfObservers = observers;
+        ByteBuffer expectBuf = ByteBuffer.allocate(req.actualSize());
+        req.encode(expectBuf);
+        byte[] expect = expectBuf.array();
+
+        AddGroupMsg m = new AddGroupMsg();
+        m.groupId = groupId;
+        m.nodeIdOfMembers = members;
+        m.nodeIdOfObservers = observers;
+        assertEquals(expect.length, PbCodecProcessorTest_AddGroupMsgCodec.actualSize(m));
+        ByteBuffer buf = ByteBuffer.allocate(expect.length);
+        PbCodecProcessorTest_AddGroupMsgCodec.encode(buf, m);
+        assertArrayEquals(expect, buf.array());
+
+        AddGroupMsg m2 = parse(expect, new PbCodecProcessorTest_AddGroupMsgCodec.Callback(), new Random());
+        assertEquals(groupId, m2.groupId);
+        assertEquals(members, m2.nodeIdOfMembers);
+        assertEquals(observers, m2.nodeIdOfObservers);
+
+        AdminAddGroupReq req2 = parse(buf.array(), new AdminAddGroupReq(), null);
+        assertEquals(groupId, req2.groupId);
+        assertEquals(members, req2.nodeIdOfMembers);
+        assertEquals(observers, req2.nodeIdOfObservers);
+    }
+
+    @Test
+    public void testAllTypes() {
+        Random r = new Random();
+        for (int i = 0; i < 100; i++) {
+            AllTypesMsg m = new AllTypesMsg();
+            m.id = r.nextInt();
+            m.int64 = r.nextBoolean() ? r.nextLong() : r.nextInt(1000);
+            m.fix32 = r.nextInt();
+            m.fix64 = r.nextLong();
+            m.bool = r.nextBoolean();
+            m.ascii = r.nextBoolean() ? null : "ascii" + r.nextInt();
+            m.utf8 = r.nextBoolean() ? null : "中文" + r.nextInt();
+            if (r.nextBoolean()) {
+                m.bytes = new byte[r.nextInt(300) + 1];
+                r.nextBytes(m.bytes);
+            }
+            m.other = 100;
+
+            ByteBuffer buf = ByteBuffer.allocate(PbCodecProcessorTest_AllTypesMsgCodec.actualSize(m));
+            PbCodecProcessorTest_AllTypesMsgCodec.encode(buf, m);
+            assertEquals(buf.capacity(), buf.position());
+
+            AllTypesMsg m2 = parse(buf.array(), new PbCodecProcessorTest_AllTypesMsgCodec.Callback(), r);
+            assertEquals(m.id, m2.id);
+            assertEquals(m.int64, m2.int64);
+            assertEquals(m.fix32, m2.fix32);
+            assertEquals(m.fix64, m2.fix64);
+            assertEquals(m.bool, m2.bool);
+            assertEquals(m.ascii, m2.ascii);
+            assertEquals(m.utf8, m2.utf8);
+            assertArrayEquals(m.bytes, m2.bytes);
+            assertEquals(0, m2.other);
+        }
+
+        // reuse exists object
+        AllTypesMsg m = new AllTypesMsg();
+        m.id = 5;
+        ByteBuffer buf = ByteBuffer.allocate(PbCodecProcessorTest_AllTypesMsgCodec.actualSize(m));
+        PbCodecProcessorTest_AllTypesMsgCodec.encode(buf, m);
+        AllTypesMsg target = new AllTypesMsg();
+        AllTypesMsg m2 = parse(buf.array(), new PbCodecProcessorTest_AllTypesMsgCodec.Callback(target), null);
+        assertTrue(target == m2);
+        assertEquals(5, m2.id);
+        assertNull(m2.utf8);
+    }
+
+    @Test
+    public void testCompileError() throws Exception {
+        String src = "package test;\n" +
+                "import com.github.dtprj.dongting.codec.*;\n" +
+                "@PbMessage\n" +
+                "public class BadMsg {\n" +
+                "    @PbField(1) private int a;\n" +
+                "    @PbField(2) int b;\n" +
+                "    @PbField(2) int c;\n" +
+                "    @PbField(value = 3, type = PbFieldType.FIX64) int d;\n" +
+                "    @PbField(4) Object e;\n" +
+                "}\n";
+        List<Diagnostic<? extends JavaFileObject>> errors = compile("test.BadMsg", src);
+        assertEquals(4, errors.size(), errors.toString());
+        String s = errors.toString();
+        assertTrue(s.contains("can't be private"));
+        assertTrue(s.contains("duplicate pb index 2"));
+        assertTrue(s.contains("requires java type long"));
+        assertTrue(s.contains("unsupported field type: java.lang.Object"));
+
+        src = "package test;\n" +
+                "import com.github.dtprj.dongting.codec.*;\n" +
+                "@PbMessage\n" +
+                "public class GoodMsg {\n" +
+                "    @PbField(1) public int a;\n" +
+                "}\n";
+        assertTrue(compile("test.GoodMsg", src).isEmpty());
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(String className, String src) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return src;
+            }
+        };
+        Path out = Files.createTempDirectory("dtcodegen");
+        try {
+            String cp = new File(PbMessage.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            List<String> options = Arrays.asList("-d", out.toString(), "-s", out.toString(), "-cp", cp);
+            JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options,
+                    null, List.of(file));
+            task.setProcessors(List.of(new PbCodecProcessor()));
+            boolean success = task.call();
+            List<Diagnostic<? extends JavaFileObject>> errors = diagnostics.getDiagnostics().stream()
+                    .filter(d -> d.getKind() == Diagnostic.Kind.ERROR).collect(Collectors.toList());
+            assertEquals(success, errors.isEmpty());
+            if (success) {
+                String simpleName = className.substring(className.lastIndexOf('.') + 1);
+                assertTrue(Files.exists(out.resolve("test/" + simpleName + "Codec.java")));
+            } else {
+                assertFalse(Files.exists(out.resolve("test/BadMsgCodec.class")));
+            }
+            return errors;
+        } finally {
+            try (var s = Files.walk(out)) {
+                s.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
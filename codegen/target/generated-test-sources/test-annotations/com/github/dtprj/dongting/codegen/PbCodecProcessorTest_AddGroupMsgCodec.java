@@ -0,0 +1,67 @@
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbUtil;
+
+import java.nio.ByteBuffer;
+
+// generated by com.github.dtprj.dongting.codegen.PbCodecProcessor, do not edit
+final class PbCodecProcessorTest_AddGroupMsgCodec {
+
+    private PbCodecProcessorTest_AddGroupMsgCodec() {
+    }
+
+    public static int actualSize(PbCodecProcessorTest.AddGroupMsg m) {
+        int size = 0;
+        size += PbUtil.sizeOfInt32Field(1, m.groupId);
+        size += PbUtil.sizeOfAscii(2, m.nodeIdOfMembers);
+        size += PbUtil.sizeOfAscii(3, m.nodeIdOfObservers);
+        return size;
+    }
+
+    public static void encode(ByteBuffer buf, PbCodecProcessorTest.AddGroupMsg m) {
+        PbUtil.writeInt32Field(buf, 1, m.groupId);
+        PbUtil.writeAsciiField(buf, 2, m.nodeIdOfMembers);
+        PbUtil.writeAsciiField(buf, 3, m.nodeIdOfObservers);
+    }
+
+    public static final class Callback extends PbCallback<PbCodecProcessorTest.AddGroupMsg> {
+        private final PbCodecProcessorTest.AddGroupMsg result;
+
+        public Callback() {
+            this(new PbCodecProcessorTest.AddGroupMsg());
+        }
+
+        public Callback(PbCodecProcessorTest.AddGroupMsg result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean readVarNumber(int index, long value) {
+            switch (index) {
+                case 1:
+                    result.groupId = (int) value;
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {
+            switch (index) {
+                case 2:
+                    result.nodeIdOfMembers = parseUTF8(buf, fieldLen, currentPos);
+                    break;
+                case 3:
+                    result.nodeIdOfObservers = parseUTF8(buf, fieldLen, currentPos);
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        protected PbCodecProcessorTest.AddGroupMsg getResult() {
+            return result;
+        }
+    }
+}
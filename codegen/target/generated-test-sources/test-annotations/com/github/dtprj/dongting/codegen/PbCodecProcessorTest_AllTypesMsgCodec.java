@@ -0,0 +1,106 @@
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbUtil;
+
+import java.nio.ByteBuffer;
+
+// generated by com.github.dtprj.dongting.codegen.PbCodecProcessor, do not edit
+final class PbCodecProcessorTest_AllTypesMsgCodec {
+
+    private PbCodecProcessorTest_AllTypesMsgCodec() {
+    }
+
+    public static int actualSize(PbCodecProcessorTest.AllTypesMsg m) {
+        int size = 0;
+        size += PbUtil.sizeOfInt32Field(1, m.id);
+        size += PbUtil.sizeOfInt64Field(2, m.int64);
+        size += PbUtil.sizeOfFix32Field(3, m.fix32);
+        size += PbUtil.sizeOfFix64Field(4, m.fix64);
+        size += PbUtil.sizeOfInt32Field(5, m.bool ? 1 : 0);
+        size += PbUtil.sizeOfAscii(6, m.ascii);
+        size += PbUtil.sizeOfUTF8(7, m.utf8);
+        size += PbUtil.sizeOfBytesField(9, m.bytes);
+        return size;
+    }
+
+    public static void encode(ByteBuffer buf, PbCodecProcessorTest.AllTypesMsg m) {
+        PbUtil.writeInt32Field(buf, 1, m.id);
+        PbUtil.writeInt64Field(buf, 2, m.int64);
+        PbUtil.writeFix32Field(buf, 3, m.fix32);
+        PbUtil.writeFix64Field(buf, 4, m.fix64);
+        PbUtil.writeInt32Field(buf, 5, m.bool ? 1 : 0);
+        PbUtil.writeAsciiField(buf, 6, m.ascii);
+        PbUtil.writeUTF8Field(buf, 7, m.utf8);
+        PbUtil.writeBytesField(buf, 9, m.bytes);
+    }
+
+    public static final class Callback extends PbCallback<PbCodecProcessorTest.AllTypesMsg> {
+        private final PbCodecProcessorTest.AllTypesMsg result;
+
+        public Callback() {
+            this(new PbCodecProcessorTest.AllTypesMsg());
+        }
+
+        public Callback(PbCodecProcessorTest.AllTypesMsg result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean readVarNumber(int index, long value) {
+            switch (index) {
+                case 1:
+                    result.id = (int) value;
+                    break;
+                case 2:
+                    result.int64 = value;
+                    break;
+                case 5:
+                    result.bool = value != 0;
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean readFix32(int index, int value) {
+            switch (index) {
+                case 3:
+                    result.fix32 = value;
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean readFix64(int index, long value) {
+            switch (index) {
+                case 4:
+                    result.fix64 = value;
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {
+            switch (index) {
+                case 6:
+                    result.ascii = parseUTF8(buf, fieldLen, currentPos);
+                    break;
+                case 7:
+                    result.utf8 = parseUTF8(buf, fieldLen, currentPos);
+                    break;
+                case 9:
+                    result.bytes = parseBytes(buf, fieldLen, currentPos);
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        protected PbCodecProcessorTest.AllTypesMsg getResult() {
+            return result;
+        }
+    }
+}
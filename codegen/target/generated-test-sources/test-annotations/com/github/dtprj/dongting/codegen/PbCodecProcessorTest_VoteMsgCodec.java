@@ -0,0 +1,82 @@
+package com.github.dtprj.dongting.codegen;
+
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbUtil;
+
+import java.nio.ByteBuffer;
+
+// generated by com.github.dtprj.dongting.codegen.PbCodecProcessor, do not edit
+final class PbCodecProcessorTest_VoteMsgCodec {
+
+    private PbCodecProcessorTest_VoteMsgCodec() {
+    }
+
+    public static int actualSize(PbCodecProcessorTest.VoteMsg m) {
+        int size = 0;
+        size += PbUtil.sizeOfInt32Field(1, m.groupId);
+        size += PbUtil.sizeOfInt32Field(2, m.term);
+        size += PbUtil.sizeOfInt32Field(3, m.candidateId);
+        size += PbUtil.sizeOfFix64Field(4, m.lastLogIndex);
+        size += PbUtil.sizeOfInt32Field(5, m.lastLogTerm);
+        size += PbUtil.sizeOfInt32Field(6, m.preVote ? 1 : 0);
+        return size;
+    }
+
+    public static void encode(ByteBuffer buf, PbCodecProcessorTest.VoteMsg m) {
+        PbUtil.writeInt32Field(buf, 1, m.groupId);
+        PbUtil.writeInt32Field(buf, 2, m.term);
+        PbUtil.writeInt32Field(buf, 3, m.candidateId);
+        PbUtil.writeFix64Field(buf, 4, m.lastLogIndex);
+        PbUtil.writeInt32Field(buf, 5, m.lastLogTerm);
+        PbUtil.writeInt32Field(buf, 6, m.preVote ? 1 : 0);
+    }
+
+    public static final class Callback extends PbCallback<PbCodecProcessorTest.VoteMsg> {
+        private final PbCodecProcessorTest.VoteMsg result;
+
+        public Callback() {
+            this(new PbCodecProcessorTest.VoteMsg());
+        }
+
+        public Callback(PbCodecProcessorTest.VoteMsg result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean readVarNumber(int index, long value) {
+            switch (index) {
+                case 1:
+                    result.groupId = (int) value;
+                    break;
+                case 2:
+                    result.term = (int) value;
+                    break;
+                case 3:
+                    result.candidateId = (int) value;
+                    break;
+                case 5:
+                    result.lastLogTerm = (int) value;
+                    break;
+                case 6:
+                    result.preVote = value != 0;
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean readFix64(int index, long value) {
+            switch (index) {
+                case 4:
+                    result.lastLogIndex = value;
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        protected PbCodecProcessorTest.VoteMsg getResult() {
+            return result;
+        }
+    }
+}
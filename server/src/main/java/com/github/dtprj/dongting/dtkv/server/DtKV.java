@@ -26,8 +26,10 @@ import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.Pair;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.dtkv.KvCodes;
+import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.dtkv.KvReq;
 import com.github.dtprj.dongting.dtkv.KvResult;
+import com.github.dtprj.dongting.dtkv.KvScanResult;
 import com.github.dtprj.dongting.dtkv.WatchNotifyReq;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FiberGroup;
@@ -46,6 +48,7 @@ import com.github.dtprj.dongting.raft.server.RaftCallback;
 import com.github.dtprj.dongting.raft.server.RaftGroup;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 import com.github.dtprj.dongting.raft.server.RaftInput;
+import com.github.dtprj.dongting.raft.sm.ExecTask;
 import com.github.dtprj.dongting.raft.sm.Snapshot;
 import com.github.dtprj.dongting.raft.sm.SnapshotInfo;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
@@ -95,6 +98,8 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
 
     volatile KvStatus kvStatus;
     private EncodeStatus encodeStatus;
+    // for partitioned snapshot install
+    private EncodeStatus[] partitionEncodeStatus;
 
     final ServerWatchManager watchManager;
     final TtlManager ttlManager;
@@ -102,6 +107,9 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
     private RaftGroupImpl raftGroup;
 
     public DtKV(RaftGroupConfigEx config, KvServerConfig kvConfig) {
+        if (config.parallelApply && !supportParallelApply()) {
+            throw new IllegalArgumentException("DtKV not support parallelApply, groupId=" + config.groupId);
+        }
         this.mainFiberGroup = config.fiberGroup;
         this.config = config;
         this.useSeparateExecutor = kvConfig.useSeparateExecutor;
@@ -129,8 +137,11 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
                 ((NioServer) ci.channel.getOwner()).sendRequest(ci.channel, p, decoder, timeout, c);
             }
         };
-        this.ttlManager = new TtlManager(ts, this::expire);
+        this.ttlManager = new TtlManager(ts, this::expire, kvConfig);
         KvImpl kvImpl = new KvImpl(watchManager, ttlManager, ts, config.groupId, kvConfig);
+        if (config.maxDeltaSnapshots > 0) {
+            kvImpl.enableRemovedKeysLog(0);
+        }
         updateStatus(false, kvImpl);
     }
 
@@ -174,6 +185,68 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
         return f;
     }
 
+    /**
+     * exec the tasks in one call, and the watches are notified once after the batch. Each task is completed
+     * on its own, a failed task does not affect the results of others.
+     */
+    @Override
+    public FiberFuture<List<Object>> execBatch(List<ExecTask> tasks) {
+        FiberFuture<List<Object>> f = mainFiberGroup.newFuture("dtkv-execBatch");
+        if (useSeparateExecutor) {
+            // assert submit success
+            dtkvExecutor.submitTaskInFiberThread(() -> {
+                try {
+                    f.fireComplete(execBatch0(tasks));
+                } catch (Exception e) {
+                    f.fireCompleteExceptionally(e);
+                }
+            });
+        } else {
+            try {
+                f.complete(execBatch0(tasks));
+            } catch (Exception e) {
+                f.completeExceptionally(e);
+            }
+        }
+        return f;
+    }
+
+    private List<Object> execBatch0(List<ExecTask> tasks) {
+        KvImpl kv = kvStatus.kvImpl;
+        ArrayList<Object> results = new ArrayList<>(tasks.size());
+        kv.beginBatch();
+        try {
+            for (int i = 0, size = tasks.size(); i < size; i++) {
+                ExecTask t = tasks.get(i);
+                try {
+                    results.add(exec0(t.index, t.leaderCreateTimeMillis, t.localCreateNanos, t.input));
+                } catch (Exception e) {
+                    results.add(e);
+                }
+            }
+        } finally {
+            kv.endBatch();
+        }
+        return results;
+    }
+
+    /**
+     * KvImpl assumes a single writer, so all the tasks are in lane 0 and executed one by one. DtKV gains nothing
+     * from parallel apply, so the constructor rejects RaftGroupConfig.parallelApply, see supportParallelApply().
+     */
+    @Override
+    public int applyLane(RaftInput input) {
+        return 0;
+    }
+
+    /**
+     * A subclass which overrides applyLane to partition the tasks should return true, otherwise the constructor
+     * throws IllegalArgumentException if RaftGroupConfig.parallelApply is true. Called in the constructor.
+     */
+    protected boolean supportParallelApply() {
+        return false;
+    }
+
     private Object exec0(long index, long leaderCreateTimeMillis, long localCreateNanos, RaftInput input) {
         if (kvStatus.installSnapshot) {
             throw new DtBugException("dtkv is install snapshot");
@@ -225,6 +298,14 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
      * @see com.github.dtprj.dongting.raft.server.RaftGroup#isLeaseReadValid(Timestamp, DtTime)
      */
     public KvResult get(ByteArray key) {
+        return toHeap(getRetained(key));
+    }
+
+    /**
+     * Same as get, but the off heap value of the result is not copied, it's retained and the caller should
+     * release it by KvImpl.releaseValue().
+     */
+    KvResult getRetained(ByteArray key) {
         KvStatus kvStatus = this.kvStatus;
         if (kvStatus.installSnapshot) {
             return new KvResult(KvCodes.INSTALL_SNAPSHOT);
@@ -241,6 +322,14 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
      * @see com.github.dtprj.dongting.raft.server.RaftGroup#isLeaseReadValid(Timestamp, DtTime)
      */
     public Pair<Integer, List<KvResult>> batchGet(List<byte[]> keys) {
+        return toHeap(batchGetRetained(keys));
+    }
+
+    /**
+     * Same as batchGet, but the off heap values of the result are not copied, they are retained and the caller
+     * should release them by KvImpl.releaseValues().
+     */
+    Pair<Integer, List<KvResult>> batchGetRetained(List<byte[]> keys) {
         KvStatus kvStatus = this.kvStatus;
         if (kvStatus.installSnapshot) {
             return new Pair<>(KvCodes.INSTALL_SNAPSHOT, null);
@@ -257,6 +346,14 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
      * @see com.github.dtprj.dongting.raft.server.RaftGroup#isLeaseReadValid(Timestamp, DtTime)
      */
     public Pair<Integer, List<KvResult>> list(ByteArray key) {
+        return toHeap(listRetained(key));
+    }
+
+    /**
+     * Same as list, but the off heap values of the result are not copied, they are retained and the caller
+     * should release them by KvImpl.releaseValues().
+     */
+    Pair<Integer, List<KvResult>> listRetained(ByteArray key) {
         KvStatus kvStatus = this.kvStatus;
         if (kvStatus.installSnapshot) {
             return new Pair<>(KvCodes.INSTALL_SNAPSHOT, null);
@@ -264,13 +361,69 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
         return kvStatus.kvImpl.list(key);
     }
 
+    /**
+     * raft lease read, can read in any threads.
+     * <p>
+     * Scan nodes in key order, the startKey is inclusive and the endKey is exclusive.
+     *
+     * @see com.github.dtprj.dongting.raft.server.RaftGroup#isLeaseReadValid(Timestamp, DtTime)
+     */
+    public Pair<Integer, KvScanResult> scan(ByteArray startKey, ByteArray endKey, int limit) {
+        Pair<Integer, KvScanResult> p = scanRetained(startKey, endKey, limit);
+        KvScanResult sr = p.getRight();
+        if (sr == null || !KvImpl.hasOffHeapValue(sr.results)) {
+            return p;
+        }
+        return new Pair<>(p.getLeft(), new KvScanResult(toHeap(sr.results), sr.nextKey));
+    }
+
+    /**
+     * Same as scan, but the off heap values of the result are not copied, they are retained and the caller
+     * should release them by KvImpl.releaseValues().
+     */
+    Pair<Integer, KvScanResult> scanRetained(ByteArray startKey, ByteArray endKey, int limit) {
+        KvStatus kvStatus = this.kvStatus;
+        if (kvStatus.installSnapshot) {
+            return new Pair<>(KvCodes.INSTALL_SNAPSHOT, null);
+        }
+        return kvStatus.kvImpl.scan(startKey, endKey, limit);
+    }
+
+    // copy the off heap value to heap and release it, so the public api always returns the value in data field
+    private static KvResult toHeap(KvResult r) {
+        KvNode n = r.getNode();
+        if (!(n instanceof KvNodeEx) || ((KvNodeEx) n).offHeapValue == null) {
+            return r;
+        }
+        KvNodeEx nx = (KvNodeEx) n;
+        KvNode copy = new KvNode(nx.createIndex, nx.createTime, nx.updateIndex, nx.updateTime, nx.flag,
+                nx.readData());
+        nx.offHeapValue.release();
+        return new KvResult(r.getBizCode(), copy, r.getKeyInDir());
+    }
+
+    private static List<KvResult> toHeap(List<KvResult> list) {
+        ArrayList<KvResult> r = new ArrayList<>(list.size());
+        for (int i = 0, s = list.size(); i < s; i++) {
+            r.add(toHeap(list.get(i)));
+        }
+        return r;
+    }
+
+    private static Pair<Integer, List<KvResult>> toHeap(Pair<Integer, List<KvResult>> p) {
+        if (!KvImpl.hasOffHeapValue(p.getRight())) {
+            return p;
+        }
+        return new Pair<>(p.getLeft(), toHeap(p.getRight()));
+    }
+
     @Override
     public FiberFuture<Void> installSnapshot(long lastIncludeIndex, int lastIncludeTerm, long offset,
                                              boolean done, ByteBuffer data) {
         FiberFuture<Void> f = mainFiberGroup.newFuture("dtkv-install-snapshot");
         dtkvExecutor.submitTaskInFiberThread(f, () -> {
             try {
-                install0(offset, done, data);
+                install0(lastIncludeIndex, offset, done, data);
                 f.fireComplete(null);
             } catch (Exception ex) {
                 f.fireCompleteExceptionally(ex);
@@ -279,30 +432,84 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
         return f;
     }
 
-    private void install0(long offset, boolean done, ByteBuffer data) {
+    private void install0(long lastIncludeIndex, long offset, boolean done, ByteBuffer data) {
         if (offset == 0) {
             watchManager.reset();
+            if (kvStatus != null) {
+                // the reads in other threads get INSTALL_SNAPSHOT after this
+                kvStatus.kvImpl.destroy();
+            }
             KvImpl kvImpl = new KvImpl(watchManager, ttlManager, ts, config.groupId, kvConfig);
+            if (config.maxDeltaSnapshots > 0) {
+                kvImpl.enableRemovedKeysLog(lastIncludeIndex);
+            }
             updateStatus(true, kvImpl);
             encodeStatus = new EncodeStatus();
+            partitionEncodeStatus = null;
         } else if (!kvStatus.installSnapshot) {
             throw new DtBugException("current status is not install snapshot");
         }
         KvImpl kvImpl = kvStatus.kvImpl;
+        installData(kvImpl, encodeStatus, data);
+        if (done) {
+            updateStatus(false, kvImpl);
+            encodeStatus = null;
+            partitionEncodeStatus = null;
+        }
+    }
+
+    private void installData(KvImpl kvImpl, EncodeStatus encodeStatus, ByteBuffer data) {
         if (data != null && data.hasRemaining()) {
             while (data.hasRemaining()) {
                 if (encodeStatus.readFromBuffer(data)) {
-                    kvImpl.installSnapshotPut(encodeStatus);
+                    if ((encodeStatus.flag & EncodeStatus.FLAG_REMOVED_MASK) != 0) {
+                        // from delta snapshot
+                        kvImpl.installSnapshotRemove(encodeStatus);
+                    } else {
+                        kvImpl.installSnapshotPut(encodeStatus);
+                    }
                     encodeStatus.reset();
                 } else {
                     break;
                 }
             }
         }
-        if (done) {
-            updateStatus(false, kvImpl);
-            encodeStatus = null;
-        }
+    }
+
+    @Override
+    public boolean supportConcurrentPartitionInstall() {
+        return true;
+    }
+
+    @Override
+    public FiberFuture<Void> installSnapshotPartition(int partition, long lastIncludeIndex, int lastIncludeTerm,
+                                                      long offset, ByteBuffer data) {
+        FiberFuture<Void> f = mainFiberGroup.newFuture("dtkv-install-snapshot-partition");
+        dtkvExecutor.submitTaskInFiberThread(f, () -> {
+            try {
+                if (!kvStatus.installSnapshot) {
+                    throw new DtBugException("current status is not install snapshot");
+                }
+                if (partitionEncodeStatus == null || partitionEncodeStatus.length <= partition) {
+                    EncodeStatus[] arr = new EncodeStatus[partition + 1];
+                    if (partitionEncodeStatus != null) {
+                        System.arraycopy(partitionEncodeStatus, 0, arr, 0, partitionEncodeStatus.length);
+                    }
+                    partitionEncodeStatus = arr;
+                }
+                EncodeStatus es = partitionEncodeStatus[partition];
+                if (es == null) {
+                    es = new EncodeStatus();
+                    partitionEncodeStatus[partition] = es;
+                }
+                // the partitions are independent subtrees, so the chunks of different partitions can be interleaved
+                installData(kvStatus.kvImpl, es, data);
+                f.fireComplete(null);
+            } catch (Exception ex) {
+                f.fireCompleteExceptionally(ex);
+            }
+        });
+        return f;
     }
 
     @Override
@@ -317,7 +524,8 @@ public class DtKV extends AbstractLifeCircle implements StateMachine {
         dtkvExecutor.submitTaskInFiberThread(f, () -> {
             try {
                 log.info("take snapshot. lastIncludedIndex={}, lastIncludedTerm={}", si.lastIncludedIndex, si.lastIncludedTerm);
-                KvSnapshot s = new KvSnapshot(config.groupId, si, currentKvStatus.kvImpl, cancel, dtkvExecutor);
+                KvSnapshot s = new KvSnapshot(config.groupId, si, currentKvStatus.kvImpl, cancel, dtkvExecutor,
+                        kvConfig.snapshotPartitions);
                 f.fireComplete(s);
             } catch (Exception ex) {
                 f.fireCompleteExceptionally(ex);
@@ -23,6 +23,9 @@ import java.nio.ByteBuffer;
  * @author huangli
  */
 class EncodeStatus {
+    // not a KvNode flag, marks a remove record in delta snapshot
+    static final int FLAG_REMOVED_MASK = 0x10000;
+
     byte[] keyBytes;
     byte[] valueBytes;
     long createIndex;
@@ -0,0 +1,174 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.common.ByteArray;
+
+/**
+ * Open addressing hash table (linear probing) from key to KvNodeHolder, the key is KvNodeHolder.key so only
+ * the holder is stored. The cached hash codes and holders are stored in two parallel arrays, so there is no
+ * entry object per key like HashMap.Node. Removal use backward shift, no tombstone.
+ * <p>
+ * Not thread safe.
+ *
+ * @author huangli
+ */
+final class KvHashTable {
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+
+    // 0 means empty slot, ByteArray.hashCode() never return 0
+    private int[] hashes;
+    private KvNodeHolder[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    KvHashTable(int initCapacity, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("loadFactor should in (0, 1): " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        int cap = 16;
+        while (cap < MAX_CAPACITY && cap * loadFactor < initCapacity) {
+            cap <<= 1;
+        }
+        init(cap);
+    }
+
+    private void init(int cap) {
+        this.hashes = new int[cap];
+        this.values = new KvNodeHolder[cap];
+        this.mask = cap - 1;
+        this.threshold = cap == MAX_CAPACITY ? Integer.MAX_VALUE : (int) (cap * loadFactor);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(ByteArray key, int h) {
+        int[] hashes = this.hashes;
+        KvNodeHolder[] values = this.values;
+        int mask = this.mask;
+        int i = spread(h) & mask;
+        while (true) {
+            int x = hashes[i];
+            if (x == 0) {
+                return -1;
+            }
+            if (x == h) {
+                ByteArray k = values[i].key;
+                if (k == key || k.equals(key)) {
+                    return i;
+                }
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public KvNodeHolder get(ByteArray key) {
+        int i = indexOf(key, key.hashCode());
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * the key must equals to value.key.
+     */
+    public KvNodeHolder put(ByteArray key, KvNodeHolder value) {
+        int h = key.hashCode();
+        int i = spread(h) & mask;
+        while (true) {
+            int x = hashes[i];
+            if (x == 0) {
+                break;
+            }
+            if (x == h) {
+                KvNodeHolder old = values[i];
+                if (old.key == key || old.key.equals(key)) {
+                    values[i] = value;
+                    return old;
+                }
+            }
+            i = (i + 1) & mask;
+        }
+        hashes[i] = h;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    public KvNodeHolder remove(ByteArray key) {
+        int i = indexOf(key, key.hashCode());
+        if (i < 0) {
+            return null;
+        }
+        KvNodeHolder old = values[i];
+        size--;
+        // backward shift deletion
+        int[] hashes = this.hashes;
+        KvNodeHolder[] values = this.values;
+        int mask = this.mask;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int h = hashes[j];
+            if (h == 0) {
+                break;
+            }
+            int home = spread(h) & mask;
+            // move j to i if home of j is not in (i, j] (cyclic)
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                hashes[i] = h;
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        hashes[i] = 0;
+        values[i] = null;
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        int[] oldHashes = this.hashes;
+        KvNodeHolder[] oldValues = this.values;
+        if (oldHashes.length == MAX_CAPACITY) {
+            return;
+        }
+        init(oldHashes.length << 1);
+        int[] hashes = this.hashes;
+        KvNodeHolder[] values = this.values;
+        int mask = this.mask;
+        for (int k = 0; k < oldHashes.length; k++) {
+            int h = oldHashes[k];
+            if (h != 0) {
+                int i = spread(h) & mask;
+                while (hashes[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                hashes[i] = h;
+                values[i] = oldValues[k];
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.github.dtprj.dongting.dtkv.KvClientConfig;
 import com.github.dtprj.dongting.dtkv.KvCodes;
 import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.dtkv.KvResult;
+import com.github.dtprj.dongting.dtkv.KvScanResult;
 import com.github.dtprj.dongting.log.BugLog;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
@@ -35,7 +36,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -43,6 +49,9 @@ import java.util.function.Supplier;
  * If readInDtKvExecutor is true (default), all read/write operations run in same thread and not need lock.
  * If readInDtKvExecutor is false, there are multiple read threads and one write thread, but the writer
  * do not need to acquire lock if it only read data or update fields that read threads will not access.
+ * If lockFreeRead is also true, the readers use optimistic read of StampedLock and retry if the writer
+ * modified data concurrently, the KvNodeEx is immutable (except the children list) so a reader that validated
+ * its stamp always see a consistent version, and the writer never wait for readers.
  *
  * @author huangli
  */
@@ -50,6 +59,10 @@ class KvImpl {
     private static final DtLog log = DtLogs.getLogger(KvImpl.class);
 
     private static final int GC_ITEMS = 500;
+    // back off of the optimistic reader, spin first, then yield, then park
+    private static final int OPTIMISTIC_READ_SPIN_TIMES = 8;
+    private static final int OPTIMISTIC_READ_YIELD_TIMES = 16;
+    private static final long OPTIMISTIC_READ_PARK_NANOS = 10_000;
 
     // only update int unit test
     int maxKeySize = KvClientConfig.MAX_KEY_SIZE;
@@ -57,13 +70,20 @@ class KvImpl {
     int gcItems = GC_ITEMS;
 
     private final int groupId;
+    private final int maxScanItems;
+    private final int offHeapValueThreshold;
 
     final KvMap map;
 
     // for fast access root dir
     final KvNodeHolder root;
 
-    private final ReentrantReadWriteLock readWriteLock;
+    // null if readInDtKvExecutor is true
+    private final Lock writeLock;
+    // null if readInDtKvExecutor is true or in lock free read mode
+    private final Lock readLock;
+    // only used in lock free read mode, readers use optimistic read and never block the writer
+    private final StampedLock stampedLock;
 
     private final Timestamp ts;
 
@@ -73,21 +93,63 @@ class KvImpl {
 
     private final ServerWatchManager watchManager;
     private final IndexedQueue<KvNodeHolder> updateQueue = new IndexedQueue<>(32);
+    // true between beginBatch and endBatch, afterUpdate is deferred to endBatch
+    private boolean inBatch;
+
+    // keys removed after removedKeysStartIndex, in remove order, used by delta snapshot. null if not enabled.
+    private IndexedQueue<RemovedKey> removedKeys;
+    private volatile long removedKeysStartIndex;
+    // count of the keys discarded from the head of removedKeys, so readers can keep absolute positions
+    private long removedKeysDiscarded;
+    private final int maxRemovedKeys;
+
+    static final class RemovedKey {
+        final long index;
+        final ByteArray key;
+
+        RemovedKey(long index, ByteArray key) {
+            this.index = index;
+            this.key = key;
+        }
+    }
 
     private final TtlManager ttlManager;
 
+    // set when this KvImpl is replaced by snapshot install, readers get INSTALL_SNAPSHOT after that
+    private volatile boolean destroyed;
+    // the off heap values are released after destroyed and all open snapshots are closed
+    private boolean valuesReleased;
+
     public KvImpl(ServerWatchManager watchManager, TtlManager ttlManager, Timestamp ts, int groupId,
                   KvServerConfig kvServerConfig) {
         this.watchManager = watchManager;
         this.ts = ts;
         this.groupId = groupId;
-        this.map = new KvMap(kvServerConfig.initMapCapacity, kvServerConfig.loadFactor);
+        this.maxScanItems = kvServerConfig.maxScanItems;
+        this.offHeapValueThreshold = kvServerConfig.offHeapValueThreshold;
+        this.maxRemovedKeys = kvServerConfig.maxRemovedKeys;
+        this.map = new KvMap(kvServerConfig.initMapCapacity, kvServerConfig.loadFactor,
+                kvServerConfig.orderedIndex, !kvServerConfig.readInDtKvExecutor && kvServerConfig.lockFreeRead,
+                kvServerConfig.openAddressingMap);
         KvNodeEx n = new KvNodeEx(0, 0, 0, 0,
                 KvNode.FLAG_DIR_MASK, null);
         this.root = new KvNodeHolder(ByteArray.EMPTY, ByteArray.EMPTY, n, null);
         this.map.put(ByteArray.EMPTY, root);
         this.ttlManager = ttlManager;
-        this.readWriteLock = kvServerConfig.readInDtKvExecutor ? null : new ReentrantReadWriteLock();
+        if (kvServerConfig.readInDtKvExecutor) {
+            this.writeLock = null;
+            this.readLock = null;
+            this.stampedLock = null;
+        } else if (kvServerConfig.lockFreeRead) {
+            this.stampedLock = new StampedLock();
+            this.writeLock = stampedLock.asWriteLock();
+            this.readLock = null;
+        } else {
+            ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+            this.writeLock = rwLock.writeLock();
+            this.readLock = rwLock.readLock();
+            this.stampedLock = null;
+        }
     }
 
     static KvResult checkExistNode(KvNodeHolder h, KvImpl.OpContext ctx) {
@@ -221,6 +283,34 @@ class KvImpl {
         }
     }
 
+    private void lockWrite() {
+        if (writeLock != null) {
+            writeLock.lock();
+        }
+    }
+
+    private void unlockWriteAndFireUpdate() {
+        if (writeLock != null) {
+            writeLock.unlock();
+        }
+        if (!inBatch) {
+            afterUpdate();
+        }
+    }
+
+    /**
+     * Begin a batch of write operations, the watches are notified once in endBatch. The write lock is still
+     * acquired and released for each write operation, so the lock free readers are not blocked by the batch.
+     */
+    void beginBatch() {
+        inBatch = true;
+    }
+
+    void endBatch() {
+        inBatch = false;
+        afterUpdate();
+    }
+
     int checkKey(ByteArray key, boolean allowEmpty, boolean fullCheck) {
         if (key != null && key.isSlice()) {
             // slice key is not allowed
@@ -230,28 +320,89 @@ class KvImpl {
         return KvClient.checkKey(bs, maxKeySize, allowEmpty, fullCheck);
     }
 
+    /**
+     * Run the read action under the read lock, or in lock free mode, and retain the off heap values of the
+     * result by retainFunc (null if no off heap values). If this KvImpl is destroyed, return destroyedResult.
+     * <p>
+     * In lock free mode, the action may see inconsistent data if a writer is running, in this case the result
+     * is dropped and the action is retried (the action should return null if it finds the data is torn).
+     * The reader never takes the read lock, so the writer never waits for readers, it spins, yields and then
+     * parks between the retries. The action receives the optimistic stamp (0 if it runs under the read lock),
+     * an action that walks a linked structure must validate the stamp periodically, since a torn list may be
+     * cyclic. The values are retained after the stamp is validated, the retain fails if the version is dropped
+     * by the writer after that, then retry.
+     */
+    private <T> T read(LongFunction<T> action, Predicate<T> retainFunc, T destroyedResult) {
+        StampedLock sl = stampedLock;
+        if (sl != null) {
+            for (int i = 0; ; i++) {
+                if (destroyed) {
+                    return destroyedResult;
+                }
+                long stamp = sl.tryOptimisticRead();
+                if (stamp != 0) {
+                    try {
+                        T r = action.apply(stamp);
+                        if (r != null && sl.validate(stamp)) {
+                            if (retainFunc == null || retainFunc.test(r)) {
+                                return r;
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        if (sl.validate(stamp)) {
+                            throw e;
+                        }
+                        // torn read, retry
+                    }
+                }
+                if (i < OPTIMISTIC_READ_SPIN_TIMES) {
+                    Thread.onSpinWait();
+                } else if (i < OPTIMISTIC_READ_YIELD_TIMES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(OPTIMISTIC_READ_PARK_NANOS);
+                }
+            }
+        }
+        Lock readLock = this.readLock;
+        if (readLock != null) {
+            readLock.lock();
+        }
+        try {
+            return readInLock(action, retainFunc, destroyedResult);
+        } finally {
+            if (readLock != null) {
+                readLock.unlock();
+            }
+        }
+    }
+
+    private <T> T readInLock(LongFunction<T> action, Predicate<T> retainFunc, T destroyedResult) {
+        if (destroyed) {
+            return destroyedResult;
+        }
+        T r = action.apply(0);
+        if (retainFunc != null && !retainFunc.test(r)) {
+            BugLog.logAndThrow("off heap value released");
+        }
+        return r;
+    }
+
     /**
      * This method may be called in other threads.
      * <p>
      * For simplification, this method reads the latest snapshot, rather than the one specified by
      * the raftIndex parameter, and this does not violate linearizability.
+     * <p>
+     * The off heap values of the result are retained, the caller should release them by releaseValue(s).
      */
     public KvResult get(ByteArray key) {
         int ck = checkKey(key, true, false);
         if (ck != KvCodes.SUCCESS) {
             return new KvResult(ck);
         }
-        ReentrantReadWriteLock readWriteLock = this.readWriteLock;
-        if (readWriteLock != null) {
-            readWriteLock.readLock().lock();
-        }
-        try {
-            return get0(key);
-        } finally {
-            if (readWriteLock != null) {
-                readWriteLock.readLock().unlock();
-            }
-        }
+        return read(stamp -> get0(key), offHeapValueThreshold > 0 ? KvImpl::retainValue : null,
+                new KvResult(KvCodes.INSTALL_SNAPSHOT));
     }
 
     private KvResult get0(ByteArray key) {
@@ -276,30 +427,28 @@ class KvImpl {
      * <p>
      * For simplification, this method reads the latest snapshot, rather than the one specified by
      * the raftIndex parameter, and this does not violate linearizability.
+     * <p>
+     * The off heap values of the result are retained, the caller should release them by releaseValue(s).
      */
     public Pair<Integer, List<KvResult>> batchGet(List<byte[]> keys) {
         if (keys == null || keys.isEmpty()) {
             return new Pair<>(KvCodes.INVALID_KEY, null);
         }
+        return read(stamp -> batchGet0(keys), offHeapValueThreshold > 0 ? p -> retainValues(p.getRight()) : null,
+                new Pair<>(KvCodes.INSTALL_SNAPSHOT, null));
+    }
+
+    private Pair<Integer, List<KvResult>> batchGet0(List<byte[]> keys) {
         int s = keys.size();
         ArrayList<KvResult> list = new ArrayList<>(s);
-        if (readWriteLock != null) {
-            readWriteLock.readLock().lock();
-        }
-        try {
-            for (int i = 0; i < s; i++) {
-                byte[] bs = keys.get(i);
-                ByteArray key = bs == null ? null : new ByteArray(bs);
-                int ck = checkKey(key, false, false);
-                if (ck != KvCodes.SUCCESS) {
-                    list.add(new KvResult(ck));
-                } else {
-                    list.add(get0(key));
-                }
-            }
-        } finally {
-            if (readWriteLock != null) {
-                readWriteLock.readLock().unlock();
+        for (int i = 0; i < s; i++) {
+            byte[] bs = keys.get(i);
+            ByteArray key = bs == null ? null : new ByteArray(bs);
+            int ck = checkKey(key, false, false);
+            if (ck != KvCodes.SUCCESS) {
+                list.add(new KvResult(ck));
+            } else {
+                list.add(get0(key));
             }
         }
         return new Pair<>(KvCodes.SUCCESS, list);
@@ -310,39 +459,136 @@ class KvImpl {
      * <p>
      * For simplification, this method reads the latest snapshot, rather than the one specified by
      * the raftIndex parameter, and this does not violate linearizability.
+     * <p>
+     * The off heap values of the result are retained, the caller should release them by releaseValue(s).
      */
     public Pair<Integer, List<KvResult>> list(ByteArray key) {
         int ck = checkKey(key, true, false);
         if (ck != KvCodes.SUCCESS) {
             return new Pair<>(ck, null);
         }
-        if (readWriteLock != null) {
-            readWriteLock.readLock().lock();
+        return read(stamp -> list0(key, stamp), offHeapValueThreshold > 0 ? p -> retainValues(p.getRight()) : null,
+                new Pair<>(KvCodes.INSTALL_SNAPSHOT, null));
+    }
+
+    // return null if the children list is modified by writer concurrently (only in lock free read mode)
+    private Pair<Integer, List<KvResult>> list0(ByteArray key, long stamp) {
+        KvNodeHolder h;
+        if (key == null || key.getData().length == 0) {
+            h = root;
+        } else {
+            h = map.get(key);
+        }
+        if (h == null) {
+            return new Pair<>(KvCodes.NOT_FOUND, null);
         }
-        try {
-            KvNodeHolder h;
-            if (key == null || key.getData().length == 0) {
-                h = root;
-            } else {
-                h = map.get(key);
+        KvNodeEx kvNode = h.latest;
+        if (kvNode.removed) {
+            return new Pair<>(KvCodes.NOT_FOUND, null);
+        }
+        if ((kvNode.flag & KvNode.FLAG_DIR_MASK) == 0) {
+            return new Pair<>(KvCodes.PARENT_NOT_DIR, null);
+        }
+        ArrayList<KvResult> list = kvNode.list(stamp == 0 ? null : stampedLock, stamp);
+        return list == null ? null : new Pair<>(KvCodes.SUCCESS, list);
+    }
+
+    /**
+     * This method may be called in other threads.
+     * <p>
+     * Scan nodes in key order, the startKey is inclusive and the endKey is exclusive. The nodes are read from the
+     * latest version, and the removed nodes (kept for open snapshots) are skipped.
+     * <p>
+     * The off heap values of the result are retained, the caller should release them by releaseValue(s).
+     */
+    public Pair<Integer, KvScanResult> scan(ByteArray startKey, ByteArray endKey, int limit) {
+        if (!map.hasOrderedIndex()) {
+            return new Pair<>(KvCodes.NOT_SUPPORTED, null);
+        }
+        if ((startKey != null && startKey.length > maxKeySize) || (endKey != null && endKey.length > maxKeySize)) {
+            return new Pair<>(KvCodes.KEY_TOO_LONG, null);
+        }
+        int l = limit <= 0 || limit > maxScanItems ? maxScanItems : limit;
+        ByteArray start = startKey == null || startKey.length == 0 ? null : startKey;
+        ByteArray end = endKey == null || endKey.length == 0 ? null : endKey;
+        return read(stamp -> scan0(start, end, l), offHeapValueThreshold > 0 ?
+                        p -> p.getRight() == null || retainValues(p.getRight().results) : null,
+                new Pair<>(KvCodes.INSTALL_SNAPSHOT, null));
+    }
+
+    private Pair<Integer, KvScanResult> scan0(ByteArray startKey, ByteArray endKey, int limit) {
+        Iterator<KvNodeHolder> it = map.rangeIterator(startKey, endKey);
+        ArrayList<KvResult> list = new ArrayList<>(Math.min(limit, 64));
+        while (it.hasNext()) {
+            KvNodeHolder h = it.next();
+            KvNodeEx n = h.latest;
+            if (n.removed) {
+                continue;
             }
-            if (h == null) {
-                return new Pair<>(KvCodes.NOT_FOUND, null);
+            if (list.size() >= limit) {
+                return new Pair<>(KvCodes.SUCCESS, new KvScanResult(list, h.key.getData()));
             }
-            KvNodeEx kvNode = h.latest;
-            if (kvNode.removed) {
-                return new Pair<>(KvCodes.NOT_FOUND, null);
+            list.add(new KvResult(KvCodes.SUCCESS, n, h.key));
+        }
+        return new Pair<>(KvCodes.SUCCESS, new KvScanResult(list, null));
+    }
+
+    /**
+     * retain the off heap value of the result node, return false if it's already released.
+     */
+    static boolean retainValue(KvResult r) {
+        OffHeapValue v = offHeapValue(r);
+        return v == null || v.tryRetain();
+    }
+
+    /**
+     * retain the off heap values of the result nodes, return false (and retain nothing) if some value is
+     * already released.
+     */
+    static boolean retainValues(List<KvResult> list) {
+        if (list == null) {
+            return true;
+        }
+        for (int i = 0, s = list.size(); i < s; i++) {
+            if (!retainValue(list.get(i))) {
+                for (int j = 0; j < i; j++) {
+                    releaseValue(list.get(j));
+                }
+                return false;
             }
-            if ((kvNode.flag & KvNode.FLAG_DIR_MASK) == 0) {
-                return new Pair<>(KvCodes.PARENT_NOT_DIR, null);
+        }
+        return true;
+    }
+
+    static void releaseValue(KvResult r) {
+        OffHeapValue v = offHeapValue(r);
+        if (v != null) {
+            v.release();
+        }
+    }
+
+    static void releaseValues(List<KvResult> list) {
+        if (list != null) {
+            for (int i = 0, s = list.size(); i < s; i++) {
+                releaseValue(list.get(i));
             }
-            ArrayList<KvResult> list = kvNode.list();
-            return new Pair<>(KvCodes.SUCCESS, list);
-        } finally {
-            if (readWriteLock != null) {
-                readWriteLock.readLock().unlock();
+        }
+    }
+
+    static boolean hasOffHeapValue(List<KvResult> list) {
+        if (list != null) {
+            for (int i = 0, s = list.size(); i < s; i++) {
+                if (offHeapValue(list.get(i)) != null) {
+                    return true;
+                }
             }
         }
+        return false;
+    }
+
+    private static OffHeapValue offHeapValue(KvResult r) {
+        KvNode n = r.getNode();
+        return n instanceof KvNodeEx ? ((KvNodeEx) n).offHeapValue : null;
     }
 
     static final class OpContext {
@@ -409,17 +655,14 @@ class KvImpl {
         if (r != null) {
             return r;
         }
-        if (lockAndFireUpdate && readWriteLock != null) {
-            this.readWriteLock.writeLock().lock();
+        if (lockAndFireUpdate) {
+            lockWrite();
         }
         try {
             return doPutInLock(index, key, data, h, parent, lastIndexOfSep);
         } finally {
             if (lockAndFireUpdate) {
-                if (readWriteLock != null) {
-                    this.readWriteLock.writeLock().unlock();
-                }
-                afterUpdate();
+                unlockWriteAndFireUpdate();
             }
         }
     }
@@ -437,8 +680,9 @@ class KvImpl {
                     | (opContext.bizType == DtKV.BIZ_TYPE_TRY_LOCK ? KvNode.FLAG_LOCK_MASK : 0)
                     | (opContext.ttlMillis > 0 ? KvNode.FLAG_TEMP_MASK : 0);
 
+            OffHeapValue ohv = toOffHeap(flag, data);
             KvNodeEx newKvNode = new KvNodeEx(index, opContext.leaderCreateTimeMillis, index,
-                    opContext.leaderCreateTimeMillis, flag, data);
+                    opContext.leaderCreateTimeMillis, flag, ohv == null ? data : null, ohv);
             if (current == null) {
                 current = new KvNodeHolder(key, key.sub(lastIndexOfSep + 1), newKvNode, parent);
                 map.put(key, current);
@@ -487,7 +731,9 @@ class KvImpl {
                     return new KvResult(KvCodes.DIR_EXISTS);
                 } else {
                     // update value
-                    KvNodeEx newKvNode = new KvNodeEx(oldNode, index, opContext.leaderCreateTimeMillis, data);
+                    OffHeapValue ohv = toOffHeap(oldNode.flag, data);
+                    KvNodeEx newKvNode = new KvNodeEx(oldNode, index, opContext.leaderCreateTimeMillis,
+                            ohv == null ? data : null, ohv);
                     updateHolderAndGc(current, newKvNode, oldNode);
                     KvResult r = KvResult.SUCCESS_OVERWRITE;
                     if (opContext.bizType == DtKV.BIZ_TYPE_PUT_TEMP_NODE || opContext.bizType == DtKV.BIZ_TYPE_TRY_LOCK) {
@@ -518,6 +764,7 @@ class KvImpl {
             gc(current);
         } else {
             current.latest = newKvNode;
+            releaseVersions(oldNode);
         }
     }
 
@@ -530,23 +777,43 @@ class KvImpl {
         if (values == null || values.size() != size) {
             return new Pair<>(KvCodes.INVALID_VALUE, null);
         }
-        if (readWriteLock != null) {
-            readWriteLock.writeLock().lock();
-        }
+        lockWrite();
         try {
             for (int i = 0; i < size; i++) {
                 byte[] k = keys.get(i);
                 list.add(checkAndPut(index, k == null ? null : new ByteArray(k), values.get(i), false));
             }
         } finally {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().unlock();
-            }
-            afterUpdate();
+            unlockWriteAndFireUpdate();
         }
         return new Pair<>(KvCodes.SUCCESS, list);
     }
 
+    private OffHeapValue toOffHeap(int flag, byte[] data) {
+        if (offHeapValueThreshold <= 0 || data == null || data.length < offHeapValueThreshold) {
+            return null;
+        }
+        if ((flag & (KvNode.FLAG_DIR_MASK | KvNode.FLAG_LOCK_MASK)) != 0) {
+            return null;
+        }
+        return new OffHeapValue(data);
+    }
+
+    // release the off heap value of the dropped version, the previous versions are not changed
+    private static void releaseVersion(KvNodeEx n) {
+        if (n.offHeapValue != null) {
+            n.offHeapValue.release();
+        }
+    }
+
+    // release the off heap values of the dropped version and all its previous versions
+    private static void releaseVersions(KvNodeEx n) {
+        while (n != null) {
+            releaseVersion(n);
+            n = n.previous;
+        }
+    }
+
     private void updateParent(long index, long timestamp, KvNodeHolder parent) {
         while (parent != null) {
             addToUpdateQueue(index, parent);
@@ -568,9 +835,11 @@ class KvImpl {
                 if (next != null && n.updateIndex > maxOpenSnapshotIndex) {
                     // no snapshot can see n, and n is not the latest node ('next' exists), so drop n
                     next.previous = n.previous;
+                    releaseVersion(n);
                 } else if (next != null && next.updateIndex <= minOpenSnapshotIndex) {
                     // the min snapshot see 'next', so drop all nodes before 'next'
                     next.previous = null;
+                    releaseVersions(n);
                     return;
                 } else if (n.removed) {
                     KvNodeEx p;
@@ -580,6 +849,7 @@ class KvImpl {
                         // 1. no snapshot can't see p, and p is not the latest node (n exists)
                         // 2. the min snapshot see n, the p is shadowed by n
                         n.previous = p.previous;
+                        releaseVersion(p);
                     }
                     if (p == null) {
                         if (next == null) {
@@ -588,6 +858,7 @@ class KvImpl {
                         } else {
                             // n is removed, so it is useless even any snapshot can see it
                             next.previous = null;
+                            releaseVersions(n);
                         }
                         return;
                     } else {
@@ -599,10 +870,10 @@ class KvImpl {
                 n = n.previous;
             }
         } else {
+            releaseVersions(n.previous);
+            n.previous = null;
             if (n.removed) {
                 tryRemoveFromMap(h);
-            } else {
-                n.previous = null;
             }
         }
     }
@@ -619,40 +890,138 @@ class KvImpl {
         }
     }
 
+    /**
+     * record removed keys after startIndex, so delta snapshot based on a snapshot not before startIndex can be taken.
+     * Should be called before this KvImpl is published.
+     */
+    void enableRemovedKeysLog(long startIndex) {
+        this.removedKeys = new IndexedQueue<>(64);
+        this.removedKeysStartIndex = startIndex;
+    }
+
+    boolean canTakeDeltaSnapshot(long baseIndex) {
+        return removedKeys != null && baseIndex >= removedKeysStartIndex;
+    }
+
+    /**
+     * Called in dtkv executor after a snapshot (full or delta) is read completely and closed. The later delta
+     * snapshots are based on it (or a later one), so the removed keys not after its index can be discarded,
+     * except the ones needed by open delta snapshots. If the snapshot is not saved at last, the base of the
+     * next snapshot is before removedKeysStartIndex, and it will be a full snapshot.
+     */
+    void trimRemovedKeys(long snapshotIndex) {
+        if (removedKeys == null) {
+            return;
+        }
+        long limit = snapshotIndex;
+        for (Snapshot s : openSnapshots) {
+            if (s instanceof KvSnapshot) {
+                long base = ((KvSnapshot) s).getDeltaBaseIndex();
+                if (base >= 0) {
+                    limit = Math.min(limit, base);
+                }
+            }
+        }
+        while (removedKeys.size() > 0 && removedKeys.getFirst().index <= limit) {
+            removedKeys.removeFirst();
+            removedKeysDiscarded++;
+        }
+        if (limit > removedKeysStartIndex) {
+            removedKeysStartIndex = limit;
+        }
+    }
+
+    private void logRemovedKey(long index, ByteArray key) {
+        removedKeys.addLast(new RemovedKey(index, key));
+        if (removedKeys.size() > maxRemovedKeys) {
+            // too many keys to log, discard all, the next snapshot should be a full snapshot
+            log.warn("group {} removed keys log exceeds {}, discard it", groupId, maxRemovedKeys);
+            removedKeysDiscarded += removedKeys.size();
+            removedKeys = new IndexedQueue<>(64);
+            removedKeysStartIndex = index;
+        }
+    }
+
+    IndexedQueue<RemovedKey> getRemovedKeys() {
+        return removedKeys;
+    }
+
+    long getRemovedKeysDiscarded() {
+        return removedKeysDiscarded;
+    }
+
+    void installSnapshotRemove(EncodeStatus encodeStatus) {
+        // do not need lock, no other requests during install snapshot
+        KvNodeHolder h = map.get(new ByteArray(encodeStatus.keyBytes));
+        if (h == null) {
+            // the key is created and removed after the base snapshot
+            return;
+        }
+        if (h.childHolderCount > 0) {
+            throw new IllegalStateException("remove a dir with children: " + h.key);
+        }
+        h.parent.latest.removeChild(h);
+        ttlManager.remove(h.latest);
+        map.remove(h.key);
+        h.parent.childHolderCount--;
+        releaseVersions(h.latest);
+    }
+
     void installSnapshotPut(EncodeStatus encodeStatus) {
         // do not need lock, no other requests during install snapshot
+        KvNodeHolder existing = encodeStatus.keyBytes == null || encodeStatus.keyBytes.length == 0 ?
+                root : map.get(new ByteArray(encodeStatus.keyBytes));
+        if (existing != null) {
+            // the root, or the key exists in base snapshot (delta snapshot), update it and keep its children
+            installSnapshotUpdate(existing, encodeStatus);
+            return;
+        }
+        OffHeapValue ohv = toOffHeap(encodeStatus.flag, encodeStatus.valueBytes);
         KvNodeEx n = new KvNodeEx(encodeStatus.createIndex, encodeStatus.createTime, encodeStatus.updateIndex,
-                encodeStatus.updateTime, encodeStatus.flag, encodeStatus.valueBytes);
-        if (encodeStatus.keyBytes == null || encodeStatus.keyBytes.length == 0) {
-            root.latest = n;
+                encodeStatus.updateTime, encodeStatus.flag, ohv == null ? encodeStatus.valueBytes : null, ohv);
+        KvNodeHolder parent;
+        ByteArray key = new ByteArray(encodeStatus.keyBytes);
+        ByteArray keyInDir;
+        int lastIndexOfSep = key.lastIndexOf(KvClientConfig.SEPARATOR);
+        if (lastIndexOfSep == -1) {
+            parent = root;
+            keyInDir = key;
         } else {
-            KvNodeHolder parent;
-            ByteArray key = new ByteArray(encodeStatus.keyBytes);
-            ByteArray keyInDir;
-            int lastIndexOfSep = key.lastIndexOf(KvClientConfig.SEPARATOR);
-            if (lastIndexOfSep == -1) {
-                parent = root;
-                keyInDir = key;
-            } else {
-                ByteArray dirKey = key.sub(0, lastIndexOfSep);
-                parent = map.get(dirKey);
-                keyInDir = key.sub(lastIndexOfSep + 1);
-            }
-            KvNodeHolder h = new KvNodeHolder(key, keyInDir, n, parent);
-            map.put(key, h);
-            parent.childHolderCount++;
-            parent.latest.addChild(h);
-            if (encodeStatus.ttlMillis > 0) {
-                // nanos can't persist, use wallClockMillis, so has week dependence on system clock.
-                long costTimeMillis = ts.wallClockMillis - encodeStatus.leaderTtlStartTime;
-                if (costTimeMillis < 0) {
-                    costTimeMillis = 0;
-                }
-                long localCreateNanos = ts.nanoTime - costTimeMillis * 1_000_000L;
-                opContext.init(DtKV.BIZ_TYPE_PUT, new UUID(encodeStatus.uuid1, encodeStatus.uuid2),
-                        encodeStatus.ttlMillis, encodeStatus.leaderTtlStartTime, localCreateNanos);
-                ttlManager.initTtl(encodeStatus.ttlRaftIndex, key, n, opContext);
+            ByteArray dirKey = key.sub(0, lastIndexOfSep);
+            parent = map.get(dirKey);
+            keyInDir = key.sub(lastIndexOfSep + 1);
+        }
+        KvNodeHolder h = new KvNodeHolder(key, keyInDir, n, parent);
+        map.put(key, h);
+        parent.childHolderCount++;
+        parent.latest.addChild(h);
+        initTtlForInstall(key, n, encodeStatus);
+    }
+
+    private void installSnapshotUpdate(KvNodeHolder h, EncodeStatus encodeStatus) {
+        KvNodeEx old = h.latest;
+        ttlManager.remove(old);
+        OffHeapValue ohv = toOffHeap(old.flag, encodeStatus.valueBytes);
+        // keep children of dir
+        KvNodeEx n = new KvNodeEx(old, encodeStatus.updateIndex, encodeStatus.updateTime,
+                ohv == null ? encodeStatus.valueBytes : null, ohv);
+        n.ttlInfo = null;
+        h.latest = n;
+        releaseVersions(old);
+        initTtlForInstall(h.key, n, encodeStatus);
+    }
+
+    private void initTtlForInstall(ByteArray key, KvNodeEx n, EncodeStatus encodeStatus) {
+        if (encodeStatus.ttlMillis > 0) {
+            // nanos can't persist, use wallClockMillis, so has week dependence on system clock.
+            long costTimeMillis = ts.wallClockMillis - encodeStatus.leaderTtlStartTime;
+            if (costTimeMillis < 0) {
+                costTimeMillis = 0;
             }
+            long localCreateNanos = ts.nanoTime - costTimeMillis * 1_000_000L;
+            opContext.init(DtKV.BIZ_TYPE_PUT, new UUID(encodeStatus.uuid1, encodeStatus.uuid2),
+                    encodeStatus.ttlMillis, encodeStatus.leaderTtlStartTime, localCreateNanos);
+            ttlManager.initTtl(encodeStatus.ttlRaftIndex, key, n, opContext);
         }
     }
 
@@ -661,10 +1030,14 @@ class KvImpl {
         long t = System.currentTimeMillis();
         log.info("group {} start gc task", groupId);
         return () -> {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().lock();
+            if (writeLock != null) {
+                writeLock.lock();
             }
             try {
+                if (valuesReleased) {
+                    // destroyed, the versions should not be touched
+                    return Boolean.FALSE;
+                }
                 for (int i = 0; i < gcItems; i++) {
                     if (!it.hasNext()) {
                         log.info("group {} gc task finished, cost {} ms", groupId, System.currentTimeMillis() - t);
@@ -675,8 +1048,8 @@ class KvImpl {
                 }
                 return Boolean.TRUE;
             } finally {
-                if (readWriteLock != null) {
-                    readWriteLock.writeLock().unlock();
+                if (writeLock != null) {
+                    writeLock.unlock();
                 }
             }
         };
@@ -700,17 +1073,14 @@ class KvImpl {
         if (n.childCount() > 0) {
             return new KvResult(KvCodes.HAS_CHILDREN);
         }
-        if (lockAndFireUpdate && readWriteLock != null) {
-            this.readWriteLock.writeLock().lock();
+        if (lockAndFireUpdate) {
+            lockWrite();
         }
         try {
             return doRemoveInLock(index, h);
         } finally {
             if (lockAndFireUpdate) {
-                if (readWriteLock != null) {
-                    this.readWriteLock.writeLock().unlock();
-                }
-                afterUpdate();
+                unlockWriteAndFireUpdate();
             }
         }
     }
@@ -725,6 +1095,10 @@ class KvImpl {
         long logTime = opContext.leaderCreateTimeMillis;
         addToUpdateQueue(index, h);
 
+        if (removedKeys != null) {
+            logRemovedKey(index, h.key);
+        }
+
         // The children list only used in list and remove check, and always read the latest data.
         // So we can remove it from children list safely even if there is a snapshot being reading.
         h.parent.latest.removeChild(h);
@@ -738,6 +1112,7 @@ class KvImpl {
             newKvNode.previous = n;
             gc(h);
         } else {
+            KvNodeEx n = h.latest;
             if (h.childHolderCount == 0) {
                 map.remove(h.key);
                 if (--h.parent.childHolderCount < 0) {
@@ -747,6 +1122,7 @@ class KvImpl {
                 h.latest = new KvNodeEx(index, logTime, index, logTime);
                 // no previous
             }
+            releaseVersions(n);
         }
 
         if (watchManager != null) {
@@ -763,19 +1139,14 @@ class KvImpl {
         }
         int size = keys.size();
         ArrayList<KvResult> list = new ArrayList<>(size);
-        if (readWriteLock != null) {
-            readWriteLock.writeLock().lock();
-        }
+        lockWrite();
         try {
             for (int i = 0; i < size; i++) {
                 byte[] k = keys.get(i);
                 list.add(checkAndRemove(index, k == null ? null : new ByteArray(k), false));
             }
         } finally {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().unlock();
-            }
-            afterUpdate();
+            unlockWriteAndFireUpdate();
         }
         return new Pair<>(KvCodes.SUCCESS, list);
     }
@@ -808,9 +1179,7 @@ class KvImpl {
         if (r != null) {
             return r;
         }
-        if (readWriteLock != null) {
-            readWriteLock.writeLock().lock();
-        }
+        lockWrite();
         try {
             if (expectedValue == null || expectedValue.length == 0) {
                 if (h == null || h.latest.removed) {
@@ -826,14 +1195,20 @@ class KvImpl {
                 if (n.removed || (n.flag & KvNode.FLAG_DIR_MASK) != 0) {
                     return new KvResult(KvCodes.CAS_MISMATCH);
                 }
-                byte[] bs = n.data;
-                if (bs == null || bs.length != expectedValue.length) {
-                    return new KvResult(KvCodes.CAS_MISMATCH);
-                }
-                for (int i = 0; i < bs.length; i++) {
-                    if (bs[i] != expectedValue[i]) {
+                if (n.offHeapValue != null) {
+                    if (!n.offHeapValue.contentEquals(expectedValue)) {
                         return new KvResult(KvCodes.CAS_MISMATCH);
                     }
+                } else {
+                    byte[] bs = n.data;
+                    if (bs == null || bs.length != expectedValue.length) {
+                        return new KvResult(KvCodes.CAS_MISMATCH);
+                    }
+                    for (int i = 0; i < bs.length; i++) {
+                        if (bs[i] != expectedValue[i]) {
+                            return new KvResult(KvCodes.CAS_MISMATCH);
+                        }
+                    }
                 }
                 if (newValue == null || newValue.length == 0) {
                     return doRemoveInLock(index, h);
@@ -843,10 +1218,7 @@ class KvImpl {
                 }
             }
         } finally {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().unlock();
-            }
-            afterUpdate();
+            unlockWriteAndFireUpdate();
         }
     }
 
@@ -877,6 +1249,40 @@ class KvImpl {
     void closeSnapshot(Snapshot snapshot) {
         openSnapshots.remove(snapshot);
         updateMinMax();
+        if (destroyed && openSnapshots.isEmpty()) {
+            releaseAllValues();
+        }
+    }
+
+    /**
+     * Called in dtkv executor when this KvImpl is replaced by snapshot install. The readers get INSTALL_SNAPSHOT
+     * after this method, and the off heap values are released after all open snapshots are closed.
+     */
+    void destroy() {
+        if (writeLock != null) {
+            writeLock.lock();
+        }
+        try {
+            destroyed = true;
+            if (openSnapshots.isEmpty()) {
+                releaseAllValues();
+            }
+        } finally {
+            if (writeLock != null) {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void releaseAllValues() {
+        if (valuesReleased || offHeapValueThreshold <= 0) {
+            return;
+        }
+        valuesReleased = true;
+        Iterator<KvNodeHolder> it = map.iterator();
+        while (it.hasNext()) {
+            releaseVersions(it.next().latest);
+        }
     }
 
     static ByteArray parentKey(ByteArray key) {
@@ -957,16 +1363,11 @@ class KvImpl {
             }
             return new KvResult(KvCodes.TTL_INDEX_MISMATCH);
         }
-        if (readWriteLock != null) {
-            readWriteLock.writeLock().lock();
-        }
+        lockWrite();
         try {
             return expireInLock(index, h);
         } finally {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().unlock();
-            }
-            afterUpdate();
+            unlockWriteAndFireUpdate();
         }
     }
 
@@ -1092,9 +1493,7 @@ class KvImpl {
     public KvResult tryLock(long index, ByteArray key, byte[] data) {
         long ttlMillis = opContext.ttlMillis;
         opContext.ttlMillis = 0; // the lock dir has no ttl
-        if (readWriteLock != null) {
-            readWriteLock.writeLock().lock();
-        }
+        lockWrite();
         try {
             KvResult r = checkAndPut(index, key, null, false);
             if (r.getBizCode() != KvCodes.SUCCESS && r.getBizCode() != KvCodes.DIR_EXISTS) {
@@ -1112,10 +1511,7 @@ class KvImpl {
             }
             return doPutInLock(index, fullKey, data, sub, parent, parent.key.length);
         } finally {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().unlock();
-            }
-            afterUpdate();
+            unlockWriteAndFireUpdate();
         }
     }
 
@@ -1139,9 +1535,7 @@ class KvImpl {
             BugLog.logAndThrow("sub.parent != parent");
         }
         boolean holdLock = sub == parent.latest.peekNextOwner();
-        if (readWriteLock != null) {
-            readWriteLock.writeLock().lock();
-        }
+        lockWrite();
         try {
             doRemoveInLock(index, sub);
             boolean removeParent = parent.latest.childCount() == 0;
@@ -1159,10 +1553,7 @@ class KvImpl {
                 return new KvResult(KvCodes.LOCK_BY_OTHER);
             }
         } finally {
-            if (readWriteLock != null) {
-                readWriteLock.writeLock().unlock();
-            }
-            afterUpdate();
+            unlockWriteAndFireUpdate();
         }
     }
 }
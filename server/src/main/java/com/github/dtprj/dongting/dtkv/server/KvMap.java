@@ -17,58 +17,119 @@ package com.github.dtprj.dongting.dtkv.server;
 
 import com.github.dtprj.dongting.common.ByteArray;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * HashMap + doubly-linked list implementation for better performance.
- * Thread safety is provided by StampedLock in KvImpl, so no concurrent data structures needed.
+ * By default, thread safety is provided by StampedLock in KvImpl, and no concurrent data structures are used.
+ * <p>
+ * If orderedIndex is enabled, a skip list (ConcurrentSkipListMap) sorted by key bytes is maintained to support
+ * range scan. The root node (empty key) is not in the index.
+ * <p>
+ * In lock free read mode of KvImpl, the readers access the map without lock, so use ConcurrentHashMap instead.
+ * Otherwise, if openAddressing is true, use KvHashTable instead of HashMap to reduce per-key memory footprint.
  *
  * @author huangli
  */
 class KvMap {
-    private final HashMap<ByteArray, KvNodeHolder> map;
+    private final Map<ByteArray, KvNodeHolder> map;
+    private final KvHashTable table;
 
     // Sentinel node, next point to the first node, prev point to the last node
     private final KvNodeHolder sentinel;
 
+    private final ConcurrentSkipListMap<ByteArray, KvNodeHolder> sortedIndex;
+
     public KvMap(int initCapacity, float loadFactor) {
-        this.map = new HashMap<>(initCapacity, loadFactor);
+        this(initCapacity, loadFactor, false, false);
+    }
+
+    public KvMap(int initCapacity, float loadFactor, boolean orderedIndex, boolean concurrent) {
+        this(initCapacity, loadFactor, orderedIndex, concurrent, false);
+    }
+
+    public KvMap(int initCapacity, float loadFactor, boolean orderedIndex, boolean concurrent,
+                 boolean openAddressing) {
+        if (concurrent) {
+            this.map = new ConcurrentHashMap<>(initCapacity, loadFactor);
+            this.table = null;
+        } else if (openAddressing) {
+            this.map = null;
+            this.table = new KvHashTable(initCapacity, loadFactor);
+        } else {
+            this.map = new HashMap<>(initCapacity, loadFactor);
+            this.table = null;
+        }
+        this.sortedIndex = orderedIndex ? new ConcurrentSkipListMap<>() : null;
         this.sentinel = new KvNodeHolder(null, null, null, null);
         this.sentinel.prev = this.sentinel;
         this.sentinel.next = this.sentinel;
     }
 
     public KvNodeHolder get(ByteArray key) {
-        return map.get(key);
+        return table == null ? map.get(key) : table.get(key);
     }
 
     public KvNodeHolder put(ByteArray key, KvNodeHolder value) {
-        KvNodeHolder old = map.put(key, value);
+        KvNodeHolder old = table == null ? map.put(key, value) : table.put(key, value);
         if (old != null) {
             removeFromList(old);
         }
         addToList(value);
+        if (sortedIndex != null && key.length > 0) {
+            sortedIndex.put(key, value);
+        }
         return old;
     }
 
     public KvNodeHolder remove(ByteArray key) {
-        KvNodeHolder old = map.remove(key);
+        KvNodeHolder old = table == null ? map.remove(key) : table.remove(key);
         if (old != null) {
             removeFromList(old);
+            if (sortedIndex != null) {
+                sortedIndex.remove(key);
+            }
         }
         return old;
     }
 
     public int size() {
-        return map.size();
+        return table == null ? map.size() : table.size();
     }
 
     public Iterator<KvNodeHolder> iterator() {
         return new KvMapIterator();
     }
 
+    public boolean hasOrderedIndex() {
+        return sortedIndex != null;
+    }
+
+    /**
+     * iterate holders in key order, start key is inclusive and end key is exclusive, null means unbounded.
+     */
+    public Iterator<KvNodeHolder> rangeIterator(ByteArray startKey, ByteArray endKey) {
+        ConcurrentNavigableMap<ByteArray, KvNodeHolder> m = sortedIndex;
+        if (startKey != null && endKey != null) {
+            if (startKey.compareTo(endKey) >= 0) {
+                return Collections.emptyIterator();
+            }
+            m = m.subMap(startKey, true, endKey, false);
+        } else if (startKey != null) {
+            m = m.tailMap(startKey, true);
+        } else if (endKey != null) {
+            m = m.headMap(endKey, false);
+        }
+        return m.values().iterator();
+    }
+
     private void addToList(KvNodeHolder node) {
         KvNodeHolder sentinel = this.sentinel;
         node.prev = sentinel.prev;
@@ -15,21 +15,31 @@
  */
 package com.github.dtprj.dongting.dtkv.server;
 
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.EncodeUtil;
 import com.github.dtprj.dongting.dtkv.KvCodes;
 import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.dtkv.KvResult;
 import com.github.dtprj.dongting.log.BugLog;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.TreeSet;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * @author huangli
  */
 final class KvNodeEx extends KvNode {
 
+    private static final int VALIDATE_STEPS = 64;
+
+    // same as the field index in KvNode
+    private static final int IDX_FLAG = 5;
+    private static final int IDX_DATA = 15;
+
     // Sentinel head node for children doubly-linked list. next points to first child, prev points to last child.
     // The sentinel itself is not a real child node.
     final KvNodeHolder children;
@@ -39,13 +49,22 @@ final class KvNodeEx extends KvNode {
     private final TreeSet<KvNodeHolder> lockOrderQueue;
     final boolean removed;
 
+    // if not null, the value is stored off heap and the data field is null
+    final OffHeapValue offHeapValue;
+
     KvNodeEx previous;
 
     TtlInfo ttlInfo;
 
     public KvNodeEx(long createIndex, long createTime, long updateIndex, long updateTime, int flag, byte[] data) {
+        this(createIndex, createTime, updateIndex, updateTime, flag, data, null);
+    }
+
+    public KvNodeEx(long createIndex, long createTime, long updateIndex, long updateTime, int flag, byte[] data,
+                    OffHeapValue offHeapValue) {
         super(createIndex, createTime, updateIndex, updateTime, flag, data);
         this.removed = false;
+        this.offHeapValue = offHeapValue;
         if ((flag & KvNode.FLAG_DIR_MASK) != 0) {
             // Create sentinel head node for children doubly-linked list
             this.children = new KvNodeHolder(null, null, null, null);
@@ -66,12 +85,18 @@ final class KvNodeEx extends KvNode {
     public KvNodeEx(long createIndex, long createTime, long updateIndex, long updateTime) {
         super(createIndex, createTime, updateIndex, updateTime, 0, null);
         this.removed = true;
+        this.offHeapValue = null;
         this.children = null;
         this.lockOrderQueue = null;
     }
 
     public KvNodeEx(KvNodeEx old, long updateIndex, long updateTime, byte[] newData) {
+        this(old, updateIndex, updateTime, newData, null);
+    }
+
+    public KvNodeEx(KvNodeEx old, long updateIndex, long updateTime, byte[] newData, OffHeapValue offHeapValue) {
         super(old.createIndex, old.createTime, updateIndex, updateTime, old.flag, newData);
+        this.offHeapValue = offHeapValue;
         this.children = old.children;
         this.lockOrderQueue = old.lockOrderQueue;
         this.removed = false;
@@ -79,10 +104,51 @@ final class KvNodeEx extends KvNode {
         this.childCount = old.childCount;
     }
 
-    ArrayList<KvResult> list() {
-        ArrayList<KvResult> list = new ArrayList<>(childCount);
+    /**
+     * return the value bytes, copy from direct memory if the value is stored off heap.
+     */
+    byte[] readData() {
+        return offHeapValue == null ? data : offHeapValue.toBytes();
+    }
+
+    @Override
+    public boolean encode(EncodeContext context, ByteBuffer destBuffer) {
+        if (offHeapValue == null) {
+            return super.encode(context, destBuffer);
+        }
+        if (context.stage < IDX_FLAG && !super.encode(context, destBuffer)) {
+            return false;
+        }
+        // write direct memory to the dest buffer, no heap copy
+        return EncodeUtil.encode(context, destBuffer, IDX_DATA, offHeapValue);
+    }
+
+    @Override
+    public int actualSize() {
+        int s = super.actualSize();
+        return offHeapValue == null ? s : s + EncodeUtil.sizeOf(IDX_DATA, offHeapValue);
+    }
+
+    /**
+     * List the children. If sl is not null, the caller is an optimistic reader, the list may be modified by
+     * the writer concurrently and even become cyclic, so validate the stamp every VALIDATE_STEPS children.
+     * Return null if the list is modified concurrently (only happens in lock free read mode of KvImpl).
+     */
+    ArrayList<KvResult> list(StampedLock sl, long stamp) {
+        ArrayList<KvResult> list = new ArrayList<>(Math.max(childCount, 0));
         KvNodeHolder sentinel = children;
+        int steps = 0;
         for (KvNodeHolder child = sentinel.childNext; child != sentinel; child = child.childNext) {
+            if (child == null) {
+                // the child is removed by writer during iteration
+                return null;
+            }
+            if (sl != null && ++steps == VALIDATE_STEPS) {
+                if (!sl.validate(stamp)) {
+                    return null;
+                }
+                steps = 0;
+            }
             list.add(new KvResult(KvCodes.SUCCESS, child.latest, child.keyInDir));
         }
         return list;
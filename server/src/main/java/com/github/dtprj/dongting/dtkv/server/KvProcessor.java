@@ -18,6 +18,7 @@ package com.github.dtprj.dongting.dtkv.server;
 import com.github.dtprj.dongting.codec.DecodeContext;
 import com.github.dtprj.dongting.codec.DecoderCallback;
 import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.EncodeContext;
 import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.common.Pair;
 import com.github.dtprj.dongting.common.PerfCallback;
@@ -27,6 +28,7 @@ import com.github.dtprj.dongting.dtkv.KvCodes;
 import com.github.dtprj.dongting.dtkv.KvReq;
 import com.github.dtprj.dongting.dtkv.KvResp;
 import com.github.dtprj.dongting.dtkv.KvResult;
+import com.github.dtprj.dongting.dtkv.KvScanResult;
 import com.github.dtprj.dongting.net.CmdCodes;
 import com.github.dtprj.dongting.net.Commands;
 import com.github.dtprj.dongting.net.EmptyBodyRespPacket;
@@ -43,6 +45,7 @@ import com.github.dtprj.dongting.raft.server.RaftProcessor;
 import com.github.dtprj.dongting.raft.server.RaftServer;
 import com.github.dtprj.dongting.raft.server.ReqInfo;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -88,6 +91,7 @@ final class KvProcessor extends RaftProcessor<KvReq> {
                 case Commands.DTKV_GET:
                 case Commands.DTKV_BATCH_GET:
                 case Commands.DTKV_LIST:
+                case Commands.DTKV_SCAN:
                     leaseRead(reqInfo, req);
                     break;
                 case Commands.DTKV_PUT:
@@ -154,14 +158,60 @@ final class KvProcessor extends RaftProcessor<KvReq> {
             p.bizCode = r.getLeft();
             return p;
         } else {
-            KvResp resp = new KvResp(raftIndex, results);
-            EncodableBodyWritePacket p = new EncodableBodyWritePacket(resp);
-            p.respCode = CmdCodes.SUCCESS;
+            WritePacket p = newReadResp(new KvResp(raftIndex, results), results);
             p.bizCode = KvCodes.SUCCESS;
             return p;
         }
     }
 
+    private WritePacket convertScanResult(long raftIndex, Pair<Integer, KvScanResult> r) {
+        KvScanResult sr = r.getRight();
+        if (sr == null) {
+            EmptyBodyRespPacket p = new EmptyBodyRespPacket(CmdCodes.SUCCESS);
+            p.bizCode = r.getLeft();
+            return p;
+        } else {
+            WritePacket p = newReadResp(new KvResp(raftIndex, sr.results, sr.nextKey), sr.results);
+            p.bizCode = KvCodes.SUCCESS;
+            return p;
+        }
+    }
+
+    private static WritePacket newReadResp(KvResp resp, List<KvResult> results) {
+        WritePacket p = KvImpl.hasOffHeapValue(results) ? new OffHeapValueRespPacket(resp, results)
+                : new EncodableBodyWritePacket(resp);
+        p.respCode = CmdCodes.SUCCESS;
+        return p;
+    }
+
+    /**
+     * The read response contains off heap values retained by KvImpl, release them after the packet is written.
+     */
+    private static final class OffHeapValueRespPacket extends WritePacket {
+        private final KvResp resp;
+        private final List<KvResult> results;
+
+        OffHeapValueRespPacket(KvResp resp, List<KvResult> results) {
+            this.resp = resp;
+            this.results = results;
+        }
+
+        @Override
+        protected int calcActualBodySize() {
+            return resp.actualSize();
+        }
+
+        @Override
+        protected boolean encodeBody(EncodeContext context, ByteBuffer dest) {
+            return resp.encode(context, dest);
+        }
+
+        @Override
+        protected void doClean() {
+            KvImpl.releaseValues(results);
+        }
+    }
+
     // run in io thread
     private void leaseRead(ReqInfo<KvReq> reqInfo, KvReq req) {
         DtKV dtKV = KvServerUtil.getStateMachine(reqInfo);
@@ -172,7 +222,9 @@ final class KvProcessor extends RaftProcessor<KvReq> {
 
         long startTime = perfCallback.takeTime(PerfConsts.DTKV_LEASE_READ);
 
-        if (dtKV.kvConfig.readInDtKvExecutor) {
+        if (dtKV.kvConfig.followerRead && !reqInfo.raftGroup.isLeader()) {
+            followerRead(dtKV, reqInfo, req, startTime);
+        } else if (dtKV.kvConfig.readInDtKvExecutor) {
             submitToDtKvExecutor(reqInfo, req, dtKV, startTime);
         } else {
             // run in io thread, so we should use ts of io worker
@@ -226,20 +278,56 @@ final class KvProcessor extends RaftProcessor<KvReq> {
         }
     }
 
+    // run in io thread
+    private void followerRead(DtKV dtKV, ReqInfo<KvReq> reqInfo, KvReq req, long startTime) {
+        CompletableFuture<Long> f = reqInfo.raftGroup.readIndex(reqInfo.reqContext.getTimeout());
+        // the future completed in raft thread, after the read index is applied
+        f.whenComplete((readIndex, ex) -> {
+            if (ex != null) {
+                perfCallback.fireTime(PerfConsts.DTKV_LEASE_READ, startTime);
+                writeErrorResp(reqInfo, ex);
+            } else if (dtKV.kvConfig.readInDtKvExecutor) {
+                boolean b = dtKV.dtkvExecutor.submitTaskInAnyThread(() -> localRead(dtKV, reqInfo, req, startTime));
+                if (!b) {
+                    perfCallback.fireTime(PerfConsts.DTKV_LEASE_READ, startTime);
+                    writeErrorResp(reqInfo, new RaftException("dtkv executor is stopping"));
+                }
+            } else {
+                localRead(dtKV, reqInfo, req, startTime);
+            }
+        });
+    }
+
+    private void localRead(DtKV dtKV, ReqInfo<KvReq> reqInfo, KvReq req, long startTime) {
+        WritePacket p;
+        try {
+            p = doLeaseRead(dtKV, reqInfo, req);
+        } catch (Exception e) {
+            writeErrorResp(reqInfo, e);
+            return;
+        } finally {
+            perfCallback.fireTime(PerfConsts.DTKV_LEASE_READ, startTime);
+        }
+        reqInfo.reqContext.writeRespInBizThreads(p);
+    }
+
     private WritePacket doLeaseRead(DtKV dtKV, ReqInfo<KvReq> reqInfo, KvReq req) {
         long raftIndex = 0; // read operations do not return raftIndex to client
         switch (reqInfo.reqFrame.command) {
             case Commands.DTKV_GET:
-                KvResult r = dtKV.get(req.key == null ? null : new ByteArray(req.key));
-                KvResp resp = new KvResp(raftIndex, Collections.singletonList(r));
-                EncodableBodyWritePacket p = new EncodableBodyWritePacket(resp);
-                p.respCode = CmdCodes.SUCCESS;
+                KvResult r = dtKV.getRetained(req.key == null ? null : new ByteArray(req.key));
+                List<KvResult> results = Collections.singletonList(r);
+                WritePacket p = newReadResp(new KvResp(raftIndex, results), results);
                 p.bizCode = r.getBizCode();
                 return p;
             case Commands.DTKV_BATCH_GET:
-                return convertMultiResult(raftIndex, dtKV.batchGet(req.keys));
+                return convertMultiResult(raftIndex, dtKV.batchGetRetained(req.keys));
             case Commands.DTKV_LIST:
-                return convertMultiResult(raftIndex, dtKV.list(req.key == null ? null : new ByteArray(req.key)));
+                return convertMultiResult(raftIndex,
+                        dtKV.listRetained(req.key == null ? null : new ByteArray(req.key)));
+            case Commands.DTKV_SCAN:
+                return convertScanResult(raftIndex, dtKV.scanRetained(req.key == null ? null : new ByteArray(req.key),
+                        req.endKey == null ? null : new ByteArray(req.endKey), req.limit));
             default:
                 throw new RaftException("unknown command: " + reqInfo.reqFrame.command);
         }
@@ -32,8 +32,52 @@ public class KvServerConfig {
      * if false, the read operation run in any thread, generally in the io thread.
      */
     public boolean readInDtKvExecutor = true;
+    /**
+     * only used when readInDtKvExecutor is false. If true, the read operations run without lock (optimistic read
+     * and retry), so the writer is not blocked by readers, and readers not contend on a shared lock counter.
+     */
+    public boolean lockFreeRead = false;
+    /**
+     * if true, the read operations received by a follower (or an observer) are served locally using the raft
+     * read index protocol: get the commit index from the leader, wait it applied, then read. If false, the
+     * follower responds NOT_RAFT_LEADER and the client redirect the read to the leader.
+     */
+    public boolean followerRead = false;
     public int initMapCapacity = 16 * 1024;
     public float loadFactor = 0.75f;
+    /**
+     * if true, use an open addressing hash table (with hash codes and values in parallel arrays) instead of
+     * HashMap for the key map, which saves an entry object per key. Not used when lockFreeRead is enabled.
+     */
+    public boolean openAddressingMap = false;
+    /**
+     * if greater than 0, the value which size is not less than this threshold is stored in direct memory (off heap),
+     * and written to the response packet directly. Not used for dir and lock nodes.
+     */
+    public int offHeapValueThreshold = 0;
+    /**
+     * if true, maintain a sorted index of all keys, which is required by scan operations. The index costs a
+     * skip list node per key, so it's disabled by default.
+     */
+    public boolean orderedIndex = false;
+    public int maxScanItems = 1000;
+    /**
+     * the max count of removed keys logged for delta snapshot (see RaftGroupConfig.maxDeltaSnapshots). The log is
+     * trimmed after each snapshot, if it still exceeds this limit, it's discarded and the next snapshot is a full
+     * snapshot.
+     */
+    public int maxRemovedKeys = 1_000_000;
+    /**
+     * if true, use a hierarchical timing wheel to manage the ttl of keys (and locks), the add/remove cost is O(1),
+     * but the expiration may be delayed at most ttlWheelTickMillis. If false, use a sorted tree.
+     */
+    public boolean ttlTimingWheel = false;
+    public int ttlWheelTickMillis = 10;
+    /**
+     * the number of snapshot partitions (split by the first segment of the key), the partitions are saved to
+     * separate files and recovered concurrently.
+     */
+    public int snapshotPartitions = 1;
     public int watchDispatchIntervalMillis = 500;
     public int watchMaxReqBytes = 80 * 1024; // may exceed
     public int watchMaxBatchSize = 100;
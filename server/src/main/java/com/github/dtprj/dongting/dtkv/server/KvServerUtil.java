@@ -59,6 +59,7 @@ public class KvServerUtil {
         nioServer.register(Commands.DTKV_MKDIR, p, null);
         nioServer.register(Commands.DTKV_LIST, p, null);
         nioServer.register(Commands.DTKV_BATCH_GET, p, null);
+        nioServer.register(Commands.DTKV_SCAN, p, null);
         nioServer.register(Commands.DTKV_BATCH_PUT, p, null);
         nioServer.register(Commands.DTKV_BATCH_REMOVE, p, null);
         nioServer.register(Commands.DTKV_CAS, p, null);
@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.dtkv.server;
 
 import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.common.IndexedQueue;
+import com.github.dtprj.dongting.dtkv.KvClientConfig;
 import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FiberGroup;
@@ -40,28 +41,66 @@ class KvSnapshot extends Snapshot {
     private final KvImpl kv;
     private final DtKVExecutor dtkvExecutor;
     private final long lastIncludeRaftIndex;
+    private final int partitionCount;
 
-    private final Iterator<KvNodeHolder> iterator;
-    private final IndexedQueue<KvNodeHolder> stack = new IndexedQueue<>(16);
-    private final HashSet<ByteArray> processedDirs = new HashSet<>();
-    private KvNode currentKvNode;
+    // read the whole snapshot in one stream, used by readNext(ByteBuffer)
+    private PartitionReader fullReader;
+    private final PartitionReader[] partitionReaders;
+    // the partition readers share one pass over the map, see PartitionReader.nextHolder()
+    private Iterator<KvNodeHolder> sharedIterator;
 
-    private final EncodeStatus encodeStatus = new EncodeStatus();
+    // if >= 0, this is a delta snapshot based on the snapshot with this lastIncludedIndex
+    private long deltaBaseIndex = -1;
+    // count of partition readers (or the full reader) which reached the end
+    private int finishedReaders;
 
     public KvSnapshot(int groupId, SnapshotInfo si, KvImpl kv,
                       Supplier<Boolean> cancel, DtKVExecutor dtkvExecutor) {
+        this(groupId, si, kv, cancel, dtkvExecutor, 1);
+    }
+
+    public KvSnapshot(int groupId, SnapshotInfo si, KvImpl kv,
+                      Supplier<Boolean> cancel, DtKVExecutor dtkvExecutor, int partitionCount) {
         super(si);
         this.groupId = groupId;
         this.kv = kv;
         this.cancel = cancel;
         this.lastIncludeRaftIndex = si.lastIncludedIndex;
-        this.iterator = kv.map.iterator();
         this.dtkvExecutor = dtkvExecutor;
+        this.partitionCount = Math.max(1, partitionCount);
+        this.partitionReaders = new PartitionReader[this.partitionCount];
         kv.openSnapshot(this);
     }
 
+    @Override
+    public boolean prepareDelta(long baseLastIncludedIndex) {
+        if (!kv.canTakeDeltaSnapshot(baseLastIncludedIndex)) {
+            return false;
+        }
+        deltaBaseIndex = baseLastIncludedIndex;
+        return true;
+    }
+
+    long getDeltaBaseIndex() {
+        return deltaBaseIndex;
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
     @Override
     public FiberFuture<Integer> readNext(ByteBuffer buffer) {
+        return readNext(-1, buffer);
+    }
+
+    /**
+     * The nodes are partitioned by the first segment of the key, so a partition contains the whole subtree of
+     * the top level dir, and can be installed independently.
+     */
+    @Override
+    public FiberFuture<Integer> readNext(int partition, ByteBuffer buffer) {
         FiberGroup fiberGroup = FiberGroup.currentGroup();
         FiberFuture<Integer> f = fiberGroup.newFuture("readNext");
         // no read lock, since we run in dtKvExecutor or raft thread.
@@ -72,7 +111,7 @@ class KvSnapshot extends Snapshot {
                     return;
                 }
 
-                f.fireComplete(readNext0(buffer));
+                f.fireComplete(getReader(partition).readNext0(buffer));
             } catch (Throwable e) {
                 BugLog.log(e);
                 f.fireCompleteExceptionally(e);
@@ -83,76 +122,231 @@ class KvSnapshot extends Snapshot {
     }
 
     int readNext0(ByteBuffer buffer) {
-        int startPos = buffer.position();
-        while (true) {
-            if (currentKvNode == null) {
-                loadNextNode();
-            }
-            if (currentKvNode == null) {
-                // no more data
-                return buffer.position() - startPos;
+        return getReader(-1).readNext0(buffer);
+    }
+
+    private PartitionReader getReader(int partition) {
+        if (partition < 0 || partitionCount == 1) {
+            if (fullReader == null) {
+                fullReader = new PartitionReader(-1);
             }
+            return fullReader;
+        }
+        PartitionReader r = partitionReaders[partition];
+        if (r == null) {
+            r = new PartitionReader(partition);
+            partitionReaders[partition] = r;
+        }
+        return r;
+    }
 
-            if (encodeStatus.writeToBuffer(buffer)) {
-                encodeStatus.reset();
-                currentKvNode = null;
-            } else {
-                // buffer is full
-                return buffer.position() - startPos;
+    static int partitionOf(byte[] key, int partitionCount) {
+        int h = 0;
+        for (byte b : key) {
+            if (b == KvClientConfig.SEPARATOR) {
+                break;
             }
+            h = 31 * h + b;
         }
+        return Math.floorMod(h, partitionCount);
     }
 
-    private void loadNextNode() {
-        while (stack.size() > 0 || iterator.hasNext()) {
-            KvNodeHolder h;
-            KvNodeEx n;
-            // should process parent dir first
-            if (stack.size() > 0) {
-                h = stack.removeLast();
-                // not check null, because parent path of an existing node must exist
-                n = getNode(h);
+    private class PartitionReader {
+        // -1 means all partitions
+        private final int partition;
+        // only used by the full reader
+        private final Iterator<KvNodeHolder> iterator;
+        // the holders of this partition found by other partition readers
+        private final IndexedQueue<KvNodeHolder> pending;
+        private final IndexedQueue<KvNodeHolder> stack = new IndexedQueue<>(16);
+        private final HashSet<ByteArray> processedDirs = new HashSet<>();
+        private KvNode currentKvNode;
+        // absolute position in the removed keys log, see KvImpl.getRemovedKeysDiscarded()
+        private long removedKeyPos;
+        private boolean finished;
+
+        private final EncodeStatus encodeStatus = new EncodeStatus();
+
+        PartitionReader(int partition) {
+            this.partition = partition;
+            if (partition < 0) {
+                this.iterator = kv.map.iterator();
+                this.pending = null;
             } else {
-                h = iterator.next();
-                n = getNode(h);
-                if (n == null) {
-                    continue;
-                }
-                if ((n.flag & KvNode.FLAG_DIR_MASK) != 0 && processedDirs.contains(h.key)) {
-                    continue;
+                this.iterator = null;
+                this.pending = new IndexedQueue<>(16);
+            }
+            if (partition > 0) {
+                // the root dir (empty key) is in partition 0
+                processedDirs.add(kv.root.key);
+            }
+        }
+
+        private boolean inPartition(byte[] key) {
+            return partition < 0 || partitionOf(key, partitionCount) == partition;
+        }
+
+        int readNext0(ByteBuffer buffer) {
+            int startPos = buffer.position();
+            while (true) {
+                if (currentKvNode == null) {
+                    loadNextNode();
                 }
-                if (h.parent != null && !processedDirs.contains(h.parent.key)) {
-                    while (h.parent != null && !processedDirs.contains(h.parent.key)) {
-                        // push parent node to stack
-                        stack.addLast(h);
-                        h = h.parent;
+                if (currentKvNode == null) {
+                    // no more data
+                    if (!finished) {
+                        finished = true;
+                        finishedReaders++;
                     }
+                    return buffer.position() - startPos;
+                }
+
+                if (encodeStatus.writeToBuffer(buffer)) {
+                    encodeStatus.reset();
+                    currentKvNode = null;
+                } else {
+                    // buffer is full
+                    return buffer.position() - startPos;
+                }
+            }
+        }
+
+        private void loadNextNode() {
+            if (deltaBaseIndex >= 0 && loadNextRemovedKey()) {
+                return;
+            }
+            while (true) {
+                KvNodeHolder h;
+                KvNodeEx n;
+                // should process parent dir first
+                if (stack.size() > 0) {
+                    h = stack.removeLast();
                     // not check null, because parent path of an existing node must exist
                     n = getNode(h);
+                } else {
+                    h = nextHolder();
+                    if (h == null) {
+                        return;
+                    }
+                    n = getNode(h);
+                    if ((n.flag & KvNode.FLAG_DIR_MASK) != 0 && processedDirs.contains(h.key)) {
+                        continue;
+                    }
+                    if (h.parent != null && !processedDirs.contains(h.parent.key)) {
+                        while (h.parent != null && !processedDirs.contains(h.parent.key)) {
+                            // push parent node to stack
+                            stack.addLast(h);
+                            h = h.parent;
+                        }
+                        // not check null, because parent path of an existing node must exist
+                        n = getNode(h);
+                    }
+                }
+                if ((Objects.requireNonNull(n).flag & KvNode.FLAG_DIR_MASK) != 0) {
+                    processedDirs.add(h.key);
+                }
+                encodeStatus.keyBytes = h.key.getData();
+                encodeStatus.valueBytes = n.readData();
+                encodeStatus.createIndex = n.createIndex;
+                encodeStatus.createTime = n.createTime;
+                encodeStatus.updateIndex = n.updateIndex;
+                encodeStatus.updateTime = n.updateTime;
+                encodeStatus.flag = n.flag;
+                if (n.ttlInfo != null) {
+                    encodeStatus.uuid1 = n.ttlInfo.owner.getMostSignificantBits();
+                    encodeStatus.uuid2 = n.ttlInfo.owner.getLeastSignificantBits();
+                    encodeStatus.ttlRaftIndex = n.ttlInfo.raftIndex;
+                    encodeStatus.leaderTtlStartTime = n.ttlInfo.leaderTtlStartMillis;
+                    encodeStatus.ttlMillis = n.ttlInfo.ttlMillis;
+                }
+                currentKvNode = n;
+                return;
+            }
+        }
+
+        private boolean skip(KvNodeHolder h) {
+            KvNodeEx n = getNode(h);
+            return n == null || (deltaBaseIndex >= 0 && !changedAfterBase(n));
+        }
+
+        /**
+         * Return the next holder to write, or null if there is no more. The partition readers don't walk the
+         * map separately, the map is iterated once for all partitions, and the holders of other partitions are
+         * routed to the pending queue of their readers.
+         */
+        private KvNodeHolder nextHolder() {
+            if (partition < 0) {
+                while (iterator.hasNext()) {
+                    KvNodeHolder h = iterator.next();
+                    if (!skip(h)) {
+                        return h;
+                    }
+                }
+                return null;
+            }
+            if (pending.size() > 0) {
+                return pending.removeFirst();
+            }
+            if (sharedIterator == null) {
+                sharedIterator = kv.map.iterator();
+            }
+            while (sharedIterator.hasNext()) {
+                KvNodeHolder h = sharedIterator.next();
+                if (skip(h)) {
+                    continue;
+                }
+                int p = partitionOf(h.key.getData(), partitionCount);
+                if (p == partition) {
+                    return h;
+                }
+                getReader(p).pending.addLast(h);
+            }
+            return null;
+        }
+
+        /**
+         * the delta snapshot write remove records before all other records, so install side can re-create
+         * the removed keys (with same key) after remove them.
+         */
+        private boolean loadNextRemovedKey() {
+            if (removedKeyPos == Long.MAX_VALUE) {
+                return false;
+            }
+            if (!kv.canTakeDeltaSnapshot(deltaBaseIndex)) {
+                throw new RaftException("the removed keys log is discarded, can't finish the delta snapshot");
+            }
+            IndexedQueue<KvImpl.RemovedKey> removedKeys = kv.getRemovedKeys();
+            long discarded = kv.getRemovedKeysDiscarded();
+            // the discarded keys are not after deltaBaseIndex, since the log is not discarded
+            removedKeyPos = Math.max(removedKeyPos, discarded);
+            while (removedKeyPos - discarded < removedKeys.size()) {
+                KvImpl.RemovedKey rk = removedKeys.get((int) (removedKeyPos - discarded));
+                if (rk.index > lastIncludeRaftIndex) {
+                    // removed after this snapshot, ignore all the rest
+                    removedKeyPos = Long.MAX_VALUE;
+                    return false;
                 }
+                removedKeyPos++;
+                byte[] key = rk.key.getData();
+                if (rk.index <= deltaBaseIndex || !inPartition(key)) {
+                    continue;
+                }
+                encodeStatus.keyBytes = key;
+                encodeStatus.updateIndex = rk.index;
+                encodeStatus.flag = EncodeStatus.FLAG_REMOVED_MASK;
+                // currentKvNode is only used as a not-null mark here
+                currentKvNode = kv.root.latest;
+                return true;
             }
-            if ((Objects.requireNonNull(n).flag & KvNode.FLAG_DIR_MASK) != 0) {
-                processedDirs.add(h.key);
-            }
-            encodeStatus.keyBytes = h.key.getData();
-            encodeStatus.valueBytes = n.data;
-            encodeStatus.createIndex = n.createIndex;
-            encodeStatus.createTime = n.createTime;
-            encodeStatus.updateIndex = n.updateIndex;
-            encodeStatus.updateTime = n.updateTime;
-            encodeStatus.flag = n.flag;
-            if (n.ttlInfo != null) {
-                encodeStatus.uuid1 = n.ttlInfo.owner.getMostSignificantBits();
-                encodeStatus.uuid2 = n.ttlInfo.owner.getLeastSignificantBits();
-                encodeStatus.ttlRaftIndex = n.ttlInfo.raftIndex;
-                encodeStatus.leaderTtlStartTime = n.ttlInfo.leaderTtlStartMillis;
-                encodeStatus.ttlMillis = n.ttlInfo.ttlMillis;
-            }
-            currentKvNode = n;
-            return;
+            return false;
         }
     }
 
+    private boolean changedAfterBase(KvNodeEx n) {
+        // the ttl may be updated without create new KvNodeEx
+        return n.updateIndex > deltaBaseIndex || (n.ttlInfo != null && n.ttlInfo.raftIndex > deltaBaseIndex);
+    }
+
     private KvNodeEx getNode(KvNodeHolder h) {
         KvNodeEx n = h.latest;
         while (n != null && n.updateIndex > lastIncludeRaftIndex) {
@@ -169,6 +363,9 @@ class KvSnapshot extends Snapshot {
         // ignore submit failure (stopped)
         dtkvExecutor.submitTaskInFiberThread(() -> {
             kv.closeSnapshot(this);
+            if (finishedReaders >= partitionCount || (fullReader != null && fullReader.finished)) {
+                kv.trimRemovedKeys(lastIncludeRaftIndex);
+            }
             Supplier<Boolean> gcTask = kv.createGcTask();
             // ignore submit failure (stopped)
             dtkvExecutor.startDaemonTask("gcTask" + groupId, new DtKVExecutor.DtKVExecutorTask() {
@@ -0,0 +1,123 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPoolConfig;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.net.ByteBufferWritePacket;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.dtprj.dongting.buf.SimpleByteBufferPool.calcTotalSize;
+
+/**
+ * The value of KvNodeEx stored in direct memory. The buffer is borrowed from a thread safe pool and never
+ * modified after created, so it can be read (encoded) by multiple threads concurrently.
+ * <p>
+ * The KvNodeEx version holds one reference, KvImpl releases it when the version is dropped (replaced or
+ * removed, and not visible to any open snapshot). A reader which uses the value after the lock is released
+ * (for example, encode the response in io thread) should retain it by tryRetain(), and release it after use.
+ *
+ * @author huangli
+ */
+final class OffHeapValue implements Encodable {
+
+    private static final int[] POOL_BUF_SIZE = new int[]{512, 1024, 2048, 4096, 8192, 16 * 1024, 32 * 1024,
+            64 * 1024, 128 * 1024, 256 * 1024, 512 * 1024, 1024 * 1024};
+    private static final int[] POOL_MIN_COUNT = new int[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] POOL_MAX_COUNT = new int[]{4096, 2048, 1024, 1024, 512, 256, 128, 64, 32, 16, 8, 4};
+
+    // values larger than the max buffer size of the pool are allocated and freed directly
+    private static final RefBufferFactory FACTORY;
+
+    static {
+        // Thread safe pool should use a dedicated timestamp, pass null, SimpleByteBufferPool will create one
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(null, true, 0, true,
+                POOL_BUF_SIZE, POOL_MIN_COUNT, POOL_MAX_COUNT, 60000,
+                calcTotalSize(POOL_BUF_SIZE, POOL_MAX_COUNT) / 2);
+        SimpleByteBufferPool pool = new SimpleByteBufferPool(c);
+        FACTORY = new RefBufferFactory(pool, 0);
+        DtUtil.SCHEDULED_SERVICE.scheduleWithFixedDelay(pool::clean, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private final RefBuffer refBuffer;
+    // read only, the capacity of the borrowed buffer may be larger than the value size
+    private final ByteBuffer buffer;
+
+    OffHeapValue(byte[] data) {
+        RefBuffer rb = FACTORY.create(data.length);
+        ByteBuffer buf = rb.getBuffer();
+        buf.clear();
+        buf.put(data);
+        buf.flip();
+        this.refBuffer = rb;
+        this.buffer = buf;
+    }
+
+    /**
+     * return false if the value is already released.
+     */
+    boolean tryRetain() {
+        try {
+            refBuffer.retain();
+            return true;
+        } catch (DtException e) {
+            return false;
+        }
+    }
+
+    void release() {
+        refBuffer.release();
+    }
+
+    int size() {
+        return buffer.limit();
+    }
+
+    byte[] toBytes() {
+        byte[] bs = new byte[buffer.limit()];
+        buffer.duplicate().get(bs);
+        return bs;
+    }
+
+    boolean contentEquals(byte[] bs) {
+        return bs != null && bs.length == buffer.limit() && buffer.duplicate().equals(ByteBuffer.wrap(bs));
+    }
+
+    @Override
+    public boolean encode(EncodeContext context, ByteBuffer destBuffer) {
+        ByteBuffer srcCopy = (ByteBuffer) context.status;
+        srcCopy = ByteBufferWritePacket.copyFromDirectBuffer(buffer, destBuffer, srcCopy);
+        if (srcCopy.remaining() == 0) {
+            return true;
+        } else {
+            context.status = srcCopy;
+            return false;
+        }
+    }
+
+    @Override
+    public int actualSize() {
+        return buffer.limit();
+    }
+}
@@ -363,7 +363,7 @@ abstract class ServerWatchManager {
             if ((node.latest.flag & KvNode.FLAG_DIR_MASK) != 0) {
                 return new WatchNotify(updateIndex, WatchEvent.STATE_DIRECTORY_EXISTS, key, null);
             } else {
-                return new WatchNotify(updateIndex, WatchEvent.STATE_VALUE_EXISTS, key, node.latest.data);
+                return new WatchNotify(updateIndex, WatchEvent.STATE_VALUE_EXISTS, key, node.latest.readData());
             }
         } else {
             long lastRemoveIndex = w.watchHolder.lastRemoveIndex;
@@ -0,0 +1,199 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+/**
+ * Hierarchical timing wheel, add/remove is O(1) and expired items are polled bucket by bucket.
+ * Each level has 256 buckets, a bucket of level N covers 256^N ticks. When the low level wheel
+ * finishes a round, the next bucket of the upper level is cascaded (re-added) to the lower levels.
+ * <p>
+ * The item in a bucket is linked by TtlInfo.wheelPrev/wheelNext, so no allocation when add/remove.
+ * An item expires after the tick it belongs to has passed, so it may be late at most one tick.
+ *
+ * @author huangli
+ */
+final class TimingWheelTtlQueue implements TtlQueue {
+    private static final int LEVEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << LEVEL_BITS;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA_TICKS = (1L << (LEVEL_BITS * LEVELS)) - 1;
+
+    private final long tickNanos;
+    private final long baseNanos;
+    private final TtlInfo[] buckets = new TtlInfo[LEVELS * WHEEL_SIZE];
+    private final int[] levelSize = new int[LEVELS];
+
+    // all ticks before currentTick have been processed
+    private long currentTick;
+    // the tick that the expire task will wake up after, it used to decide whether to signal the task
+    private long wakeUpTick = Long.MAX_VALUE;
+    private int size;
+
+    TimingWheelTtlQueue(long tickNanos, long nowNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos must be positive: " + tickNanos);
+        }
+        this.tickNanos = tickNanos;
+        this.baseNanos = nowNanos;
+    }
+
+    private long tickOf(long nanos) {
+        long d = nanos - baseNanos;
+        return d <= 0 ? 0 : d / tickNanos;
+    }
+
+    @Override
+    public boolean add(TtlInfo ttlInfo) {
+        boolean wasEmpty = size == 0;
+        long tick = place(ttlInfo);
+        return wasEmpty || tick < wakeUpTick;
+    }
+
+    private long place(TtlInfo ti) {
+        long tick = Math.max(tickOf(ti.expireNanos), currentTick);
+        long delta = tick - currentTick;
+        if (delta > MAX_DELTA_TICKS) {
+            // too far, put it in the last level, it will be re-added when cascade
+            delta = MAX_DELTA_TICKS;
+            tick = currentTick + MAX_DELTA_TICKS;
+        }
+        int level = 0;
+        while (delta >= WHEEL_SIZE) {
+            delta >>>= LEVEL_BITS;
+            level++;
+        }
+        int index = (level << LEVEL_BITS) + (int) ((tick >>> (level * LEVEL_BITS)) & MASK);
+        TtlInfo head = buckets[index];
+        ti.wheelPrev = null;
+        ti.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = ti;
+        }
+        buckets[index] = ti;
+        ti.wheelBucket = index;
+        levelSize[level]++;
+        size++;
+        return tick;
+    }
+
+    @Override
+    public boolean remove(TtlInfo ti) {
+        int index = ti.wheelBucket;
+        if (index < 0) {
+            return false;
+        }
+        TtlInfo prev = ti.wheelPrev;
+        TtlInfo next = ti.wheelNext;
+        if (prev == null) {
+            buckets[index] = next;
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        ti.wheelPrev = null;
+        ti.wheelNext = null;
+        ti.wheelBucket = -1;
+        levelSize[index >>> LEVEL_BITS]--;
+        size--;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public TtlInfo pollExpired(long nowNanos) {
+        long nowTick = tickOf(nowNanos);
+        while (currentTick < nowTick) {
+            if (size == 0) {
+                currentTick = nowTick;
+                break;
+            }
+            if (levelSize[0] > 0) {
+                TtlInfo head = buckets[(int) (currentTick & MASK)];
+                if (head != null) {
+                    remove(head);
+                    return head;
+                }
+                currentTick++;
+            } else {
+                // lower levels are empty, skip to next cascade
+                currentTick = Math.min(nextCascadeTick(), nowTick);
+            }
+            if ((currentTick & MASK) == 0) {
+                cascade();
+            }
+        }
+        return null;
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * LEVEL_BITS;
+            int slot = (int) ((currentTick >>> shift) & MASK);
+            int index = (level << LEVEL_BITS) + slot;
+            TtlInfo ti = buckets[index];
+            buckets[index] = null;
+            while (ti != null) {
+                TtlInfo next = ti.wheelNext;
+                levelSize[level]--;
+                size--;
+                place(ti);
+                ti = next;
+            }
+            if (slot != 0) {
+                break;
+            }
+        }
+    }
+
+    private long nextCascadeTick() {
+        int level = 1;
+        while (level < LEVELS - 1 && levelSize[level] == 0) {
+            level++;
+        }
+        long mask = (1L << (level * LEVEL_BITS)) - 1;
+        return (currentTick | mask) + 1;
+    }
+
+    @Override
+    public long nextDelayNanos(long nowNanos) {
+        // the first non-empty bucket of level 0, or the next cascade
+        long t;
+        if (levelSize[0] > 0) {
+            long boundary = (currentTick | MASK) + 1;
+            t = currentTick;
+            while (t < boundary && buckets[(int) (t & MASK)] == null) {
+                t++;
+            }
+        } else {
+            t = nextCascadeTick();
+        }
+        wakeUpTick = t + 1;
+        long delay = baseNanos + wakeUpTick * tickNanos - nowNanos;
+        return Math.max(delay, 1);
+    }
+}
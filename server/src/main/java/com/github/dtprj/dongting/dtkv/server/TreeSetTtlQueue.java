@@ -0,0 +1,61 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import java.util.TreeSet;
+
+/**
+ * TtlQueue sorted by expire time, the add/remove cost is O(log n).
+ *
+ * @author huangli
+ */
+final class TreeSetTtlQueue implements TtlQueue {
+    private final TreeSet<TtlInfo> set = new TreeSet<>();
+
+    @Override
+    public boolean add(TtlInfo ttlInfo) {
+        set.add(ttlInfo);
+        return set.first() == ttlInfo;
+    }
+
+    @Override
+    public boolean remove(TtlInfo ttlInfo) {
+        return set.remove(ttlInfo);
+    }
+
+    @Override
+    public int size() {
+        return set.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Override
+    public TtlInfo pollExpired(long nowNanos) {
+        if (set.isEmpty() || set.first().expireNanos - nowNanos > 0) {
+            return null;
+        }
+        return set.pollFirst();
+    }
+
+    @Override
+    public long nextDelayNanos(long nowNanos) {
+        return set.first().expireNanos - nowNanos;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.common.ByteArray;
+
+import java.util.UUID;
+
+/**
+ * @author huangli
+ */
+final class TtlInfo implements Comparable<TtlInfo> {
+
+    final ByteArray key;
+    final long raftIndex;
+    final UUID owner;
+    final long leaderTtlStartMillis;
+    final long ttlMillis;
+    final long expireNanos;
+    private final int ttlInfoIndex;
+
+    boolean expireFailed;
+    long lastFailNanos;
+
+    // used by TimingWheelTtlQueue
+    TtlInfo wheelPrev;
+    TtlInfo wheelNext;
+    int wheelBucket = -1;
+
+    TtlInfo(ByteArray key, long raftIndex, UUID owner, long leaderTtlStartMillis, long ttlMillis,
+            long expireNanos, int ttlInfoIndex) {
+        this.key = key;
+        this.raftIndex = raftIndex;
+        this.owner = owner;
+        this.leaderTtlStartMillis = leaderTtlStartMillis;
+        this.ttlMillis = ttlMillis;
+        this.expireNanos = expireNanos;
+        this.ttlInfoIndex = ttlInfoIndex;
+    }
+
+    @Override
+    public int compareTo(TtlInfo o) {
+        long x = this.expireNanos - o.expireNanos;
+        if (x < 0) {
+            return -1;
+        } else if (x > 0) {
+            return 1;
+        } else {
+            int y = this.ttlInfoIndex - o.ttlInfoIndex;
+            //noinspection UseCompareMethod
+            return y < 0 ? -1 : y > 0 ? 1 : 0;
+        }
+    }
+}
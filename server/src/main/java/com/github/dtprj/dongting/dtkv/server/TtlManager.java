@@ -24,7 +24,6 @@ import com.github.dtprj.dongting.raft.impl.RaftRole;
 
 import java.util.Iterator;
 import java.util.TreeSet;
-import java.util.UUID;
 import java.util.function.Consumer;
 
 /**
@@ -35,7 +34,7 @@ class TtlManager {
     private final Timestamp ts;
     private final Consumer<TtlInfo> expireCallback;
 
-    final TreeSet<TtlInfo> ttlQueue = new TreeSet<>();
+    final TtlQueue ttlQueue;
     final TreeSet<TtlInfo> pendingQueue = new TreeSet<>();
     final TtlTask task;
     boolean stop;
@@ -51,8 +50,17 @@ class TtlManager {
     private int ttlInfoIndex;
 
     public TtlManager(Timestamp ts, Consumer<TtlInfo> expireCallback) {
+        this(ts, expireCallback, null);
+    }
+
+    public TtlManager(Timestamp ts, Consumer<TtlInfo> expireCallback, KvServerConfig kvConfig) {
         this.ts = ts;
         this.expireCallback = expireCallback;
+        if (kvConfig != null && kvConfig.ttlTimingWheel) {
+            this.ttlQueue = new TimingWheelTtlQueue(kvConfig.ttlWheelTickMillis * 1_000_000L, ts.nanoTime);
+        } else {
+            this.ttlQueue = new TreeSetTtlQueue();
+        }
         this.task = new TtlTask();
     }
 
@@ -79,18 +87,16 @@ class TtlManager {
                 }
             }
             if (!ttlQueue.isEmpty()) {
-                Iterator<TtlInfo> it = ttlQueue.iterator();
                 int count = 0;
-                while (it.hasNext()) {
+                while (!ttlQueue.isEmpty()) {
                     if (count++ >= MAX_EXPIRE_BATCH) {
                         yield = true;
                         break;
                     }
-                    TtlInfo ttlInfo = it.next();
-                    if (ttlInfo.expireNanos - ts.nanoTime > 0) {
-                        return ttlInfo.expireNanos - ts.nanoTime;
+                    TtlInfo ttlInfo = ttlQueue.pollExpired(ts.nanoTime);
+                    if (ttlInfo == null) {
+                        return ttlQueue.nextDelayNanos(ts.nanoTime);
                     }
-                    it.remove();
                     pendingQueue.add(ttlInfo);
                     try {
                         ttlInfo.expireFailed = false;
@@ -167,8 +173,7 @@ class TtlManager {
         TtlInfo ttlInfo = new TtlInfo(key, raftIndex, ctx.operator, ctx.leaderCreateTimeMillis, ctx.ttlMillis,
                 ctx.localCreateNanos + ctx.ttlMillis * 1_000_000, ttlInfoIndex++);
         n.ttlInfo = ttlInfo;
-        ttlQueue.add(ttlInfo);
-        return ttlQueue.first() == ttlInfo;
+        return ttlQueue.add(ttlInfo);
     }
 
     public void remove(KvNodeEx n) {
@@ -187,7 +192,9 @@ class TtlManager {
     public void roleChange(RaftRole newRole) {
         try {
             role = newRole;
-            ttlQueue.addAll(pendingQueue);
+            for (TtlInfo ti : pendingQueue) {
+                ttlQueue.add(ti);
+            }
             pendingQueue.clear();
             task.signal();
         } catch (Throwable e) {
@@ -195,43 +202,3 @@ class TtlManager {
         }
     }
 }
-
-
-final class TtlInfo implements Comparable<TtlInfo> {
-
-    final ByteArray key;
-    final long raftIndex;
-    final UUID owner;
-    final long leaderTtlStartMillis;
-    final long ttlMillis;
-    final long expireNanos;
-    private final int ttlInfoIndex;
-
-    boolean expireFailed;
-    long lastFailNanos;
-
-    TtlInfo(ByteArray key, long raftIndex, UUID owner, long leaderTtlStartMillis, long ttlMillis,
-            long expireNanos, int ttlInfoIndex) {
-        this.key = key;
-        this.raftIndex = raftIndex;
-        this.owner = owner;
-        this.leaderTtlStartMillis = leaderTtlStartMillis;
-        this.ttlMillis = ttlMillis;
-        this.expireNanos = expireNanos;
-        this.ttlInfoIndex = ttlInfoIndex;
-    }
-
-    @Override
-    public int compareTo(TtlInfo o) {
-        long x = this.expireNanos - o.expireNanos;
-        if (x < 0) {
-            return -1;
-        } else if (x > 0) {
-            return 1;
-        } else {
-            int y = this.ttlInfoIndex - o.ttlInfoIndex;
-            //noinspection UseCompareMethod
-            return y < 0 ? -1 : y > 0 ? 1 : 0;
-        }
-    }
-}
@@ -0,0 +1,46 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+/**
+ * The queue of TtlInfo used by TtlManager, all methods are called in the dtkv executor thread.
+ *
+ * @author huangli
+ */
+interface TtlQueue {
+
+    /**
+     * add the ttlInfo to the queue.
+     * @return true if the expire task should be signaled to recalculate its delay
+     */
+    boolean add(TtlInfo ttlInfo);
+
+    boolean remove(TtlInfo ttlInfo);
+
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * remove and return an expired ttlInfo, or return null if no ttlInfo expired.
+     */
+    TtlInfo pollExpired(long nowNanos);
+
+    /**
+     * called when the queue is not empty and pollExpired returns null, return the nanos to wait.
+     */
+    long nextDelayNanos(long nowNanos);
+}
@@ -33,7 +33,6 @@ import com.github.dtprj.dongting.log.DtLogs;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -53,7 +52,7 @@ public class Dispatcher extends AbstractLifeCircle {
     private final ArrayList<FiberGroup> groups = new ArrayList<>();
     private final ArrayList<FiberGroup> finishedGroups = new ArrayList<>();
     final IndexedQueue<FiberGroup> readyGroups = new IndexedQueue<>(8);
-    final PriorityQueue<Fiber> scheduleQueue = new PriorityQueue<>(this::compareFiberByScheduleTime);
+    final TimerWheel scheduleQueue = new TimerWheel(ts.nanoTime);
 
     public final DispatcherThread thread;
 
@@ -218,28 +217,29 @@ public class Dispatcher extends AbstractLifeCircle {
     }
 
     private void processScheduleFibers() {
-        long now = ts.nanoTime;
-        PriorityQueue<Fiber> scheduleQueue = this.scheduleQueue;
-        while (true) {
-            Fiber f = scheduleQueue.peek();
-            if (f == null || f.scheduleNanoTime - now > 0) {
-                break;
-            }
-            scheduleQueue.poll();
-            if (f.group.finished) {
-                if (!f.daemon) {
-                    BugLog.log("group finished, but suspend fiber is not daemon: {}", f.name);
-                }
-                continue;
-            }
-            if (f.source != null) {
-                // assert waiters must not null, because source is not null
-                f.source.removeWaiter(f);
-                f.source.prepare(f, true);
+        Fiber f = scheduleQueue.pollExpired(ts.nanoTime);
+        while (f != null) {
+            Fiber next = f.scheduleNext;
+            f.scheduleNext = null;
+            processExpiredFiber(f);
+            f = next;
+        }
+    }
+
+    private void processExpiredFiber(Fiber f) {
+        if (f.group.finished) {
+            if (!f.daemon) {
+                BugLog.log("group finished, but suspend fiber is not daemon: {}", f.name);
             }
-            f.cleanSchedule();
-            f.group.tryMakeFiberReady(f, false);
+            return;
+        }
+        if (f.source != null) {
+            // assert waiters must not null, because source is not null
+            f.source.removeWaiter(f);
+            f.source.prepare(f, true);
         }
+        f.cleanSchedule();
+        f.group.tryMakeFiberReady(f, false);
     }
 
     private void cleanPool(long timeoutNanos) {
@@ -580,7 +580,7 @@ public class Dispatcher extends AbstractLifeCircle {
             fiber.interrupted = false;
             fiber.inputEx = new FiberInterruptException("fiber is interrupted during wait " + str);
             if (fiber.scheduleTimeout > 0) {
-                scheduleQueue.remove(fiber);
+                removeFromScheduleQueue(fiber);
                 fiber.cleanSchedule();
             }
             fiber.group.tryMakeFiberReady(fiber, false);
@@ -594,13 +594,7 @@ public class Dispatcher extends AbstractLifeCircle {
             if (!poll || readyGroups.size() > 0) {
                 shareQueue.drainTo(localData);
             } else {
-                Fiber f = scheduleQueue.peek();
-                long t;
-                if (f != null) {
-                    t = Math.min(f.scheduleNanoTime - oldNanos, pollTimeout);
-                } else {
-                    t = pollTimeout;
-                }
+                long t = scheduleQueue.nextDelayNanos(oldNanos, pollTimeout);
                 if (t > 0) {
                     PerfCallback c = perfCallback;
                     long startTime = c.takeTime(PerfConsts.FIBER_D_POLL, ts);
@@ -644,11 +638,6 @@ public class Dispatcher extends AbstractLifeCircle {
         }
     }
 
-    private int compareFiberByScheduleTime(Fiber f1, Fiber f2) {
-        long diff = f1.scheduleNanoTime - f2.scheduleNanoTime;
-        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
-    }
-
     private boolean isShouldStopPlain() {
         return (boolean) SHOULD_STOP.get(this);
     }
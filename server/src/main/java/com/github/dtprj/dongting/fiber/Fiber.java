@@ -30,6 +30,10 @@ public class Fiber extends WaitSource {
 
     long scheduleTimeout;
     long scheduleNanoTime;
+    // link of the bucket in TimerWheel, scheduleBucket is -1 if not in TimerWheel
+    Fiber schedulePrev;
+    Fiber scheduleNext;
+    int scheduleBucket = -1;
 
     boolean started;
     boolean ready;
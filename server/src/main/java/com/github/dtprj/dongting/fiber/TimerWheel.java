@@ -0,0 +1,186 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+/**
+ * Hashed timing wheel of the fibers that wait with timeout, all methods are called in dispatcher thread.
+ * Add/remove is O(1), the fibers in a bucket are linked by Fiber.schedulePrev/scheduleNext, so no allocation.
+ * <p>
+ * A fiber is put into the bucket of its schedule tick, the fiber which schedule time is beyond one round
+ * is also put into the bucket and skipped until the round it belongs to. Unlike TimingWheelTtlQueue, the
+ * bucket of current tick is checked by the exact schedule time, so the fiber will not wake up late.
+ *
+ * @author huangli
+ */
+final class TimerWheel {
+    // 1 tick is about 1.05ms
+    private static final int TICK_SHIFT = 20;
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final Fiber[] heads = new Fiber[WHEEL_SIZE];
+    private final Fiber[] tails = new Fiber[WHEEL_SIZE];
+    private int size;
+
+    // the ticks before currentTick have been processed, the bucket of currentTick may be partially processed
+    private long currentTick;
+    // whether there are fibers expire in currentTick, and the lower bound of their schedule time
+    private boolean currentTickPending;
+    private long currentTickPendingNanos;
+
+    TimerWheel(long nowNanos) {
+        this.currentTick = nowNanos >> TICK_SHIFT;
+    }
+
+    void add(Fiber f) {
+        long nanos = f.scheduleNanoTime;
+        long tick = nanos >> TICK_SHIFT;
+        if (tick - currentTick <= 0) {
+            tick = currentTick;
+            if (!currentTickPending || nanos - currentTickPendingNanos < 0) {
+                currentTickPending = true;
+                currentTickPendingNanos = nanos;
+            }
+        }
+        int index = (int) (tick & MASK);
+        Fiber tail = tails[index];
+        f.schedulePrev = tail;
+        f.scheduleNext = null;
+        if (tail == null) {
+            heads[index] = f;
+        } else {
+            tail.scheduleNext = f;
+        }
+        tails[index] = f;
+        f.scheduleBucket = index;
+        size++;
+    }
+
+    boolean remove(Fiber f) {
+        int index = f.scheduleBucket;
+        if (index < 0) {
+            return false;
+        }
+        unlink(f, index);
+        return true;
+    }
+
+    private void unlink(Fiber f, int index) {
+        Fiber prev = f.schedulePrev;
+        Fiber next = f.scheduleNext;
+        if (prev == null) {
+            heads[index] = next;
+        } else {
+            prev.scheduleNext = next;
+        }
+        if (next == null) {
+            tails[index] = prev;
+        } else {
+            next.schedulePrev = prev;
+        }
+        f.schedulePrev = null;
+        f.scheduleNext = null;
+        f.scheduleBucket = -1;
+        size--;
+    }
+
+    boolean contains(Fiber f) {
+        return f.scheduleBucket >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove all expired fibers, and return them as a list linked by Fiber.scheduleNext, in the order of
+     * schedule tick. The caller should clear the scheduleNext field when iterate the list.
+     */
+    Fiber pollExpired(long nowNanos) {
+        long nowTick = nowNanos >> TICK_SHIFT;
+        if (nowTick - currentTick < 0) {
+            return null;
+        }
+        if (size == 0) {
+            currentTick = nowTick;
+            currentTickPending = false;
+            return null;
+        }
+        if (nowTick == currentTick && (!currentTickPending || nowNanos - currentTickPendingNanos < 0)) {
+            return null;
+        }
+        Fiber resultHead = null;
+        Fiber resultTail = null;
+        boolean pending = false;
+        long pendingNanos = 0;
+        long t = currentTick;
+        if (nowTick - t > MASK) {
+            // more than one round passed, check each bucket once
+            t = nowTick - MASK;
+        }
+        for (; t - nowTick <= 0; t++) {
+            int index = (int) (t & MASK);
+            Fiber f = heads[index];
+            while (f != null) {
+                Fiber next = f.scheduleNext;
+                long nanos = f.scheduleNanoTime;
+                if (nanos - nowNanos <= 0) {
+                    unlink(f, index);
+                    if (resultTail == null) {
+                        resultHead = f;
+                    } else {
+                        resultTail.scheduleNext = f;
+                    }
+                    resultTail = f;
+                } else if (t == nowTick && (nanos >> TICK_SHIFT) == nowTick) {
+                    if (!pending || nanos - pendingNanos < 0) {
+                        pending = true;
+                        pendingNanos = nanos;
+                    }
+                }
+                f = next;
+            }
+        }
+        currentTick = nowTick;
+        currentTickPending = pending;
+        currentTickPendingNanos = pendingNanos;
+        return resultHead;
+    }
+
+    /**
+     * Return the delay to the next possible expire time, it is a lower bound and not greater than maxNanos.
+     * The result may be not positive if some fibers should expire now.
+     */
+    long nextDelayNanos(long nowNanos, long maxNanos) {
+        if (size == 0) {
+            return maxNanos;
+        }
+        long delay = maxNanos;
+        if (currentTickPending) {
+            delay = Math.min(delay, currentTickPendingNanos - nowNanos);
+        }
+        long endTick = (nowNanos + delay) >> TICK_SHIFT;
+        long t = currentTick + 1;
+        for (int i = 0; i < MASK && t - endTick <= 0; i++, t++) {
+            if (heads[(int) (t & MASK)] != null) {
+                // may be fibers of later rounds, then it's an early wakeup
+                delay = Math.min(delay, (t << TICK_SHIFT) - nowNanos);
+                break;
+            }
+        }
+        return delay;
+    }
+}
@@ -19,6 +19,7 @@ import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IndexedQueue;
+import com.github.dtprj.dongting.common.IntObjMap;
 import com.github.dtprj.dongting.common.Pair;
 import com.github.dtprj.dongting.common.PerfCallback;
 import com.github.dtprj.dongting.common.PerfConsts;
@@ -36,12 +37,14 @@ import com.github.dtprj.dongting.raft.RaftException;
 import com.github.dtprj.dongting.raft.RaftTimeoutException;
 import com.github.dtprj.dongting.raft.server.LogItem;
 import com.github.dtprj.dongting.raft.server.RaftInput;
+import com.github.dtprj.dongting.raft.sm.ExecTask;
 import com.github.dtprj.dongting.raft.sm.Snapshot;
 import com.github.dtprj.dongting.raft.sm.SnapshotInfo;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
 import com.github.dtprj.dongting.raft.store.RaftLog;
 import com.github.dtprj.dongting.raft.store.StatusManager;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -77,9 +80,19 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
     private long initCommitIndex;
 
     private final PriorityQueue<Pair<DtTime, CompletableFuture<Void>>> waitReadyQueue;
+    // the read index requests from follower read, sorted by index
+    private final PriorityQueue<WaitAppliedReq> waitAppliedQueue = new PriorityQueue<>(
+            (o1, o2) -> Long.compare(o1.index, o2.index));
     private final LinkedList<FiberFuture<Snapshot>> takeSnapshotRequests = new LinkedList<>();
 
     private int execCount = 0;
+    private final int maxApplyBatch;
+    private final boolean parallelApply;
+    // used by parallel apply, the executing tasks in index order
+    private final IndexedQueue<RaftTask> applyingTasks = new IndexedQueue<>(64);
+    // used by parallel apply, a lane is in the map if it has an executing task, the value is the tasks of the lane
+    // waiting for it
+    private final IntObjMap<IndexedQueue<RaftTask>> busyLanes = new IntObjMap<>();
 
     private final PerfCallback perfCallback;
 
@@ -93,6 +106,8 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
         this.gc = gc;
         this.fiberGroup = gc.fiberGroup;
         this.perfCallback = gc.groupConfig.perfCallback;
+        this.maxApplyBatch = gc.groupConfig.maxApplyBatch;
+        this.parallelApply = gc.groupConfig.parallelApply;
         this.waitReadyQueue = new PriorityQueue<>(this);
         this.needApplyCond = fiberGroup.newCondition("needApply");
         this.applyFinishCond = fiberGroup.newCondition("applyFinish");
@@ -120,7 +135,10 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
                 if (applyFiber.isFinished() && !shouldStopApply()) {
                     startApplyFiber(fiberGroup);
                 }
-                if (raftStatus.isGroupReady()) {
+                if (!waitAppliedQueue.isEmpty()) {
+                    processWaitAppliedQueue(raftStatus.getLastApplied(), true, false);
+                }
+                if (raftStatus.isGroupReady() && waitAppliedQueue.isEmpty()) {
                     return applyMonitorCond.await(1000, this);
                 } else {
                     processWaitGroupReadyQueue(true, false);
@@ -160,6 +178,7 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
             log.error("state machine stop failed", e);
         }
         processWaitGroupReadyQueue(false, true);
+        processWaitAppliedQueue(0, false, true);
     }
 
     private FrameCallResult exec(RaftTask rt, long index, FrameCall<Void> resumePoint) {
@@ -177,6 +196,9 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
             case LogItem.TYPE_NORMAL:
             case LogItem.TYPE_LOG_READ: {
                 RaftInput input = rt.input;
+                if (parallelApply) {
+                    return execParallel(rt, index, resumePoint);
+                }
                 if (input.readOnly && rt.callback == null) {
                     // no need to execute read only task if no one wait for result
                     afterExec(index, rt, null, null);
@@ -212,6 +234,157 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
         }
     }
 
+    /**
+     * the tasks of the same lane are executed one by one, a task is executed after the previous task of the lane
+     * completes. The tasks of different lanes are executed concurrently, and may complete out of order.
+     */
+    private FrameCallResult execParallel(RaftTask rt, long index, FrameCall<Void> resumePoint) {
+        int lane = stateMachine.applyLane(rt.input);
+        rt.applyLane = lane;
+        if (lane >= 0) {
+            applyingTasks.addLast(rt);
+            IndexedQueue<RaftTask> waiting = busyLanes.get(lane);
+            if (waiting != null) {
+                // the items loaded from the log are released after ExecLoadResultFrame returns, retain it until
+                // the task is executed, released in afterExecInLane
+                rt.item.retain();
+                rt.parked = true;
+                waiting.addLast(rt);
+            } else {
+                busyLanes.put(lane, new IndexedQueue<>(8));
+                execInLane(rt);
+            }
+            return Fiber.resume(null, resumePoint);
+        }
+        // barrier
+        return Fiber.call(new WaitApplyFrame(index - 1, false), v -> {
+            applyingTasks.addLast(rt);
+            execInLane(rt);
+            return Fiber.call(new WaitApplyFrame(index, false), resumePoint);
+        });
+    }
+
+    private void execInLane(RaftTask rt) {
+        RaftInput input = rt.input;
+        if (input.readOnly && rt.callback == null) {
+            afterExecInLane(rt, null, null);
+            return;
+        }
+        long t = perfCallback.takeTimeAndRefresh(PerfConsts.RAFT_D_STATE_MACHINE_EXEC, ts);
+        FiberFuture<Object> f;
+        try {
+            f = stateMachine.exec(rt.item.index, rt.item.timestamp, rt.localCreateNanos, input);
+            execCount++;
+        } catch (Throwable e) {
+            afterExecInLane(rt, null, e);
+            return;
+        }
+        if (f == null) {
+            throw Fiber.fatal(new RaftException("statemachine exec return null future"));
+        }
+        f.registerCallback((result, ex) -> {
+            // the callback may not run in raft thread, so not access ts
+            perfCallback.fireTime(PerfConsts.RAFT_D_STATE_MACHINE_EXEC, t, 1, 0);
+            afterExecInLane(rt, result, ex);
+        });
+    }
+
+    /**
+     * the tasks may complete out of order, but afterExec is called in index order.
+     */
+    private void afterExecInLane(RaftTask rt, Object result, Throwable ex) {
+        if (rt.parked) {
+            rt.parked = false;
+            rt.item.release();
+        }
+        rt.execFinished = true;
+        rt.execResult = result;
+        rt.execEx = ex;
+        IndexedQueue<RaftTask> q = applyingTasks;
+        while (q.size() > 0 && q.get(0).execFinished) {
+            RaftTask t = q.removeFirst();
+            Object r = t.execResult;
+            Throwable e = t.execEx;
+            t.execResult = null;
+            t.execEx = null;
+            afterExec(t.item.index, t, r, e);
+        }
+        if (rt.applyLane >= 0) {
+            IndexedQueue<RaftTask> waiting = busyLanes.get(rt.applyLane);
+            if (waiting.size() == 0) {
+                busyLanes.remove(rt.applyLane);
+            } else {
+                execInLane(waiting.removeFirst());
+            }
+        }
+    }
+
+    private static boolean batchable(RaftTask rt) {
+        if (rt.type != LogItem.TYPE_NORMAL && rt.type != LogItem.TYPE_LOG_READ) {
+            return false;
+        }
+        return !rt.input.readOnly || rt.callback != null;
+    }
+
+    /**
+     * exec the contiguous batchable tasks in tail cache (start from the given one) in one execBatch call.
+     */
+    private FrameCallResult execBatch(RaftTask first, long firstIndex, FrameCall<Void> resumePoint) {
+        long lastIndex = Math.min(raftStatus.commitIndex, firstIndex + maxApplyBatch - 1);
+        ArrayList<RaftTask> tasks = new ArrayList<>((int) (lastIndex - firstIndex + 1));
+        tasks.add(first);
+        TailCache tailCache = raftStatus.tailCache;
+        for (long i = firstIndex + 1; i <= lastIndex; i++) {
+            RaftTask rt = tailCache.get(i);
+            if (rt == null || !batchable(rt)) {
+                break;
+            }
+            tasks.add(rt);
+        }
+        if (tasks.size() == 1) {
+            return exec(first, firstIndex, resumePoint);
+        }
+        raftStatus.lastApplying = firstIndex + tasks.size() - 1;
+        long t = perfCallback.takeTimeAndRefresh(PerfConsts.RAFT_D_STATE_MACHINE_EXEC, ts);
+        ArrayList<ExecTask> execTasks = new ArrayList<>(tasks.size());
+        for (RaftTask rt : tasks) {
+            execTasks.add(new ExecTask(rt.item.index, rt.item.timestamp, rt.localCreateNanos, rt.input));
+        }
+        FiberFuture<List<Object>> f;
+        try {
+            f = stateMachine.execBatch(execTasks);
+            execCount += tasks.size();
+        } catch (Throwable e) {
+            afterExecBatch(firstIndex, tasks, null, e);
+            return Fiber.resume(null, resumePoint);
+        }
+        if (f == null) {
+            throw Fiber.fatal(new RaftException("statemachine execBatch return null future"));
+        }
+        f.registerCallback((results, ex) -> {
+            // the callback may not run in raft thread, so not access ts
+            perfCallback.fireTime(PerfConsts.RAFT_D_STATE_MACHINE_EXEC, t, tasks.size(), 0);
+            afterExecBatch(firstIndex, tasks, results, ex);
+        });
+        return Fiber.resume(null, resumePoint);
+    }
+
+    private void afterExecBatch(long firstIndex, List<RaftTask> tasks, List<Object> results, Throwable ex) {
+        for (int i = 0, size = tasks.size(); i < size; i++) {
+            RaftTask rt = tasks.get(i);
+            if (ex != null) {
+                afterExec(firstIndex + i, rt, null, ex);
+            } else {
+                Object r = results.get(i);
+                if (r instanceof Throwable) {
+                    afterExec(firstIndex + i, rt, null, (Throwable) r);
+                } else {
+                    afterExec(firstIndex + i, rt, r, null);
+                }
+            }
+        }
+    }
+
     // if processAll and group should stop, use null as leaseReadIndex
     private void processWaitGroupReadyQueue(boolean processTimeout, boolean processStop) {
         if (waitReadyQueue.isEmpty()) {
@@ -279,6 +452,50 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
         return f;
     }
 
+    /**
+     * complete the future after the index is applied, called in raft thread.
+     */
+    public void waitApplied(long index, DtTime deadline, CompletableFuture<Long> f) {
+        if (raftStatus.isShouldStop()) {
+            f.completeExceptionally(new RaftException("group should stop"));
+        } else if (raftStatus.getLastApplied() >= index) {
+            f.complete(index);
+        } else {
+            waitAppliedQueue.add(new WaitAppliedReq(index, deadline, f));
+            if (waitAppliedQueue.size() == 1) {
+                // let the monitor fiber check timeout in a shorter interval
+                applyMonitorCond.signal();
+            }
+        }
+    }
+
+    private void processWaitAppliedQueue(long appliedIndex, boolean processTimeout, boolean processStop) {
+        WaitAppliedReq req;
+        while ((req = waitAppliedQueue.peek()) != null && (processStop || req.index <= appliedIndex)) {
+            waitAppliedQueue.poll();
+            try {
+                if (processStop) {
+                    req.future.completeExceptionally(new RaftException("group should stop"));
+                } else {
+                    req.future.complete(req.index);
+                }
+            } catch (Exception e) {
+                log.error("read index callback failed", e);
+            }
+        }
+        if (processTimeout && !waitAppliedQueue.isEmpty()) {
+            Iterator<WaitAppliedReq> it = waitAppliedQueue.iterator();
+            while (it.hasNext()) {
+                req = it.next();
+                if (req.deadline.isTimeout(ts)) {
+                    it.remove();
+                    req.future.completeExceptionally(new RaftTimeoutException("wait read index applied timeout: "
+                            + req.deadline.getTimeout(TimeUnit.MILLISECONDS) + "ms"));
+                }
+            }
+        }
+    }
+
     private void afterExec(long index, RaftTask rt, Object execResult, Throwable execEx) {
         if (execEx != null && !rt.input.readOnly) {
             throw Fiber.fatal(execEx);
@@ -322,6 +539,9 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
         if (processWaitGroupReadyQueue) {
             processWaitGroupReadyQueue(false, false);
         }
+        if (!waitAppliedQueue.isEmpty()) {
+            processWaitAppliedQueue(index, false, false);
+        }
 
         if (waitApply) {
             applyFinishCond.signal();
@@ -370,6 +590,18 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
         return future;
     }
 
+    private static class WaitAppliedReq {
+        final long index;
+        final DtTime deadline;
+        final CompletableFuture<Long> future;
+
+        WaitAppliedReq(long index, DtTime deadline, CompletableFuture<Long> future) {
+            this.index = index;
+            this.deadline = deadline;
+            this.future = future;
+        }
+    }
+
     private class ApplyFrame extends FiberFrame<Void> {
 
         private RaftLog.LogIterator logIterator;
@@ -426,6 +658,9 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
                 return Fiber.call(ff, this::afterLoad);
             } else {
                 closeIterator();
+                if (maxApplyBatch > 1 && !parallelApply && batchable(rt)) {
+                    return execBatch(rt, index, this::execLoop);
+                }
                 return exec(rt, index, this::execLoop);
             }
         }
@@ -497,10 +732,17 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
     private class WaitApplyFrame extends FiberFrame<Void> {
 
         private final long targetIndex;
+        // false for the barrier of parallel apply, which is frequent
+        private final boolean infoLog;
         private boolean logged;
 
         WaitApplyFrame(long targetIndex) {
+            this(targetIndex, true);
+        }
+
+        WaitApplyFrame(long targetIndex, boolean infoLog) {
             this.targetIndex = targetIndex;
+            this.infoLog = infoLog;
         }
 
         @Override
@@ -508,8 +750,13 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
             if (raftStatus.getLastApplied() < targetIndex) {
                 waitApply = true;
                 if (!logged) {
-                    log.info("wait apply, targetIndex={}, lastApplied={}, lastApplying={}", targetIndex,
-                            raftStatus.getLastApplied(), raftStatus.lastApplying);
+                    if (infoLog) {
+                        log.info("wait apply, targetIndex={}, lastApplied={}, lastApplying={}", targetIndex,
+                                raftStatus.getLastApplied(), raftStatus.lastApplying);
+                    } else if (log.isDebugEnabled()) {
+                        log.debug("wait apply, targetIndex={}, lastApplied={}, lastApplying={}", targetIndex,
+                                raftStatus.getLastApplied(), raftStatus.lastApplying);
+                    }
                     logged = true;
                 }
                 return applyFinishCond.await(this);
@@ -519,8 +766,13 @@ public class ApplyManager implements Comparator<Pair<DtTime, CompletableFuture<V
 
         private FrameCallResult afterPreviousApplyFinish() {
             waitApply = false;
-            log.info("previous apply finished, targetIndex={}, lastApplied={}, lastApplying={}", targetIndex,
-                    raftStatus.getLastApplied(), raftStatus.lastApplying);
+            if (infoLog) {
+                log.info("previous apply finished, targetIndex={}, lastApplied={}, lastApplying={}", targetIndex,
+                        raftStatus.getLastApplied(), raftStatus.lastApplying);
+            } else if (log.isDebugEnabled()) {
+                log.debug("previous apply finished, targetIndex={}, lastApplied={}, lastApplying={}", targetIndex,
+                        raftStatus.getLastApplied(), raftStatus.lastApplying);
+            }
             return Fiber.frameReturn();
         }
     }
@@ -38,9 +38,9 @@ public final class DecodeContextEx extends DecodeContext {
         return new DecodeContextEx();
     }
 
-    public AppendReq.Callback appendReqCallback(Function<Integer, RaftCodecFactory> decoderFactory) {
+    public AppendReq.Callback appendReqCallback(Function<Integer, RaftCodecFactory> decoderFactory, int maxRawSize) {
         if (appendReqCallback == null) {
-            appendReqCallback = new AppendReq.Callback(decoderFactory);
+            appendReqCallback = new AppendReq.Callback(decoderFactory, maxRawSize);
         }
         return appendReqCallback;
     }
@@ -40,6 +40,7 @@ public class GroupComponents {
     public SnapshotManager snapshotManager;
     public StatusManager statusManager;
     public ReplicateManager replicateManager;
+    public ReadIndexManager readIndexManager;
 
     public NodeManager nodeManager;
 
@@ -194,16 +194,17 @@ public class NodeManager extends AbstractLifeCircle {
         SimpleWritePacket packet = new SimpleWritePacket(new NodePing(selfNodeId, nodeEx.nodeId, uuid));
         packet.command = Commands.NODE_PING;
         CompletableFuture<ReadPacket<NodePing>> f = new CompletableFuture<>();
+        long startNanos = System.nanoTime();
         client.sendRequest(nodeEx.peer, packet, ctx -> ctx.toDecoderCallback(new NodePing()),
                 timeout, RpcCallback.fromFuture(f));
-        CompletableFuture<Void> f2 = f.thenAccept(rf -> whenRpcFinish(rf, nodeEx));
+        CompletableFuture<Void> f2 = f.thenAccept(rf -> whenRpcFinish(rf, nodeEx, startNanos));
         // we should set connecting status in schedule thread
         return f2.whenCompleteAsync((v, ex) ->
                 processResultInLock(nodeEx, ex), executor);
     }
 
     // run in io thread
-    private void whenRpcFinish(ReadPacket<NodePing> rf, RaftNodeEx nodeEx) {
+    private void whenRpcFinish(ReadPacket<NodePing> rf, RaftNodeEx nodeEx, long startNanos) {
         NodePing np = rf.getBody();
         if (nodeEx.nodeId != np.localNodeId) {
             String msg = "config fail: node id not match. expect " + nodeEx.nodeId + ", but " + np.localNodeId;
@@ -224,6 +225,8 @@ public class NodeManager extends AbstractLifeCircle {
                 log.error(msg);
                 throw new RaftException(msg);
             }
+            // the ping is answered by the remote node without disk io, so it is the network rtt
+            nodeEx.rttNanos = Math.max(1, System.nanoTime() - startNanos);
         }
     }
 
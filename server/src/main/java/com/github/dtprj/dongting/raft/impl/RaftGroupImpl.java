@@ -123,6 +123,11 @@ public final class RaftGroupImpl extends RaftGroup {
         return groupComponents.applyManager.addToWaitReadyQueueFromAnyThread(deadline);
     }
 
+    @Override
+    public CompletableFuture<Long> readIndex(DtTime deadline) {
+        return groupComponents.readIndexManager.readIndex(deadline);
+    }
+
     @Override
     public void markTruncateByIndex(long index, long delayMillis) {
         ExecutorService executor = groupComponents.fiberGroup.getExecutor();
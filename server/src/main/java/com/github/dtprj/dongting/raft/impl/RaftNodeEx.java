@@ -30,6 +30,9 @@ public class RaftNodeEx extends RaftNode {
 
     public volatile NodeStatus status = new NodeStatus(false, 0);
 
+    // the network round trip time measured by node ping, 0 if unknown
+    public volatile long rttNanos;
+
     public RaftNodeEx(int id, HostPort hostPort, boolean self, Peer peer) {
         super(id, hostPort, peer);
         this.self = self;
@@ -34,6 +34,14 @@ public class RaftTask {
 
     boolean addPending;
 
+    // used by parallel apply
+    int applyLane;
+    // the task waits for its lane, and the item is retained
+    boolean parked;
+    boolean execFinished;
+    Object execResult;
+    Throwable execEx;
+
     public RaftTask(int type, RaftInput input, RaftCallback callback) {
         this.type = type;
         this.input = input;
@@ -0,0 +1,197 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.impl;
+
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.net.Commands;
+import com.github.dtprj.dongting.net.NioClient;
+import com.github.dtprj.dongting.net.PbIntWritePacket;
+import com.github.dtprj.dongting.net.ReadPacket;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.server.NotLeaderException;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implements the read index of raft. The leader returns its commit index after it confirms its leadership by lease,
+ * the follower get the read index from the leader, and wait the index applied, then the read can be served by the
+ * local state machine of the follower.
+ * <p>
+ * The concurrent read index requests of the follower share one rpc, the requests arrived when a rpc is in flight are
+ * sent in the next rpc.
+ *
+ * @author huangli
+ */
+public class ReadIndexManager {
+    private static final DtLog log = DtLogs.getLogger(ReadIndexManager.class);
+
+    private final GroupComponents gc;
+    private final NioClient client;
+    private final RaftStatusImpl raftStatus;
+    private final FiberGroup fiberGroup;
+    private final int groupId;
+
+    private ApplyManager applyManager;
+
+    private ArrayList<ReadIndexReq> waitingReqs = new ArrayList<>();
+    private boolean rpcInFlight;
+
+    public ReadIndexManager(NioClient client, GroupComponents gc) {
+        this.gc = gc;
+        this.client = client;
+        this.raftStatus = gc.raftStatus;
+        this.fiberGroup = gc.fiberGroup;
+        this.groupId = gc.groupConfig.groupId;
+    }
+
+    public void postInit() {
+        this.applyManager = gc.applyManager;
+    }
+
+    /**
+     * get the read index and wait it applied in local state machine, can be called in any thread.
+     * The future is completed in raft thread.
+     */
+    public CompletableFuture<Long> readIndex(DtTime deadline) {
+        CompletableFuture<Long> f = new CompletableFuture<>();
+        boolean b = fiberGroup.fireFiber("readIndex", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (raftStatus.getRole() == RaftRole.leader) {
+                    leaderReadIndex(deadline, f);
+                } else {
+                    followerReadIndex(deadline, f);
+                }
+                return Fiber.frameReturn();
+            }
+        });
+        if (!b) {
+            f.completeExceptionally(new RaftException("group should stop"));
+        }
+        return f;
+    }
+
+    /**
+     * run in raft thread. If current node is leader and the lease is valid, complete the future with commit index.
+     */
+    public void leaderReadIndex(DtTime deadline, CompletableFuture<Long> f) {
+        try {
+            if (raftStatus.isShouldStop()) {
+                f.completeExceptionally(new RaftException("group should stop"));
+                return;
+            }
+            if (raftStatus.getRole() != RaftRole.leader) {
+                f.completeExceptionally(new NotLeaderException(raftStatus.getCurrentLeaderNode()));
+                return;
+            }
+            if (!raftStatus.isGroupReady()) {
+                // the leader has not committed any log in its term, its commit index may be stale
+                applyManager.addToWaitReadyQueueFromAnyThread(deadline).whenComplete((v, ex) -> {
+                    if (ex != null) {
+                        f.completeExceptionally(ex);
+                    } else {
+                        leaderReadIndex(deadline, f);
+                    }
+                });
+                return;
+            }
+            raftStatus.ts.refresh(1);
+            long leaseEndNanos = raftStatus.getShareStatus().leaseEndNanos;
+            if (leaseEndNanos - raftStatus.ts.nanoTime < 0) {
+                f.completeExceptionally(new NotLeaderException(null, "lease expired for "
+                        + (raftStatus.ts.nanoTime - leaseEndNanos) / 1_000_000 + "ms"));
+                return;
+            }
+            f.complete(raftStatus.commitIndex);
+        } catch (Exception e) {
+            f.completeExceptionally(e);
+        }
+    }
+
+    // run in raft thread
+    private void followerReadIndex(DtTime deadline, CompletableFuture<Long> f) {
+        if (raftStatus.isShouldStop()) {
+            f.completeExceptionally(new RaftException("group should stop"));
+            return;
+        }
+        waitingReqs.add(new ReadIndexReq(deadline, f));
+        if (!rpcInFlight) {
+            sendReadIndexReq();
+        }
+    }
+
+    // run in raft thread
+    private void sendReadIndexReq() {
+        ArrayList<ReadIndexReq> reqs = waitingReqs;
+        waitingReqs = new ArrayList<>();
+        RaftMember leader = raftStatus.getCurrentLeader();
+        if (leader == null) {
+            completeAll(reqs, null, new NotLeaderException(null, "leader unknown"));
+            return;
+        }
+        rpcInFlight = true;
+        try {
+            PbIntWritePacket req = new PbIntWritePacket(Commands.RAFT_READ_INDEX, groupId);
+            client.sendRequest(leader.node.peer, req, ctx -> ctx.toDecoderCallback(ctx.cachedPbLongCallback()),
+                    reqs.get(0).deadline, (resp, ex) -> fiberGroup.getExecutor().execute(
+                            () -> afterReadIndexResp(reqs, resp, ex)));
+        } catch (Exception e) {
+            afterReadIndexResp(reqs, null, e);
+        }
+    }
+
+    // run in raft thread
+    private void afterReadIndexResp(ArrayList<ReadIndexReq> reqs, ReadPacket<Long> resp, Throwable ex) {
+        rpcInFlight = false;
+        if (ex != null) {
+            log.warn("read index rpc fail. groupId={}, error={}", groupId, ex.toString());
+            completeAll(reqs, null, ex);
+        } else {
+            completeAll(reqs, resp.getBody(), null);
+        }
+        if (!waitingReqs.isEmpty()) {
+            sendReadIndexReq();
+        }
+    }
+
+    private void completeAll(ArrayList<ReadIndexReq> reqs, Long readIndex, Throwable ex) {
+        for (int i = 0, size = reqs.size(); i < size; i++) {
+            ReadIndexReq r = reqs.get(i);
+            if (ex != null) {
+                r.future.completeExceptionally(ex);
+            } else {
+                applyManager.waitApplied(readIndex, r.deadline, r.future);
+            }
+        }
+    }
+
+    private static class ReadIndexReq {
+        final DtTime deadline;
+        final CompletableFuture<Long> future;
+
+        ReadIndexReq(DtTime deadline, CompletableFuture<Long> future) {
+            this.deadline = deadline;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.impl;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.Lz4;
+import com.github.dtprj.dongting.common.PerfCallback;
+import com.github.dtprj.dongting.common.PerfConsts;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.net.Peer;
+import com.github.dtprj.dongting.raft.rpc.AppendReqWritePacket;
+import com.github.dtprj.dongting.raft.rpc.InstallSnapshotReq;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Compress the replicate requests to a follower. If the compression ratio is poor, the compression is
+ * bypassed for some requests, and the bypass count doubles if it is still poor in the next try.
+ * <p>
+ * The compression is done in the executor, not in raft thread, so it does not block other groups on the same
+ * dispatcher. The requests to the follower must be sent in order, so if a request is being compressed, the later
+ * requests are sent in the executor after it.
+ *
+ * @author huangli
+ */
+class ReplicateCompressor {
+    private static final DtLog log = DtLogs.getLogger(ReplicateCompressor.class);
+
+    // if compressed size > raw size * MAX_RATIO, the compression is considered poor
+    static final double MAX_RATIO = 0.9;
+    static final int MIN_BYPASS = 8;
+    static final int MAX_BYPASS = 1024;
+
+    private final int threshold;
+    private final PerfCallback perfCallback;
+    private final Executor executor;
+
+    // updated in the executor, read in raft thread
+    private volatile int bypassCount;
+    private volatile int nextBypass = MIN_BYPASS;
+
+    // the last task submitted to the executor, accessed in raft thread
+    private CompletableFuture<Void> lastTask;
+
+    ReplicateCompressor(int threshold, PerfCallback perfCallback, Executor executor) {
+        this.threshold = threshold;
+        this.perfCallback = perfCallback;
+        this.executor = executor;
+    }
+
+    boolean shouldCompress(Peer peer, long rawBytes) {
+        if (threshold <= 0 || rawBytes < threshold || !peer.isRemoteSupportCompress()) {
+            return false;
+        }
+        if (bypassCount > 0) {
+            bypassCount--;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * compress the entries if needed and run the send task, called in raft thread.
+     */
+    void send(Peer peer, AppendReqWritePacket req, long rawBytes, Runnable sendTask) {
+        submit(shouldCompress(peer, rawBytes) ? () -> compress(req) : null, sendTask);
+    }
+
+    /**
+     * compress the data if needed and run the send task, called in raft thread.
+     */
+    void send(Peer peer, InstallSnapshotReq req, Runnable sendTask) {
+        RefBuffer rb = req.data;
+        boolean b = rb != null && rb.getBuffer().hasArray() && shouldCompress(peer, rb.getBuffer().remaining());
+        submit(b ? () -> compress(req) : null, sendTask);
+    }
+
+    private void submit(Runnable compressTask, Runnable sendTask) {
+        CompletableFuture<Void> last = lastTask;
+        if (compressTask == null && (last == null || last.isDone())) {
+            lastTask = null;
+            sendTask.run();
+            return;
+        }
+        if (last == null) {
+            last = CompletableFuture.completedFuture(null);
+        }
+        // run even if the previous task fails
+        lastTask = last.whenCompleteAsync((v, ex) -> {
+            if (compressTask != null) {
+                try {
+                    compressTask.run();
+                } catch (Throwable e) {
+                    log.error("compress failed, send uncompressed", e);
+                }
+            }
+            sendTask.run();
+        }, executor);
+    }
+
+    private void compress(AppendReqWritePacket req) {
+        byte[] raw = req.encodeEntries();
+        byte[] dest = new byte[Lz4.maxCompressedLength(raw.length)];
+        int len = compress(raw, 0, raw.length, dest);
+        if (len > 0) {
+            req.setCompressedEntries(raw.length, dest, len);
+        }
+    }
+
+    private void compress(InstallSnapshotReq req) {
+        ByteBuffer bb = req.data.getBuffer();
+        int rawLen = bb.remaining();
+        byte[] dest = new byte[Lz4.maxCompressedLength(rawLen)];
+        int len = compress(bb.array(), bb.arrayOffset() + bb.position(), rawLen, dest);
+        if (len > 0) {
+            req.compressedData = dest;
+            req.compressedLen = len;
+        }
+    }
+
+    /**
+     * @return the compressed length, or -1 if the compression ratio is poor
+     */
+    int compress(byte[] src, int off, int len, byte[] dest) {
+        int compressedLen = Lz4.compress(src, off, len, dest, 0);
+        if (compressedLen > len * MAX_RATIO) {
+            bypassCount = nextBypass;
+            nextBypass = Math.min(nextBypass << 1, MAX_BYPASS);
+            return -1;
+        }
+        nextBypass = MIN_BYPASS;
+        perfCallback.fire(PerfConsts.RAFT_C_REPLICATE_COMPRESS, 1, len - compressedLen);
+        return compressedLen;
+    }
+}
@@ -48,6 +48,7 @@ import com.github.dtprj.dongting.raft.rpc.InstallSnapshotReq;
 import com.github.dtprj.dongting.raft.server.LogItem;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 import com.github.dtprj.dongting.raft.server.RaftServerConfig;
+import com.github.dtprj.dongting.raft.sm.FileSnapshotStream;
 import com.github.dtprj.dongting.raft.sm.Snapshot;
 import com.github.dtprj.dongting.raft.sm.SnapshotInfo;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
@@ -217,7 +218,8 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
 
     private final int maxReplicateItems;
     private final int restItemsToStartReplicate;
-    private final long maxReplicateBytes;
+    private final ReplicateWindow replicateWindow;
+    private final ReplicateCompressor compressor;
 
     int pendingItems;
     long pendingBytes;
@@ -243,7 +245,10 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
         this.commitManager = commitManager;
 
         this.maxReplicateItems = groupConfig.maxReplicateItems;
-        this.maxReplicateBytes = groupConfig.maxReplicateBytes;
+        this.replicateWindow = new ReplicateWindow(groupConfig.maxReplicateBytes,
+                groupConfig.maxAdaptiveReplicateBytes);
+        this.compressor = new ReplicateCompressor(serverConfig.replicateCompressThreshold, perfCallback,
+                groupConfig.blockIoExecutor);
         this.restItemsToStartReplicate = (int) (maxReplicateItems * 0.1);
     }
 
@@ -280,7 +285,7 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
         if (pendingItems >= maxReplicateItems) {
             return await();
         }
-        if (pendingBytes >= maxReplicateBytes) {
+        if (pendingBytes >= replicateWindow.getWindow()) {
             return await();
         }
 
@@ -347,7 +352,8 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
             return Fiber.resume(null, this);
         } else {
             if (replicateIterator == null) {
-                replicateIterator = raftLog.openIterator(this::epochChange);
+                replicateIterator = groupConfig.replicateRawLog ? raftLog.openRawIterator(this::epochChange)
+                        : raftLog.openIterator(this::epochChange);
             }
             FiberFrame<List<LogItem>> nextFrame = replicateIterator.next(nextIndex, Math.min(limit, 1024),
                     groupConfig.singleReplicateLimit);
@@ -408,7 +414,8 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
         RpcCallback<AppendResp> c = (result, ex) ->
                 ge.execute(() -> afterAppendRpc(result, ex, req, leaseStartNanos, finalBytes, perfStartTime));
         // release in AppendReqWritePacket
-        client.sendRequest(member.node.peer, req, APPEND_RESP_DECODER_CALLBACK_CREATOR, timeout, c);
+        compressor.send(member.node.peer, req, bytes, () -> client.sendRequest(member.node.peer, req,
+                APPEND_RESP_DECODER_CALLBACK_CREATOR, timeout, c));
         pendingItems += items.size();
         pendingBytes += bytes;
     }
@@ -426,7 +433,7 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
         descPending(itemCount, bytes);
 
         if (ex == null) {
-            processAppendResult(rf, req, leaseStartNanos, itemCount);
+            processAppendResult(rf, req, leaseStartNanos, itemCount, bytes);
         } else {
             incrementEpoch();
 
@@ -449,7 +456,7 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
     }
 
     private void processAppendResult(ReadPacket<AppendResp> resp, AppendReqWritePacket req,
-                                     long leaseStartNanos, int itemCount) {
+                                     long leaseStartNanos, int itemCount, long bytes) {
         long prevLogIndex = req.prevLogIndex;
         int prevLogTerm = req.prevLogTerm;
         long expectNewMatchIndex = prevLogIndex + itemCount;
@@ -475,6 +482,7 @@ class LeaderRepFrame extends AbstractLeaderRepFrame {
                 updateLease(member, leaseStartNanos, raftStatus);
                 member.matchIndex = expectNewMatchIndex;
                 multiAppend = true;
+                replicateWindow.onAck(bytes, member.node.rttNanos, ts.nanoTime);
                 commitManager.leaderTryCommit(expectNewMatchIndex);
             } else {
                 BugLog.log("append miss order. old matchIndex={}, append prevLogIndex={}," +
@@ -617,6 +625,7 @@ class LeaderInstallFrame extends AbstractLeaderRepFrame {
     private final NioClient client;
     private final ReplicateManager replicateManager;
     private final RefBufferFactory heapPool;
+    private final ReplicateCompressor compressor;
 
     private Snapshot snapshot;
     private long nextPosAfterInstallFinish;
@@ -630,6 +639,8 @@ class LeaderInstallFrame extends AbstractLeaderRepFrame {
         this.client = replicateManager.client;
         this.replicateManager = replicateManager;
         this.heapPool = groupConfig.fiberGroup.dispatcher.thread.heapPool;
+        this.compressor = new ReplicateCompressor(serverConfig.replicateCompressThreshold, groupConfig.perfCallback,
+                groupConfig.blockIoExecutor);
     }
 
     @Override
@@ -653,10 +664,38 @@ class LeaderInstallFrame extends AbstractLeaderRepFrame {
         if (shouldStopReplicate()) {
             return Fiber.frameReturn();
         }
+        Snapshot fileSnapshot = openFileSnapshot();
+        if (fileSnapshot != null) {
+            return afterTakeSnapshot(fileSnapshot);
+        }
         FiberFuture<Snapshot> f = replicateManager.gc.applyManager.requestTakeSnapshot();
         return f.await(this::afterTakeSnapshot);
     }
 
+    private Snapshot openFileSnapshot() {
+        long maxLag = groupConfig.installFromFileMaxLag;
+        if (maxLag <= 0) {
+            return null;
+        }
+        try {
+            Snapshot s = replicateManager.gc.snapshotManager.openLatestSnapshot();
+            if (s == null) {
+                return null;
+            }
+            long lastIncludedIndex = s.getSnapshotInfo().lastIncludedIndex;
+            if (raftStatus.getLastApplied() - lastIncludedIndex > maxLag) {
+                s.close();
+                return null;
+            }
+            log.info("install snapshot from saved file, lastIncludedIndex={}, groupId={}, remoteId={}",
+                    lastIncludedIndex, groupId, member.node.nodeId);
+            return s;
+        } catch (Exception e) {
+            log.warn("open saved snapshot fail, groupId={}", groupId, e);
+            return null;
+        }
+    }
+
     private FrameCallResult afterTakeSnapshot(Snapshot snapshot) {
         if (snapshot == null) {
             log.error("open recent snapshot fail, return null");
@@ -684,7 +723,13 @@ class LeaderInstallFrame extends AbstractLeaderRepFrame {
         if (shouldStopReplicate()) {
             return Fiber.frameReturn();
         }
-        Supplier<RefBuffer> bufferCreator = () -> heapPool.create(groupConfig.replicateSnapshotBufferSize);
+        int bufferSize = groupConfig.replicateSnapshotBufferSize;
+        if (snapshot instanceof FileSnapshotStream) {
+            // read the file blocks directly to the buffer
+            bufferSize = Math.max(bufferSize, ((FileSnapshotStream) snapshot).getMaxBlockSize());
+        }
+        int finalBufferSize = bufferSize;
+        Supplier<RefBuffer> bufferCreator = () -> heapPool.create(finalBufferSize);
 
         int readConcurrency = groupConfig.snapshotConcurrency;
         int writeConcurrency = groupConfig.replicateSnapshotConcurrency;
@@ -739,18 +784,20 @@ class LeaderInstallFrame extends AbstractLeaderRepFrame {
         }
         req.data = data;
 
-        // data buffer released in WritePacket
-        InstallSnapshotReq.InstallReqWritePacket wf = new InstallSnapshotReq.InstallReqWritePacket(req);
-        wf.command = Commands.RAFT_INSTALL_SNAPSHOT;
         FiberGroup fg = groupConfig.fiberGroup;
         FiberFuture<Void> f = fg.newFuture("install-" + groupId + "-" + req.offset);
         DtTime timeout = new DtTime(serverConfig.rpcTimeout, TimeUnit.MILLISECONDS);
         RpcCallback<AppendResp> callback = (resp, ex) ->
                 fg.getExecutor().execute(() -> afterInstallRpc(resp, ex, req, f));
         int bytes = data == null ? 0 : data.getBuffer().remaining();
-        // buffer released after send encode (in another thread)
-        client.sendRequest(member.node.peer, wf, APPEND_RESP_DECODER_CALLBACK_CREATOR,
-                timeout, callback);
+        compressor.send(member.node.peer, req, () -> {
+            // data buffer released in WritePacket
+            InstallSnapshotReq.InstallReqWritePacket wf = new InstallSnapshotReq.InstallReqWritePacket(req);
+            wf.command = Commands.RAFT_INSTALL_SNAPSHOT;
+            // buffer released after send encode (in another thread)
+            client.sendRequest(member.node.peer, wf, APPEND_RESP_DECODER_CALLBACK_CREATOR,
+                    timeout, callback);
+        });
         snapshotOffset += bytes;
         log.info("transfer snapshot data to member {}. groupId={}, offset={}, bytes={}, done={}",
                 member.node.nodeId, groupId, req.offset, bytes, req.done);
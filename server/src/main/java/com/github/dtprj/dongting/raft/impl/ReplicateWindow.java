@@ -0,0 +1,93 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.impl;
+
+/**
+ * Estimate the bandwidth-delay product of a follower, and use it as the bytes limit in flight.
+ * The bandwidth is the max delivery rate of the append acks sampled in every rtt, the delay is the min network
+ * rtt in recent period. The rtt is measured by node ping, not by the append response, since the append response
+ * is sent after the follower forces the logs, so its latency contains the disk latency.
+ *
+ * @author huangli
+ */
+class ReplicateWindow {
+
+    private static final long MIN_RTT_EXPIRE_NANOS = 10_000_000_000L;
+    private static final long MIN_SAMPLE_NANOS = 1_000_000L;
+
+    private final long minWindow;
+    private final long maxWindow;
+
+    private long window;
+
+    private long minRttNanos = Long.MAX_VALUE;
+    private long minRttUpdateNanos;
+
+    // bytes per second
+    private long maxBandwidth;
+    private long ackedBytes;
+    private long sampleStartBytes;
+    private long sampleStartNanos;
+    private boolean sampleStarted;
+
+    ReplicateWindow(long minWindow, long maxWindow) {
+        this.minWindow = minWindow;
+        this.maxWindow = Math.max(minWindow, maxWindow);
+        this.window = minWindow;
+    }
+
+    long getWindow() {
+        return window;
+    }
+
+    /**
+     * called when an append is acked.
+     *
+     * @param bytes the acked bytes
+     * @param rtt the latest network rtt of the follower, 0 if unknown
+     * @param nowNanos current time
+     */
+    void onAck(long bytes, long rtt, long nowNanos) {
+        if (minWindow == maxWindow || bytes <= 0 || rtt <= 0) {
+            return;
+        }
+        if (rtt <= minRttNanos || nowNanos - minRttUpdateNanos > MIN_RTT_EXPIRE_NANOS) {
+            minRttNanos = rtt;
+            minRttUpdateNanos = nowNanos;
+        }
+
+        ackedBytes += bytes;
+        if (!sampleStarted) {
+            sampleStarted = true;
+            sampleStartNanos = nowNanos;
+            sampleStartBytes = ackedBytes;
+            return;
+        }
+        long elapse = nowNanos - sampleStartNanos;
+        if (elapse < Math.max(minRttNanos, MIN_SAMPLE_NANOS)) {
+            return;
+        }
+        long bw = (long) ((ackedBytes - sampleStartBytes) * 1_000_000_000.0 / elapse);
+        // decay the old max, so the window shrinks if the bandwidth drops
+        maxBandwidth = Math.max(bw, maxBandwidth - (maxBandwidth >> 3));
+        sampleStartNanos = nowNanos;
+        sampleStartBytes = ackedBytes;
+
+        // the delivery rate is limited by the window itself, use 2x bdp so the window can grow
+        double bdp = maxBandwidth * (minRttNanos / 1_000_000_000.0);
+        window = (long) Math.max(minWindow, Math.min(maxWindow, 2 * bdp));
+    }
+}
@@ -32,6 +32,7 @@ import com.github.dtprj.dongting.raft.sm.Snapshot;
 import java.util.LinkedList;
 import java.util.Objects;
 import java.util.function.BiFunction;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
 /**
@@ -42,6 +43,8 @@ public class SnapshotReader extends FiberFrame<Void> {
     private static final DtLog log = DtLogs.getLogger(SnapshotReader.class);
 
     private final Snapshot snapshot;
+    // -1 means read the whole snapshot by readNext(ByteBuffer)
+    private final int partition;
     private final int maxReadConcurrency;
     private final int maxWriteConcurrency;
     private final BiFunction<RefBuffer, Integer, FiberFuture<Void>> callback;
@@ -61,14 +64,62 @@ public class SnapshotReader extends FiberFrame<Void> {
                           BiFunction<RefBuffer, Integer, FiberFuture<Void>> callback,
                           Supplier<Boolean> cancel,
                           Supplier<RefBuffer> bufferCreator) {
+        this(snapshot, -1, maxReadConcurrency, maxWriteConcurrency, callback, cancel, bufferCreator);
+    }
+
+    public SnapshotReader(Snapshot snapshot, int partition, int maxReadConcurrency, int maxWriteConcurrency,
+                          BiFunction<RefBuffer, Integer, FiberFuture<Void>> callback,
+                          Supplier<Boolean> cancel,
+                          Supplier<RefBuffer> bufferCreator) {
         this.snapshot = snapshot;
+        this.partition = partition;
         this.maxReadConcurrency = maxReadConcurrency;
         this.maxWriteConcurrency = maxWriteConcurrency;
         this.callback = callback;
         this.cancel = cancel;
         this.bufferCreator = bufferCreator;
         this.cond = FiberGroup.currentGroup().newCondition("snapshotReaderCond");
-        log.info("create snapshot reader: {}", snapshot.getClass().getSimpleName());
+        log.info("create snapshot reader: {}, partition={}", snapshot.getClass().getSimpleName(), partition);
+    }
+
+    /**
+     * read all partitions of the snapshot concurrently, each partition in a separate fiber. The returned future
+     * completes after all readers finished, or fails with the exception of the first failed reader, the other
+     * readers are canceled once a reader fails.
+     */
+    public static FiberFuture<Void> readPartitions(String name, Snapshot snapshot, int maxReadConcurrency,
+                                                   int maxWriteConcurrency,
+                                                   IntFunction<BiFunction<RefBuffer, Integer, FiberFuture<Void>>> callbacks,
+                                                   Supplier<Boolean> cancel, Supplier<RefBuffer> bufferCreator) {
+        FiberGroup g = FiberGroup.currentGroup();
+        int count = snapshot.getPartitionCount();
+        boolean[] fail = new boolean[1];
+        Supplier<Boolean> c = () -> fail[0] || cancel.get();
+        FiberFuture<?>[] futures = new FiberFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            FiberFuture<Void> f = g.newFuture(name + "-" + i);
+            futures[i] = f;
+            SnapshotReader r = new SnapshotReader(snapshot, i, maxReadConcurrency, maxWriteConcurrency,
+                    callbacks.apply(i), c, bufferCreator);
+            Fiber fiber = new Fiber(name + "-" + i, g, new FiberFrame<>() {
+                @Override
+                public FrameCallResult execute(Void input) {
+                    return Fiber.call(r, v -> {
+                        f.complete(null);
+                        return Fiber.frameReturn();
+                    });
+                }
+
+                @Override
+                protected FrameCallResult handle(Throwable ex) {
+                    fail[0] = true;
+                    f.completeExceptionally(ex);
+                    return Fiber.frameReturn();
+                }
+            });
+            fiber.start();
+        }
+        return FiberFuture.allOf(name, futures);
     }
 
     @Override
@@ -85,7 +136,8 @@ public class SnapshotReader extends FiberFrame<Void> {
                 // fire read task
                 RefBuffer buf = bufferCreator.get();
                 addNewReadTask = true;
-                FiberFuture<Integer> future = Objects.requireNonNull(snapshot.readNext(buf.getBuffer()));
+                FiberFuture<Integer> future = Objects.requireNonNull(partition < 0 ?
+                        snapshot.readNext(buf.getBuffer()) : snapshot.readNext(partition, buf.getBuffer()));
                 readList.add(new Pair<>(buf, future));
                 future.registerCallback((v, ex) -> cond.signal());
             }
@@ -66,9 +66,12 @@ public class AppendProcessor extends RaftSequenceProcessor<Object> {
     public static final int APPEND_SERVER_ERROR = 6;
 
     private final Function<Integer, RaftCodecFactory> decoderFactory;
+    // the decompressed size of a request is limited by this value
+    private final int maxPacketSize;
 
     public AppendProcessor(RaftServer raftServer) {
         super(raftServer, false, true);
+        this.maxPacketSize = raftServer.getNioServer().getConfig().maxPacketSize;
         this.decoderFactory = groupId -> {
             RaftGroup g = raftServer.getRaftGroup(groupId);
             return g == null ? null : g.getStateMachine();
@@ -91,10 +94,10 @@ public class AppendProcessor extends RaftSequenceProcessor<Object> {
     @Override
     public DecoderCallback createDecoderCallback(int command, DecodeContext context) {
         if (command == Commands.RAFT_APPEND_ENTRIES) {
-            AppendReq.Callback c = ((DecodeContextEx) context).appendReqCallback(decoderFactory);
+            AppendReq.Callback c = ((DecodeContextEx) context).appendReqCallback(decoderFactory, maxPacketSize);
             return context.toDecoderCallback(c);
         } else {
-            return context.toDecoderCallback(new InstallSnapshotReq.Callback());
+            return context.toDecoderCallback(new InstallSnapshotReq.Callback(maxPacketSize));
         }
     }
 
@@ -15,7 +15,9 @@
  */
 package com.github.dtprj.dongting.raft.rpc;
 
+import com.github.dtprj.dongting.codec.Lz4;
 import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbException;
 import com.github.dtprj.dongting.common.DtCleanable;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
@@ -40,6 +42,8 @@ import java.util.function.Function;
 //fixed64 leader_commit = 6;
 //int32 logs_size = 7;
 //repeated LogItem entries = 8[packed=false];
+//int32 entries_raw_size = 9;
+//bytes compressed_entries = 10;
 //}
 public class AppendReq extends RaftRpcData implements DtCleanable {
     private static final DtLog log = DtLogs.getLogger(AppendReq.class);
@@ -52,6 +56,8 @@ public class AppendReq extends RaftRpcData implements DtCleanable {
     public static final int IDX_LEADER_COMMIT = 6;
     public static final int IDX_LOGS_SIZE = 7;
     public static final int IDX_ENTRIES = 8;
+    public static final int IDX_ENTRIES_RAW_SIZE = 9;
+    public static final int IDX_COMPRESSED_ENTRIES = 10;
 
     // private int groupId;
     // private int term;
@@ -73,12 +79,17 @@ public class AppendReq extends RaftRpcData implements DtCleanable {
     public static class Callback extends PbCallback<AppendReq> {
 
         private final Function<Integer, RaftCodecFactory> decoderFactory;
+        // the max size of the decompressed entries
+        private final int maxRawSize;
         private AppendReq result;
 
         private final LogItemCallback logItemCallback = new LogItemCallback();
+        private final EntriesCallback entriesCallback = new EntriesCallback();
+        private int entriesRawSize;
 
-        public Callback(Function<Integer, RaftCodecFactory> decoderFactory) {
+        public Callback(Function<Integer, RaftCodecFactory> decoderFactory, int maxRawSize) {
             this.decoderFactory = decoderFactory;
+            this.maxRawSize = maxRawSize;
         }
 
         @Override
@@ -92,6 +103,7 @@ public class AppendReq extends RaftRpcData implements DtCleanable {
                 result.clean();
             }
             result = null;
+            entriesRawSize = 0;
             logItemCallback.codecFactory = null;
         }
 
@@ -113,6 +125,12 @@ public class AppendReq extends RaftRpcData implements DtCleanable {
                 case IDX_LOGS_SIZE:
                     result.logs = createArrayList((int) value);
                     break;
+                case IDX_ENTRIES_RAW_SIZE:
+                    if (value < 0 || value > maxRawSize) {
+                        throw new PbException("entries raw size exceed " + maxRawSize + ": " + value);
+                    }
+                    entriesRawSize = (int) value;
+                    break;
             }
             return true;
         }
@@ -132,28 +150,59 @@ public class AppendReq extends RaftRpcData implements DtCleanable {
 
         @Override
         public boolean readBytes(int index, ByteBuffer buf, int len, int currentPos) {
-            boolean end = buf.remaining() >= len - currentPos;
-            if (index == IDX_ENTRIES) {
+            if (index != IDX_ENTRIES && index != IDX_COMPRESSED_ENTRIES) {
+                return true;
+            }
+            if (logItemCallback.codecFactory == null) {
+                logItemCallback.codecFactory = decoderFactory.apply(result.groupId);
                 if (logItemCallback.codecFactory == null) {
-                    logItemCallback.codecFactory = decoderFactory.apply(result.groupId);
-                    if (logItemCallback.codecFactory == null) {
-                        log.error("can't find raft group codecFactory: {}", result.groupId);
-                        // cancel parse, so return null, but parent parser not canceled,
-                        // we will get a ReadPacket with null body
-                        return false;
-                    }
+                    log.error("can't find raft group codecFactory: {}", result.groupId);
+                    // cancel parse, so return null, but parent parser not canceled,
+                    // we will get a ReadPacket with null body
+                    return false;
                 }
+            }
+            if (index == IDX_ENTRIES) {
+                boolean end = buf.remaining() >= len - currentPos;
                 LogItem i = (LogItem) parseNested(buf, len, currentPos, logItemCallback);
                 if (end) {
-                    if (result.logs == null) {
-                        result.logs = new ArrayList<>();
-                    }
-                    result.logs.add(i);
+                    addLog(i);
+                }
+            } else {
+                byte[] compressed = parseBytes(buf, len, currentPos);
+                if (compressed != null) {
+                    byte[] raw = new byte[entriesRawSize];
+                    Lz4.decompress(compressed, 0, compressed.length, raw, 0, entriesRawSize);
+                    parseNested(ByteBuffer.wrap(raw), entriesRawSize, 0, entriesCallback);
                 }
             }
             return true;
         }
 
+        private void addLog(LogItem i) {
+            if (result.logs == null) {
+                result.logs = new ArrayList<>();
+            }
+            result.logs.add(i);
+        }
+
+        // parse the decompressed entries
+        private class EntriesCallback extends PbCallback<Void> {
+            @Override
+            public boolean readBytes(int index, ByteBuffer buf, int len, int currentPos) {
+                if (index == IDX_ENTRIES) {
+                    // the decompressed buffer is complete
+                    addLog((LogItem) parseNested(buf, len, currentPos, logItemCallback));
+                }
+                return true;
+            }
+
+            @Override
+            protected Void getResult() {
+                return null;
+            }
+        }
+
         @Override
         public AppendReq getResult() {
             return result;
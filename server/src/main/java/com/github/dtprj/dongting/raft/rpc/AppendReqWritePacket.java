@@ -37,6 +37,8 @@ import java.util.List;
 //fixed64 leader_commit = 6;
 //int32 logs_size = 7;
 //repeated LogItem entries = 8[packed=false];
+//int32 entries_raw_size = 9;
+//bytes compressed_entries = 10;
 //        }
 //
 //message LogItem {
@@ -65,11 +67,18 @@ public class AppendReqWritePacket extends WritePacket {
     private static final int WRITE_ITEM_HEADER = 1;
     private static final int WRITE_ITEM_BIZ_HEADER = 2;
     private static final int WRITE_ITEM_BIZ_BODY = 3;
+    private static final int WRITE_COMPRESSED_ENTRIES = 4;
     private int writeStatus;
     private int encodeLogIndex;
 
     private LogItem currentItem;
 
+    // if not null, the entries are sent in lz4 compressed form
+    private byte[] compressedEntries;
+    private int compressedLen;
+    private int entriesRawSize;
+    private int compressedWritten;
+
     public AppendReqWritePacket() {
     }
 
@@ -83,6 +92,11 @@ public class AppendReqWritePacket extends WritePacket {
                 + PbUtil.sizeOfFix64Field(AppendReq.IDX_LEADER_COMMIT, leaderCommit)
                 + PbUtil.sizeOfInt32Field(AppendReq.IDX_LOGS_SIZE, logs == null ? 0 : logs.size());
         int x = headerSize;
+        if (compressedEntries != null) {
+            headerSize += PbUtil.sizeOfInt32Field(AppendReq.IDX_ENTRIES_RAW_SIZE, entriesRawSize)
+                    + PbUtil.sizeOfLenFieldPrefix(AppendReq.IDX_COMPRESSED_ENTRIES, compressedLen);
+            return headerSize + compressedLen;
+        }
         if (logs != null) {
             for (LogItem item : logs) {
                 int itemSize = computeItemSize(item);
@@ -93,6 +107,35 @@ public class AppendReqWritePacket extends WritePacket {
         return x;
     }
 
+    /**
+     * encode the entries to a heap array, the result can be compressed and set back by setCompressedEntries.
+     */
+    public byte[] encodeEntries() {
+        int size = 0;
+        if (logs != null) {
+            for (LogItem item : logs) {
+                int itemSize = computeItemSize(item);
+                size += PbUtil.sizeOfLenFieldPrefix(AppendReq.IDX_ENTRIES, itemSize) + itemSize;
+            }
+        }
+        byte[] arr = new byte[size];
+        ByteBuffer buf = ByteBuffer.wrap(arr);
+        writeStatus = WRITE_ITEM_HEADER;
+        boolean finish = encodeEntries(new EncodeContext(null), buf);
+        if (!finish || buf.hasRemaining()) {
+            throw new IllegalStateException("encode entries fail");
+        }
+        writeStatus = WRITE_HEADER;
+        encodeLogIndex = 0;
+        return arr;
+    }
+
+    public void setCompressedEntries(int rawSize, byte[] compressed, int compressedLen) {
+        this.entriesRawSize = rawSize;
+        this.compressedEntries = compressed;
+        this.compressedLen = compressedLen;
+    }
+
     private int computeItemSize(LogItem item) {
         int itemSize = item.pbItemSize;
         if (itemSize > 0) {
@@ -127,8 +170,28 @@ public class AppendReqWritePacket extends WritePacket {
                     PbUtil.writeInt32Field(dest, AppendReq.IDX_PREV_LOG_TERM, prevLogTerm);
                     PbUtil.writeFix64Field(dest, AppendReq.IDX_LEADER_COMMIT, leaderCommit);
                     PbUtil.writeInt32Field(dest, AppendReq.IDX_LOGS_SIZE, logs == null ? 0 : logs.size());
-                    writeStatus = WRITE_ITEM_HEADER;
+                    if (compressedEntries != null) {
+                        PbUtil.writeInt32Field(dest, AppendReq.IDX_ENTRIES_RAW_SIZE, entriesRawSize);
+                        PbUtil.writeLenFieldPrefix(dest, AppendReq.IDX_COMPRESSED_ENTRIES, compressedLen);
+                        writeStatus = WRITE_COMPRESSED_ENTRIES;
+                    } else {
+                        writeStatus = WRITE_ITEM_HEADER;
+                    }
                     break;
+                case WRITE_COMPRESSED_ENTRIES:
+                    int len = Math.min(dest.remaining(), compressedLen - compressedWritten);
+                    dest.put(compressedEntries, compressedWritten, len);
+                    compressedWritten += len;
+                    return compressedWritten >= compressedLen;
+                default:
+                    return encodeEntries(context, dest);
+            }
+        }
+    }
+
+    private boolean encodeEntries(EncodeContext context, ByteBuffer dest) {
+        while (true) {
+            switch (writeStatus) {
                 case WRITE_ITEM_HEADER:
                     if (logs != null && encodeLogIndex < logs.size()) {
                         currentItem = logs.get(encodeLogIndex);
@@ -17,7 +17,9 @@ package com.github.dtprj.dongting.raft.rpc;
 
 import com.github.dtprj.dongting.buf.RefBuffer;
 import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.Lz4;
 import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbException;
 import com.github.dtprj.dongting.codec.PbUtil;
 import com.github.dtprj.dongting.common.DtCleanable;
 import com.github.dtprj.dongting.net.WritePacket;
@@ -46,6 +48,8 @@ import java.util.HashSet;
 //  fixed64 last_config_change_index = 13;
 
 //  bytes data = 15;
+//  uint32 data_raw_size = 16;
+//  bytes compressed_data = 17;
 public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable {
 
     private static final int IDX_GROUP_ID = 1;
@@ -62,6 +66,8 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
     private static final int IDX_PREPARED_OBSERVERS = 12;
     private static final int IDX_LAST_CONFIG_CHANGE_INDEX = 13;
     private static final int IDX_DATA = 15;
+    private static final int IDX_DATA_RAW_SIZE = 16;
+    private static final int IDX_COMPRESSED_DATA = 17;
     // public int groupId;
     // public int term;
     public int leaderId;
@@ -79,6 +85,11 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
 
     public RefBuffer data;
 
+    // if not null, the data is sent in lz4 compressed form
+    public byte[] compressedData;
+    public int compressedLen;
+    private int dataRawSize;
+
     @Override
     public void clean() {
         if (data != null) {
@@ -89,6 +100,12 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
 
     public static class Callback extends PbCallback<InstallSnapshotReq> {
         private final InstallSnapshotReq result = new InstallSnapshotReq();
+        // the max size of the decompressed data
+        private final int maxRawSize;
+
+        public Callback(int maxRawSize) {
+            this.maxRawSize = maxRawSize;
+        }
 
         @Override
         public boolean readVarNumber(int index, long value) {
@@ -108,6 +125,12 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
                 case IDX_DONE:
                     result.done = value != 0;
                     break;
+                case IDX_DATA_RAW_SIZE:
+                    if (value < 0 || value > maxRawSize) {
+                        throw new PbException("data raw size exceed " + maxRawSize + ": " + value);
+                    }
+                    result.dataRawSize = (int) value;
+                    break;
             }
             return true;
         }
@@ -168,6 +191,18 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
                 if (rb != null) {
                     result.data = rb;
                 }
+            } else if (index == IDX_COMPRESSED_DATA) {
+                byte[] compressed = parseBytes(buf, len, currentPos);
+                if (compressed != null) {
+                    RefBuffer rb = context.getHeapPool().create(result.dataRawSize);
+                    ByteBuffer bb = rb.getBuffer();
+                    Lz4.decompress(compressed, 0, compressed.length, bb.array(),
+                            bb.arrayOffset() + bb.position(), result.dataRawSize);
+                    bb.position(bb.position() + result.dataRawSize);
+                    bb.flip();
+                    rb.prepareForEncode();
+                    result.data = rb;
+                }
             }
             return true;
         }
@@ -191,6 +226,7 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
         private final int headerSize;
         private final int bufferSize;
         private boolean headerWritten = false;
+        private int compressedWritten;
 
         public InstallReqWritePacket(InstallSnapshotReq req) {
             this.req = req;
@@ -209,7 +245,11 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
             x += PbUtil.sizeOfFix64Field(IDX_LAST_CONFIG_CHANGE_INDEX, req.lastConfigChangeIndex);
 
             RefBuffer rb = req.data;
-            if (rb != null && rb.getBuffer().hasRemaining()) {
+            if (req.compressedData != null) {
+                this.bufferSize = req.compressedLen;
+                x += PbUtil.sizeOfInt32Field(IDX_DATA_RAW_SIZE, rb.getBuffer().remaining())
+                        + PbUtil.sizeOfLenFieldPrefix(IDX_COMPRESSED_DATA, bufferSize) + bufferSize;
+            } else if (rb != null && rb.getBuffer().hasRemaining()) {
                 this.bufferSize = rb.getBuffer().remaining();
                 x += PbUtil.sizeOfLenFieldPrefix(IDX_DATA, bufferSize) + bufferSize;
             } else {
@@ -240,7 +280,10 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
                     PbUtil.writeFix32Field(dest, IDX_PREPARED_MEMBERS, req.preparedMembers);
                     PbUtil.writeFix32Field(dest, IDX_PREPARED_OBSERVERS, req.preparedObservers);
                     PbUtil.writeFix64Field(dest, IDX_LAST_CONFIG_CHANGE_INDEX, req.lastConfigChangeIndex);
-                    if (bufferSize > 0) {
+                    if (req.compressedData != null) {
+                        PbUtil.writeInt32Field(dest, IDX_DATA_RAW_SIZE, req.data.getBuffer().remaining());
+                        PbUtil.writeLenFieldPrefix(dest, IDX_COMPRESSED_DATA, bufferSize);
+                    } else if (bufferSize > 0) {
                         PbUtil.writeLenFieldPrefix(dest, IDX_DATA, bufferSize);
                     }
                     headerWritten = true;
@@ -251,6 +294,12 @@ public class InstallSnapshotReq extends RaftConfigRpcData implements DtCleanable
             if (bufferSize == 0) {
                 return true;
             }
+            if (req.compressedData != null) {
+                int len = Math.min(dest.remaining(), bufferSize - compressedWritten);
+                dest.put(req.compressedData, compressedWritten, len);
+                compressedWritten += len;
+                return compressedWritten >= bufferSize;
+            }
             dest.put(req.data.getBuffer());
             return !req.data.getBuffer().hasRemaining();
         }
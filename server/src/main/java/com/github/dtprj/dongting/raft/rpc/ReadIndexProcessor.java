@@ -0,0 +1,61 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.rpc;
+
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.net.PbLongWritePacket;
+import com.github.dtprj.dongting.net.ReadPacket;
+import com.github.dtprj.dongting.raft.server.RaftServer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Process the read index request from followers, response the commit index of the leader.
+ *
+ * @author huangli
+ */
+public class ReadIndexProcessor extends RaftSequenceProcessor<Integer> {
+
+    public ReadIndexProcessor(RaftServer raftServer) {
+        super(raftServer, false, true);
+    }
+
+    @Override
+    public DecoderCallback<Integer> createDecoderCallback(int command, DecodeContext context) {
+        return context.toDecoderCallback(context.cachedPbIntCallback());
+    }
+
+    @Override
+    protected int getGroupId(ReadPacket<Integer> frame) {
+        return frame.getBody();
+    }
+
+    @Override
+    protected FiberFrame<Void> processInFiberGroup(ReqInfoEx<Integer> reqInfo) {
+        CompletableFuture<Long> f = new CompletableFuture<>();
+        f.whenComplete((index, ex) -> {
+            if (ex != null) {
+                writeErrorResp(reqInfo, ex);
+            } else {
+                reqInfo.reqContext.writeRespInBizThreads(new PbLongWritePacket(index));
+            }
+        });
+        reqInfo.raftGroup.groupComponents.readIndexManager.leaderReadIndex(reqInfo.reqContext.getTimeout(), f);
+        return FiberFrame.voidCompletedFrame();
+    }
+}
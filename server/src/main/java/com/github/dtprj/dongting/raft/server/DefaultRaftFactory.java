@@ -31,6 +31,8 @@ import com.github.dtprj.dongting.raft.store.DefaultRaftLog;
 import com.github.dtprj.dongting.raft.store.RaftLog;
 import com.github.dtprj.dongting.raft.store.StatusManager;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -42,6 +44,10 @@ public abstract class DefaultRaftFactory implements RaftFactory {
 
     protected PoolFactory poolFactory;
 
+    // used if RaftServerConfig.dispatcherPoolSize > 0, the value is the group count of the dispatcher
+    private final LinkedHashMap<Dispatcher, Integer> sharedDispatchers = new LinkedHashMap<>();
+    private int sharedDispatcherIndex;
+
     public DefaultRaftFactory() {
         this.poolFactory = createPoolFactory();
     }
@@ -79,17 +85,57 @@ public abstract class DefaultRaftFactory implements RaftFactory {
 
     @Override
     public Dispatcher createDispatcher(RaftServerConfig serverConfig, RaftGroupConfig groupConfig) {
+        if (serverConfig.dispatcherPoolSize > 0) {
+            return selectSharedDispatcher(serverConfig.dispatcherPoolSize);
+        }
         return new Dispatcher("raft-dispatcher-" + groupConfig.groupId, poolFactory,
                 new DefaultFiberPerf());
     }
 
+    private synchronized Dispatcher selectSharedDispatcher(int poolSize) {
+        Dispatcher selected = null;
+        int min = Integer.MAX_VALUE;
+        for (Map.Entry<Dispatcher, Integer> e : sharedDispatchers.entrySet()) {
+            if (e.getValue() < min && e.getKey().getStatus() <= AbstractLifeCircle.STATUS_RUNNING) {
+                selected = e.getKey();
+                min = e.getValue();
+            }
+        }
+        if (selected == null || (min > 0 && sharedDispatchers.size() < poolSize)) {
+            selected = new Dispatcher("raft-dispatcher-shared-" + sharedDispatcherIndex++, poolFactory,
+                    new DefaultFiberPerf());
+            min = 0;
+        }
+        sharedDispatchers.put(selected, min + 1);
+        return selected;
+    }
+
     @Override
     public void startDispatcher(Dispatcher dispatcher) {
+        synchronized (this) {
+            if (sharedDispatchers.containsKey(dispatcher)) {
+                if (dispatcher.getStatus() == AbstractLifeCircle.STATUS_NOT_START) {
+                    dispatcher.start();
+                }
+                return;
+            }
+        }
         dispatcher.start();
     }
 
     @Override
     public void stopDispatcher(Dispatcher dispatcher, DtTime timeout) {
+        synchronized (this) {
+            Integer count = sharedDispatchers.get(dispatcher);
+            if (count != null) {
+                if (count > 1) {
+                    // other groups are still running in this dispatcher
+                    sharedDispatchers.put(dispatcher, count - 1);
+                    return;
+                }
+                sharedDispatchers.remove(dispatcher);
+            }
+        }
         if (dispatcher.getStatus() <= AbstractLifeCircle.STATUS_RUNNING) {
             dispatcher.stop(timeout);
         }
@@ -52,6 +52,19 @@ public abstract class RaftGroup {
 
     public abstract CompletableFuture<Void> addGroupReadyListener(DtTime deadline);
 
+    /**
+     * Get the read index (the commit index of the leader, confirmed by its lease) and wait it applied on this node,
+     * then a linearizable read can be performed on the local state machine, even if this node is a follower or
+     * an observer.
+     *
+     * <li>If the leader is unknown, or lease timeout, the future will fail with a NotLeaderException.</li>
+     * <li>If the index can't be applied before deadline, the future will fail with a RaftTimeoutException.</li>
+     *
+     * @param deadline the deadline
+     * @return the future of the read index, completed in raft thread
+     */
+    public abstract CompletableFuture<Long> readIndex(DtTime deadline);
+
     /**
      * ADMIN API.
      * try to delete logs before the index(exclude).
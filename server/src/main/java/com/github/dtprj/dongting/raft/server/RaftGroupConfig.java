@@ -34,6 +34,9 @@ public class RaftGroupConfig {
 
     public int maxReplicateItems = 20000;
     public long maxReplicateBytes = 16 * 1024 * 1024;
+    // if > maxReplicateBytes, the bytes in flight of each follower is sized by the estimated bandwidth-delay
+    // product (between maxReplicateBytes and this value), useful for followers with large rtt.
+    public long maxAdaptiveReplicateBytes = 0;
     public int singleReplicateLimit = 1800 * 1024;
 
     public int maxPendingTasks = 50000;
@@ -44,6 +47,13 @@ public class RaftGroupConfig {
     public int idxItemsPerFile = 1024 * 1024;
     public int idxCacheSize = 16 * 1024;
     public int idxFlushThreshold = 8 * 1024;
+    // if > 0, lookups in sealed idx files (not in the idx cache) read from memory mapped files,
+    // at most this number of files are mapped (LRU).
+    public int idxMmapFiles = 0;
+    // if > 0, don't write idx files, keep a position checkpoint for every this number of items in memory, and find
+    // the item position by scanning log headers from the nearest checkpoint. all the retained logs are scanned
+    // at startup to rebuild the checkpoints. can't be changed for an existing raft group.
+    public int idxSparseInterval = 0;
     public long logFileSize = 1024 * 1024 * 1024;
 
     public PerfCallback perfCallback = new DefaultRaftPerf();
@@ -55,9 +65,26 @@ public class RaftGroupConfig {
     public int diskSnapshotBufferSize = 64 * 1024;
     public int replicateSnapshotConcurrency = 4;
     public int replicateSnapshotBufferSize = 64 * 1024;
+    // if > 0, install snapshot to followers from the latest saved snapshot file if its lastIncludedIndex is
+    // at most this number of logs behind lastApplied, instead of taking a new snapshot from the state machine.
+    public long installFromFileMaxLag = 0;
+
+    // if > 1, apply at most this number of contiguous committed tasks in one StateMachine.execBatch call,
+    // the default execBatch calls exec one by one, override it to gain from batching.
+    public int maxApplyBatch = 0;
+    // if true, the tasks of different apply lanes (see StateMachine.applyLane) are executed concurrently and may
+    // complete out of order, the tasks of the same lane are executed one by one. The lastApplied only advances
+    // when all previous tasks complete. maxApplyBatch is ignored. DtKV not support it.
+    public boolean parallelApply = false;
+    // if true, the leader not decode the biz header and body when replicate logs from file (the follower is
+    // behind the tail cache), the raw bytes are copied to the network buffer directly.
+    public boolean replicateRawLog = false;
 
     public int saveSnapshotSeconds = 3600;
     public int maxKeepSnapshots = 2;
+    // if > 0, save delta snapshots (only changes after the previous saved snapshot) if the state machine
+    // supports it, at most this number of delta snapshots are chained after a full snapshot.
+    public int maxDeltaSnapshots = 0;
     public boolean saveSnapshotWhenClose = true;
     public int autoDeleteLogDelaySeconds = 60;
 
@@ -17,6 +17,9 @@ package com.github.dtprj.dongting.raft.server;
 
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.raft.store.AsyncChannelIoBackend;
+import com.github.dtprj.dongting.raft.store.FileIoBackend;
+import com.github.dtprj.dongting.raft.store.GroupCommitForcer;
 
 import java.util.concurrent.ExecutorService;
 
@@ -30,6 +33,9 @@ public class RaftGroupConfigEx extends RaftGroupConfig {
     public ExecutorService blockIoExecutor;
     public FiberGroup fiberGroup;
     public RaftServer raftServer;
+    // null if group commit force is disabled
+    public GroupCommitForcer groupCommitForcer;
+    public FileIoBackend fileIoBackend = AsyncChannelIoBackend.INSTANCE;
 
     public RaftGroupConfigEx(int groupId, String nodeIdOfMembers, String nodeIdOfObservers) {
         super(groupId, nodeIdOfMembers, nodeIdOfObservers);
@@ -52,6 +52,7 @@ import com.github.dtprj.dongting.raft.impl.RaftRole;
 import com.github.dtprj.dongting.raft.impl.RaftShareStatus;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
 import com.github.dtprj.dongting.raft.impl.RaftUtil;
+import com.github.dtprj.dongting.raft.impl.ReadIndexManager;
 import com.github.dtprj.dongting.raft.impl.ReplicateManager;
 import com.github.dtprj.dongting.raft.impl.TailCache;
 import com.github.dtprj.dongting.raft.impl.VoteManager;
@@ -63,9 +64,12 @@ import com.github.dtprj.dongting.raft.rpc.NodePingProcessor;
 import com.github.dtprj.dongting.raft.rpc.QueryStatusProcessor;
 import com.github.dtprj.dongting.raft.rpc.RaftPingProcessor;
 import com.github.dtprj.dongting.raft.rpc.RaftSequenceProcessor;
+import com.github.dtprj.dongting.raft.rpc.ReadIndexProcessor;
 import com.github.dtprj.dongting.raft.rpc.TransferLeaderProcessor;
 import com.github.dtprj.dongting.raft.rpc.VoteProcessor;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
+import com.github.dtprj.dongting.raft.store.BatchFileIoBackend;
+import com.github.dtprj.dongting.raft.store.GroupCommitForcer;
 import com.github.dtprj.dongting.raft.store.RaftLog;
 import com.github.dtprj.dongting.raft.store.StatusManager;
 
@@ -102,6 +106,9 @@ public class RaftServer extends AbstractLifeCircle {
     private final NodeManager nodeManager;
 
     private final ExecutorService sharedIoExecutor;
+    // null if group commit force is disabled
+    private final GroupCommitForcer groupCommitForcer;
+    private final BatchFileIoBackend batchFileIoBackend;
 
     private Runnable persistConfigTask;
 
@@ -164,6 +171,7 @@ public class RaftServer extends AbstractLifeCircle {
         nioServerConfig.bizThreads = 1;
         setupNioConfig(nioServerConfig);
         nioServerConfig.perfCallback = new DefaultRpcPerf();
+        nioServerConfig.supportCompress = true;
         customReplicateNioServer(nioServerConfig);
         nioServer = new NioServer(nioServerConfig);
 
@@ -180,6 +188,7 @@ public class RaftServer extends AbstractLifeCircle {
         addRaftGroupProcessor(nioServer, Commands.RAFT_TRANSFER_LEADER, new TransferLeaderProcessor(this));
         QueryStatusProcessor queryStatusProcessor = new QueryStatusProcessor(this);
         addRaftGroupProcessor(nioServer, Commands.RAFT_QUERY_STATUS, queryStatusProcessor);
+        addRaftGroupProcessor(nioServer, Commands.RAFT_READ_INDEX, new ReadIndexProcessor(this));
         AdminConfigChangeProcessor adminConfigChangeProcessor = new AdminConfigChangeProcessor(this);
         nioServer.register(Commands.RAFT_ADMIN_PREPARE_CHANGE, adminConfigChangeProcessor);
         nioServer.register(Commands.RAFT_ADMIN_COMMIT_CHANGE, adminConfigChangeProcessor);
@@ -195,6 +204,8 @@ public class RaftServer extends AbstractLifeCircle {
         AtomicInteger count = new AtomicInteger();
         this.sharedIoExecutor = Executors.newFixedThreadPool(serverConfig.blockIoThreads,
                 r -> new Thread(r, "raft-io-" + count.incrementAndGet()));
+        this.groupCommitForcer = serverConfig.groupCommitForce ? new GroupCommitForcer(sharedIoExecutor) : null;
+        this.batchFileIoBackend = serverConfig.batchFileIo ? new BatchFileIoBackend("raft-batch-io") : null;
 
         createRaftGroups(serverConfig, groupConfig, allNodeIds);
     }
@@ -285,12 +296,14 @@ public class RaftServer extends AbstractLifeCircle {
         MemberManager memberManager = new MemberManager(nioClient, gc, this::runPersistConfigTask);
         LinearTaskRunner linearTaskRunner = new LinearTaskRunner(gc);
         VoteManager voteManager = new VoteManager(nioClient, gc);
+        ReadIndexManager readIndexManager = new ReadIndexManager(nioClient, gc);
 
         gc.raftLog = raftLog;
         gc.stateMachine = stateMachine;
         gc.memberManager = memberManager;
         gc.replicateManager = replicateManager;
         gc.voteManager = voteManager;
+        gc.readIndexManager = readIndexManager;
         gc.commitManager = commitManager;
         gc.applyManager = applyManager;
         gc.nodeManager = nodeManager;
@@ -303,6 +316,7 @@ public class RaftServer extends AbstractLifeCircle {
         replicateManager.postInit();
         memberManager.postInit();
         voteManager.postInit();
+        readIndexManager.postInit();
         linearTaskRunner.postInit();
 
         RaftGroupImpl g = new RaftGroupImpl(gc);
@@ -321,9 +335,13 @@ public class RaftServer extends AbstractLifeCircle {
         rgcEx.fiberGroup = fiberGroup;
         if (raftFactory.useSharedIoExecutor()) {
             rgcEx.blockIoExecutor = sharedIoExecutor;
+            rgcEx.groupCommitForcer = groupCommitForcer;
         } else {
             rgcEx.blockIoExecutor = raftFactory.createBlockIoExecutor(serverConfig, rgcEx);
         }
+        if (batchFileIoBackend != null) {
+            rgcEx.fileIoBackend = batchFileIoBackend;
+        }
         rgcEx.raftServer = this;
         return rgcEx;
     }
@@ -525,6 +543,9 @@ public class RaftServer extends AbstractLifeCircle {
                 }
             }
             sharedIoExecutor.shutdown();
+            if (batchFileIoBackend != null) {
+                batchFileIoBackend.shutdown();
+            }
         } catch (RuntimeException | Error e) {
             log.error("stop raft server failed", e);
             throw e;
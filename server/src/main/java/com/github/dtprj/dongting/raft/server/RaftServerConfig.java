@@ -36,4 +36,22 @@ public class RaftServerConfig {
 
     public int blockIoThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
 
+    // if true, the force requests of all raft groups are sent to a node-wide group committer, the requests of
+    // a file that arrive while the file is being forced are merged into one force. works with the shared io executor.
+    public boolean groupCommitForce = false;
+
+    // if true, the file reads and writes of all raft groups are executed in batch by a dedicated io thread,
+    // and completed in bulk in the dispatcher thread of each group. otherwise, each read/write is executed
+    // by AsynchronousFileChannel in the block io executor.
+    public boolean batchFileIo = false;
+
+    // if > 0, the raft groups share this number of dispatchers (M:N), for example the number of cpu cores,
+    // a new group is placed to the dispatcher with the fewest groups. if 0, each group has its own dispatcher.
+    public int dispatcherPoolSize = 0;
+
+    // if > 0, the AppendReq entries and InstallSnapshotReq data not smaller than this bytes are lz4 compressed,
+    // if the remote node supports it (negotiated in handshake). the compress is bypassed for a while if the
+    // compression ratio is poor.
+    public int replicateCompressThreshold = 0;
+
 }
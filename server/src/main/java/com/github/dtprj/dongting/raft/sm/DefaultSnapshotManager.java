@@ -47,6 +47,7 @@ import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -78,6 +79,8 @@ public class DefaultSnapshotManager implements SnapshotManager {
     private static final String KEY_LAST_CONFIG_CHANGE_INDEX = "lastConfigChangeIndex";
     private static final String KEY_BUFFER_SIZE = "bufferSize";
     private static final String KEY_NEXT_ID = "nextSnapshotId";
+    private static final String KEY_PARENT = "parentSnapshot";
+    private static final String KEY_PARTITIONS = "partitions";
 
     private final RaftGroupConfigEx groupConfig;
     private final ExecutorService ioExecutor;
@@ -92,17 +95,47 @@ public class DefaultSnapshotManager implements SnapshotManager {
     private File snapshotDir;
 
     private static class FileSnapshotInfo {
+        final String baseName;
         final File idxFile;
         final File dataFile;
 
         long lastIncludeIndex;
+        int bufferSize;
+        int partitionCount = 1;
 
         SnapshotInfo si;
 
-        FileSnapshotInfo(File idxFile, File dataFile) {
+        // for delta snapshot
+        String parentName;
+        FileSnapshotInfo parent;
+        int deltaCount;
+
+        // the number of opened install streams based on this snapshot, the files can't be deleted if > 0
+        int readers;
+
+        FileSnapshotInfo(String baseName, File idxFile, File dataFile) {
+            this.baseName = baseName;
             this.idxFile = idxFile;
             this.dataFile = dataFile;
         }
+
+        File[] dataFiles() {
+            File[] files = new File[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                files[i] = partitionFile(dataFile, baseName, i);
+            }
+            return files;
+        }
+    }
+
+    /**
+     * the data file of partition 0 is baseName.data, other partitions are baseName-partition.data.
+     */
+    private static File partitionFile(File dataFile, String baseName, int partition) {
+        if (partition == 0) {
+            return dataFile;
+        }
+        return new File(dataFile.getParentFile(), baseName + "-" + partition + DATA_SUFFIX);
     }
 
     private final LinkedList<FileSnapshotInfo> savedSnapshots = new LinkedList<>();
@@ -127,7 +160,6 @@ public class DefaultSnapshotManager implements SnapshotManager {
     private class InitFrame extends FiberFrame<Snapshot> {
 
         private StatusFile currentStatusFile;
-        private int lastBufferSize;
 
         @Override
         public FrameCallResult execute(Void input) throws Exception {
@@ -145,12 +177,11 @@ public class DefaultSnapshotManager implements SnapshotManager {
                 File dataFile = new File(snapshotDir, baseName + DATA_SUFFIX);
                 if (f.length() == 0) {
                     log.warn("empty status file: {}", f.getPath());
-                    deleteInIoExecutor(f);
-                    deleteInIoExecutor(dataFile);
+                    deleteSnapshotFiles(f, baseName);
                     continue;
                 }
                 if (dataFile.exists()) {
-                    FileSnapshotInfo fsi = new FileSnapshotInfo(f, dataFile);
+                    FileSnapshotInfo fsi = new FileSnapshotInfo(baseName, f, dataFile);
                     savedSnapshots.addFirst(fsi);
                 } else {
                     log.error("missing data file: {}", f.getPath());
@@ -175,10 +206,13 @@ public class DefaultSnapshotManager implements SnapshotManager {
 
                 return Fiber.call(currentStatusFile.init(), v -> afterStatusFileInit(it, fsi));
             } else {
+                resolveDeltaChain();
+                if (savedSnapshots.isEmpty()) {
+                    throw new RaftException("no complete snapshot found");
+                }
                 FileSnapshotInfo last = savedSnapshots.getLast();
-                log.info("open snapshot file {}", last.dataFile);
-                FileSnapshot s = new FileSnapshot(groupConfig, last.si, last.dataFile, lastBufferSize);
-                setResult(s);
+                log.info("open snapshot file {}, delta count {}", last.dataFile, last.deltaCount);
+                setResult(openSnapshot(last));
                 return Fiber.frameReturn();
             }
         }
@@ -186,26 +220,95 @@ public class DefaultSnapshotManager implements SnapshotManager {
         private FrameCallResult afterStatusFileInit(Iterator<FileSnapshotInfo> it, FileSnapshotInfo fsi) throws Exception {
             Map<String, String> p = currentStatusFile.getProperties();
             fsi.lastIncludeIndex = Long.parseLong(p.get(KEY_LAST_INDEX));
+            fsi.bufferSize = Integer.parseInt(p.get(KEY_BUFFER_SIZE));
+            fsi.parentName = p.get(KEY_PARENT);
+            String partitions = p.get(KEY_PARTITIONS);
+            if (partitions != null) {
+                fsi.partitionCount = Integer.parseInt(partitions);
+            }
 
-            if (!it.hasNext()) {
-                nextId = Long.parseLong(p.get(KEY_NEXT_ID));
-                lastBufferSize = Integer.parseInt(p.get(KEY_BUFFER_SIZE));
+            int lastTerm = Integer.parseInt(p.get(KEY_LAST_TERM));
+            Set<Integer> members = RaftUtil.strToIdSet(p.get(KEY_MEMBERS));
+            Set<Integer> observers = RaftUtil.strToIdSet(p.get(KEY_OBSERVERS));
+            Set<Integer> preparedMembers = RaftUtil.strToIdSet(p.get(KEY_PREPARED_MEMBERS));
+            Set<Integer> preparedObservers = RaftUtil.strToIdSet(p.get(KEY_PREPARED_OBSERVERS));
+            long lastConfigChangeIndex = Long.parseLong(p.get(KEY_LAST_CONFIG_CHANGE_INDEX));
 
-                int lastTerm = Integer.parseInt(p.get(KEY_LAST_TERM));
-                Set<Integer> members = RaftUtil.strToIdSet(p.get(KEY_MEMBERS));
-                Set<Integer> observers = RaftUtil.strToIdSet(p.get(KEY_OBSERVERS));
-                Set<Integer> preparedMembers = RaftUtil.strToIdSet(p.get(KEY_PREPARED_MEMBERS));
-                Set<Integer> preparedObservers = RaftUtil.strToIdSet(p.get(KEY_PREPARED_OBSERVERS));
-                long lastConfigChangeIndex = Long.parseLong(p.get(KEY_LAST_CONFIG_CHANGE_INDEX));
+            fsi.si = new SnapshotInfo(fsi.lastIncludeIndex, lastTerm, members, observers, preparedMembers,
+                    preparedObservers, lastConfigChangeIndex);
 
-                fsi.si = new SnapshotInfo(fsi.lastIncludeIndex, lastTerm, members, observers, preparedMembers,
-                        preparedObservers, lastConfigChangeIndex);
+            if (!it.hasNext()) {
+                nextId = Long.parseLong(p.get(KEY_NEXT_ID));
             }
 
             currentStatusFile = null;
 
             return loadIdxInfo(it);
         }
+
+        /**
+         * link delta snapshots to their parents, and delete the snapshots whose partition files or parent
+         * are missing.
+         */
+        private void resolveDeltaChain() {
+            HashMap<String, FileSnapshotInfo> map = new HashMap<>();
+            Iterator<FileSnapshotInfo> it = savedSnapshots.iterator();
+            while (it.hasNext()) {
+                FileSnapshotInfo fsi = it.next();
+                boolean ok = true;
+                for (File f : fsi.dataFiles()) {
+                    if (!f.exists()) {
+                        log.error("missing data file: {}", f.getPath());
+                        ok = false;
+                    }
+                }
+                if (ok && fsi.parentName != null) {
+                    // parent is older, so it has been processed
+                    fsi.parent = map.get(fsi.parentName);
+                    if (fsi.parent == null || fsi.parent.partitionCount != fsi.partitionCount) {
+                        log.error("parent snapshot {} of {} is missing", fsi.parentName, fsi.idxFile.getPath());
+                        ok = false;
+                    } else {
+                        fsi.deltaCount = fsi.parent.deltaCount + 1;
+                    }
+                }
+                if (ok) {
+                    map.put(fsi.baseName, fsi);
+                } else {
+                    it.remove();
+                    deleteSnapshotFiles(fsi.idxFile, fsi.baseName);
+                }
+            }
+        }
+    }
+
+    private FileSnapshot openSnapshot(FileSnapshotInfo fsi) throws Exception {
+        FileSnapshot parent = fsi.parent == null ? null : openSnapshot(fsi.parent);
+        try {
+            return new FileSnapshot(groupConfig, fsi.si, fsi.dataFiles(), fsi.bufferSize, parent);
+        } catch (Exception e) {
+            if (parent != null) {
+                parent.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Snapshot openLatestSnapshot() throws Exception {
+        FileSnapshotInfo fsi = savedSnapshots.peekLast();
+        if (fsi == null) {
+            return null;
+        }
+        FileSnapshot fs = openSnapshot(fsi);
+        for (FileSnapshotInfo s = fsi; s != null; s = s.parent) {
+            s.readers++;
+        }
+        return new FileSnapshotStream(fs, groupConfig.fiberGroup, () -> {
+            for (FileSnapshotInfo s = fsi; s != null; s = s.parent) {
+                s.readers--;
+            }
+        });
     }
 
     @Override
@@ -213,6 +316,18 @@ public class DefaultSnapshotManager implements SnapshotManager {
         return new RecoverFiberFrame(groupConfig, stateMachine, (FileSnapshot) snapshot);
     }
 
+    private void deleteSnapshotFiles(File idxFile, String baseName) {
+        deleteInIoExecutor(idxFile);
+        deleteInIoExecutor(new File(snapshotDir, baseName + DATA_SUFFIX));
+        File[] partitionFiles = snapshotDir.listFiles(f -> f.getName().startsWith(baseName + "-")
+                && f.getName().endsWith(DATA_SUFFIX));
+        if (partitionFiles != null) {
+            for (File f : partitionFiles) {
+                deleteInIoExecutor(f);
+            }
+        }
+    }
+
     private void deleteInIoExecutor(File f) {
         ioExecutor.submit(() -> {
             if (f != null && f.exists()) {
@@ -285,10 +400,28 @@ public class DefaultSnapshotManager implements SnapshotManager {
 
         private void deleteOldFiles() {
             int keep = Math.max(1, groupConfig.maxKeepSnapshots);
-            while (savedSnapshots.size() > keep) {
-                FileSnapshotInfo s = savedSnapshots.removeFirst();
-                deleteInIoExecutor(s.dataFile);
-                deleteInIoExecutor(s.idxFile);
+            if (savedSnapshots.size() <= keep) {
+                return;
+            }
+            // keep the newest snapshots and the snapshots they based on
+            HashSet<FileSnapshotInfo> needed = new HashSet<>();
+            Iterator<FileSnapshotInfo> it = savedSnapshots.descendingIterator();
+            for (int i = 0; i < keep; i++) {
+                FileSnapshotInfo s = it.next();
+                while (s != null && needed.add(s)) {
+                    s = s.parent;
+                }
+            }
+            it = savedSnapshots.iterator();
+            while (it.hasNext()) {
+                FileSnapshotInfo s = it.next();
+                if (!needed.contains(s) && s.readers == 0) {
+                    it.remove();
+                    deleteInIoExecutor(s.idxFile);
+                    for (File f : s.dataFiles()) {
+                        deleteInIoExecutor(f);
+                    }
+                }
             }
         }
     }
@@ -313,15 +446,17 @@ public class DefaultSnapshotManager implements SnapshotManager {
         private RefBufferFactory directBufferFactory;
 
 
-        private DtFile newDataFile;
+        // one file for each partition
+        private DtFile[] newDataFiles;
 
         private File newIdxFile;
         private StatusFile statusFile;
 
         private Snapshot readSnapshot;
         private FileSnapshotInfo fileSnapshot;
+        private FileSnapshotInfo deltaBase;
 
-        private long currentWritePos;
+        private long[] currentWritePos;
 
         private boolean success;
         private boolean cancel;
@@ -345,8 +480,12 @@ public class DefaultSnapshotManager implements SnapshotManager {
 
         @Override
         protected FrameCallResult doFinally() {
-            if (newDataFile != null && newDataFile.getChannel() != null) {
-                DtUtil.close(newDataFile.getChannel());
+            if (newDataFiles != null) {
+                for (DtFile f : newDataFiles) {
+                    if (f != null) {
+                        DtUtil.close(f.getChannel());
+                    }
+                }
             }
             if (readSnapshot != null) {
                 readSnapshot.close();
@@ -359,8 +498,12 @@ public class DefaultSnapshotManager implements SnapshotManager {
                     // should not happen
                     complete(new RaftException("save snapshot task failed"));
                 }
-                if (newDataFile != null) {
-                    deleteInIoExecutor(newDataFile.getFile());
+                if (newDataFiles != null) {
+                    for (DtFile f : newDataFiles) {
+                        if (f != null) {
+                            deleteInIoExecutor(f.getFile());
+                        }
+                    }
                 }
                 if (newIdxFile != null) {
                     deleteInIoExecutor(newIdxFile);
@@ -384,26 +527,49 @@ public class DefaultSnapshotManager implements SnapshotManager {
         private FrameCallResult afterTakeSnapshot(Snapshot snapshot) throws Exception {
             this.readSnapshot = snapshot;
             SnapshotInfo snapshotInfo = snapshot.getSnapshotInfo();
-            log.info("begin save snapshot {}. groupId={}, lastIndex={}, lastTerm={}", id,
-                    groupConfig.groupId, snapshotInfo.lastIncludedIndex, snapshotInfo.lastIncludedTerm);
+            FileSnapshotInfo base = savedSnapshots.isEmpty() ? null : savedSnapshots.getLast();
+            int partitionCount = snapshot.getPartitionCount();
+            if (base != null && base.deltaCount < groupConfig.maxDeltaSnapshots && base.bufferSize == bufferSize
+                    && base.partitionCount == partitionCount && base.lastIncludeIndex <= snapshotInfo.lastIncludedIndex
+                    && snapshot.prepareDelta(base.lastIncludeIndex)) {
+                deltaBase = base;
+            }
+            log.info("begin save snapshot {}. groupId={}, lastIndex={}, lastTerm={}, deltaBase={}, partitions={}",
+                    id, groupConfig.groupId, snapshotInfo.lastIncludedIndex, snapshotInfo.lastIncludedTerm,
+                    deltaBase == null ? null : deltaBase.baseName, partitionCount);
 
             SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss");
             String baseName = sdf.format(new Date()) + "_" + id;
             File dataFile = new File(snapshotDir, baseName + DATA_SUFFIX);
             this.newIdxFile = new File(snapshotDir, baseName + IDX_SUFFIX);
+            this.fileSnapshot = new FileSnapshotInfo(baseName, newIdxFile, dataFile);
+            fileSnapshot.partitionCount = partitionCount;
 
             HashSet<StandardOpenOption> options = new HashSet<>();
             options.add(StandardOpenOption.CREATE_NEW);
             options.add(StandardOpenOption.WRITE);
-            AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options,
-                    ioExecutor);
-            this.newDataFile = new DtFile(dataFile, channel, groupConfig.fiberGroup);
+            this.newDataFiles = new DtFile[partitionCount];
+            this.currentWritePos = new long[partitionCount];
+            File[] files = fileSnapshot.dataFiles();
+            for (int i = 0; i < partitionCount; i++) {
+                AsynchronousFileChannel channel = groupConfig.fileIoBackend.openChannel(files[i].toPath(), options,
+                        ioExecutor);
+                newDataFiles[i] = new DtFile(files[i], channel, groupConfig.fiberGroup, groupConfig.fileIoBackend);
+            }
 
             int readConcurrency = groupConfig.snapshotConcurrency;
             int writeConcurrency = groupConfig.diskSnapshotConcurrency;
-            SnapshotReader reader = new SnapshotReader(readSnapshot, readConcurrency, writeConcurrency,
-                    this::writeCallback, this::checkCancel, this::createBuffer);
-            return Fiber.call(reader, this::finishDataFile);
+            if (partitionCount == 1) {
+                SnapshotReader reader = new SnapshotReader(readSnapshot, readConcurrency, writeConcurrency,
+                        (rb, readBytes) -> writeCallback(0, rb, readBytes), this::checkCancel, this::createBuffer);
+                return Fiber.call(reader, v -> finishDataFile(0));
+            } else {
+                FiberFuture<Void> f = SnapshotReader.readPartitions("saveSnapshot-" + id, readSnapshot,
+                        readConcurrency, writeConcurrency,
+                        partition -> (rb, readBytes) -> writeCallback(partition, rb, readBytes),
+                        this::checkCancel, this::createBuffer);
+                return f.await(v -> finishDataFile(0));
+            }
         }
 
         private RefBuffer createBuffer() {
@@ -413,7 +579,7 @@ public class DefaultSnapshotManager implements SnapshotManager {
             return buf;
         }
 
-        private FiberFuture<Void> writeCallback(RefBuffer rb, Integer readBytes) {
+        private FiberFuture<Void> writeCallback(int partition, RefBuffer rb, Integer readBytes) {
             crc32c.reset();
             ByteBuffer buf = rb.getBuffer();
             buf.clear();
@@ -423,10 +589,10 @@ public class DefaultSnapshotManager implements SnapshotManager {
             buf.putInt(size + 4, (int) crc32c.getValue());
             buf.position(0);
             buf.limit(size + 8);
-            AsyncIoTask writeTask = new AsyncIoTask(groupConfig.fiberGroup, newDataFile);
-            long newWritePos = currentWritePos + buf.capacity();
-            FiberFuture<Void> writeFuture = writeTask.write(buf, currentWritePos);
-            currentWritePos = newWritePos;
+            AsyncIoTask writeTask = new AsyncIoTask(groupConfig.fiberGroup, newDataFiles[partition]);
+            long writePos = currentWritePos[partition];
+            FiberFuture<Void> writeFuture = writeTask.write(buf, writePos);
+            currentWritePos[partition] = writePos + buf.capacity();
             writeFuture.registerCallback((v, ex) -> rb.release());
             return writeFuture;
         }
@@ -444,19 +610,23 @@ public class DefaultSnapshotManager implements SnapshotManager {
             return false;
         }
 
-        private FrameCallResult finishDataFile(Void v) {
+        private FrameCallResult finishDataFile(int partition) {
             if (checkCancel()) {
                 return Fiber.frameReturn();
             }
-            ForceFrame ff = new ForceFrame(newDataFile.getChannel(), ioExecutor, true);
-            return Fiber.call(ff, this::writeIdxFile);
+            if (partition >= newDataFiles.length) {
+                return writeIdxFile(null);
+            }
+            ForceFrame ff = new ForceFrame(newDataFiles[partition].getChannel(), ioExecutor, true);
+            return Fiber.call(ff, v -> finishDataFile(partition + 1));
         }
 
         private FrameCallResult writeIdxFile(Void v) {
             if (checkCancel()) {
                 return Fiber.frameReturn();
             }
-            log.info("snapshot {} data file write success: {}", id, newDataFile.getFile().getPath());
+            log.info("snapshot {} data file write success: {}, partitions={}", id,
+                    newDataFiles[0].getFile().getPath(), newDataFiles.length);
 
             statusFile = new StatusFile(newIdxFile, groupConfig);
             return Fiber.call(statusFile.init(), this::saveIdxFile);
@@ -474,9 +644,21 @@ public class DefaultSnapshotManager implements SnapshotManager {
             p.put(KEY_LAST_CONFIG_CHANGE_INDEX, String.valueOf(si.lastConfigChangeIndex));
             p.put(KEY_BUFFER_SIZE, String.valueOf(bufferSize));
             p.put(KEY_NEXT_ID, String.valueOf(id + 1));
+            if (deltaBase != null) {
+                p.put(KEY_PARENT, deltaBase.baseName);
+            }
+            if (fileSnapshot.partitionCount > 1) {
+                p.put(KEY_PARTITIONS, String.valueOf(fileSnapshot.partitionCount));
+            }
 
-            fileSnapshot = new FileSnapshotInfo(newIdxFile, newDataFile.getFile());
-            fileSnapshot.lastIncludeIndex = readSnapshot.getSnapshotInfo().lastIncludedIndex;
+            fileSnapshot.lastIncludeIndex = si.lastIncludedIndex;
+            fileSnapshot.bufferSize = bufferSize;
+            fileSnapshot.si = si;
+            if (deltaBase != null) {
+                fileSnapshot.parentName = deltaBase.baseName;
+                fileSnapshot.parent = deltaBase;
+                fileSnapshot.deltaCount = deltaBase.deltaCount + 1;
+            }
 
             // just for human reading
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS");
@@ -526,6 +708,7 @@ class RecoverFiberFrame extends FiberFrame<Void> {
     private final CRC32C crc32C = new CRC32C();
 
     private long offset;
+    private long[] partitionOffsets;
 
     public RecoverFiberFrame(RaftGroupConfigEx groupConfig, StateMachine stateMachine, FileSnapshot snapshot) {
         this.stateMachine = stateMachine;
@@ -548,12 +731,40 @@ class RecoverFiberFrame extends FiberFrame<Void> {
     public FrameCallResult execute(Void input) {
         int readConcurrency = groupConfig.diskSnapshotConcurrency;
         int writeConcurrency = groupConfig.snapshotConcurrency;
-        SnapshotReader reader = new SnapshotReader(snapshot, readConcurrency, writeConcurrency, this::apply,
+        int partitionCount = snapshot.getPartitionCount();
+        if (partitionCount == 1) {
+            SnapshotReader reader = new SnapshotReader(snapshot, readConcurrency, writeConcurrency,
+                    (rb, notUsed) -> apply(-1, rb), this::isGroupShouldStopPlain, bufferCreator);
+            return Fiber.call(reader, this::finish);
+        }
+        if (!stateMachine.supportConcurrentPartitionInstall()) {
+            return installPartition(0);
+        }
+        partitionOffsets = new long[partitionCount];
+        SnapshotInfo si = snapshot.getSnapshotInfo();
+        // begin install
+        FiberFuture<Void> f = stateMachine.installSnapshot(si.lastIncludedIndex, si.lastIncludedTerm,
+                0, false, SimpleByteBufferPool.EMPTY_BUFFER);
+        return f.await(v -> {
+            FiberFuture<Void> readFuture = SnapshotReader.readPartitions("recoverSnapshot", snapshot,
+                    readConcurrency, writeConcurrency, partition -> (rb, notUsed) -> apply(partition, rb),
+                    this::isGroupShouldStopPlain, bufferCreator);
+            return readFuture.await(this::finish);
+        });
+    }
+
+    // install the partitions one by one as a sequential snapshot
+    private FrameCallResult installPartition(int partition) {
+        if (partition >= snapshot.getPartitionCount()) {
+            return finish(null);
+        }
+        SnapshotReader reader = new SnapshotReader(snapshot, partition, groupConfig.diskSnapshotConcurrency,
+                groupConfig.snapshotConcurrency, (rb, notUsed) -> apply(partition, rb),
                 this::isGroupShouldStopPlain, bufferCreator);
-        return Fiber.call(reader, this::finish);
+        return Fiber.call(reader, v -> installPartition(partition + 1));
     }
 
-    private FiberFuture<Void> apply(RefBuffer rb, Integer notUsed) {
+    private FiberFuture<Void> apply(int partition, RefBuffer rb) {
         ByteBuffer buf = rb.getBuffer();
         int size = buf.getInt(0);
         if (size <= 0 || size > buf.capacity() - 8) {
@@ -570,8 +781,18 @@ class RecoverFiberFrame extends FiberFrame<Void> {
         buf.limit(size + 4);
         buf.position(4);
         SnapshotInfo si = snapshot.getSnapshotInfo();
-        FiberFuture<Void> f = stateMachine.installSnapshot(si.lastIncludedIndex, si.lastIncludedTerm,
-                offset, false, buf);
+        FiberFuture<Void> f;
+        if (partition < 0) {
+            f = stateMachine.installSnapshot(si.lastIncludedIndex, si.lastIncludedTerm, offset, false, buf);
+        } else if (partitionOffsets == null) {
+            // sequential install
+            f = stateMachine.installSnapshotPartition(partition, si.lastIncludedIndex, si.lastIncludedTerm,
+                    offset, buf);
+        } else {
+            f = stateMachine.installSnapshotPartition(partition, si.lastIncludedIndex, si.lastIncludedTerm,
+                    partitionOffsets[partition], buf);
+            partitionOffsets[partition] += size;
+        }
         offset += size;
         f.registerCallback((v, ex) -> rb.release());
         return f;
@@ -0,0 +1,38 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.sm;
+
+import com.github.dtprj.dongting.raft.server.RaftInput;
+
+/**
+ * A committed task passed to StateMachine.execBatch, the fields are the same as the parameters of
+ * StateMachine.exec.
+ *
+ * @author huangli
+ */
+public final class ExecTask {
+    public final long index;
+    public final long leaderCreateTimeMillis;
+    public final long localCreateNanos;
+    public final RaftInput input;
+
+    public ExecTask(long index, long leaderCreateTimeMillis, long localCreateNanos, RaftInput input) {
+        this.index = index;
+        this.leaderCreateTimeMillis = leaderCreateTimeMillis;
+        this.localCreateNanos = localCreateNanos;
+        this.input = input;
+    }
+}
@@ -34,49 +34,118 @@ import java.util.HashSet;
  */
 public class FileSnapshot extends Snapshot {
 
-    private final DtFile dtFile;
+    // one file for each partition
+    private final DtFile[] dtFiles;
     private final FiberGroup fiberGroup;
-    private final long fileSize;
+    private final long[] fileSizes;
 
-    private long filePos;
+    private final long[] filePos;
 
     private final int bufferSize;
 
+    // the snapshot this delta snapshot based on, read it before this one. null if this is a full snapshot.
+    private final FileSnapshot parent;
+
     public FileSnapshot(RaftGroupConfigEx groupConfig, SnapshotInfo si, File dataFile, int bufferSize) throws IOException {
+        this(groupConfig, si, new File[]{dataFile}, bufferSize, null);
+    }
+
+    public FileSnapshot(RaftGroupConfigEx groupConfig, SnapshotInfo si, File[] dataFiles, int bufferSize,
+                        FileSnapshot parent) throws IOException {
         super(si);
+        if (parent != null && parent.getPartitionCount() != dataFiles.length) {
+            throw new IllegalArgumentException("partition count not match");
+        }
+        this.parent = parent;
         this.fiberGroup = groupConfig.fiberGroup;
-        this.fileSize = dataFile.length();
         this.bufferSize = bufferSize;
+        this.dtFiles = new DtFile[dataFiles.length];
+        this.fileSizes = new long[dataFiles.length];
+        this.filePos = new long[dataFiles.length];
 
         HashSet<StandardOpenOption> options = new HashSet<>();
         options.add(StandardOpenOption.READ);
-        AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options,
-                groupConfig.blockIoExecutor);
-        this.dtFile = new DtFile(dataFile, channel, groupConfig.fiberGroup);
+        try {
+            for (int i = 0; i < dataFiles.length; i++) {
+                fileSizes[i] = dataFiles[i].length();
+                AsynchronousFileChannel channel = groupConfig.fileIoBackend.openChannel(dataFiles[i].toPath(), options,
+                        groupConfig.blockIoExecutor);
+                dtFiles[i] = new DtFile(dataFiles[i], channel, groupConfig.fiberGroup, groupConfig.fileIoBackend);
+            }
+        } catch (IOException e) {
+            closeFiles();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return dtFiles.length;
     }
 
     @Override
     public FiberFuture<Integer> readNext(ByteBuffer buffer) {
-        if (filePos >= fileSize) {
+        if (dtFiles.length != 1) {
+            throw new IllegalStateException("partitioned snapshot");
+        }
+        return readNext(0, buffer);
+    }
+
+    @Override
+    public FiberFuture<Integer> readNext(int partition, ByteBuffer buffer) {
+        if (parent != null && parent.hasMore(partition)) {
+            return parent.readNext(partition, buffer);
+        }
+        long fileSize = fileSizes[partition];
+        if (filePos[partition] >= fileSize) {
             return FiberFuture.completedFuture(fiberGroup, 0);
         }
-        long rest = fileSize - filePos;
+        long rest = fileSize - filePos[partition];
         if (rest < buffer.remaining()) {
             buffer.limit(buffer.position() + (int) rest);
         }
-        AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFile);
+        AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFiles[partition]);
         int readBytes = buffer.remaining();
-        FiberFuture<Void> f = t.read(buffer, filePos);
-        filePos += readBytes;
+        FiberFuture<Void> f = t.read(buffer, filePos[partition]);
+        filePos[partition] += readBytes;
         return f.convert("FileSnapshotReadNext", v -> readBytes);
     }
 
+    boolean hasMore(int partition) {
+        return filePos[partition] < fileSizes[partition] || (parent != null && parent.hasMore(partition));
+    }
+
+    private void closeFiles() {
+        for (DtFile f : dtFiles) {
+            if (f != null) {
+                DtUtil.close(f.getChannel());
+            }
+        }
+    }
+
     @Override
     protected void doClose() {
-        DtUtil.close(dtFile.getChannel());
+        closeFiles();
+        if (parent != null) {
+            parent.close();
+        }
     }
 
     public int getBufferSize() {
         return bufferSize;
     }
+
+    /**
+     * the size of the next block read by readNext(int, ByteBuffer), the parent may have different block size.
+     */
+    int nextBlockSize(int partition) {
+        if (parent != null && parent.hasMore(partition)) {
+            return parent.nextBlockSize(partition);
+        }
+        return bufferSize;
+    }
+
+    int maxBufferSize() {
+        return parent == null ? bufferSize : Math.max(bufferSize, parent.maxBufferSize());
+    }
 }
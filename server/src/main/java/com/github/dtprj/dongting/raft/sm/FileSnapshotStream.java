@@ -0,0 +1,106 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.sm;
+
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.impl.RaftUtil;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Read a saved FileSnapshot as the state machine snapshot stream (same as the stream of the snapshot it is saved
+ * from), the partitions are read one by one. Each readNext reads one block of the file directly to the buffer,
+ * checks the crc and removes the block header, so the buffer must not smaller than getMaxBlockSize().
+ *
+ * @author huangli
+ */
+public class FileSnapshotStream extends Snapshot {
+
+    private final FileSnapshot fileSnapshot;
+    private final FiberGroup fiberGroup;
+    private final Runnable closeCallback;
+    private final CRC32C crc32c = new CRC32C();
+
+    private int partition;
+
+    FileSnapshotStream(FileSnapshot fileSnapshot, FiberGroup fiberGroup, Runnable closeCallback) {
+        super(fileSnapshot.getSnapshotInfo());
+        this.fileSnapshot = fileSnapshot;
+        this.fiberGroup = fiberGroup;
+        this.closeCallback = closeCallback;
+    }
+
+    public int getMaxBlockSize() {
+        return fileSnapshot.maxBufferSize();
+    }
+
+    @Override
+    public FiberFuture<Integer> readNext(ByteBuffer buffer) {
+        int partitionCount = fileSnapshot.getPartitionCount();
+        while (partition < partitionCount && !fileSnapshot.hasMore(partition)) {
+            partition++;
+        }
+        if (partition >= partitionCount) {
+            return FiberFuture.completedFuture(fiberGroup, 0);
+        }
+        int blockSize = fileSnapshot.nextBlockSize(partition);
+        int start = buffer.position();
+        if (buffer.remaining() < blockSize) {
+            return FiberFuture.failedFuture(fiberGroup, new RaftException("buffer too small: "
+                    + buffer.remaining() + ", blockSize=" + blockSize));
+        }
+        int oldLimit = buffer.limit();
+        buffer.limit(start + blockSize);
+        return fileSnapshot.readNext(partition, buffer).convert("FileSnapshotStreamReadNext",
+                readBytes -> removeBlockHeader(buffer, start, readBytes, oldLimit));
+    }
+
+    private int removeBlockHeader(ByteBuffer buf, int start, int readBytes, int oldLimit) {
+        int size = buf.getInt(start);
+        if (size <= 0 || size > readBytes - 8) {
+            throw new RaftException("invalid snapshot data size: " + size);
+        }
+        crc32c.reset();
+        RaftUtil.updateCrc(crc32c, buf, start, size + 4);
+        if (buf.getInt(start + size + 4) != (int) crc32c.getValue()) {
+            throw new RaftException("snapshot data crc error");
+        }
+        // move the data to the start position, the dest is before the src, so copy forward is safe
+        if (buf.hasArray()) {
+            byte[] arr = buf.array();
+            int offset = buf.arrayOffset();
+            System.arraycopy(arr, offset + start + 4, arr, offset + start, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                buf.put(start + i, buf.get(start + 4 + i));
+            }
+        }
+        buf.limit(oldLimit);
+        buf.position(start + size);
+        return size;
+    }
+
+    @Override
+    protected void doClose() {
+        fileSnapshot.close();
+        if (closeCallback != null) {
+            closeCallback.run();
+        }
+    }
+}
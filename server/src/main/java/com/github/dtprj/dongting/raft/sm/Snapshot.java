@@ -43,6 +43,34 @@ public abstract class Snapshot {
      */
     public abstract FiberFuture<Integer> readNext(ByteBuffer buffer);
 
+    /**
+     * the number of independent partitions of this snapshot. The partitions can be read (by readNext(int, ByteBuffer)),
+     * saved and installed (by StateMachine.installSnapshotPartition) concurrently.
+     */
+    public int getPartitionCount() {
+        return 1;
+    }
+
+    /**
+     * read next chunk of the partition to the buffer.
+     */
+    public FiberFuture<Integer> readNext(int partition, ByteBuffer buffer) {
+        if (partition != 0) {
+            throw new IllegalArgumentException("partition: " + partition);
+        }
+        return readNext(buffer);
+    }
+
+    /**
+     * called before the first readNext, try to turn this snapshot into a delta snapshot, which only contains
+     * changes after the base snapshot (identified by its lastIncludedIndex). The delta is applied (by
+     * installSnapshot) after the base snapshot and its earlier deltas are installed.
+     * @return true if this snapshot becomes a delta snapshot, the default implementation returns false
+     */
+    public boolean prepareDelta(long baseLastIncludedIndex) {
+        return false;
+    }
+
     public void close() {
         if (!closed.compareAndSet(false, true)) {
             log.warn("snapshot iterator already closed");
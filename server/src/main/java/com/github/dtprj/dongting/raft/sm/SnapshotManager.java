@@ -33,4 +33,12 @@ public interface SnapshotManager {
 
     FiberFuture<Long> saveSnapshot();
 
+    /**
+     * open the latest saved snapshot as a stream of the state machine data, the files are kept until it is closed.
+     * @return null if there is no saved snapshot or not supported
+     */
+    default Snapshot openLatestSnapshot() throws Exception {
+        return null;
+    }
+
 }
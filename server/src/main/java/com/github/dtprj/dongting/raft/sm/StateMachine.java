@@ -17,10 +17,16 @@ package com.github.dtprj.dongting.raft.sm;
 
 import com.github.dtprj.dongting.common.LifeCircle;
 import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.raft.RaftException;
 import com.github.dtprj.dongting.raft.server.RaftGroup;
 import com.github.dtprj.dongting.raft.server.RaftInput;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * All method defined in this class is called in raft thread except createEncoder/createDecoder method.
@@ -34,12 +40,95 @@ public interface StateMachine extends LifeCircle, RaftCodecFactory {
      */
     FiberFuture<Object> exec(long index, long leaderCreateTimeMillis, long localCreateNanos, RaftInput input);
 
+    /**
+     * execute a contiguous range of committed tasks in one call, used if RaftGroupConfig.maxApplyBatch > 1.
+     * The result list has the same order as the tasks, each element is the result of the task, or the exception
+     * if the task fails, so the tasks before a failed task are completed with their results. If the returned
+     * future fails as a whole, no task in the batch should be applied. A failed write task is fatal to the raft
+     * group, as it is in exec.
+     * <p>
+     * The default implementation calls exec once per task.
+     * <p>
+     * this method is called in raft thread.
+     */
+    default FiberFuture<List<Object>> execBatch(List<ExecTask> tasks) {
+        int size = tasks.size();
+        FiberGroup g = FiberGroup.currentGroup();
+        FiberFuture<List<Object>> f = g.newFuture("execBatch");
+        if (size == 0) {
+            f.complete(new ArrayList<>());
+            return f;
+        }
+        Object[] results = new Object[size];
+        AtomicInteger rest = new AtomicInteger(size);
+        for (int i = 0; i < size; i++) {
+            ExecTask t = tasks.get(i);
+            int idx = i;
+            FiberFuture<Object> ef;
+            try {
+                ef = exec(t.index, t.leaderCreateTimeMillis, t.localCreateNanos, t.input);
+                if (ef == null) {
+                    ef = FiberFuture.failedFuture(g, new RaftException("statemachine exec return null future"));
+                }
+            } catch (Throwable e) {
+                ef = FiberFuture.failedFuture(g, e);
+            }
+            ef.registerCallback((r, ex) -> {
+                // the callback may not run in raft thread
+                results[idx] = ex == null ? r : ex;
+                if (rest.decrementAndGet() == 0) {
+                    f.fireComplete(new ArrayList<>(Arrays.asList(results)));
+                }
+            });
+        }
+        return f;
+    }
+
+    /**
+     * return the apply lane (>= 0) of the input, used if RaftGroupConfig.parallelApply is true. The tasks of the
+     * same lane are executed one by one, exec is not called for a task until the previous task of the lane
+     * completes. The tasks of different lanes are executed concurrently, and may complete out of order. Return -1
+     * for a barrier task (for example, it touches multiple lanes), which is executed after all previous tasks
+     * complete, and no later task is executed before it completes.
+     * <p>
+     * this method is called in raft thread.
+     */
+    default int applyLane(RaftInput input) {
+        return -1;
+    }
+
     /**
      * this method is called in raft thread.
      */
     FiberFuture<Void> installSnapshot(long lastIncludeIndex, int lastIncludeTerm, long offset, boolean done,
                                       ByteBuffer data);
 
+    /**
+     * return true if the chunks of different snapshot partitions can be installed interleaved, see
+     * installSnapshotPartition.
+     */
+    default boolean supportConcurrentPartitionInstall() {
+        return false;
+    }
+
+    /**
+     * install a chunk of a snapshot partition, see Snapshot.getPartitionCount().
+     * <p>
+     * If supportConcurrentPartitionInstall() returns true, the installation begins with
+     * installSnapshot(offset=0, done=false), then the chunks of all partitions are installed by this method, chunks
+     * of the same partition are installed in order, but chunks of different partitions may be interleaved, the
+     * offset is the offset in the partition. At last, installSnapshot(done=true) is called.
+     * <p>
+     * Otherwise, the partitions are installed one by one as a sequential snapshot, the offset is the offset in the
+     * whole snapshot, and the default implementation delegates to installSnapshot.
+     * <p>
+     * this method is called in raft thread.
+     */
+    default FiberFuture<Void> installSnapshotPartition(int partition, long lastIncludeIndex, int lastIncludeTerm,
+                                                       long offset, ByteBuffer data) {
+        return installSnapshot(lastIncludeIndex, lastIncludeTerm, offset, false, data);
+    }
+
     /**
      * this method is called in raft thread.
      */
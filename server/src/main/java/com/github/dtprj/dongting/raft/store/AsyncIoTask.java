@@ -198,9 +198,9 @@ public class AsyncIoTask implements CompletionHandler<Integer, Void>, BiConsumer
     protected void exec(long pos) {
         try {
             if (write) {
-                dtFile.getChannel().write(ioBuffer, pos, null, this);
+                dtFile.getIoBackend().write(dtFile, ioBuffer, pos, this);
             } else {
-                dtFile.getChannel().read(ioBuffer, pos, null, this);
+                dtFile.getIoBackend().read(dtFile, ioBuffer, pos, this);
             }
         } catch (Throwable e) {
             fireComplete(e);
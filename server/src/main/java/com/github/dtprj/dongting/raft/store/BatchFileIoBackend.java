@@ -0,0 +1,237 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+import com.github.dtprj.dongting.raft.RaftException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Batched backend shared by all raft groups in the node. The reads and writes are queued and executed by one
+ * dedicated io thread, the requests arrived while the io thread is busy are merged into the next batch.
+ * After a batch is executed, the handlers of the same fiber group are called in bulk in its dispatcher thread,
+ * so there is one thread handoff for each batch instead of each request.
+ * <p>
+ * The channels are opened with a caller-runs executor, so the io thread does the positional read/write by
+ * itself, and no other thread pool is involved.
+ *
+ * @author huangli
+ */
+public class BatchFileIoBackend implements FileIoBackend {
+    private static final DtLog log = DtLogs.getLogger(BatchFileIoBackend.class);
+
+    private static final ExecutorService CALLER_RUNS = new CallerRunsExecutor();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Thread thread;
+
+    private ArrayList<IoReq> pending = new ArrayList<>();
+    private boolean stopped;
+
+    private static class IoReq {
+        final DtFile dtFile;
+        final ByteBuffer buf;
+        final long filePos;
+        final boolean write;
+        final CompletionHandler<Integer, Void> handler;
+        int result;
+        Throwable ex;
+
+        IoReq(DtFile dtFile, ByteBuffer buf, long filePos, boolean write, CompletionHandler<Integer, Void> handler) {
+            this.dtFile = dtFile;
+            this.buf = buf;
+            this.filePos = filePos;
+            this.write = write;
+            this.handler = handler;
+        }
+
+        void complete() {
+            if (ex == null) {
+                handler.completed(result, null);
+            } else {
+                handler.failed(ex, null);
+            }
+        }
+    }
+
+    public BatchFileIoBackend(String threadName) {
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public AsynchronousFileChannel openChannel(Path path, Set<? extends OpenOption> options,
+                                               ExecutorService ioExecutor) throws IOException {
+        return AsynchronousFileChannel.open(path, options, CALLER_RUNS);
+    }
+
+    @Override
+    public void read(DtFile dtFile, ByteBuffer buf, long filePos, CompletionHandler<Integer, Void> handler) {
+        submit(new IoReq(dtFile, buf, filePos, false, handler));
+    }
+
+    @Override
+    public void write(DtFile dtFile, ByteBuffer buf, long filePos, CompletionHandler<Integer, Void> handler) {
+        submit(new IoReq(dtFile, buf, filePos, true, handler));
+    }
+
+    private void submit(IoReq req) {
+        lock.lock();
+        try {
+            if (stopped) {
+                req.ex = new RaftException("file io backend is stopped");
+            } else {
+                pending.add(req);
+                if (pending.size() == 1) {
+                    notEmpty.signal();
+                }
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        req.complete();
+    }
+
+    public void shutdown() {
+        lock.lock();
+        try {
+            stopped = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            ArrayList<IoReq> batch;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !stopped) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                exec(batch.get(i));
+            }
+            dispatch(batch);
+        }
+        log.info("batch file io thread exit: {}", thread.getName());
+    }
+
+    private void exec(IoReq req) {
+        try {
+            AsynchronousFileChannel c = req.dtFile.getChannel();
+            // the channel opened by this backend completes the future in current thread
+            req.result = req.write ? c.write(req.buf, req.filePos).get() : c.read(req.buf, req.filePos).get();
+        } catch (ExecutionException e) {
+            req.ex = e.getCause() == null ? e : e.getCause();
+        } catch (Throwable e) {
+            req.ex = e;
+        }
+    }
+
+    private void dispatch(ArrayList<IoReq> batch) {
+        if (batch.size() == 1) {
+            IoReq req = batch.get(0);
+            dispatch(req.dtFile.getFiberGroup(), Collections.singletonList(req));
+            return;
+        }
+        IdentityHashMap<FiberGroup, ArrayList<IoReq>> map = new IdentityHashMap<>();
+        for (IoReq r : batch) {
+            map.computeIfAbsent(r.dtFile.getFiberGroup(), k -> new ArrayList<>()).add(r);
+        }
+        map.forEach(this::dispatch);
+    }
+
+    private void dispatch(FiberGroup fiberGroup, List<IoReq> reqs) {
+        Runnable r = () -> {
+            for (int i = 0, size = reqs.size(); i < size; i++) {
+                try {
+                    reqs.get(i).complete();
+                } catch (Throwable e) {
+                    log.error("", e);
+                }
+            }
+        };
+        try {
+            fiberGroup.getExecutor().execute(r);
+        } catch (Throwable e) {
+            // the fiber group is stopped, complete in current thread as AsynchronousFileChannel does
+            r.run();
+        }
+    }
+
+    private static class CallerRunsExecutor extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
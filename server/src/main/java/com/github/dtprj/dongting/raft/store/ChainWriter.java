@@ -248,7 +248,12 @@ public class ChainWriter {
                     log.warn("file {} should delete or deleted, ignore force", logFile.getFile());
                     return Fiber.resume(null, this);
                 }
-                ForceFrame ff = new ForceFrame(task.getDtFile().getChannel(), config.blockIoExecutor, false);
+                FiberFrame<Void> ff;
+                if (config.groupCommitForcer != null) {
+                    ff = config.groupCommitForcer.force(task.getDtFile().getChannel());
+                } else {
+                    ff = new ForceFrame(task.getDtFile().getChannel(), config.blockIoExecutor, false);
+                }
                 RetryFrame<Void> rf = new RetryFrame<>(ff, config.ioRetryInterval,
                         true, ChainWriter.this::shouldCancelRetry);
                 WriteTask finalTask = task;
@@ -80,6 +80,7 @@ public final class DefaultRaftLog implements RaftLog {
 
         idxFiles = new IdxFileQueue(FileUtil.ensureDir(dataDir, "idx"), statusManager, groupConfig);
         logFiles = new LogFileQueue(FileUtil.ensureDir(dataDir, "log"), groupConfig, idxFiles);
+        idxFiles.logFiles = logFiles;
     }
 
     @Override
@@ -193,6 +194,11 @@ public final class DefaultRaftLog implements RaftLog {
         return new FileLogLoader(idxFiles, logFiles, groupConfig, raftCodecFactory, cancelIndicator);
     }
 
+    @Override
+    public LogIterator openRawIterator(Supplier<Boolean> cancelIndicator) {
+        return new FileLogLoader(idxFiles, logFiles, groupConfig, null, cancelIndicator);
+    }
+
     @Override
     public FiberFrame<Pair<Integer, Long>> tryFindMatchPos(int suggestTerm, long suggestIndex,
                                                            Supplier<Boolean> cancelIndicator) {
@@ -27,6 +27,8 @@ import java.nio.channels.AsynchronousFileChannel;
 public class DtFile {
     private final File file;
     private final AsynchronousFileChannel channel;
+    private final FiberGroup fiberGroup;
+    private final FileIoBackend ioBackend;
 
     private int readers;
     private int writers;
@@ -34,8 +36,14 @@ public class DtFile {
     private final FiberCondition noRwCond;
 
     public DtFile(File file, AsynchronousFileChannel channel, FiberGroup fiberGroup) {
+        this(file, channel, fiberGroup, AsyncChannelIoBackend.INSTANCE);
+    }
+
+    public DtFile(File file, AsynchronousFileChannel channel, FiberGroup fiberGroup, FileIoBackend ioBackend) {
         this.file = file;
         this.channel = channel;
+        this.fiberGroup = fiberGroup;
+        this.ioBackend = ioBackend;
         this.noRwCond = fiberGroup.newCondition("noRw-" + file.getName());
     }
 
@@ -47,6 +55,14 @@ public class DtFile {
         return channel;
     }
 
+    public FiberGroup getFiberGroup() {
+        return fiberGroup;
+    }
+
+    public FileIoBackend getIoBackend() {
+        return ioBackend;
+    }
+
     public FiberCondition getNoRwCond() {
         return noRwCond;
     }
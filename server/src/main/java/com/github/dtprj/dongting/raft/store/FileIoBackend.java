@@ -0,0 +1,41 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The backend that executes the file reads and writes of AsyncIoTask. The channel of DtFile should be opened
+ * by the same backend which the DtFile uses.
+ *
+ * @author huangli
+ */
+public interface FileIoBackend {
+
+    AsynchronousFileChannel openChannel(Path path, Set<? extends OpenOption> options,
+                                        ExecutorService ioExecutor) throws IOException;
+
+    void read(DtFile dtFile, ByteBuffer buf, long filePos, CompletionHandler<Integer, Void> handler);
+
+    void write(DtFile dtFile, ByteBuffer buf, long filePos, CompletionHandler<Integer, Void> handler);
+}
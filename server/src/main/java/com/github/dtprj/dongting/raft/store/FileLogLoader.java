@@ -65,6 +65,7 @@ class FileLogLoader implements RaftLog.LogIterator {
     private final Supplier<Boolean> cancelIndicator;
     private final CRC32C crc32c = new CRC32C();
     private final LogHeader header = new LogHeader();
+    // if null, the biz header and body are not decoded, and are returned as ByteArray of the raw bytes
     private final RaftCodecFactory codecFactory;
     private final DecodeContext decodeContext;
     private final Decoder decoder;
@@ -332,7 +333,8 @@ class FileLogLoader implements RaftLog.LogIterator {
                 int oldPos = buf.position();
                 if (currentReadBytes == 0) {
                     DecoderCallback<?> callback;
-                    if (header.type == LogItem.TYPE_NORMAL || header.type == LogItem.TYPE_LOG_READ) {
+                    if (codecFactory != null
+                            && (header.type == LogItem.TYPE_NORMAL || header.type == LogItem.TYPE_LOG_READ)) {
                         callback = isHeader ? codecFactory.createHeaderCallback(header.bizType, decodeContext)
                                 : codecFactory.createBodyCallback(header.bizType, decodeContext);
                         if (callback == null) {
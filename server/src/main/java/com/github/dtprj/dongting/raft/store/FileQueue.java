@@ -124,8 +124,9 @@ abstract class FileQueue {
                 HashSet<OpenOption> openOptions = new HashSet<>();
                 openOptions.add(StandardOpenOption.READ);
                 openOptions.add(StandardOpenOption.WRITE);
-                AsynchronousFileChannel channel = AsynchronousFileChannel.open(f.toPath(), openOptions, ioExecutor);
-                queue.addLast(new LogFile(startPos, startPos + getFileSize(), channel, f, groupConfig.fiberGroup));
+                AsynchronousFileChannel channel = groupConfig.fileIoBackend.openChannel(f.toPath(), openOptions, ioExecutor);
+                queue.addLast(new LogFile(startPos, startPos + getFileSize(), channel, f, groupConfig.fiberGroup,
+                        groupConfig.fileIoBackend));
                 count++;
             }
         }
@@ -302,21 +303,21 @@ abstract class FileQueue {
         f = new PostFiberFrame<>(f) {
             @Override
             protected FrameCallResult postProcess(Void v) {
-                queue.removeFirst();
+                LogFile deleted = queue.removeFirst();
                 if (queue.size() >= 1) {
                     queueStartPosition = queue.get(0).startPos;
                 } else {
                     queueStartPosition = 0;
                     queueEndPosition = 0;
                 }
-                FileQueue.this.afterDelete();
+                FileQueue.this.afterDelete(deleted);
                 return Fiber.frameReturn();
             }
         };
         return f;
     }
 
-    protected void afterDelete() {
+    protected void afterDelete(LogFile deleted) {
     }
 
     private class QueueAllocFrame extends FiberFrame<Void> {
@@ -345,7 +346,7 @@ abstract class FileQueue {
                 }
             }
             LogFile logFile = new LogFile(f.fileStartPos, f.fileStartPos + getFileSize(), f.channel,
-                    f.file, FiberGroup.currentGroup());
+                    f.file, FiberGroup.currentGroup(), groupConfig.fileIoBackend);
             queue.addLast(logFile);
             if (queue.size() == 1) {
                 queueStartPosition = logFile.startPos;
@@ -387,7 +388,7 @@ abstract class FileQueue {
                     openOptions.add(StandardOpenOption.READ);
                     openOptions.add(StandardOpenOption.WRITE);
                     openOptions.add(StandardOpenOption.CREATE);
-                    channel = AsynchronousFileChannel.open(file.toPath(), openOptions, ioExecutor);
+                    channel = groupConfig.fileIoBackend.openChannel(file.toPath(), openOptions, ioExecutor);
                     long time = System.currentTimeMillis() - startTime;
                     createFileFuture.fireComplete(null);
                     log.info("allocate file done, cost {} ms: {}", time, file.getPath());
@@ -0,0 +1,128 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group commit of the force requests from all raft groups in the node. A force of a file covers all the writes
+ * completed before it starts, so the requests of a file that arrive while the file is being forced are merged,
+ * and they are completed by one force in the next flush round of the file. Each file has at most one force in
+ * flight, and the files are forced independently, so a file never waits for the force of another file.
+ *
+ * @author huangli
+ */
+public class GroupCommitForcer {
+    private static final DtLog log = DtLogs.getLogger(GroupCommitForcer.class);
+
+    private final Executor ioExecutor;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // the files which have a force in flight, accessed under lock
+    private final IdentityHashMap<AsynchronousFileChannel, ArrayList<FiberFuture<Void>>> forcing = new IdentityHashMap<>();
+
+    public GroupCommitForcer(Executor ioExecutor) {
+        this.ioExecutor = ioExecutor;
+    }
+
+    public FiberFrame<Void> force(AsynchronousFileChannel channel) {
+        return new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<Void> f = getFiberGroup().newFuture("groupCommitForce");
+                submit(channel, f);
+                return f.await(this::justReturn);
+            }
+        };
+    }
+
+    private void submit(AsynchronousFileChannel channel, FiberFuture<Void> f) {
+        lock.lock();
+        try {
+            ArrayList<FiberFuture<Void>> waiting = forcing.get(channel);
+            if (waiting != null) {
+                // merged into the next flush round of the file
+                waiting.add(f);
+                return;
+            }
+            forcing.put(channel, new ArrayList<>());
+        } finally {
+            lock.unlock();
+        }
+        ArrayList<FiberFuture<Void>> round = new ArrayList<>(1);
+        round.add(f);
+        runRound(channel, round);
+    }
+
+    private void runRound(AsynchronousFileChannel channel, ArrayList<FiberFuture<Void>> round) {
+        try {
+            ioExecutor.execute(() -> forceFile(channel, round));
+        } catch (Throwable e) {
+            log.error("submit force task failed: {}", channel);
+            afterRound(channel, round, e);
+        }
+    }
+
+    private void forceFile(AsynchronousFileChannel channel, ArrayList<FiberFuture<Void>> round) {
+        Throwable ex = null;
+        try {
+            doForce(channel);
+        } catch (Throwable e) {
+            log.error("force file failed: {}", channel);
+            ex = e;
+        }
+        afterRound(channel, round, ex);
+    }
+
+    // package private for test
+    void doForce(AsynchronousFileChannel channel) throws IOException {
+        channel.force(false);
+    }
+
+    private void afterRound(AsynchronousFileChannel channel, ArrayList<FiberFuture<Void>> round, Throwable ex) {
+        for (FiberFuture<Void> f : round) {
+            if (ex == null) {
+                f.fireComplete(null);
+            } else {
+                f.fireCompleteExceptionally(ex);
+            }
+        }
+        ArrayList<FiberFuture<Void>> next;
+        lock.lock();
+        try {
+            next = forcing.get(channel);
+            if (next.isEmpty()) {
+                forcing.remove(channel);
+                return;
+            }
+            forcing.put(channel, new ArrayList<>());
+        } finally {
+            lock.unlock();
+        }
+        runRound(channel, next);
+    }
+}
@@ -46,6 +46,7 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
     private static final int ITEM_LEN = 8;
     static final String KEY_PERSIST_IDX_INDEX = "persistIdxIndex";
     static final String KEY_FIRST_VALID_POS = "firstValidPos";
+    static final String KEY_SPARSE_IDX = "sparseIdx";
 
     private final StatusManager statusManager;
 
@@ -74,6 +75,14 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
 
     final ChainWriter chainWriter;
 
+    // null if mmap read is disabled
+    private final MappedFileCache mappedFiles;
+
+    // if > 0, no idx file is written, keep position checkpoints in memory (key is index / sparseInterval)
+    private final int sparseInterval;
+    private final LongLongSeqMap sparse;
+    LogFileQueue logFiles;
+
     public IdxFileQueue(File dir, StatusManager statusManager, RaftGroupConfigEx groupConfig) {
         super(dir, groupConfig, (long) ITEM_LEN * groupConfig.idxItemsPerFile, false);
         int itemsPerFile = groupConfig.idxItemsPerFile;
@@ -98,9 +107,28 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
         chainWriter.setWritePerfType1(0);
         chainWriter.setWritePerfType2(PerfConsts.RAFT_D_IDX_WRITE);
         chainWriter.setForcePerfType(PerfConsts.RAFT_D_IDX_FORCE);
+
+        if (groupConfig.idxMmapFiles > 0) {
+            this.mappedFiles = new MappedFileCache(groupConfig.idxMmapFiles, ioExecutor, groupConfig.fiberGroup);
+        } else {
+            this.mappedFiles = null;
+        }
+
+        this.sparseInterval = groupConfig.idxSparseInterval;
+        this.sparse = sparseInterval > 0 ? new LongLongSeqMap(1024) : null;
     }
 
     public FiberFrame<Pair<Long, Long>> initRestorePos() {
+        boolean sparseInStatus = RaftUtil.parseBoolean(statusManager.getProperties(), KEY_SPARSE_IDX, false);
+        if (sparseInterval > 0) {
+            if (queueEndPosition > 0) {
+                throw new RaftException("idx files exists, can't use sparse idx mode: " + dir.getPath());
+            }
+            statusManager.getProperties().put(KEY_SPARSE_IDX, "true");
+            return new SparseRestorePosFrame();
+        } else if (sparseInStatus) {
+            throw new RaftException("the raft group uses sparse idx mode, idxSparseInterval should be set");
+        }
         this.firstIndex = posToIndex(queueStartPosition);
         this.persistedIndexInStatusFile = RaftUtil.parseLong(statusManager.getProperties(),
                 KEY_PERSIST_IDX_INDEX, 0);
@@ -150,6 +178,75 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
         }
     }
 
+    /**
+     * In sparse mode there is no persisted idx, so restore from the first item of the log files and
+     * rebuild the checkpoints.
+     */
+    private class SparseRestorePosFrame extends FiberFrame<Pair<Long, Long>> {
+        private final long firstValidPos = RaftUtil.parseLong(statusManager.getProperties(), KEY_FIRST_VALID_POS, 0);
+        private final ByteBuffer buf = ByteBuffer.allocate(LogHeader.ITEM_HEADER_SIZE);
+        private int fileIndex;
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            if (fileIndex >= logFiles.queue.size()) {
+                return noItem();
+            }
+            LogFile lf = logFiles.queue.get(fileIndex);
+            long pos = Math.max(lf.startPos, firstValidPos);
+            if (lf.endPos - pos < LogHeader.ITEM_HEADER_SIZE) {
+                fileIndex++;
+                return Fiber.resume(null, this);
+            }
+            buf.clear();
+            AsyncIoTask t = new AsyncIoTask(groupConfig.fiberGroup, lf);
+            return t.read(buf, logFiles.filePos(pos)).await(v -> afterReadHeader(pos));
+        }
+
+        private FrameCallResult afterReadHeader(long pos) {
+            buf.flip();
+            LogHeader header = new LogHeader();
+            header.read(buf);
+            if (!header.crcMatch()) {
+                return noItem();
+            }
+            if (header.isEndMagic()) {
+                fileIndex++;
+                return Fiber.resume(null, this);
+            }
+            setRestorePos(header.index);
+            log.info("sparse idx mode, restore from index: {}, pos: {}", header.index, pos);
+            setResult(new Pair<>(header.index, pos));
+            return Fiber.frameReturn();
+        }
+
+        private FrameCallResult noItem() {
+            if (raftStatus.firstValidIndex > 1) {
+                setRestorePos(raftStatus.firstValidIndex);
+                // return null will cause install snapshot
+                setResult(null);
+            } else {
+                setRestorePos(1);
+                log.info("sparse idx mode, restore from index: 1, pos: 0");
+                setResult(new Pair<>(1L, 0L));
+            }
+            return Fiber.frameReturn();
+        }
+
+        private void setRestorePos(long restoreIndex) {
+            firstIndex = restoreIndex;
+            if (restoreIndex == 1) {
+                nextIndex = 1;
+            } else {
+                // same as dense mode, the restorer will put restoreIndex again
+                nextIndex = restoreIndex + 1;
+            }
+            nextPersistIndex = restoreIndex;
+            writeFinishIndex = restoreIndex - 1;
+            persistedIndex = restoreIndex - 1;
+        }
+    }
+
     public void startFibers() {
         flushFiber.start();
         chainWriter.start();
@@ -198,11 +295,50 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
         }
         cache.put(itemIndex, dataPosition);
         nextIndex = itemIndex + 1;
+        if (sparseInterval > 0) {
+            putSparse(itemIndex, dataPosition);
+            return;
+        }
         if (flushLoopFrame.waiting && getDiff() >= flushThreshold) {
             needFlushCondition.signal();
         }
     }
 
+    private void putSparse(long itemIndex, long dataPosition) {
+        if (itemIndex % sparseInterval == 0) {
+            LongLongSeqMap sparse = this.sparse;
+            long key = itemIndex / sparseInterval;
+            if (sparse.size() > 0 && key <= sparse.getLastKey()) {
+                // re-put in restore
+                sparse.truncate(Math.max(key, sparse.getFirstKey()));
+            }
+            sparse.put(key, dataPosition);
+            // remove the checkpoints in deleted log files
+            long logFirstIndex = logFiles.getFirstIndex();
+            while (sparse.size() > 1 && sparse.getFirstKey() * sparseInterval < logFirstIndex) {
+                sparse.remove();
+            }
+        }
+        updateSparsePersistIndex();
+    }
+
+    /**
+     * In sparse mode, the items can be found by scanning the log files after they are written.
+     */
+    private void updateSparsePersistIndex() {
+        long idx = Math.min(raftStatus.commitIndex, nextIndex - 1);
+        if (initialized) {
+            idx = Math.min(idx, raftStatus.lastWriteLogIndex);
+        }
+        if (idx > persistedIndex) {
+            persistedIndex = idx;
+            writeFinishIndex = idx;
+            nextPersistIndex = idx + 1;
+            removeHead();
+            flushDoneCondition.signalAll();
+        }
+    }
+
     private void flush(LogFile logFile, boolean suggestForce) {
         long startIdx = nextPersistIndex;
         long lastIdx = Math.min(raftStatus.commitIndex, cache.getLastKey());
@@ -258,6 +394,9 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
 
     @Override
     public boolean needWaitFlush() {
+        if (sparseInterval > 0) {
+            updateSparsePersistIndex();
+        }
         removeHead();
         return cache.size() > blockCacheItems && getDiff() >= flushThreshold;
     }
@@ -309,6 +448,10 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
             if (raftStatus.installSnapshot) {
                 return Fiber.frameReturn();
             }
+            if (sparseInterval > 0) {
+                log.info("sparse idx mode, idx flush fiber exit, groupId={}", groupConfig.groupId);
+                return Fiber.frameReturn();
+            }
             long diff = getDiff();
             // 0: flush without force, 1 : flush with force, 2: force only
             int flushType;
@@ -387,13 +530,19 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
                     BugLog.log("load index is too small: index={}, firstIndex={}", itemIndex, firstIndex);
                     throw new RaftException("index too small");
                 }
-                if (itemIndex > writeFinishIndex) {
+                if (sparseInterval > 0) {
+                    updateSparsePersistIndex();
+                }
+                if (itemIndex > writeFinishIndex || sparseInterval > 0) {
                     if (itemIndex >= cache.getFirstKey() && itemIndex <= cache.getLastKey()) {
                         setResult(cache.get(itemIndex));
                         return Fiber.frameReturn();
                     }
-                    BugLog.log("load index too large: index={}, persistedIndex={}", itemIndex, persistedIndex);
-                    throw new RaftException("index is too large");
+                    if (itemIndex > writeFinishIndex) {
+                        BugLog.log("load index too large: index={}, persistedIndex={}", itemIndex, persistedIndex);
+                        throw new RaftException("index is too large");
+                    }
+                    return Fiber.call(new SparseScanFrame(itemIndex), this::afterScan);
                 }
                 long pos = indexToPos(itemIndex);
                 LogFile lf = getLogFile(pos);
@@ -401,10 +550,35 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
                     throw new RaftException("file deleted: " + lf.getFile().getPath());
                 }
                 long filePos = pos & fileLenMask;
+                // the sealed file will not be written any more (only committed items are written)
+                if (mappedFiles != null && posToIndex(lf.endPos) - 1 <= writeFinishIndex) {
+                    MappedFileCache.MappedFile mf = mappedFiles.get(lf);
+                    if (mf != null) {
+                        return afterMap(mf, lf, filePos);
+                    }
+                    return mappedFiles.load(lf).await(r -> afterMap(r, lf, filePos));
+                }
                 AsyncIoTask t = new AsyncIoTask(groupConfig.fiberGroup, lf);
                 return t.read(buffer, filePos).await(this::afterLoad);
             }
 
+            private FrameCallResult afterScan(Long pos) {
+                setResult(pos);
+                return Fiber.frameReturn();
+            }
+
+            private FrameCallResult afterMap(MappedFileCache.MappedFile mf, LogFile lf, long filePos) {
+                if (mf == null) {
+                    throw new RaftException("file deleted: " + lf.getFile().getPath());
+                }
+                try {
+                    setResult(mf.buffer.getLong((int) filePos));
+                } finally {
+                    mappedFiles.release(mf);
+                }
+                return Fiber.frameReturn();
+            }
+
             private FrameCallResult afterLoad(Void unused) {
                 buffer.flip();
                 setResult(buffer.getLong());
@@ -413,6 +587,68 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
         };
     }
 
+    /**
+     * Find the item position by scanning log headers forward from the nearest checkpoint (sparse mode).
+     */
+    private class SparseScanFrame extends FiberFrame<Long> {
+        private final long itemIndex;
+        private long index;
+        private long pos;
+
+        SparseScanFrame(long itemIndex) {
+            this.itemIndex = itemIndex;
+        }
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            long key = itemIndex / sparseInterval;
+            if (sparse.size() > 0 && key >= sparse.getFirstKey()
+                    && sparse.getFirstKey() * sparseInterval >= logFiles.getFirstIndex()) {
+                key = Math.min(key, sparse.getLastKey());
+                index = key * sparseInterval;
+                pos = sparse.get(key);
+            } else {
+                // start from the first item of the log files
+                LogFile first = logFiles.queue.size() > 0 ? logFiles.queue.get(0) : null;
+                if (first == null || first.firstIndex <= 0 || first.firstIndex > itemIndex) {
+                    BugLog.log("load index is too small: index={}, logFirstIndex={}", itemIndex,
+                            first == null ? 0 : first.firstIndex);
+                    throw new RaftException("index too small");
+                }
+                long firstValidPos = RaftUtil.parseLong(statusManager.getProperties(), KEY_FIRST_VALID_POS, 0);
+                index = first.firstIndex;
+                pos = Math.max(first.startPos, firstValidPos);
+            }
+            return scan();
+        }
+
+        private FrameCallResult scan() {
+            if (index == itemIndex) {
+                setResult(pos);
+                return Fiber.frameReturn();
+            }
+            LogFile lf = logFiles.getLogFile(pos);
+            if (lf.endPos - pos < LogHeader.ITEM_HEADER_SIZE) {
+                pos = lf.endPos;
+                return scan();
+            }
+            return Fiber.call(logFiles.loadHeader(pos), h -> afterLoadHeader(h, lf));
+        }
+
+        private FrameCallResult afterLoadHeader(LogHeader header, LogFile lf) {
+            if (header.isEndMagic()) {
+                pos = lf.endPos;
+                return scan();
+            }
+            if (header.index != index) {
+                throw new RaftException("index not match in sparse scan, expect " + index + ", but " + header.index);
+            }
+            pos += header.totalLen;
+            index++;
+            return scan();
+        }
+    }
+
     /**
      * truncate tail index (inclusive)
      */
@@ -430,10 +666,20 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
         log.info("truncate tail to {}(inclusive), old nextIndex={}", index, nextIndex);
         cache.truncate(index);
         nextIndex = index;
+        if (sparseInterval > 0 && sparse.size() > 0) {
+            // the first key >= index
+            long key = (index + sparseInterval - 1) / sparseInterval;
+            if (key <= sparse.getLastKey()) {
+                sparse.truncate(Math.max(key, sparse.getFirstKey()));
+            }
+        }
     }
 
     @Override
-    protected void afterDelete() {
+    protected void afterDelete(LogFile deleted) {
+        if (mappedFiles != null) {
+            mappedFiles.remove(deleted);
+        }
         if (queue.size() > 0) {
             firstIndex = posToIndex(queueStartPosition);
         }
@@ -449,6 +695,9 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
 
     public FiberFuture<Void> close() {
         markClose = true;
+        if (mappedFiles != null) {
+            mappedFiles.clear();
+        }
         needFlushCondition.signal();
         FiberFuture<Void> f;
         if (flushFiber.isStarted() && !flushFiber.isFinished()) {
@@ -462,6 +711,9 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
 
     public FiberFrame<Void> finishInstall(long nextLogIndex) throws Exception {
         long newFileStartPos = startPosOfFile(indexToPos(nextLogIndex));
+        if (mappedFiles != null) {
+            mappedFiles.clear();
+        }
         queueStartPosition = newFileStartPos;
         queueEndPosition = newFileStartPos;
         firstIndex = nextLogIndex;
@@ -469,6 +721,11 @@ final class IdxFileQueue extends FileQueue implements IdxOps {
         nextPersistIndex = nextLogIndex;
         writeFinishIndex = nextLogIndex - 1;
         persistedIndex = nextLogIndex - 1;
+        if (sparseInterval > 0) {
+            statusManager.getProperties().put(KEY_SPARSE_IDX, "true");
+            startFibers();
+            return FiberFrame.voidCompletedFrame();
+        }
         initQueue();
         startFibers();
         return ensureWritePosReady(nextLogIndex);
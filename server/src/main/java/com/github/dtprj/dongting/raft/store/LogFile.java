@@ -41,6 +41,13 @@ class LogFile extends DtFile {
         this.endPos = endPos;
     }
 
+    public LogFile(long startPos, long endPos, AsynchronousFileChannel channel, File file, FiberGroup group,
+                   FileIoBackend ioBackend) {
+        super(file, channel, group, ioBackend);
+        this.startPos = startPos;
+        this.endPos = endPos;
+    }
+
     public boolean shouldDelete() {
         return deleteTimestamp > 0;
     }
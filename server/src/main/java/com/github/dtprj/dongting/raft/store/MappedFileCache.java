@@ -0,0 +1,144 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.common.VersionFactory;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * LRU cache of read only memory mapped files. All methods except the map task are called in raft thread.
+ * <p>
+ * The reader may suspend (await the map task) before it reads the buffer, and the file may be evicted, removed,
+ * or mapped by another reader in the meantime. So the mapped files are reference counted, the cache holds one
+ * reference, and each reader holds one until it calls release(). The buffer is unmapped only when the count
+ * reaches 0, so it is never unmapped while it is being read.
+ *
+ * @author huangli
+ */
+final class MappedFileCache {
+    private static final DtLog log = DtLogs.getLogger(MappedFileCache.class);
+
+    private final LinkedHashMap<LogFile, MappedFile> map;
+    private final ExecutorService ioExecutor;
+    private final FiberGroup fiberGroup;
+
+    static final class MappedFile {
+        final MappedByteBuffer buffer;
+        // accessed in raft thread only
+        private int refCount = 1;
+
+        MappedFile(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean isUnmapped() {
+            return refCount == 0;
+        }
+    }
+
+    MappedFileCache(int maxFiles, ExecutorService ioExecutor, FiberGroup fiberGroup) {
+        this.ioExecutor = ioExecutor;
+        this.fiberGroup = fiberGroup;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LogFile, MappedFile> eldest) {
+                if (size() > maxFiles) {
+                    release(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * return the cached file and retain it, or null if not cached. The caller should call release() after read.
+     */
+    MappedFile get(LogFile lf) {
+        MappedFile mf = map.get(lf);
+        if (mf != null) {
+            mf.refCount++;
+        }
+        return mf;
+    }
+
+    /**
+     * map the file in io executor, and put it into the cache. The result is retained (null if the file is
+     * deleted), the caller should call release() after read.
+     */
+    FiberFuture<MappedFile> load(LogFile lf) {
+        FiberFuture<MappedByteBuffer> f = fiberGroup.newFuture("mapFile");
+        ioExecutor.execute(() -> {
+            try (FileChannel fc = FileChannel.open(lf.getFile().toPath(), StandardOpenOption.READ)) {
+                // the mapping is still valid after the channel closed
+                f.fireComplete(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+            } catch (Throwable e) {
+                log.error("map file failed: {}", lf.getFile().getPath(), e);
+                f.fireCompleteExceptionally(e);
+            }
+        });
+        return f.convert("putMappedFile", buf -> {
+            if (lf.isDeleted()) {
+                unmap(buf);
+                return null;
+            }
+            MappedFile existing = get(lf);
+            if (existing != null) {
+                // mapped by another reader concurrently
+                unmap(buf);
+                return existing;
+            }
+            MappedFile mf = new MappedFile(buf);
+            map.put(lf, mf);
+            mf.refCount++;
+            return mf;
+        });
+    }
+
+    void release(MappedFile mf) {
+        if (--mf.refCount == 0) {
+            unmap(mf.buffer);
+        }
+    }
+
+    void remove(LogFile lf) {
+        MappedFile mf = map.remove(lf);
+        if (mf != null) {
+            release(mf);
+        }
+    }
+
+    void clear() {
+        for (MappedFile mf : map.values()) {
+            release(mf);
+        }
+        map.clear();
+    }
+
+    private static void unmap(MappedByteBuffer buf) {
+        VersionFactory.getInstance().releaseDirectBuffer(buf);
+    }
+}
@@ -44,6 +44,16 @@ public interface RaftLog {
 
     LogIterator openIterator(Supplier<Boolean> cancelIndicator);
 
+    /**
+     * open an iterator that not decode the biz header and body, they are returned as ByteArray of the raw bytes
+     * (checked by crc), so they can be re-encoded to the network without the state machine codec.
+     * <p>
+     * The default implementation delegates to openIterator, the header and body are decoded as usual.
+     */
+    default LogIterator openRawIterator(Supplier<Boolean> cancelIndicator) {
+        return openIterator(cancelIndicator);
+    }
+
     /**
      * return null if it can't match and will cause install snapshot
      */
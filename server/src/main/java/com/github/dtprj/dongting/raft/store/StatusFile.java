@@ -101,9 +101,9 @@ public class StatusFile {
                 options.add(StandardOpenOption.CREATE);
                 options.add(StandardOpenOption.READ);
                 options.add(StandardOpenOption.WRITE);
-                AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(), options,
+                AsynchronousFileChannel channel = groupConfig.fileIoBackend.openChannel(file.toPath(), options,
                         groupConfig.blockIoExecutor);
-                dtFile = new DtFile(file, channel, fiberGroup);
+                dtFile = new DtFile(file, channel, fiberGroup, groupConfig.fileIoBackend);
                 if (!needLoad) {
                     return Fiber.frameReturn();
                 }
@@ -15,6 +15,9 @@
  */
 package com.github.dtprj.dongting.dtkv.server;
 
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+import com.github.dtprj.dongting.codec.Encodable;
 import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.Pair;
@@ -30,9 +33,12 @@ import com.github.dtprj.dongting.fiber.FrameCall;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.server.RaftGroup;
 import com.github.dtprj.dongting.raft.server.RaftInput;
+import com.github.dtprj.dongting.raft.sm.ExecTask;
 import com.github.dtprj.dongting.raft.sm.Snapshot;
 import com.github.dtprj.dongting.raft.sm.SnapshotInfo;
+import com.github.dtprj.dongting.raft.sm.StateMachine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -132,6 +138,12 @@ public class DtKVTest extends BaseFiberTest {
         return (FiberFuture) kv.exec(index, ts.wallClockMillis, ts.nanoTime, i);
     }
 
+    private ExecTask batchTask(long index, int bizType, KvReq req) {
+        req.ownerUuid = uuid;
+        RaftInput i = new RaftInput(bizType, null, req, new DtTime(1, TimeUnit.SECONDS), false);
+        return new ExecTask(index, ts.wallClockMillis, ts.nanoTime, i);
+    }
+
     private KvResult get(String key) {
         return kv.get(new ByteArray(key.getBytes()));
     }
@@ -591,4 +603,106 @@ public class DtKVTest extends BaseFiberTest {
         stop(newKv);
         stop(kv);
     }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testExecBatch(boolean useSeparateExecutor) throws Exception {
+        kv = createAndStart(useSeparateExecutor);
+        List<ExecTask> tasks = new ArrayList<>();
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_MKDIR, new KvReq(1, "d".getBytes(), null)));
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_PUT, new KvReq(1, "d.k1".getBytes(), "v1".getBytes())));
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_PUT, new KvReq(1, "x.k2".getBytes(), "v2".getBytes())));
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_PUT, new KvReq(1, "d.k1".getBytes(), "v3".getBytes())));
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return kv.execBatch(tasks).await(this::afterExec);
+            }
+
+            private FrameCallResult afterExec(List<Object> results) {
+                assertEquals(4, results.size());
+                assertEquals(KvCodes.SUCCESS, ((KvResult) results.get(0)).getBizCode());
+                assertEquals(KvCodes.SUCCESS, ((KvResult) results.get(1)).getBizCode());
+                assertEquals(KvCodes.PARENT_DIR_NOT_EXISTS, ((KvResult) results.get(2)).getBizCode());
+                assertEquals(KvCodes.SUCCESS_OVERWRITE, ((KvResult) results.get(3)).getBizCode());
+                assertEquals("v3", new String(get("d.k1").getNode().data));
+                assertEquals(4, get("d.k1").getNode().updateIndex);
+                return Fiber.frameReturn();
+            }
+        });
+        stop(kv);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testDefaultExecBatch(boolean useSeparateExecutor) throws Exception {
+        kv = createAndStart(useSeparateExecutor);
+        // a state machine that does not override execBatch, the third task fails
+        StateMachine sm = new StateMachine() {
+            @Override
+            public FiberFuture<Object> exec(long index, long leaderCreateTimeMillis, long localCreateNanos,
+                                            RaftInput input) {
+                if (index == 3) {
+                    throw new IllegalStateException("mock error");
+                }
+                return kv.exec(index, leaderCreateTimeMillis, localCreateNanos, input);
+            }
+
+            @Override
+            public FiberFuture<Void> installSnapshot(long lastIncludeIndex, int lastIncludeTerm, long offset,
+                                                     boolean done, ByteBuffer data) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public FiberFuture<Snapshot> takeSnapshot(SnapshotInfo snapshotInfo) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void setRaftGroup(RaftGroup raftGroup) {
+            }
+
+            @Override
+            public DecoderCallback<? extends Encodable> createHeaderCallback(int bizType, DecodeContext context) {
+                return null;
+            }
+
+            @Override
+            public DecoderCallback<? extends Encodable> createBodyCallback(int bizType, DecodeContext context) {
+                return null;
+            }
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop(DtTime timeout) {
+            }
+        };
+        List<ExecTask> tasks = new ArrayList<>();
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_MKDIR, new KvReq(1, "d".getBytes(), null)));
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_PUT, new KvReq(1, "d.k1".getBytes(), "v1".getBytes())));
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_PUT, new KvReq(1, "d.k2".getBytes(), "v2".getBytes())));
+        tasks.add(batchTask(ver++, DtKV.BIZ_TYPE_PUT, new KvReq(1, "d.k1".getBytes(), "v3".getBytes())));
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return sm.execBatch(tasks).await(this::afterExec);
+            }
+
+            private FrameCallResult afterExec(List<Object> results) {
+                assertEquals(4, results.size());
+                assertEquals(KvCodes.SUCCESS, ((KvResult) results.get(0)).getBizCode());
+                assertEquals(KvCodes.SUCCESS, ((KvResult) results.get(1)).getBizCode());
+                assertTrue(results.get(2) instanceof IllegalStateException);
+                assertEquals(KvCodes.SUCCESS_OVERWRITE, ((KvResult) results.get(3)).getBizCode());
+                assertEquals(KvCodes.NOT_FOUND, get("d.k2").getBizCode());
+                assertEquals("v3", new String(get("d.k1").getNode().data));
+                return Fiber.frameReturn();
+            }
+        });
+        stop(kv);
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.common.ByteArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.github.dtprj.dongting.dtkv.server.KvImplTest.ba;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+class KvHashTableTest {
+
+    private static KvNodeHolder holder(ByteArray key) {
+        return new KvNodeHolder(key, key, null, null);
+    }
+
+    @Test
+    void testSimple() {
+        KvHashTable t = new KvHashTable(2, 0.75f);
+        ByteArray k1 = ba("k1");
+        KvNodeHolder h1 = holder(k1);
+        assertNull(t.put(k1, h1));
+        assertSame(h1, t.get(ba("k1")));
+        assertNull(t.get(ba("k2")));
+        assertNull(t.get(ByteArray.EMPTY));
+
+        KvNodeHolder h1x = holder(ba("k1"));
+        assertSame(h1, t.put(h1x.key, h1x));
+        assertSame(h1x, t.get(k1));
+        assertEquals(1, t.size());
+
+        assertSame(h1x, t.remove(ba("k1")));
+        assertNull(t.remove(ba("k1")));
+        assertNull(t.get(k1));
+        assertEquals(0, t.size());
+    }
+
+    @Test
+    void testCollision() {
+        // "Aa" and "BB" has same hash code
+        ByteArray k1 = ba("AaAa");
+        ByteArray k2 = ba("AaBB");
+        ByteArray k3 = ba("BBAa");
+        ByteArray k4 = ba("BBBB");
+        assertEquals(k1.hashCode(), k4.hashCode());
+        KvHashTable t = new KvHashTable(16, 0.75f);
+        for (ByteArray k : new ByteArray[]{k1, k2, k3, k4}) {
+            t.put(k, holder(k));
+        }
+        assertEquals(4, t.size());
+        assertNotNull(t.remove(k2));
+        assertSame(k1, t.get(k1).key);
+        assertNull(t.get(k2));
+        assertSame(k3, t.get(k3).key);
+        assertSame(k4, t.get(k4).key);
+        assertNotNull(t.remove(k1));
+        assertSame(k3, t.get(k3).key);
+        assertSame(k4, t.get(k4).key);
+    }
+
+    @Test
+    void testRandom() {
+        Random r = new Random();
+        KvHashTable t = new KvHashTable(16, 0.75f);
+        Map<ByteArray, KvNodeHolder> m = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            ByteArray k = ba("k" + r.nextInt(5000));
+            int op = r.nextInt(3);
+            if (op == 0) {
+                KvNodeHolder h = holder(k);
+                assertSame(m.put(k, h), t.put(k, h));
+            } else if (op == 1) {
+                assertSame(m.remove(k), t.remove(k));
+            } else {
+                assertSame(m.get(k), t.get(k));
+            }
+            assertEquals(m.size(), t.size());
+        }
+        for (Map.Entry<ByteArray, KvNodeHolder> e : m.entrySet()) {
+            assertSame(e.getValue(), t.get(e.getKey()));
+        }
+    }
+}
@@ -19,17 +19,24 @@ import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.common.Pair;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.dtkv.KvCodes;
+import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.dtkv.KvResult;
+import com.github.dtprj.dongting.dtkv.KvScanResult;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.raft.sm.Snapshot;
 import com.github.dtprj.dongting.raft.sm.SnapshotInfo;
 import com.github.dtprj.dongting.raft.test.TestUtil;
+import com.github.dtprj.dongting.util.CodecTestUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -239,6 +246,354 @@ class KvImplTest {
         assertEquals(2, list.getRight().size());
     }
 
+    @Test
+    void testScan() {
+        KvServerConfig sc = new KvServerConfig();
+        sc.orderedIndex = true;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, sc);
+        mkdir(1, ba("dir1"));
+        put(2, ba("dir1.k2"), "v2".getBytes());
+        put(3, ba("dir1.k1"), "v1".getBytes());
+        put(4, ba("dir1.k3"), "v3".getBytes());
+        put(5, ba("dir2"), "v".getBytes());
+        takeSnapshot();
+        remove(6, ba("dir1.k2"));
+
+        Pair<Integer, KvScanResult> r = kv.scan(null, null, 0);
+        assertEquals(KvCodes.SUCCESS, r.getLeft());
+        List<KvResult> list = r.getRight().results;
+        assertEquals(4, list.size());
+        assertEquals("dir1", list.get(0).getKeyInDir().toString());
+        assertEquals("dir1.k1", list.get(1).getKeyInDir().toString());
+        assertEquals("dir1.k3", list.get(2).getKeyInDir().toString());
+        assertEquals("dir2", list.get(3).getKeyInDir().toString());
+        assertNull(r.getRight().nextKey);
+
+        r = kv.scan(ba("dir1."), ba("dir1/"), 1);
+        assertEquals(1, r.getRight().results.size());
+        assertEquals("dir1.k1", r.getRight().results.get(0).getKeyInDir().toString());
+        assertArrayEquals("dir1.k3".getBytes(), r.getRight().nextKey);
+        r = kv.scan(new ByteArray(r.getRight().nextKey), ba("dir1/"), 1);
+        assertEquals(1, r.getRight().results.size());
+        assertArrayEquals("v3".getBytes(), r.getRight().results.get(0).getNode().data);
+        assertNull(r.getRight().nextKey);
+
+        assertEquals(0, kv.scan(ba("dir3"), null, 10).getRight().results.size());
+
+        KvServerConfig c = new KvServerConfig();
+        c.orderedIndex = false;
+        KvImpl kv2 = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        assertEquals(KvCodes.NOT_SUPPORTED, kv2.scan(null, null, 0).getLeft());
+    }
+
+    @Test
+    void testOpenAddressingMap() {
+        KvServerConfig c = new KvServerConfig();
+        c.openAddressingMap = true;
+        c.initMapCapacity = 2;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        mkdir(ver++, ba("dir1"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(KvCodes.SUCCESS, put(ver++, ba("dir1.key" + i), ("value" + i).getBytes()).getBizCode());
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(KvCodes.SUCCESS, remove(ver++, ba("dir1.key" + i)).getBizCode());
+        }
+        for (int i = 0; i < 100; i++) {
+            KvResult r = kv.get(ba("dir1.key" + i));
+            if (i % 2 == 0) {
+                assertEquals(KvCodes.NOT_FOUND, r.getBizCode());
+            } else {
+                assertArrayEquals(("value" + i).getBytes(), r.getNode().data);
+            }
+        }
+        assertEquals(50, kv.list(ba("dir1")).getRight().size());
+    }
+
+    @Test
+    void testOffHeapValue() {
+        KvServerConfig c = new KvServerConfig();
+        c.offHeapValueThreshold = 16;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        byte[] small = "small".getBytes();
+        byte[] big = TestUtil.randomStr(100).getBytes();
+        put(ver++, ba("k1"), small);
+        put(ver++, ba("k2"), big);
+
+        KvNodeEx n1 = (KvNodeEx) kv.get(ba("k1")).getNode();
+        assertNull(n1.offHeapValue);
+        assertArrayEquals(small, n1.data);
+        KvNodeEx n2 = (KvNodeEx) kv.get(ba("k2")).getNode();
+        assertNotNull(n2.offHeapValue);
+        assertNull(n2.data);
+        assertArrayEquals(big, n2.readData());
+
+        KvNode decoded = CodecTestUtil.fullBufferDecode(CodecTestUtil.fullBufferEncode(n2), new KvNode.Callback());
+        assertArrayEquals(big, decoded.data);
+        assertEquals(n2.updateIndex, decoded.updateIndex);
+        decoded = (KvNode) CodecTestUtil.smallBufferEncodeAndParse(n2, new KvNode.Callback());
+        assertArrayEquals(big, decoded.data);
+
+        byte[] big2 = TestUtil.randomStr(200).getBytes();
+        assertEquals(KvCodes.CAS_MISMATCH, compareAndSet(ver++, ba("k2"), small, big2).getBizCode());
+        assertEquals(KvCodes.SUCCESS, compareAndSet(ver++, ba("k2"), big, big2).getBizCode());
+        KvResult r = kv.get(ba("k2"));
+        assertArrayEquals(big2, ((KvNodeEx) r.getNode()).readData());
+        KvImpl.releaseValue(r);
+        // the old version is dropped by the CAS, but still retained by the reader
+        assertArrayEquals(big, n2.readData());
+        n2.offHeapValue.release();
+        assertFalse(n2.offHeapValue.tryRetain());
+    }
+
+    private static EncodeStatus installStatus(String key, long index, int flag, byte[] value) {
+        EncodeStatus es = new EncodeStatus();
+        es.keyBytes = key.getBytes();
+        es.valueBytes = value;
+        es.createIndex = index;
+        es.createTime = index;
+        es.updateIndex = index;
+        es.updateTime = index;
+        es.flag = flag;
+        return es;
+    }
+
+    @Test
+    void testInstallSnapshotUpdateAndRemove() {
+        mkdir(ver++, ba("dir1"));
+        put(ver++, ba("dir1.k1"), "v1".getBytes());
+        put(ver++, ba("k2"), "v2".getBytes());
+        long createIndex = kv.get(ba("dir1.k1")).getNode().createIndex;
+
+        // update a key exists in base snapshot, the create index is kept
+        kv.installSnapshotPut(installStatus("dir1.k1", 100, 0, "v1_new".getBytes()));
+        KvNode n = kv.get(ba("dir1.k1")).getNode();
+        assertArrayEquals("v1_new".getBytes(), n.data);
+        assertEquals(createIndex, n.createIndex);
+        assertEquals(100, n.updateIndex);
+
+        // update a dir, the children are kept
+        kv.installSnapshotPut(installStatus("dir1", 101, KvNode.FLAG_DIR_MASK, null));
+        assertEquals(101, kv.get(ba("dir1")).getNode().updateIndex);
+        assertEquals(1, kv.list(ba("dir1")).getRight().size());
+
+        // new key
+        kv.installSnapshotPut(installStatus("dir1.k3", 102, 0, "v3".getBytes()));
+        assertEquals(2, kv.list(ba("dir1")).getRight().size());
+
+        kv.installSnapshotRemove(installStatus("k2", 103, EncodeStatus.FLAG_REMOVED_MASK, null));
+        assertEquals(KvCodes.NOT_FOUND, kv.get(ba("k2")).getBizCode());
+        assertNull(kv.map.get(ba("k2")));
+        assertEquals(1, kv.list(ba("")).getRight().size());
+
+        // the key is created and removed after the base snapshot
+        kv.installSnapshotRemove(installStatus("k4", 104, EncodeStatus.FLAG_REMOVED_MASK, null));
+
+        assertThrows(IllegalStateException.class, () -> kv.installSnapshotRemove(
+                installStatus("dir1", 105, EncodeStatus.FLAG_REMOVED_MASK, null)));
+
+        kv.installSnapshotRemove(installStatus("dir1.k1", 106, EncodeStatus.FLAG_REMOVED_MASK, null));
+        kv.installSnapshotRemove(installStatus("dir1.k3", 107, EncodeStatus.FLAG_REMOVED_MASK, null));
+        kv.installSnapshotRemove(installStatus("dir1", 108, EncodeStatus.FLAG_REMOVED_MASK, null));
+        assertEquals(KvCodes.NOT_FOUND, kv.get(ba("dir1")).getBizCode());
+        assertEquals(0, kv.list(ba("")).getRight().size());
+        assertEquals(0, kv.root.childHolderCount);
+    }
+
+    @Test
+    void testTrimRemovedKeys() {
+        kv.enableRemovedKeysLog(0);
+        put(1, ba("k1"), "v".getBytes());
+        put(2, ba("k2"), "v".getBytes());
+        put(3, ba("k3"), "v".getBytes());
+        remove(4, ba("k1"));
+        remove(5, ba("k2"));
+        assertEquals(2, kv.getRemovedKeys().size());
+        assertTrue(kv.canTakeDeltaSnapshot(0));
+
+        // a snapshot (full or delta) at index 4 is taken
+        kv.trimRemovedKeys(4);
+        assertEquals(1, kv.getRemovedKeys().size());
+        assertEquals(1, kv.getRemovedKeysDiscarded());
+        assertFalse(kv.canTakeDeltaSnapshot(3));
+        assertTrue(kv.canTakeDeltaSnapshot(4));
+
+        kv.trimRemovedKeys(5);
+        assertEquals(0, kv.getRemovedKeys().size());
+        assertEquals(2, kv.getRemovedKeysDiscarded());
+        assertTrue(kv.canTakeDeltaSnapshot(5));
+    }
+
+    @Test
+    void testMaxRemovedKeys() {
+        KvServerConfig c = new KvServerConfig();
+        c.maxRemovedKeys = 3;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        kv.enableRemovedKeysLog(0);
+        for (int i = 1; i <= 4; i++) {
+            put(i, ba("k" + i), "v".getBytes());
+        }
+        for (int i = 1; i <= 3; i++) {
+            remove(4 + i, ba("k" + i));
+        }
+        assertEquals(3, kv.getRemovedKeys().size());
+        remove(8, ba("k4"));
+        // the log is discarded, the next snapshot should be a full snapshot
+        assertEquals(0, kv.getRemovedKeys().size());
+        assertEquals(4, kv.getRemovedKeysDiscarded());
+        assertFalse(kv.canTakeDeltaSnapshot(7));
+        assertTrue(kv.canTakeDeltaSnapshot(8));
+    }
+
+    @Test
+    void testOffHeapValueRelease() {
+        KvServerConfig c = new KvServerConfig();
+        c.offHeapValueThreshold = 16;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        byte[] big = TestUtil.randomStr(100).getBytes();
+        put(ver++, ba("k1"), big);
+        put(ver++, ba("k2"), big);
+        KvResult r = kv.get(ba("k1"));
+        OffHeapValue v1 = ((KvNodeEx) r.getNode()).offHeapValue;
+        KvImpl.releaseValue(r);
+
+        // the old version is kept for the open snapshot
+        Snapshot s = takeSnapshot();
+        put(ver++, ba("k1"), TestUtil.randomStr(100).getBytes());
+        assertTrue(v1.tryRetain());
+        v1.release();
+        s.close();
+        assertFalse(v1.tryRetain());
+
+        r = kv.get(ba("k2"));
+        OffHeapValue v2 = ((KvNodeEx) r.getNode()).offHeapValue;
+        KvImpl.releaseValue(r);
+        remove(ver++, ba("k2"));
+        assertFalse(v2.tryRetain());
+
+        r = kv.get(ba("k1"));
+        OffHeapValue v3 = ((KvNodeEx) r.getNode()).offHeapValue;
+        KvImpl.releaseValue(r);
+        s = takeSnapshot();
+        kv.destroy();
+        assertEquals(KvCodes.INSTALL_SNAPSHOT, kv.get(ba("k1")).getBizCode());
+        assertEquals(KvCodes.INSTALL_SNAPSHOT, kv.list(ba("")).getLeft());
+        // the snapshot is still open
+        assertTrue(v3.tryRetain());
+        v3.release();
+        s.close();
+        assertFalse(v3.tryRetain());
+    }
+
+    @Test
+    void testLockFreeRead() throws Exception {
+        KvServerConfig c = new KvServerConfig();
+        c.readInDtKvExecutor = false;
+        c.lockFreeRead = true;
+        c.orderedIndex = true;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        mkdir(1, ba("dir1"));
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    KvResult r = kv.get(ba("dir1.key1"));
+                    if (r.getBizCode() == KvCodes.SUCCESS) {
+                        assertTrue(new String(r.getNode().data).startsWith("value"));
+                    }
+                    Pair<Integer, List<KvResult>> list = kv.list(ba("dir1"));
+                    assertEquals(KvCodes.SUCCESS, list.getLeft());
+                    assertTrue(list.getRight().size() <= 2);
+                    Pair<Integer, KvScanResult> sr = kv.scan(ba("dir1."), null, 0);
+                    assertTrue(sr.getRight().results.size() <= 2);
+                }
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        reader.start();
+        long index = 2;
+        for (int i = 0; i < 20000; i++) {
+            put(index++, ba("dir1.key1"), ("value" + i).getBytes());
+            put(index++, ba("dir1.key2"), ("value" + i).getBytes());
+            remove(index++, ba("dir1.key" + (i % 2 + 1)));
+        }
+        stop.set(true);
+        reader.join();
+        assertNull(error.get());
+    }
+
+    @Test
+    void testLockFreeReadStress() throws Exception {
+        KvServerConfig c = new KvServerConfig();
+        c.readInDtKvExecutor = false;
+        c.lockFreeRead = true;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        mkdir(1, ba("dir1"));
+        int keyCount = 300;
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        Pair<Integer, List<KvResult>> list = kv.list(ba("dir1"));
+                        assertEquals(KvCodes.SUCCESS, list.getLeft());
+                        List<KvResult> results = list.getRight();
+                        assertTrue(results.size() <= keyCount);
+                        HashSet<String> keys = new HashSet<>();
+                        for (KvResult r : results) {
+                            assertTrue(keys.add(r.getKeyInDir().toString()));
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+            readers[t].start();
+        }
+        Random r = new Random();
+        long index = 2;
+        for (int i = 0; i < 50000; i++) {
+            ByteArray key = ba("dir1.key" + r.nextInt(keyCount));
+            if (r.nextBoolean()) {
+                put(index++, key, ("value" + i).getBytes());
+            } else {
+                remove(index++, key);
+            }
+        }
+        stop.set(true);
+        for (Thread t : readers) {
+            // a reader that loops on a torn (cyclic) children list never finishes
+            t.join(10000);
+            assertFalse(t.isAlive());
+        }
+        assertNull(error.get());
+    }
+
+    @Test
+    void testLockFreeReadInBatch() throws Exception {
+        KvServerConfig c = new KvServerConfig();
+        c.readInDtKvExecutor = false;
+        c.lockFreeRead = true;
+        kv = new KvImpl(null, new TtlManager(ts, null), ts, 0, c);
+        kv.beginBatch();
+        try {
+            put(1, ba("key1"), "value1".getBytes());
+            AtomicReference<KvResult> result = new AtomicReference<>();
+            // the batch should not block the readers
+            Thread reader = new Thread(() -> result.set(kv.get(ba("key1"))));
+            reader.start();
+            reader.join(10000);
+            assertFalse(reader.isAlive());
+            assertEquals("value1", new String(result.get().getNode().data));
+        } finally {
+            kv.endBatch();
+        }
+    }
+
     @Test
     void testMkdir() {
         assertEquals(KvCodes.SUCCESS, mkdir(1, ba("dir1")).getBizCode());
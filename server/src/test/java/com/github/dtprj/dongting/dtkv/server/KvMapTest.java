@@ -293,4 +293,42 @@ class KvMapTest {
         }
         assertFalse(it.hasNext());
     }
+
+    @Test
+    void testRangeIterator() {
+        KvMap map = new KvMap(16, 0.75f, true, false);
+        map.put(ByteArray.EMPTY, createHolder(ByteArray.EMPTY));
+        for (int i = 9; i >= 0; i--) {
+            map.put(ba("key" + i), createHolder(ba("key" + i)));
+        }
+        map.remove(ba("key5"));
+        assertTrue(map.hasOrderedIndex());
+
+        Iterator<KvNodeHolder> it = map.rangeIterator(null, null);
+        for (int i = 0; i < 10; i++) {
+            if (i == 5) {
+                continue;
+            }
+            assertEquals("key" + i, new String(it.next().key.getData()));
+        }
+        assertFalse(it.hasNext());
+
+        it = map.rangeIterator(ba("key3"), ba("key7"));
+        assertEquals("key3", new String(it.next().key.getData()));
+        assertEquals("key4", new String(it.next().key.getData()));
+        assertEquals("key6", new String(it.next().key.getData()));
+        assertFalse(it.hasNext());
+
+        it = map.rangeIterator(ba("key8"), null);
+        assertEquals("key8", new String(it.next().key.getData()));
+        assertEquals("key9", new String(it.next().key.getData()));
+        assertFalse(it.hasNext());
+
+        it = map.rangeIterator(null, ba("key1"));
+        assertEquals("key0", new String(it.next().key.getData()));
+        assertFalse(it.hasNext());
+
+        assertFalse(map.rangeIterator(ba("key7"), ba("key3")).hasNext());
+        assertFalse(new KvMap(16, 0.75f).hasOrderedIndex());
+    }
 }
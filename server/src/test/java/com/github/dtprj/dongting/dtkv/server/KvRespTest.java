@@ -23,6 +23,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -32,7 +33,8 @@ public class KvRespTest {
 
     @Test
     public void testFullBuffer() throws Exception {
-        KvResp resp = new KvResp(100, Arrays.asList(KvResultTest.buildResult(), KvResultTest.buildResult()));
+        KvResp resp = new KvResp(100, Arrays.asList(KvResultTest.buildResult(), KvResultTest.buildResult()),
+                "next_key".getBytes());
         ByteBuffer buf = CodecTestUtil.fullBufferEncode(resp);
         DtKv.KvResp protoResp = DtKv.KvResp.parseFrom(buf);
         compare1(resp, protoResp);
@@ -44,13 +46,15 @@ public class KvRespTest {
 
     @Test
     public void testSmallBuffer() {
-        KvResp resp = new KvResp(100, Arrays.asList(KvResultTest.buildResult(), KvResultTest.buildResult()));
+        KvResp resp = new KvResp(100, Arrays.asList(KvResultTest.buildResult(), KvResultTest.buildResult()),
+                "next_key".getBytes());
         KvResp r = (KvResp) CodecTestUtil.smallBufferEncodeAndParse(resp, new KvResp.Callback());
         compare2(resp, r);
     }
 
     private void compare1(KvResp expect, DtKv.KvResp resp) {
         assertEquals(expect.raftIndex, resp.getRaftIndex());
+        assertEquals(new String(expect.nextKey), resp.getNextKey().toStringUtf8());
         if (expect.results != null) {
             for (int i = 0; i < expect.results.size(); i++) {
                 KvResultTest.compare1(expect.results.get(i), resp.getResults(i));
@@ -60,6 +64,7 @@ public class KvRespTest {
 
     private void compare2(KvResp expect, KvResp r) {
         assertEquals(expect.raftIndex, r.raftIndex);
+        assertArrayEquals(expect.nextKey, r.nextKey);
         if (expect.results != null) {
             for (int i = 0; i < expect.results.size(); i++) {
                 KvResultTest.compare2(expect.results.get(i), r.results.get(i));
@@ -0,0 +1,150 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.github.dtprj.dongting.dtkv.server.KvImplTest.ba;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+class TimingWheelTtlQueueTest {
+
+    private static final long TICK = 10_000_000L; // 10ms
+    private static final long BASE = 1000;
+
+    private TimingWheelTtlQueue q;
+    private int index;
+
+    @BeforeEach
+    void setUp() {
+        q = new TimingWheelTtlQueue(TICK, BASE);
+        index = 0;
+    }
+
+    private TtlInfo ti(long expireNanos) {
+        return new TtlInfo(ba("k" + index), index, UUID.randomUUID(), 0, 1, expireNanos, index++);
+    }
+
+    private List<TtlInfo> pollAll(long now) {
+        ArrayList<TtlInfo> list = new ArrayList<>();
+        TtlInfo t;
+        while ((t = q.pollExpired(now)) != null) {
+            list.add(t);
+        }
+        return list;
+    }
+
+    @Test
+    void testSimple() {
+        TtlInfo t1 = ti(BASE + 5 * TICK + 1);
+        assertTrue(q.add(t1));
+        assertEquals(1, q.size());
+        assertNull(q.pollExpired(BASE + 5 * TICK + 2));
+        assertEquals(TICK, q.nextDelayNanos(BASE + 5 * TICK));
+        assertSame(t1, q.pollExpired(BASE + 6 * TICK));
+        assertTrue(q.isEmpty());
+        assertNull(q.pollExpired(BASE + 100 * TICK));
+    }
+
+    @Test
+    void testAlreadyExpired() {
+        assertNull(q.pollExpired(BASE + 10 * TICK));
+        TtlInfo t1 = ti(BASE - 1);
+        q.add(t1);
+        assertSame(t1, q.pollExpired(BASE + 11 * TICK));
+    }
+
+    @Test
+    void testRemove() {
+        TtlInfo t1 = ti(BASE + TICK);
+        TtlInfo t2 = ti(BASE + TICK);
+        TtlInfo t3 = ti(BASE + TICK);
+        q.add(t1);
+        q.add(t2);
+        q.add(t3);
+        assertTrue(q.remove(t2));
+        assertFalse(q.remove(t2));
+        assertEquals(2, q.size());
+        List<TtlInfo> list = pollAll(BASE + 2 * TICK);
+        assertEquals(2, list.size());
+        assertTrue(list.contains(t1));
+        assertTrue(list.contains(t3));
+        assertFalse(q.remove(t1));
+    }
+
+    @Test
+    void testSignal() {
+        assertTrue(q.add(ti(BASE + 100 * TICK)));
+        q.nextDelayNanos(BASE);
+        assertFalse(q.add(ti(BASE + 200 * TICK)));
+        assertTrue(q.add(ti(BASE + 50 * TICK)));
+    }
+
+    @Test
+    void testCascade() {
+        long[] ticks = {255, 256, 257, 1000, 65535, 65536, 65537, 300_000, 20_000_000, (1L << 32) + 5};
+        for (long t : ticks) {
+            q.add(ti(BASE + t * TICK));
+        }
+        for (long t : ticks) {
+            long now = BASE + t * TICK;
+            assertTrue(pollAll(now).isEmpty(), "tick " + t);
+            List<TtlInfo> list = pollAll(now + TICK);
+            assertEquals(1, list.size(), "tick " + t);
+            assertEquals(now, list.get(0).expireNanos);
+        }
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    void testRandom() {
+        Random r = new Random();
+        HashSet<TtlInfo> all = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            TtlInfo t = ti(BASE + (long) r.nextInt(100_000) * TICK / 10);
+            q.add(t);
+            all.add(t);
+        }
+        long now = BASE;
+        while (!all.isEmpty()) {
+            now += r.nextInt(20) * TICK;
+            for (TtlInfo t : pollAll(now)) {
+                assertTrue(t.expireNanos - now <= 0);
+                assertTrue(all.remove(t));
+            }
+            for (TtlInfo t : all) {
+                // the expired item polled late at most one tick
+                assertTrue(t.expireNanos - now > -TICK);
+            }
+            if (r.nextInt(10) == 0 && !all.isEmpty()) {
+                TtlInfo t = all.iterator().next();
+                assertTrue(q.remove(t));
+                all.remove(t);
+            }
+        }
+        assertTrue(q.isEmpty());
+    }
+}
@@ -304,6 +304,36 @@ class TtlManagerTest {
         assertEquals(TtlManager.MAX_RETRY_BATCH, expiredList.size());
     }
 
+    @Test
+    void testTimingWheel() {
+        KvServerConfig c = new KvServerConfig();
+        c.ttlTimingWheel = true;
+        manager = new TtlManager(ts, expiredList::add, c);
+        manager.roleChange(RaftRole.leader);
+        UUID owner = UUID.randomUUID();
+        KvNodeEx[] nodes = new KvNodeEx[TtlManager.MAX_EXPIRE_BATCH + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            ByteArray key = ba("test" + i);
+            nodes[i] = createKvNode(key);
+            manager.initTtl(ver++, key, nodes[i], createOpContext(owner, 5));
+        }
+        manager.remove(nodes[0]);
+        assertEquals(nodes.length - 1, manager.ttlQueue.size());
+        long delay = manager.task.execute();
+        assertTrue(delay > 0 && delay <= 5_000_000L + c.ttlWheelTickMillis * 1_000_000L);
+        assertEquals(0, expiredList.size());
+
+        ts.wallClockMillis += 5 + c.ttlWheelTickMillis;
+        ts.nanoTime += (5 + c.ttlWheelTickMillis) * 1_000_000L;
+        assertEquals(manager.defaultDelayNanos, manager.task.execute());
+        assertEquals(TtlManager.MAX_EXPIRE_BATCH, expiredList.size());
+        assertEquals(0, manager.ttlQueue.size());
+        assertEquals(TtlManager.MAX_EXPIRE_BATCH, manager.pendingQueue.size());
+
+        manager.remove(nodes[1]);
+        assertEquals(TtlManager.MAX_EXPIRE_BATCH - 1, manager.pendingQueue.size());
+    }
+
     // Helper methods
 
     private KvNodeEx createKvNode(ByteArray key) {
@@ -17,8 +17,10 @@ package com.github.dtprj.dongting.dtkv.server;
 
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.dtkv.KvClient;
+import com.github.dtprj.dongting.dtkv.KvClientConfig;
 import com.github.dtprj.dongting.dtkv.KvCodes;
 import com.github.dtprj.dongting.dtkv.KvListener;
+import com.github.dtprj.dongting.dtkv.KvNode;
 import com.github.dtprj.dongting.dtkv.KvReq;
 import com.github.dtprj.dongting.dtkv.KvStatusResp;
 import com.github.dtprj.dongting.dtkv.WatchEvent;
@@ -27,8 +29,10 @@ import com.github.dtprj.dongting.dtkv.WatchNotify;
 import com.github.dtprj.dongting.dtkv.WatchNotifyReq;
 import com.github.dtprj.dongting.dtkv.WatchReq;
 import com.github.dtprj.dongting.net.CmdCodes;
+import com.github.dtprj.dongting.net.NioClientConfig;
 import com.github.dtprj.dongting.net.RpcCallback;
 import com.github.dtprj.dongting.net.WritePacket;
+import com.github.dtprj.dongting.raft.RaftClientConfig;
 import com.github.dtprj.dongting.raft.RaftException;
 import com.github.dtprj.dongting.raft.RaftNode;
 import com.github.dtprj.dongting.raft.server.RaftCallback;
@@ -184,7 +188,11 @@ public class WatchManagerTest implements KvListener {
     }
 
     private void init(long heartbeatIntervalMillis, boolean setListener) {
-        client = new KvClient() {
+        init(heartbeatIntervalMillis, setListener, new KvClientConfig());
+    }
+
+    private void init(long heartbeatIntervalMillis, boolean setListener, KvClientConfig config) {
+        client = new KvClient(config, new RaftClientConfig(), new NioClientConfig("KvClient")) {
             @Override
             protected WatchManager createClientWatchManager() {
                 return new MockWatchManager(this, () -> getStatus() >= STATUS_PREPARE_STOP,
@@ -402,4 +410,54 @@ public class WatchManagerTest implements KvListener {
         event = manager.takeEvent();
         assertNull(event);
     }
+
+    @Test
+    public void testNearCache() {
+        KvClientConfig config = new KvClientConfig();
+        config.nearCacheMaxKeys = 100;
+        init(1000, true, config);
+        KvClient writer = new KvClient();
+        writer.start();
+        writer.getRaftClient().clientAddNode("1,127.0.0.1:15501;2,127.0.0.1:15502;3,127.0.0.1:15503");
+        writer.getRaftClient().clientAddOrUpdateGroup(groupId, new int[]{1, 2, 3});
+        try {
+            byte[] key1 = "testNearCache_key1".getBytes();
+            Supplier<Object> getValue = () -> {
+                KvNode n = client.get(groupId, key1);
+                return n == null ? null : new String(n.data);
+            };
+            writer.put(groupId, key1, "v1".getBytes());
+            assertEquals("v1", getValue.get());
+            // the cached node returned is a copy
+            client.get(groupId, key1).data[0] = 'x';
+            assertEquals("v1", getValue.get());
+
+            // updated by other client, the cache is invalidated by the watch notify
+            writer.put(groupId, key1, "v2".getBytes());
+            WaitUtil.waitUtil("v2", getValue);
+
+            // read own writes
+            client.put(groupId, key1, "v3".getBytes());
+            assertEquals("v3", getValue.get());
+
+            writer.remove(groupId, key1);
+            WaitUtil.waitUtil(null, getValue);
+
+            // the watch added by near cache is not visible to user listener
+            assertTrue(events.isEmpty());
+
+            // user watch on the same key
+            manager.addWatch(groupId, key1);
+            writer.put(groupId, key1, "v4".getBytes());
+            waitForEvents(new PushEvent(-1, "testNearCache_key1", "v4"));
+            WaitUtil.waitUtil("v4", getValue);
+
+            // the near cache still watches the key after user remove watch
+            manager.removeWatch(groupId, key1);
+            writer.put(groupId, key1, "v5".getBytes());
+            WaitUtil.waitUtil("v5", getValue);
+        } finally {
+            writer.stop(new DtTime(1, TimeUnit.SECONDS), true);
+        }
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+class TimerWheelTest {
+
+    private static final long TICK = 1 << 20;
+    private static final long BASE = 1000 * TICK;
+
+    private FiberGroup group;
+    private TimerWheel w;
+
+    @BeforeEach
+    void setUp() {
+        group = new FiberGroup("g", new Dispatcher("d"));
+        w = new TimerWheel(BASE);
+    }
+
+    private Fiber fiber(long scheduleNanoTime) {
+        Fiber f = new Fiber("f", group, new EmptyFiberFrame());
+        f.scheduleNanoTime = scheduleNanoTime;
+        return f;
+    }
+
+    private List<Fiber> poll(long now) {
+        ArrayList<Fiber> list = new ArrayList<>();
+        Fiber f = w.pollExpired(now);
+        while (f != null) {
+            Fiber next = f.scheduleNext;
+            f.scheduleNext = null;
+            list.add(f);
+            f = next;
+        }
+        return list;
+    }
+
+    @Test
+    void testSimple() {
+        Fiber f1 = fiber(BASE + 5 * TICK + 10);
+        w.add(f1);
+        assertTrue(w.contains(f1));
+        assertEquals(1, w.size());
+        assertEquals(5 * TICK, w.nextDelayNanos(BASE, 100 * TICK));
+        assertEquals(3 * TICK, w.nextDelayNanos(BASE, 3 * TICK));
+        assertTrue(poll(BASE + 5 * TICK).isEmpty());
+        // the bucket of current tick is checked by exact time
+        assertEquals(10, w.nextDelayNanos(BASE + 5 * TICK, 100 * TICK));
+        assertTrue(poll(BASE + 5 * TICK + 9).isEmpty());
+        assertEquals(List.of(f1), poll(BASE + 5 * TICK + 10));
+        assertFalse(w.contains(f1));
+        assertEquals(0, w.size());
+        assertEquals(100 * TICK, w.nextDelayNanos(BASE + 5 * TICK, 100 * TICK));
+    }
+
+    @Test
+    void testRemove() {
+        Fiber f1 = fiber(BASE + 3 * TICK);
+        Fiber f2 = fiber(BASE + 3 * TICK + 1);
+        Fiber f3 = fiber(BASE + 3 * TICK + 2);
+        w.add(f1);
+        w.add(f2);
+        w.add(f3);
+        assertTrue(w.remove(f2));
+        assertFalse(w.remove(f2));
+        assertEquals(2, w.size());
+        assertEquals(List.of(f1, f3), poll(BASE + 10 * TICK));
+        assertTrue(w.remove(fiberAdded(BASE + 20 * TICK)));
+        assertEquals(0, w.size());
+    }
+
+    private Fiber fiberAdded(long scheduleNanoTime) {
+        Fiber f = fiber(scheduleNanoTime);
+        w.add(f);
+        return f;
+    }
+
+    @Test
+    void testLaterRound() {
+        Fiber f1 = fiberAdded(BASE + 600 * TICK + 5);
+        Fiber f2 = fiberAdded(BASE + 88 * TICK);
+        assertEquals(List.of(f2), poll(BASE + 100 * TICK));
+        assertTrue(poll(BASE + 599 * TICK).isEmpty());
+        assertTrue(poll(BASE + 600 * TICK).isEmpty());
+        assertEquals(5, w.nextDelayNanos(BASE + 600 * TICK, 100 * TICK));
+        assertEquals(List.of(f1), poll(BASE + 600 * TICK + 5));
+
+        // more than one round passed
+        Fiber f3 = fiberAdded(BASE + 2000 * TICK);
+        Fiber f4 = fiberAdded(BASE + 700 * TICK);
+        assertEquals(List.of(f4), poll(BASE + 1500 * TICK));
+        assertEquals(List.of(f3), poll(BASE + 5000 * TICK));
+    }
+
+    @Test
+    void testAddExpired() {
+        poll(BASE + 10 * TICK);
+        Fiber f1 = fiberAdded(BASE);
+        assertTrue(w.nextDelayNanos(BASE + 10 * TICK, 100 * TICK) <= 0);
+        assertEquals(List.of(f1), poll(BASE + 10 * TICK));
+    }
+
+    @Test
+    void testRandom() {
+        Random r = new Random();
+        PriorityQueue<Fiber> pq = new PriorityQueue<>((f1, f2) -> Long.compare(f1.scheduleNanoTime, f2.scheduleNanoTime));
+        ArrayList<Fiber> all = new ArrayList<>();
+        long now = BASE;
+        for (int i = 0; i < 10000; i++) {
+            now += r.nextInt((int) TICK);
+            int x = r.nextInt(10);
+            if (x < 5) {
+                Fiber f = fiberAdded(now + 1 + r.nextInt((int) (1000 * TICK)));
+                pq.add(f);
+                all.add(f);
+            } else if (x < 7 && !all.isEmpty()) {
+                Fiber f = all.remove(r.nextInt(all.size()));
+                assertEquals(pq.remove(f), w.remove(f));
+            } else {
+                long delay = w.nextDelayNanos(now, Long.MAX_VALUE / 2);
+                if (!pq.isEmpty()) {
+                    assertTrue(delay <= pq.peek().scheduleNanoTime - now);
+                }
+                HashSet<Fiber> expect = new HashSet<>();
+                while (!pq.isEmpty() && pq.peek().scheduleNanoTime <= now) {
+                    expect.add(pq.poll());
+                }
+                List<Fiber> list = poll(now);
+                assertEquals(expect, new HashSet<>(list));
+                all.removeAll(list);
+            }
+            assertEquals(pq.size(), w.size());
+        }
+    }
+}
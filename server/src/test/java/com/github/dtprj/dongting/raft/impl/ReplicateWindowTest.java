@@ -0,0 +1,89 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class ReplicateWindowTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long RTT = 100_000_000L;
+
+    private long time = 1_000_000_000L;
+
+    // simulate some rounds, in every round send min(window, bandwidth * rtt) bytes in 10 requests
+    private void run(ReplicateWindow w, long bytesPerSecond, int rounds) {
+        run(w, bytesPerSecond, rounds, RTT);
+    }
+
+    private void run(ReplicateWindow w, long bytesPerSecond, int rounds, long pingRtt) {
+        for (int i = 0; i < rounds; i++) {
+            long bytes = Math.min(w.getWindow(), bytesPerSecond / 10);
+            for (int j = 0; j < 10; j++) {
+                long sendTime = time + j * RTT / 10;
+                w.onAck(bytes / 10, pingRtt, sendTime + RTT);
+            }
+            time += RTT;
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        ReplicateWindow w = new ReplicateWindow(16 * MB, 0);
+        run(w, 1000 * MB, 20);
+        assertEquals(16 * MB, w.getWindow());
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        ReplicateWindow w = new ReplicateWindow(16 * MB, 1024 * MB);
+        run(w, 1000 * MB, 50);
+        // bdp is 100MB
+        assertTrue(w.getWindow() >= 100 * MB, String.valueOf(w.getWindow()));
+        assertTrue(w.getWindow() <= 210 * MB, String.valueOf(w.getWindow()));
+
+        run(w, 10 * MB, 100);
+        assertEquals(16 * MB, w.getWindow());
+    }
+
+    @Test
+    public void testMaxLimit() {
+        ReplicateWindow w = new ReplicateWindow(16 * MB, 64 * MB);
+        run(w, 1000 * MB, 50);
+        assertEquals(64 * MB, w.getWindow());
+    }
+
+    @Test
+    public void testUnknownRtt() {
+        ReplicateWindow w = new ReplicateWindow(16 * MB, 1024 * MB);
+        run(w, 1000 * MB, 50, 0);
+        assertEquals(16 * MB, w.getWindow());
+    }
+
+    @Test
+    public void testSmallNetworkRtt() {
+        // the acks are slow (contains the fsync time of follower), but the network rtt is small
+        ReplicateWindow w = new ReplicateWindow(16 * MB, 1024 * MB);
+        run(w, 1000 * MB, 50, RTT / 100);
+        assertEquals(16 * MB, w.getWindow());
+    }
+}
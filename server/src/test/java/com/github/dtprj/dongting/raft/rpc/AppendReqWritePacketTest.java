@@ -19,6 +19,7 @@ import com.github.dtprj.dongting.codec.DecodeContext;
 import com.github.dtprj.dongting.codec.DecoderCallback;
 import com.github.dtprj.dongting.codec.Encodable;
 import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.Lz4;
 import com.github.dtprj.dongting.codec.PbParser;
 import com.github.dtprj.dongting.common.ByteArray;
 import com.github.dtprj.dongting.raft.server.LogItem;
@@ -29,6 +30,7 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -72,7 +74,7 @@ public class AppendReqWritePacketTest {
         buf.clear();
 
         DecodeContext decodeContext = CodecTestUtil.decodeContext();
-        AppendReq.Callback c = new AppendReq.Callback(g -> raftCodecFactory);
+        AppendReq.Callback c = new AppendReq.Callback(g -> raftCodecFactory, Integer.MAX_VALUE);
         PbParser p = new PbParser();
         p.prepareNext(decodeContext, c, f.actualBodySize());
         AppendReq result = (AppendReq) p.parse(buf);
@@ -89,10 +91,13 @@ public class AppendReqWritePacketTest {
     }
 
     private void testSmallBufferEncode0(boolean addHeader, boolean addBody) {
-        AppendReqWritePacket f = createFrame(addHeader, addBody);
+        testSmallBufferEncode0(createFrame(addHeader, addBody));
+    }
+
+    private void testSmallBufferEncode0(AppendReqWritePacket f) {
         EncodeContext context = new EncodeContext(null);
         DecodeContext decodeContext = CodecTestUtil.decodeContext();
-        AppendReq.Callback c = new AppendReq.Callback(g -> raftCodecFactory);
+        AppendReq.Callback c = new AppendReq.Callback(g -> raftCodecFactory, Integer.MAX_VALUE);
         PbParser p = new PbParser();
         p.prepareNext(decodeContext, c, f.actualBodySize());
         Random r = new Random();
@@ -115,6 +120,24 @@ public class AppendReqWritePacketTest {
         check(f, parseResult);
     }
 
+    @Test
+    public void testCompressedEncode() {
+        for (int i = 0; i < 20; i++) {
+            AppendReqWritePacket f = createFrame(true, true);
+            for (LogItem li : f.logs) {
+                byte[] bs = new byte[200];
+                Arrays.fill(bs, (byte) i);
+                li.setBody(new ByteArray(bs));
+            }
+            byte[] raw = f.encodeEntries();
+            byte[] compressed = new byte[Lz4.maxCompressedLength(raw.length)];
+            int len = Lz4.compress(raw, 0, raw.length, compressed, 0);
+            assertTrue(len < raw.length / 2);
+            f.setCompressedEntries(raw.length, compressed, len);
+            testSmallBufferEncode0(f);
+        }
+    }
+
     private AppendReqWritePacket createFrame(boolean addHeader, boolean addBody) {
         AppendReqWritePacket f = new AppendReqWritePacket();
         f.groupId = 12345;
@@ -15,12 +15,18 @@
  */
 package com.github.dtprj.dongting.raft.rpc;
 
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.Lz4;
+import com.github.dtprj.dongting.codec.PbException;
+import com.github.dtprj.dongting.codec.PbParser;
 import com.github.dtprj.dongting.raft.impl.DtRaftServer;
 import com.github.dtprj.dongting.util.CodecTestUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashSet;
 
 public class InstallSnapshotReqTest {
@@ -32,11 +38,70 @@ public class InstallSnapshotReqTest {
         DtRaftServer.InstallSnapshotReq.parseFrom(buf);
 
         buf.position(0);
-        InstallSnapshotReq.Callback callback = new InstallSnapshotReq.Callback();
+        InstallSnapshotReq.Callback callback = new InstallSnapshotReq.Callback(Integer.MAX_VALUE);
         InstallSnapshotReq result = CodecTestUtil.fullBufferDecode(buf, callback);
         compare(req, result);
     }
 
+    @Test
+    public void testCompressedData() {
+        InstallSnapshotReq req = buildCompressedReq(3000);
+        InstallSnapshotReq.InstallReqWritePacket p = new InstallSnapshotReq.InstallReqWritePacket(req);
+        int size = p.actualBodySize();
+        Assertions.assertTrue(size < 3000);
+
+        PbParser parser = new PbParser();
+        parser.prepareNext(CodecTestUtil.decodeContext(), new InstallSnapshotReq.Callback(3000), size);
+        EncodeContext c = new EncodeContext(null);
+        InstallSnapshotReq result = null;
+        boolean finish;
+        do {
+            // small buffer, so the compressed data is written in several parts
+            ByteBuffer buf = ByteBuffer.allocate(100);
+            finish = p.encodeBody(c, buf);
+            buf.flip();
+            result = (InstallSnapshotReq) parser.parse(buf);
+        } while (!finish);
+
+        Assertions.assertNotNull(result);
+        compare(req, result);
+        ByteBuffer bb = result.data.getBuffer();
+        Assertions.assertEquals(3000, bb.remaining());
+        while (bb.hasRemaining()) {
+            Assertions.assertEquals((byte) 7, bb.get());
+        }
+        result.clean();
+        req.clean();
+    }
+
+    @Test
+    public void testRawSizeExceed() {
+        InstallSnapshotReq req = buildCompressedReq(3000);
+        InstallSnapshotReq.InstallReqWritePacket p = new InstallSnapshotReq.InstallReqWritePacket(req);
+        ByteBuffer buf = ByteBuffer.allocate(p.actualBodySize());
+        Assertions.assertTrue(p.encodeBody(new EncodeContext(null), buf));
+        buf.flip();
+
+        PbParser parser = new PbParser();
+        parser.prepareNext(CodecTestUtil.decodeContext(), new InstallSnapshotReq.Callback(2999), buf.remaining());
+        Assertions.assertThrows(PbException.class, () -> parser.parse(buf));
+        req.clean();
+    }
+
+    private InstallSnapshotReq buildCompressedReq(int rawSize) {
+        InstallSnapshotReq req = buildReq();
+        RefBuffer rb = CodecTestUtil.decodeContext().getHeapPool().create(rawSize);
+        ByteBuffer bb = rb.getBuffer();
+        byte[] raw = new byte[rawSize];
+        Arrays.fill(raw, (byte) 7);
+        bb.put(raw);
+        bb.flip();
+        req.data = rb;
+        req.compressedData = new byte[Lz4.maxCompressedLength(rawSize)];
+        req.compressedLen = Lz4.compress(raw, 0, rawSize, req.compressedData, 0);
+        return req;
+    }
+
     private InstallSnapshotReq buildReq() {
         InstallSnapshotReq req = new InstallSnapshotReq();
         req.groupId = 1;
@@ -0,0 +1,70 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.server;
+
+import com.github.dtprj.dongting.common.AbstractLifeCircle;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.raft.sm.StateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author huangli
+ */
+public class DefaultRaftFactoryTest {
+
+    @Test
+    public void testSharedDispatcher() {
+        DefaultRaftFactory factory = new DefaultRaftFactory() {
+            @Override
+            public StateMachine createStateMachine(RaftGroupConfigEx groupConfig) {
+                return null;
+            }
+        };
+        RaftServerConfig serverConfig = new RaftServerConfig();
+        serverConfig.dispatcherPoolSize = 2;
+        Dispatcher d1 = factory.createDispatcher(serverConfig, new RaftGroupConfig(1, "1", ""));
+        Dispatcher d2 = factory.createDispatcher(serverConfig, new RaftGroupConfig(2, "1", ""));
+        Dispatcher d3 = factory.createDispatcher(serverConfig, new RaftGroupConfig(3, "1", ""));
+        assertNotSame(d1, d2);
+        assertSame(d1, d3);
+
+        factory.startDispatcher(d1);
+        factory.startDispatcher(d3);
+        factory.startDispatcher(d2);
+        assertEquals(AbstractLifeCircle.STATUS_RUNNING, d1.getStatus());
+
+        DtTime timeout = new DtTime(5, TimeUnit.SECONDS);
+        factory.stopDispatcher(d1, timeout);
+        assertEquals(AbstractLifeCircle.STATUS_RUNNING, d1.getStatus());
+        // d1 and d2 have same group count now
+        Dispatcher d4 = factory.createDispatcher(serverConfig, new RaftGroupConfig(4, "1", ""));
+        assertSame(d1, d4);
+
+        factory.stopDispatcher(d3, timeout);
+        assertEquals(AbstractLifeCircle.STATUS_RUNNING, d1.getStatus());
+        factory.stopDispatcher(d4, timeout);
+        assertEquals(AbstractLifeCircle.STATUS_STOPPED, d1.getStatus());
+        factory.stopDispatcher(d2, timeout);
+        assertEquals(AbstractLifeCircle.STATUS_STOPPED, d2.getStatus());
+    }
+}
@@ -61,6 +61,9 @@ public class DtKVServerTest extends ServerTestBase {
     protected void config(RaftGroupConfig config) {
         super.config(config);
         config.syncForce = this.useSepExecutor;
+        // also test batch apply, parallel apply is not supported by DtKV, see ParallelApplyTest
+        config.maxApplyBatch = this.readInDtKvExecutor ? 16 : 0;
+        config.replicateRawLog = this.useSepExecutor;
     }
 
     @ParameterizedTest
@@ -0,0 +1,89 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.server;
+
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.dtkv.KvClient;
+import com.github.dtprj.dongting.dtkv.KvClientConfig;
+import com.github.dtprj.dongting.dtkv.KvNode;
+import com.github.dtprj.dongting.dtkv.server.KvServerConfig;
+import com.github.dtprj.dongting.net.NioClientConfig;
+import com.github.dtprj.dongting.raft.RaftClientConfig;
+import com.github.dtprj.dongting.raft.ReadRoutingPolicy;
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class FollowerReadTest extends ServerTestBase {
+
+    @Override
+    protected void config(KvServerConfig config) {
+        config.followerRead = true;
+    }
+
+    @Test
+    void test() throws Exception {
+        RaftClientConfig rcc = new RaftClientConfig();
+        rcc.readRoutingPolicy = ReadRoutingPolicy.FOLLOWER_PREFERRED;
+        KvClient client = new KvClient(new KvClientConfig(), rcc, new NioClientConfig());
+        ServerInfo s1 = null, s2 = null, s3 = null;
+        try {
+            String servers = "1,127.0.0.1:14401;2,127.0.0.1:14402;3,127.0.0.1:14403";
+            String members = "1,2,3";
+            String observers = "";
+            s1 = createServer(1, servers, members, observers);
+            s2 = createServer(2, servers, members, observers);
+            s3 = createServer(3, servers, members, observers);
+            waitStart(s1);
+            waitStart(s2);
+            waitStart(s3);
+            ServerInfo leader = waitLeaderElectAndGetLeaderId(groupId, s1, s2, s3);
+            ServerInfo follower = leader == s1 ? s2 : s1;
+
+            client.start();
+            client.getRaftClient().clientAddNode("1,127.0.0.1:15501;2,127.0.0.1:15502;3,127.0.0.1:15503");
+            client.getRaftClient().clientAddOrUpdateGroup(groupId, new int[]{1, 2, 3});
+
+            for (int i = 0; i < 10; i++) {
+                byte[] key = ("key" + i).getBytes();
+                client.put(groupId, key, ("value" + i).getBytes());
+
+                // the read index got by follower should not less than the commit index of leader after the write
+                DtTime timeout = new DtTime(5, TimeUnit.SECONDS);
+                long leaderIndex = leader.group.readIndex(timeout).get(5, TimeUnit.SECONDS);
+                long readIndex = follower.group.readIndex(timeout).get(5, TimeUnit.SECONDS);
+                assertTrue(readIndex >= leaderIndex);
+
+                // read after write, from followers
+                for (int j = 0; j < 3; j++) {
+                    KvNode n = client.get(groupId, key);
+                    assertEquals("value" + i, new String(n.data));
+                }
+            }
+        } finally {
+            TestUtil.stop(client);
+            waitStop(s1);
+            waitStop(s2);
+            waitStop(s3);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.server;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.DecoderCallback;
+import com.github.dtprj.dongting.codec.Encodable;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.codec.RefBufferDecoderCallback;
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.FutureCallback;
+import com.github.dtprj.dongting.dtkv.KvClient;
+import com.github.dtprj.dongting.dtkv.KvNode;
+import com.github.dtprj.dongting.dtkv.KvReq;
+import com.github.dtprj.dongting.dtkv.server.DtKV;
+import com.github.dtprj.dongting.dtkv.server.KvServerConfig;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.raft.sm.StateMachine;
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.dtprj.dongting.test.Tick.tick;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class ParallelApplyTest extends ServerTestBase {
+
+    private final List<String> events = new ArrayList<>();
+    private final int[] executing = new int[2];
+    private boolean barrierExecuting;
+    private String violation;
+    // decode the body of the logs loaded from disk as RefBuffer, to check they are not released before exec
+    private volatile boolean refBufferBody;
+
+    /**
+     * keys start with "a" are in lane 0 and complete slowly, keys start with "b" are in lane 1, others are barriers.
+     */
+    private class LaneKV extends DtKV {
+        LaneKV(RaftGroupConfigEx config, KvServerConfig kvConfig) {
+            super(config, kvConfig);
+        }
+
+        @Override
+        protected boolean supportParallelApply() {
+            return true;
+        }
+
+        @Override
+        public DecoderCallback<? extends Encodable> createBodyCallback(int bizType, DecodeContext context) {
+            if (refBufferBody) {
+                return new RefBufferDecoderCallback();
+            }
+            return super.createBodyCallback(bizType, context);
+        }
+
+        @Override
+        public int applyLane(RaftInput input) {
+            return lane(input);
+        }
+
+        @Override
+        public FiberFuture<Object> exec(long index, long leaderCreateTimeMillis, long localCreateNanos,
+                                        RaftInput input) {
+            if (input.body instanceof RefBuffer) {
+                input = new RaftInput(input.bizType, null, kvReq(input), input.deadline, input.readOnly);
+            }
+            int lane = lane(input);
+            String key = key(input);
+            onStart(lane, key);
+            FiberFuture<Object> f = super.exec(index, leaderCreateTimeMillis, localCreateNanos, input);
+            FiberFuture<Object> result = FiberGroup.currentGroup().newFuture("laneExec");
+            f.registerCallback((r, ex) -> DtUtil.SCHEDULED_SERVICE.schedule(() -> {
+                onEnd(lane, key);
+                if (ex != null) {
+                    result.fireCompleteExceptionally(ex);
+                } else {
+                    result.fireComplete(r);
+                }
+            }, lane == 0 ? tick(100) : 0, TimeUnit.MILLISECONDS));
+            return result;
+        }
+    }
+
+    private KvReq kvReq(RaftInput input) {
+        if (input.body instanceof KvReq) {
+            return (KvReq) input.body;
+        }
+        if (!(input.body instanceof RefBuffer)) {
+            return null;
+        }
+        ByteBuffer buf = ((RefBuffer) input.body).getBuffer();
+        if (buf == null) {
+            synchronized (this) {
+                violation = "body released before exec, events=" + events;
+            }
+            return null;
+        }
+        buf = buf.duplicate();
+        PbParser p = new PbParser();
+        p.prepareNext(new DecodeContext(), new KvReq.KvReqCallback(), buf.remaining());
+        return (KvReq) p.parse(buf);
+    }
+
+    private String key(RaftInput input) {
+        KvReq req = kvReq(input);
+        return req == null || req.key == null ? null : new String(req.key);
+    }
+
+    private int lane(RaftInput input) {
+        String key = key(input);
+        if (key != null && key.startsWith("a")) {
+            return 0;
+        } else if (key != null && key.startsWith("b")) {
+            return 1;
+        } else {
+            return -1;
+        }
+    }
+
+    private synchronized void onStart(int lane, String key) {
+        if (barrierExecuting || (lane >= 0 && executing[lane] > 0)
+                || (lane < 0 && executing[0] + executing[1] > 0)) {
+            violation = "start " + key + " while executing, events=" + events;
+        }
+        if (lane >= 0) {
+            executing[lane]++;
+        } else {
+            barrierExecuting = true;
+        }
+        events.add("start:" + key);
+    }
+
+    private synchronized void onEnd(int lane, String key) {
+        if (lane >= 0) {
+            executing[lane]--;
+        } else {
+            barrierExecuting = false;
+        }
+        events.add("end:" + key);
+    }
+
+    private synchronized int pos(String event) {
+        int i = events.indexOf(event);
+        assertTrue(i >= 0, event + " not found, events=" + events);
+        return i;
+    }
+
+    @Override
+    protected void config(RaftGroupConfig config) {
+        super.config(config);
+        config.parallelApply = true;
+    }
+
+    @Override
+    protected StateMachine createStateMachine(RaftGroupConfigEx groupConfig, KvServerConfig kvConfig) {
+        return new LaneKV(groupConfig, kvConfig);
+    }
+
+    private static CompletableFuture<Void> put(KvClient client, String key) {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        client.put(1, key.getBytes(), key.getBytes(), FutureCallback.fromFuture(f));
+        return f;
+    }
+
+    @Test
+    void test() throws Exception {
+        KvClient client = new KvClient();
+        ServerInfo s1 = null;
+        try {
+            s1 = createServer(1, "1, 127.0.0.1:14401", "1", "");
+            waitStart(s1);
+            client.start();
+            client.getRaftClient().clientAddNode("1, 127.0.0.1:15501");
+            client.getRaftClient().clientAddOrUpdateGroup(groupId, new int[]{1});
+
+            client.mkdir(groupId, "a".getBytes());
+            client.mkdir(groupId, "b".getBytes());
+
+            List<CompletableFuture<Void>> list = new ArrayList<>();
+            list.add(put(client, "a.k1"));
+            list.add(put(client, "b.k1"));
+            list.add(put(client, "a.k2"));
+            list.add(put(client, "b.k2"));
+            list.add(put(client, "c"));
+            list.add(put(client, "b.k3"));
+            for (CompletableFuture<Void> f : list) {
+                f.get(5, TimeUnit.SECONDS);
+            }
+
+            synchronized (this) {
+                assertNull(violation);
+            }
+            // out of order completion across lanes
+            assertTrue(pos("end:b.k1") < pos("end:a.k1"));
+            assertTrue(pos("end:b.k2") < pos("end:a.k1"));
+            // in order in the same lane
+            assertTrue(pos("end:a.k1") < pos("start:a.k2"));
+            assertTrue(pos("end:b.k1") < pos("start:b.k2"));
+            // barrier
+            assertTrue(pos("end:a.k2") < pos("start:c"));
+            assertTrue(pos("end:c") < pos("start:b.k3"));
+
+            for (String k : new String[]{"a.k1", "a.k2", "b.k1", "b.k2", "b.k3", "c"}) {
+                assertEquals(k, new String(client.get(groupId, k.getBytes()).data));
+            }
+        } finally {
+            TestUtil.stop(client);
+            waitStop(s1);
+        }
+    }
+
+    @Test
+    void testReplay() throws Exception {
+        KvClient client = new KvClient();
+        ServerInfo s1 = null;
+        // larger than the threshold of the heap pool, so the RefBuffer is really released
+        byte[] value = new byte[2000];
+        Arrays.fill(value, (byte) 'x');
+        // no barrier after a.k2, so a.k3 and a.k4 are still waiting for lane 0 when the loaded logs are released
+        String[] keys = {"a.k1", "c", "a.k2", "b.k1", "a.k3", "b.k2", "a.k4", "b.k3"};
+        try {
+            s1 = createServer(1, "1, 127.0.0.1:14401", "1", "");
+            waitStart(s1);
+            client.start();
+            client.getRaftClient().clientAddNode("1, 127.0.0.1:15501");
+            client.getRaftClient().clientAddOrUpdateGroup(groupId, new int[]{1});
+            client.mkdir(groupId, "a".getBytes());
+            client.mkdir(groupId, "b".getBytes());
+            for (String k : keys) {
+                client.put(groupId, k.getBytes(), value);
+            }
+            waitStop(s1);
+
+            // restart, the logs are loaded from disk and applied again, the tasks of lane 0 wait for the lane
+            synchronized (this) {
+                events.clear();
+            }
+            refBufferBody = true;
+            s1 = createServer(1, "1, 127.0.0.1:14401", "1", "");
+            waitStart(s1);
+            synchronized (this) {
+                assertNull(violation);
+                assertTrue(events.contains("end:a.k4"), "events=" + events);
+            }
+            for (String k : keys) {
+                KvNode n = client.get(groupId, k.getBytes());
+                assertTrue(Arrays.equals(value, n.data), k);
+            }
+        } finally {
+            TestUtil.stop(client);
+            waitStop(s1);
+        }
+    }
+}
@@ -120,6 +120,8 @@ public class ServerTestBase {
         serverConfig.electTimeout = tick(electTimeout);
         serverConfig.heartbeatInterval = (long) (serverConfig.electTimeout * 0.4);
         serverConfig.rpcTimeout = tick(rpcTimeout);
+        // also test replicate compression
+        serverConfig.replicateCompressThreshold = 256;
 
         RaftGroupConfig groupConfig = config(nodeId, groupId, nodeIdOfMembers, nodeIdOfObservers);
         groupConfig.idxCacheSize = idxCacheSize;
@@ -187,13 +189,17 @@ public class ServerTestBase {
     protected void config(KvServerConfig config) {
     }
 
+    protected StateMachine createStateMachine(RaftGroupConfigEx groupConfig, KvServerConfig kvConfig) {
+        return new DtKV(groupConfig, kvConfig);
+    }
+
     private DefaultRaftFactory createRaftFactory(int nodeId) {
         return new DefaultRaftFactory() {
             @Override
             public StateMachine createStateMachine(RaftGroupConfigEx groupConfig) {
                 KvServerConfig config = new KvServerConfig();
                 config(config);
-                return new DtKV(groupConfig, config);
+                return ServerTestBase.this.createStateMachine(groupConfig, config);
             }
 
             @Override
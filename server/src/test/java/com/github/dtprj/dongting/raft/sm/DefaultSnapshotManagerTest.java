@@ -27,6 +27,7 @@ import com.github.dtprj.dongting.fiber.BaseFiberTest;
 import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCall;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
@@ -35,9 +36,11 @@ import com.github.dtprj.dongting.raft.test.MockExecutors;
 import com.github.dtprj.dongting.test.TestDir;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -53,8 +56,15 @@ public class DefaultSnapshotManagerTest extends BaseFiberTest {
     private DtKV kv;
     private RaftStatusImpl raftStatus;
     private RaftGroupConfigEx groupConfig;
+    // simulate a state machine which can't install partitions concurrently
+    private boolean sequentialPartitionInstall;
 
     private void createManager(boolean separateExecutor, String dataDir, boolean mockInstall) {
+        createManager(separateExecutor, dataDir, mockInstall, 0, 1);
+    }
+
+    private void createManager(boolean separateExecutor, String dataDir, boolean mockInstall, int maxDelta,
+                               int partitions) {
         raftStatus = new RaftStatusImpl(0, dispatcher.ts);
         raftStatus.nodeIdOfMembers = Set.of(1);
         raftStatus.nodeIdOfObservers = Set.of();
@@ -67,9 +77,14 @@ public class DefaultSnapshotManagerTest extends BaseFiberTest {
         groupConfig.ts = dispatcher.ts;
         groupConfig.dataDir = dataDir;
         groupConfig.blockIoExecutor = MockExecutors.ioExecutor();
+        groupConfig.maxDeltaSnapshots = maxDelta;
+        if (maxDelta > 0) {
+            groupConfig.maxKeepSnapshots = 1;
+        }
         KvServerConfig kvConfig = new KvServerConfig();
         kvConfig.useSeparateExecutor = separateExecutor;
         kvConfig.initMapCapacity = 16;
+        kvConfig.snapshotPartitions = partitions;
         kv = new DtKV(groupConfig, kvConfig) {
             @Override
             public FiberFuture<Snapshot> takeSnapshot(SnapshotInfo si) {
@@ -78,6 +93,21 @@ public class DefaultSnapshotManagerTest extends BaseFiberTest {
                 }
                 return super.takeSnapshot(si);
             }
+
+            @Override
+            public boolean supportConcurrentPartitionInstall() {
+                return !sequentialPartitionInstall;
+            }
+
+            @Override
+            public FiberFuture<Void> installSnapshotPartition(int partition, long lastIncludeIndex,
+                                                             int lastIncludeTerm, long offset, ByteBuffer data) {
+                if (sequentialPartitionInstall) {
+                    // same as the default implementation of StateMachine
+                    return installSnapshot(lastIncludeIndex, lastIncludeTerm, offset, false, data);
+                }
+                return super.installSnapshotPartition(partition, lastIncludeIndex, lastIncludeTerm, offset, data);
+            }
         };
         m = new DefaultSnapshotManager(groupConfig, kv, ()-> kv.takeSnapshot(new SnapshotInfo(raftStatus)) , idx -> {
         });
@@ -185,6 +215,294 @@ public class DefaultSnapshotManagerTest extends BaseFiberTest {
         });
     }
 
+    @Test
+    void testSequentialPartitionInstall() throws Exception {
+        String dataDir = TestDir.createTestDir(DefaultSnapshotManager.class.getSimpleName()).getAbsolutePath();
+        sequentialPartitionInstall = true;
+        createManager(false, dataDir, false, 0, 3);
+        doInFiber(new FiberFrame<>() {
+            private long index = 1;
+            private static final int LOOP = 10;
+
+            @Override
+            protected FrameCallResult doFinally() {
+                kv.stop(new DtTime(1, TimeUnit.SECONDS));
+                m.stopFiber();
+                return super.doFinally();
+            }
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                kv.start();
+                return Fiber.call(m.init(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Snapshot snapshot) {
+                m.startFiber();
+                return beforePut(null);
+            }
+
+            private FrameCallResult beforePut(Void v) {
+                if (index > LOOP) {
+                    raftStatus.setLastApplied(LOOP);
+                    return m.saveSnapshot().await(this::afterSave);
+                }
+                // keys in different top level dirs, so they are in different partitions
+                KvReq req = new KvReq(1, ("key" + index).getBytes(), ("value" + index).getBytes());
+                RaftInput i = new RaftInput(DtKV.BIZ_TYPE_PUT, null, req,
+                        new DtTime(1, TimeUnit.SECONDS), false);
+                Timestamp ts = groupConfig.ts;
+                return kv.exec(index++, ts.wallClockMillis, ts.nanoTime, i).await(r -> beforePut(null));
+            }
+
+            private FrameCallResult afterSave(Long idx) throws Exception {
+                assertEquals(LOOP, idx);
+                kv.stop(new DtTime(1, TimeUnit.SECONDS));
+                m.stopFiber();
+
+                CountDownLatch latch = new CountDownLatch(10);
+                for (int i = 0; i < 10; i++) {
+                    groupConfig.blockIoExecutor.submit(latch::countDown);
+                }
+                assertTrue(latch.await(3, TimeUnit.SECONDS));
+
+                createManager(false, dataDir, false, 0, 3);
+                kv.start();
+                return Fiber.call(m.init(), this::afterInit2);
+            }
+
+            private FrameCallResult afterInit2(Snapshot snapshot) {
+                assertNotNull(snapshot);
+                assertEquals(3, snapshot.getPartitionCount());
+                m.startFiber();
+                return Fiber.call(m.recover(snapshot), this::afterRecover);
+            }
+
+            private FrameCallResult afterRecover(Void v) {
+                for (index = 1; index <= LOOP; index++) {
+                    KvResult r = kv.get(new ByteArray(("key" + index).getBytes()));
+                    assertEquals(KvCodes.SUCCESS, r.getBizCode());
+                    assertEquals("value" + index, new String(r.getNode().data));
+                }
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true,1", "false,1", "true,3", "false,3"})
+    void testDelta(boolean separateExecutor, int partitions) throws Exception {
+        String dataDir = TestDir.createTestDir(DefaultSnapshotManager.class.getSimpleName()).getAbsolutePath();
+        createManager(separateExecutor, dataDir, false, 2, partitions);
+        // bizType, key, value, save snapshot after it
+        Object[][] ops = {
+                {DtKV.BIZ_TYPE_PUT, "k1", "v1", false},
+                {DtKV.BIZ_TYPE_MKDIR, "d", null, false},
+                {DtKV.BIZ_TYPE_PUT, "d.x", "vx", true}, // full
+                {DtKV.BIZ_TYPE_REMOVE, "k1", null, false},
+                {DtKV.BIZ_TYPE_PUT, "k2", "v2", true}, // delta 1
+                {DtKV.BIZ_TYPE_REMOVE, "d.x", null, false},
+                {DtKV.BIZ_TYPE_REMOVE, "d", null, false},
+                {DtKV.BIZ_TYPE_PUT, "k1", "v1b", true}, // delta 2
+        };
+        doInFiber(new FiberFrame<>() {
+            private int index = 1;
+
+            @Override
+            protected FrameCallResult doFinally() {
+                kv.stop(new DtTime(1, TimeUnit.SECONDS));
+                m.stopFiber();
+                return super.doFinally();
+            }
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                kv.start();
+                return Fiber.call(m.init(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Snapshot snapshot) throws Exception {
+                m.startFiber();
+                return beforeOp(null);
+            }
+
+            private FrameCallResult beforeOp(Void v) throws Exception {
+                if (index > ops.length) {
+                    return afterLoop();
+                }
+                Object[] op = ops[index - 1];
+                byte[] value = op[2] == null ? null : ((String) op[2]).getBytes();
+                KvReq req = new KvReq(1, ((String) op[1]).getBytes(), value);
+                RaftInput i = new RaftInput((Integer) op[0], null, req, new DtTime(1, TimeUnit.SECONDS), false);
+                Timestamp ts = groupConfig.ts;
+                FiberFuture<Object> f = kv.exec(index, ts.wallClockMillis, ts.nanoTime, i);
+                return f.await(this::afterOp);
+            }
+
+            private FrameCallResult afterOp(Object result) {
+                assertEquals(KvCodes.SUCCESS, ((KvResult) result).getBizCode());
+                raftStatus.setLastApplied(index);
+                if ((Boolean) ops[index++ - 1][3]) {
+                    return m.saveSnapshot().await(idx -> Fiber.resume(null, this::beforeOp));
+                } else {
+                    return Fiber.resume(null, this::beforeOp);
+                }
+            }
+
+            private FrameCallResult afterLoop() throws Exception {
+                kv.stop(new DtTime(1, TimeUnit.SECONDS));
+                m.stopFiber();
+
+                CountDownLatch latch = new CountDownLatch(10);
+                for (int i = 0; i < 10; i++) {
+                    groupConfig.blockIoExecutor.submit(latch::countDown);
+                }
+                assertTrue(latch.await(3, TimeUnit.SECONDS));
+
+                // maxKeepSnapshots is 1, but the base snapshots of the delta chain should be kept
+                File[] files = new File(dataDir, DefaultSnapshotManager.SNAPSHOT_DIR).listFiles();
+                assertEquals(3 * (1 + partitions), files == null ? 0 : files.length);
+
+                createManager(separateExecutor, dataDir, false, 2, partitions);
+                kv.start();
+                return Fiber.call(m.init(), this::afterInit2);
+            }
+
+            private FrameCallResult afterInit2(Snapshot snapshot) {
+                assertNotNull(snapshot);
+                assertEquals(ops.length, snapshot.getSnapshotInfo().lastIncludedIndex);
+                m.startFiber();
+                return Fiber.call(m.recover(snapshot), this::afterRecover);
+            }
+
+            private FrameCallResult afterRecover(Void v) {
+                KvResult r = kv.get(new ByteArray("k1".getBytes()));
+                assertEquals(KvCodes.SUCCESS, r.getBizCode());
+                assertEquals("v1b", new String(r.getNode().data));
+                r = kv.get(new ByteArray("k2".getBytes()));
+                assertEquals("v2", new String(r.getNode().data));
+                assertEquals(KvCodes.NOT_FOUND, kv.get(new ByteArray("d.x".getBytes())).getBizCode());
+                assertEquals(KvCodes.NOT_FOUND, kv.get(new ByteArray("d".getBytes())).getBizCode());
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3})
+    void testOpenLatestSnapshot(int partitions) throws Exception {
+        String dataDir = TestDir.createTestDir(DefaultSnapshotManager.class.getSimpleName()).getAbsolutePath();
+        createManager(false, dataDir, false, 0, partitions);
+        groupConfig.maxKeepSnapshots = 1;
+        doInFiber(new FiberFrame<>() {
+            private long index = 1;
+            private Snapshot stream;
+            private ByteBuffer buf;
+            private final ByteBuffer data = ByteBuffer.allocate(64 * 1024);
+
+            @Override
+            protected FrameCallResult doFinally() {
+                if (stream != null) {
+                    stream.close();
+                }
+                kv.stop(new DtTime(1, TimeUnit.SECONDS));
+                m.stopFiber();
+                return super.doFinally();
+            }
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                kv.start();
+                return Fiber.call(m.init(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Snapshot snapshot) throws Exception {
+                m.startFiber();
+                assertNull(m.openLatestSnapshot());
+                return put(3, this::afterSave1);
+            }
+
+            private FrameCallResult put(long toIndex, FrameCall<Long> resumePoint) {
+                if (index > toIndex) {
+                    raftStatus.setLastApplied(toIndex);
+                    return m.saveSnapshot().await(resumePoint);
+                }
+                KvReq req = new KvReq(1, ("key" + index).getBytes(), ("value" + index).getBytes());
+                RaftInput i = new RaftInput(DtKV.BIZ_TYPE_PUT, null, req, new DtTime(1, TimeUnit.SECONDS), false);
+                Timestamp ts = groupConfig.ts;
+                return kv.exec(index++, ts.wallClockMillis, ts.nanoTime, i).await(v -> put(toIndex, resumePoint));
+            }
+
+            private FrameCallResult afterSave1(Long idx) throws Exception {
+                stream = m.openLatestSnapshot();
+                assertInstanceOf(FileSnapshotStream.class, stream);
+                assertEquals(3, stream.getSnapshotInfo().lastIncludedIndex);
+                buf = ByteBuffer.allocate(((FileSnapshotStream) stream).getMaxBlockSize());
+                // the snapshot being read should not be deleted
+                return put(4, v -> put(5, this::afterSave3));
+            }
+
+            private FrameCallResult afterSave3(Long idx) {
+                return waitFiles(2 * (1 + partitions), this::readNext);
+            }
+
+            private FrameCallResult readNext(Void v) {
+                buf.clear();
+                return stream.readNext(buf).await(this::afterRead);
+            }
+
+            private FrameCallResult afterRead(Integer bytes) {
+                if (bytes == 0) {
+                    stream.close();
+                    stream = null;
+                    data.flip();
+                    return kv.installSnapshot(3, 1, 0, true, data).await(this::afterInstall);
+                }
+                buf.flip();
+                assertEquals(bytes, buf.remaining());
+                data.put(buf);
+                return Fiber.resume(null, this::readNext);
+            }
+
+            private FrameCallResult afterInstall(Void v) {
+                for (int i = 1; i <= 5; i++) {
+                    KvResult r = kv.get(new ByteArray(("key" + i).getBytes()));
+                    if (i <= 3) {
+                        assertEquals("value" + i, new String(r.getNode().data));
+                    } else {
+                        assertEquals(KvCodes.NOT_FOUND, r.getBizCode());
+                    }
+                }
+                // the stream is closed, so the old snapshot can be deleted
+                return put(6, this::afterSave4);
+            }
+
+            private FrameCallResult afterSave4(Long idx) {
+                return waitFiles(1 + partitions, v -> Fiber.frameReturn());
+            }
+
+            // the old files are deleted in io executor after the save loop resumed, so wait for it
+            private FrameCallResult waitFiles(int expect, FrameCall<Void> resumePoint) {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+                return waitFiles(expect, deadline, resumePoint);
+            }
+
+            private FrameCallResult waitFiles(int expect, long deadline, FrameCall<Void> resumePoint) {
+                int count = countFiles();
+                if (count == expect || System.nanoTime() - deadline > 0) {
+                    assertEquals(expect, count);
+                    return Fiber.resume(null, resumePoint);
+                }
+                return Fiber.sleep(10, v -> waitFiles(expect, deadline, resumePoint));
+            }
+
+            private int countFiles() {
+                File[] files = new File(dataDir, DefaultSnapshotManager.SNAPSHOT_DIR).listFiles();
+                return files == null ? 0 : files.length;
+            }
+        });
+    }
+
     @Test
     void testCancel() throws Exception {
         String dataDir = TestDir.createTestDir(DefaultSnapshotManager.class.getSimpleName()).getAbsolutePath();
@@ -0,0 +1,116 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import com.github.dtprj.dongting.test.TestDir;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class BatchFileIoBackendTest extends BaseFiberTest {
+
+    private BatchFileIoBackend backend;
+    private AsynchronousFileChannel channel;
+    private DtFile dtFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        backend = new BatchFileIoBackend("test-batch-io");
+        File dir = TestDir.createTestDir(BatchFileIoBackendTest.class.getSimpleName());
+        File f = new File(dir, "f1");
+        channel = backend.openChannel(f.toPath(), Set.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE), MockExecutors.ioExecutor());
+        dtFile = new DtFile(f, channel, fiberGroup, backend);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        backend.shutdown();
+        channel.close();
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        int count = 20;
+        int len = 100;
+        ByteBuffer readBuf = ByteBuffer.allocate(count * len);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<?>[] futures = new FiberFuture[count];
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer buf = ByteBuffer.allocate(len);
+                    while (buf.hasRemaining()) {
+                        buf.put((byte) i);
+                    }
+                    buf.flip();
+                    futures[i] = new AsyncIoTask(getFiberGroup(), dtFile).write(buf, (long) i * len);
+                }
+                return FiberFuture.allOf("allWrite", futures).await(this::afterWrite);
+            }
+
+            private FrameCallResult afterWrite(Void v) {
+                assertEquals(0, dtFile.getWriters());
+                return new AsyncIoTask(getFiberGroup(), dtFile).read(readBuf, 0).await(this::justReturn);
+            }
+        });
+        readBuf.flip();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < len; j++) {
+                assertEquals((byte) i, readBuf.get());
+            }
+        }
+    }
+
+    @Test
+    public void testStopped() throws Exception {
+        backend.shutdown();
+        AtomicBoolean fail = new AtomicBoolean();
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return new AsyncIoTask(getFiberGroup(), dtFile).write(ByteBuffer.allocate(10), 0)
+                        .await(this::justReturn);
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                fail.set(ex != null);
+                return Fiber.frameReturn();
+            }
+        });
+        assertTrue(fail.get());
+    }
+}
@@ -57,6 +57,7 @@ public class DefaultRaftLogTest extends BaseFiberTest {
     private RaftGroupConfigEx config;
     private StatusManager statusManager;
     private DefaultRaftLog raftLog;
+    private int idxSparseInterval;
 
     @BeforeEach
     void setup() throws Exception {
@@ -90,6 +91,7 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         config.idxCacheSize = 4;
         config.idxFlushThreshold = 2;
         config.logFileSize = 1024;
+        config.idxSparseInterval = idxSparseInterval;
         raftLog = new DefaultRaftLog(config, statusManager, null, 1);
         doInFiber(new FiberFrame<>() {
             @Override
@@ -294,6 +296,7 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         append(11, new int[]{100, 100}, new int[]{10, 10});
 
         testLoader(() -> raftLog.openIterator(() -> false));
+        testLoader(() -> raftLog.openRawIterator(() -> false));
         testLoader(() -> new FileLogLoader(raftLog.idxFiles, raftLog.logFiles, config,
                 null, () -> false, 99));
         // test cancel indicator
@@ -356,6 +359,58 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         });
     }
 
+    @Test
+    void testSparseIdx() throws Exception {
+        tearDown();
+        idxSparseInterval = 3;
+        dataDir = TestDir.testDir(DefaultRaftLogTest.class.getSimpleName());
+        init();
+        // same as testFileLogLoader, cross files and has end magic items
+        int[] totalSizes = new int[]{256, 256, LogHeader.ITEM_HEADER_SIZE, 512 - LogHeader.ITEM_HEADER_SIZE};
+        int[] bizHeaderLen = new int[]{0, 256 - LogHeader.ITEM_HEADER_SIZE - 4, 0, 100};
+        append(1, totalSizes, bizHeaderLen);
+        append(5, new int[]{150, 200, 250, 1024 - 600 - (LogHeader.ITEM_HEADER_SIZE - 1)}, new int[]{10, 20, 150, 100});
+        append(9, new int[]{600}, new int[]{300});
+        append(10, new int[]{1024 - LogHeader.ITEM_HEADER_SIZE}, new int[]{300});
+        append(11, new int[]{100, 100}, new int[]{10, 10});
+        raftStatus.commitIndex = 12;
+        raftStatus.lastWriteLogIndex = 12;
+        checkSparseIdx(12);
+        testLoader(() -> raftLog.openIterator(() -> false));
+
+        tearDown();
+        init();
+        assertEquals(0, raftLog.idxFiles.queue.size());
+        raftStatus.commitIndex = 12;
+        raftStatus.lastWriteLogIndex = 12;
+        checkSparseIdx(12);
+    }
+
+    private void checkSparseIdx(int total) throws Exception {
+        doInFiber(new FiberFrame<>() {
+            long index = total;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                // load from tail, so the head items are evicted from the idx cache
+                return Fiber.call(raftLog.idxFiles.loadLogPos(index), this::afterLoadPos);
+            }
+
+            private FrameCallResult afterLoadPos(Long pos) {
+                return Fiber.call(raftLog.logFiles.loadHeader(pos), this::afterLoadHeader);
+            }
+
+            private FrameCallResult afterLoadHeader(LogHeader header) {
+                assertEquals(index, header.index);
+                index--;
+                if (index > 0) {
+                    return Fiber.resume(null, this);
+                }
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
     private void testLoader(Supplier<RaftLog.LogIterator> creator) throws Exception {
         final int total = 12;
         doInFiber(new FiberFrame<>() {
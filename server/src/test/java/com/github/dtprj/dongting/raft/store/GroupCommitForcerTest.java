@@ -0,0 +1,94 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import com.github.dtprj.dongting.test.TestDir;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class GroupCommitForcerTest extends BaseFiberTest {
+
+    @Test
+    public void testForce() throws Exception {
+        File dir = TestDir.createTestDir(GroupCommitForcerTest.class.getSimpleName());
+        AsynchronousFileChannel c1 = AsynchronousFileChannel.open(new File(dir, "f1").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        AsynchronousFileChannel c2 = AsynchronousFileChannel.open(new File(dir, "f2").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            AtomicInteger forceCount = new AtomicInteger();
+            GroupCommitForcer forcer = new GroupCommitForcer(MockExecutors.ioExecutor()) {
+                @Override
+                void doForce(AsynchronousFileChannel channel) throws IOException {
+                    forceCount.incrementAndGet();
+                    try {
+                        // slow force, so the requests arrived in the meantime are merged
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    super.doForce(channel);
+                }
+            };
+            AtomicInteger finishCount = new AtomicInteger();
+            int count = 20;
+            doInFiber(new FiberFrame<>() {
+                @Override
+                public FrameCallResult execute(Void input) {
+                    FiberFuture<?>[] futures = new FiberFuture[count];
+                    for (int i = 0; i < count; i++) {
+                        AsynchronousFileChannel c = i % 2 == 0 ? c1 : c2;
+                        Fiber f = new Fiber("force" + i, getFiberGroup(), new FiberFrame<>() {
+                            @Override
+                            public FrameCallResult execute(Void input) {
+                                return Fiber.call(forcer.force(c), v -> {
+                                    finishCount.incrementAndGet();
+                                    return Fiber.frameReturn();
+                                });
+                            }
+                        });
+                        f.start();
+                        futures[i] = f.join();
+                    }
+                    return FiberFuture.allOf("allForce", futures).await(this::justReturn);
+                }
+            });
+            assertEquals(count, finishCount.get());
+            // the first request of each file starts a force, the others are merged while it is in flight
+            assertTrue(forceCount.get() >= 2 && forceCount.get() < count, "forceCount=" + forceCount.get());
+        } finally {
+            c1.close();
+            c2.close();
+        }
+    }
+}
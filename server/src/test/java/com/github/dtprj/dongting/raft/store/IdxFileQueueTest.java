@@ -30,6 +30,8 @@ import com.github.dtprj.dongting.test.TestDir;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.File;
 import java.util.concurrent.atomic.AtomicReference;
@@ -46,6 +48,7 @@ public class IdxFileQueueTest extends BaseFiberTest {
     private RaftStatusImpl raftStatus;
     private StatusManager statusManager;
     private File dir;
+    private int mmapFiles;
 
     @BeforeEach
     public void setup() throws Exception {
@@ -63,6 +66,7 @@ public class IdxFileQueueTest extends BaseFiberTest {
         c.idxCacheSize = 4;
         c.idxFlushThreshold = 2;
         c.idxItemsPerFile = 8;
+        c.idxMmapFiles = mmapFiles;
         c.blockIoExecutor = MockExecutors.ioExecutor();
         raftStatus = new RaftStatusImpl(0, dispatcher.ts);
         raftStatus.tailCache = new TailCache(c, raftStatus);
@@ -242,8 +246,9 @@ public class IdxFileQueueTest extends BaseFiberTest {
         });
     }
 
-    @Test
-    public void testSyncLoad() throws Exception {
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1})
+    public void testSyncLoad(int mmapFiles) throws Exception {
         doInFiber(new FiberFrame<>() {
             @Override
             public FrameCallResult execute(Void input) {
@@ -259,6 +264,8 @@ public class IdxFileQueueTest extends BaseFiberTest {
                 return statusManager.close().await(this::justReturn);
             }
         });
+        // only 1 file mapped, the lookups across files cause evictions
+        this.mmapFiles = mmapFiles;
         idxFileQueue = createFileQueue();
         doInFiber(new FiberFrame<>() {
             @Override
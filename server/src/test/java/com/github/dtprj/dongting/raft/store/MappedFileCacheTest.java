@@ -0,0 +1,114 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import com.github.dtprj.dongting.test.TestDir;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class MappedFileCacheTest extends BaseFiberTest {
+
+    private static LogFile createFile(File dir, String name, long value) throws Exception {
+        File f = new File(dir, name);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.writeLong(value);
+        }
+        return new LogFile(0, 8, null, f, fiberGroup);
+    }
+
+    @Test
+    public void testConcurrentLoadAndEvict() throws Exception {
+        File dir = TestDir.createTestDir(MappedFileCacheTest.class.getSimpleName());
+        LogFile lf1 = createFile(dir, "f1", 1);
+        LogFile lf2 = createFile(dir, "f2", 2);
+        MappedFileCache cache = new MappedFileCache(1, MockExecutors.ioExecutor(), fiberGroup);
+        doInFiber(new FiberFrame<>() {
+            private FiberFuture<MappedFileCache.MappedFile> load1;
+            private FiberFuture<MappedFileCache.MappedFile> load2;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                // two readers map the same file concurrently
+                load1 = cache.load(lf1);
+                load2 = cache.load(lf1);
+                return FiberFuture.allOf("load", load1, load2).await(this::afterLoad);
+            }
+
+            private FrameCallResult afterLoad(Void v) {
+                MappedFileCache.MappedFile mf = load1.getResult();
+                assertSame(mf, load2.getResult());
+                assertEquals(1L, mf.buffer.getLong(0));
+                // evict lf1 while the readers still hold it
+                return cache.load(lf2).await(mf2 -> afterLoad2(mf, mf2));
+            }
+
+            private FrameCallResult afterLoad2(MappedFileCache.MappedFile mf1, MappedFileCache.MappedFile mf2) {
+                assertNull(cache.get(lf1));
+                assertFalse(mf1.isUnmapped());
+                assertEquals(1L, mf1.buffer.getLong(0));
+                cache.release(mf1);
+                assertFalse(mf1.isUnmapped());
+                cache.release(mf1);
+                assertTrue(mf1.isUnmapped());
+
+                // remove while a reader holds it
+                assertSame(mf2, cache.get(lf2));
+                cache.remove(lf2);
+                cache.release(mf2);
+                assertFalse(mf2.isUnmapped());
+                assertEquals(2L, mf2.buffer.getLong(0));
+                cache.release(mf2);
+                assertTrue(mf2.isUnmapped());
+                return justReturn(null);
+            }
+        });
+    }
+
+    @Test
+    public void testLoadDeleted() throws Exception {
+        File dir = TestDir.createTestDir(MappedFileCacheTest.class.getSimpleName());
+        LogFile lf = createFile(dir, "f1", 1);
+        MappedFileCache cache = new MappedFileCache(2, MockExecutors.ioExecutor(), fiberGroup);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                FiberFuture<MappedFileCache.MappedFile> f = cache.load(lf);
+                lf.deleted = true;
+                return f.await(mf -> {
+                    assertNull(mf);
+                    assertNull(cache.get(lf));
+                    return justReturn(null);
+                });
+            }
+        });
+    }
+}